@@ -0,0 +1,149 @@
+/*
+ * "Copyright (c) 2014   Capgemini Technology Services (hereinafter "Capgemini")
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * -   The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Any failure to comply with the above shall automatically terminate the license
+ * and be construed as a breach of these Terms of Use causing significant harm to
+ * Capgemini.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Capgemini shall not be used in
+ * advertising or otherwise to promote the use or other dealings in this Software
+ * without prior written authorization from Capgemini.
+ *
+ * These Terms of Use are subject to French law.
+ *
+ * IMPORTANT NOTICE: The WUIC software implements software components governed by
+ * open source software licenses (BSD and Apache) of which CAPGEMINI is not the
+ * author or the editor. The rights granted on the said software components are
+ * governed by the specific terms and conditions specified by Apache 2.0 and BSD
+ * licenses."
+ */
+
+
+package com.github.wuic.benchmark;
+
+import com.github.wuic.engine.DimensionPacker;
+import com.github.wuic.engine.Region;
+import com.github.wuic.engine.impl.embedded.CGBinPacker;
+import com.github.wuic.engine.impl.embedded.CGMaxRectsPacker;
+import com.github.wuic.engine.setter.PackerPropertySetter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.awt.Dimension;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * <p>
+ * Measures the {@link DimensionPacker} implementations alone, independently of the image I/O done by the aggregator.
+ * The complete image aggregation is measured by the {@link ChainBenchmark}. The area and the PNG size of the
+ * resulting sprites are reported by the {@link PackerReport}.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @version 1.1
+ * @since 0.5.0
+ */
+@State(Scope.Benchmark)
+public class BinPackerBenchmark {
+
+    /**
+     * The packer alias, as accepted by the {@link PackerPropertySetter}.
+     */
+    @Param({ PackerPropertySetter.BIN_TREE, PackerPropertySetter.MAX_RECTS })
+    private String packer;
+
+    /**
+     * The kind of dimensions: random between 1 and 64 pixels, or {@link Fixtures#icons(int) icons}.
+     */
+    @Param({ "random", "icons" })
+    private String set;
+
+    /**
+     * Number of elements to pack.
+     */
+    @Param({ "10", "100", "1000" })
+    private int elements;
+
+    /**
+     * The dimensions to pack.
+     */
+    private Dimension[] dimensions;
+
+    /**
+     * <p>
+     * Creates the packer corresponding to the given alias.
+     * </p>
+     *
+     * @param alias the alias
+     * @param <T> the type of data
+     * @return the packer
+     */
+    public static <T> DimensionPacker<T> newPacker(final String alias) {
+        if (PackerPropertySetter.MAX_RECTS.equals(alias)) {
+            return new CGMaxRectsPacker<T>();
+        } else if (PackerPropertySetter.BIN_TREE.equals(alias)) {
+            return new CGBinPacker<T>();
+        } else {
+            throw new IllegalArgumentException(alias);
+        }
+    }
+
+    /**
+     * <p>
+     * Generates the dimensions.
+     * </p>
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        if ("icons".equals(set)) {
+            dimensions = Fixtures.icons(elements);
+        } else {
+            final Random random = new Random(elements);
+            dimensions = new Dimension[elements];
+
+            for (int i = 0; i < elements; i++) {
+                dimensions[i] = new Dimension(1 + random.nextInt(64), 1 + random.nextInt(64));
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Packs all the elements.
+     * </p>
+     *
+     * @return the regions
+     */
+    @Benchmark
+    public Map<Region, Integer> pack() {
+        final DimensionPacker<Integer> p = newPacker(packer);
+
+        for (int i = 0; i < elements; i++) {
+            p.addElement(dimensions[i], i);
+        }
+
+        return p.getRegions();
+    }
+}
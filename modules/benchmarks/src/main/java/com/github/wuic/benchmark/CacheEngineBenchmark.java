@@ -0,0 +1,245 @@
+/*
+ * "Copyright (c) 2014   Capgemini Technology Services (hereinafter "Capgemini")
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * -   The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Any failure to comply with the above shall automatically terminate the license
+ * and be construed as a breach of these Terms of Use causing significant harm to
+ * Capgemini.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Capgemini shall not be used in
+ * advertising or otherwise to promote the use or other dealings in this Software
+ * without prior written authorization from Capgemini.
+ *
+ * These Terms of Use are subject to French law.
+ *
+ * IMPORTANT NOTICE: The WUIC software implements software components governed by
+ * open source software licenses (BSD and Apache) of which CAPGEMINI is not the
+ * author or the editor. The rights granted on the said software components are
+ * governed by the specific terms and conditions specified by Apache 2.0 and BSD
+ * licenses."
+ */
+
+
+package com.github.wuic.benchmark;
+
+import com.github.wuic.NutType;
+import com.github.wuic.engine.EngineRequest;
+import com.github.wuic.engine.impl.ehcache.DefaultEhCacheProvider;
+import com.github.wuic.engine.impl.ehcache.EhCacheEngine;
+import com.github.wuic.engine.impl.embedded.AbstractCacheEngine;
+import com.github.wuic.engine.impl.embedded.CacheResultCodec;
+import com.github.wuic.engine.impl.embedded.MemoryMapCacheEngine;
+import com.github.wuic.exception.WuicException;
+import com.github.wuic.nut.Nut;
+import com.github.wuic.nut.core.ByteArrayNut;
+import net.sf.ehcache.CacheManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * <p>
+ * Measures the {@link AbstractCacheEngine} implementations and the {@link CacheResultCodec} used to store results
+ * outside the heap. Running this benchmark with the JMH 'gc' profiler compares the allocation rate of the heap and
+ * off-heap modes of the {@link MemoryMapCacheEngine}.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @version 1.0
+ * @since 0.5.0
+ */
+@State(Scope.Benchmark)
+public class CacheEngineBenchmark {
+
+    /**
+     * The cache implementation.
+     */
+    @Param({ "memoryMap", "offHeap", "ehCache" })
+    private String implementation;
+
+    /**
+     * Number of entries in the cache.
+     */
+    @Param({ "100", "1000" })
+    private int entries;
+
+    /**
+     * Size of each cached nut in kilobytes.
+     */
+    @Param({ "4", "64" })
+    private int payload;
+
+    /**
+     * The engine.
+     */
+    private AbstractCacheEngine engine;
+
+    /**
+     * The keys of all the cached results.
+     */
+    private EngineRequest.Key[] keys;
+
+    /**
+     * The cached results.
+     */
+    private AbstractCacheEngine.CacheResult[] results;
+
+    /**
+     * One encoded result.
+     */
+    private byte[] encoded;
+
+    /**
+     * Index of the next entry to read or write.
+     */
+    private int next;
+
+    /**
+     * <p>
+     * Creates the engine and fills it.
+     * </p>
+     *
+     * @throws Exception if setup fails
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        if ("memoryMap".equals(implementation)) {
+            engine = new MemoryMapCacheEngine(Boolean.TRUE, -1, Boolean.FALSE);
+        } else if ("offHeap".equals(implementation)) {
+            engine = new MemoryMapCacheEngine(Boolean.TRUE, -1, Boolean.FALSE, entries * payload * 2 / 1024 + 1);
+        } else {
+            engine = new EhCacheEngine(Boolean.TRUE, new DefaultEhCacheProvider().getCache(), Boolean.FALSE);
+        }
+
+        final Random random = new Random(entries);
+        keys = new EngineRequest.Key[entries];
+        results = new AbstractCacheEngine.CacheResult[entries];
+
+        for (int i = 0; i < entries; i++) {
+            final byte[] bytes = new byte[payload * 1024];
+            random.nextBytes(bytes);
+            final Nut nut = new ByteArrayNut(bytes, "nut-" + i + ".js", NutType.JAVASCRIPT, BigInteger.valueOf(i));
+            final Map<String, Nut> map = new HashMap<String, Nut>();
+            map.put(nut.getName(), nut);
+            keys[i] = new EngineRequest.Key("workflow-" + i, Arrays.asList(nut));
+            results[i] = new AbstractCacheEngine.CacheResult(null, map);
+            engine.putToCache(keys[i], results[i]);
+        }
+
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        CacheResultCodec.encode(results[0], bos);
+        encoded = bos.toByteArray();
+    }
+
+    /**
+     * <p>
+     * Clears the cache and releases the resources.
+     * </p>
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (engine instanceof MemoryMapCacheEngine) {
+            MemoryMapCacheEngine.class.cast(engine).clearCache();
+        } else {
+            CacheManager.getInstance().shutdown();
+        }
+    }
+
+    /**
+     * <p>
+     * Gets the index of the next entry.
+     * </p>
+     *
+     * @return the index
+     */
+    private int nextIndex() {
+        next = (next + 1) % entries;
+        return next;
+    }
+
+    /**
+     * <p>
+     * Reads an existing entry.
+     * </p>
+     *
+     * @return the cached result
+     */
+    @Benchmark
+    public AbstractCacheEngine.CacheResult get() {
+        return engine.getFromCache(keys[nextIndex()]);
+    }
+
+    /**
+     * <p>
+     * Replaces an existing entry.
+     * </p>
+     *
+     * @return the replaced key
+     */
+    @Benchmark
+    public EngineRequest.Key put() {
+        final int index = nextIndex();
+        engine.putToCache(keys[index], results[index]);
+        return keys[index];
+    }
+
+    /**
+     * <p>
+     * Encodes a result, measuring the serialization throughput.
+     * </p>
+     *
+     * @return the encoded size
+     * @throws IOException if encoding fails
+     */
+    @Benchmark
+    public int encode() throws IOException {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream(encoded.length);
+        CacheResultCodec.encode(results[nextIndex()], bos);
+        return bos.size();
+    }
+
+    /**
+     * <p>
+     * Decodes a result, measuring the deserialization throughput.
+     * </p>
+     *
+     * @return the decoded result
+     * @throws IOException if decoding fails
+     * @throws WuicException if a decoded nut can't be read
+     */
+    @Benchmark
+    public long decode() throws IOException, WuicException {
+        final AbstractCacheEngine.CacheResult result = CacheResultCodec.decode(new ByteArrayInputStream(encoded));
+        return Fixtures.drain(new ArrayList<Nut>(result.getDefaultResult().values()));
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * "Copyright (c) 2014   Capgemini Technology Services (hereinafter "Capgemini")
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * -   The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Any failure to comply with the above shall automatically terminate the license
+ * and be construed as a breach of these Terms of Use causing significant harm to
+ * Capgemini.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Capgemini shall not be used in
+ * advertising or otherwise to promote the use or other dealings in this Software
+ * without prior written authorization from Capgemini.
+ *
+ * These Terms of Use are subject to French law.
+ *
+ * IMPORTANT NOTICE: The WUIC software implements software components governed by
+ * open source software licenses (BSD and Apache) of which CAPGEMINI is not the
+ * author or the editor. The rights granted on the said software components are
+ * governed by the specific terms and conditions specified by Apache 2.0 and BSD
+ * licenses."
+ */
+
+
+package com.github.wuic.benchmark;
+
+import com.github.wuic.ApplicationConfig;
+import com.github.wuic.Context;
+import com.github.wuic.ContextBuilder;
+import com.github.wuic.exception.WuicException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+
+/**
+ * <p>
+ * Measures the engines doing the actual processing. The workflow is built with a single engine and without cache,
+ * so each invocation processes the whole heap and reads the resulting streams. The engine is selected by the name of
+ * its builder:
+ * </p>
+ *
+ * <ul>
+ *     <li>CssInspectorEngineBuilder: {@code CGTextInspectorEngine} with the {@code CGCssUrlLineInspector}</li>
+ *     <li>HtmlInspectorEngineBuilder: {@code HtmlInspectorEngine} transforming pages referencing scripts and stylesheets</li>
+ *     <li>YuiCompressorCssEngineBuilder and YuiCompressorJavascriptEngineBuilder: YUI compression</li>
+ *     <li>ImageAggregatorEngineBuilder: {@code CGImageAggregatorEngine} packing images with the {@code CGBinPacker}</li>
+ * </ul>
+ *
+ * <p>
+ * With one thousand rules, the generated stylesheets have the size of a typical framework stylesheet.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @version 1.0
+ * @since 0.5.0
+ */
+@State(Scope.Benchmark)
+public class ChainBenchmark {
+
+    /**
+     * The engine builder.
+     */
+    @Param({
+            "CssInspectorEngineBuilder",
+            "HtmlInspectorEngineBuilder",
+            "YuiCompressorCssEngineBuilder",
+            "YuiCompressorJavascriptEngineBuilder",
+            "ImageAggregatorEngineBuilder"
+    })
+    private String engine;
+
+    /**
+     * Number of files in the heap.
+     */
+    @Param({ "10" })
+    private int files;
+
+    /**
+     * Number of rules, functions or pixels of image width in each file.
+     */
+    @Param({ "100", "1000" })
+    private int size;
+
+    /**
+     * The fixtures directory.
+     */
+    private File directory;
+
+    /**
+     * The context.
+     */
+    private Context context;
+
+    /**
+     * The workflow to run.
+     */
+    private String workflow;
+
+    /**
+     * <p>
+     * Generates the fixtures and builds the context.
+     * </p>
+     *
+     * @throws Exception if setup fails
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        directory = Fixtures.newDirectory("wuic-chain");
+        final String[] paths = new String[files];
+        final String heap;
+
+        for (int i = 0; i < files; i++) {
+            final File file;
+
+            if (engine.startsWith("Css") || engine.startsWith("YuiCompressorCss")) {
+                file = Fixtures.css(directory, i, size);
+            } else if (engine.startsWith("YuiCompressorJavascript")) {
+                file = Fixtures.js(directory, i, size);
+            } else if (engine.startsWith("Html")) {
+                Fixtures.css(directory, i, size);
+                Fixtures.js(directory, i, size);
+                file = Fixtures.html(directory, "page-" + i + ".html", i + 1, i + 1);
+            } else {
+                file = Fixtures.png(directory, "sprite-" + i + ".png", 1 + size / (i + 1), 1 + size / (files - i));
+            }
+
+            paths[i] = file.getName();
+        }
+
+        if (engine.startsWith("Html")) {
+            heap = "html";
+        } else if (engine.startsWith("Image")) {
+            heap = "png";
+        } else if (engine.contains("Javascript")) {
+            heap = "js";
+        } else {
+            heap = "css";
+        }
+
+        final ContextBuilder builder = new ContextBuilder()
+                .tag("benchmark")
+                .contextNutDaoBuilder("dao", "DiskNutDaoBuilder")
+                .property(ApplicationConfig.BASE_PATH, directory.getAbsolutePath())
+                .toContext()
+                .contextEngineBuilder("engine", engine)
+                .toContext()
+                .heap(heap, "dao", paths)
+                .template("tpl", new String[] { "engine" }, null, Boolean.FALSE)
+                .workflow("wf-", Boolean.TRUE, heap, "tpl")
+                .releaseTag();
+
+        context = builder.build();
+        workflow = "wf-" + heap;
+    }
+
+    /**
+     * <p>
+     * Deletes the fixtures.
+     * </p>
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Fixtures.delete(directory);
+    }
+
+    /**
+     * <p>
+     * Processes the heap and reads the result.
+     * </p>
+     *
+     * @return the number of bytes read
+     * @throws WuicException if processing fails
+     */
+    @Benchmark
+    public long process() throws WuicException {
+        return Fixtures.drain(context.process("", workflow));
+    }
+}
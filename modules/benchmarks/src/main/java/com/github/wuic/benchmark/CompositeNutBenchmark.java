@@ -0,0 +1,117 @@
+/*
+ * "Copyright (c) 2014   Capgemini Technology Services (hereinafter "Capgemini")
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * -   The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Any failure to comply with the above shall automatically terminate the license
+ * and be construed as a breach of these Terms of Use causing significant harm to
+ * Capgemini.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Capgemini shall not be used in
+ * advertising or otherwise to promote the use or other dealings in this Software
+ * without prior written authorization from Capgemini.
+ *
+ * These Terms of Use are subject to French law.
+ *
+ * IMPORTANT NOTICE: The WUIC software implements software components governed by
+ * open source software licenses (BSD and Apache) of which CAPGEMINI is not the
+ * author or the editor. The rights granted on the said software components are
+ * governed by the specific terms and conditions specified by Apache 2.0 and BSD
+ * licenses."
+ */
+
+
+package com.github.wuic.benchmark;
+
+import com.github.wuic.NutType;
+import com.github.wuic.exception.WuicException;
+import com.github.wuic.nut.Nut;
+import com.github.wuic.nut.core.ByteArrayNut;
+import com.github.wuic.nut.core.CompositeNut;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * <p>
+ * Measures the streaming of a {@link CompositeNut}, which is how aggregated bundles are served. Running this benchmark
+ * with the JMH 'gc' profiler shows the allocation done per byte on large bundles.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @version 1.0
+ * @since 0.5.0
+ */
+@State(Scope.Benchmark)
+public class CompositeNutBenchmark {
+
+    /**
+     * Number of nuts in the composition.
+     */
+    @Param({ "10", "100" })
+    private int nuts;
+
+    /**
+     * Size of each nut in kilobytes.
+     */
+    @Param({ "1", "64" })
+    private int payload;
+
+    /**
+     * The composed nuts.
+     */
+    private Nut[] composition;
+
+    /**
+     * <p>
+     * Generates the nuts to compose.
+     * </p>
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        final Random random = new Random(nuts);
+        composition = new Nut[nuts];
+
+        for (int i = 0; i < nuts; i++) {
+            final byte[] bytes = new byte[payload * 1024];
+            random.nextBytes(bytes);
+            composition[i] = new ByteArrayNut(bytes, "nut-" + i + ".js", NutType.JAVASCRIPT, BigInteger.valueOf(i));
+        }
+    }
+
+    /**
+     * <p>
+     * Composes the nuts and reads the composition.
+     * </p>
+     *
+     * @return the number of bytes read
+     * @throws WuicException if the stream can't be read
+     */
+    @Benchmark
+    public long stream() throws WuicException {
+        final Nut composite = new CompositeNut("bundle.js", "\n".getBytes(), composition);
+        return Fixtures.drain(Arrays.asList(composite));
+    }
+}
@@ -0,0 +1,370 @@
+/*
+ * "Copyright (c) 2014   Capgemini Technology Services (hereinafter "Capgemini")
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * -   The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Any failure to comply with the above shall automatically terminate the license
+ * and be construed as a breach of these Terms of Use causing significant harm to
+ * Capgemini.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Capgemini shall not be used in
+ * advertising or otherwise to promote the use or other dealings in this Software
+ * without prior written authorization from Capgemini.
+ *
+ * These Terms of Use are subject to French law.
+ *
+ * IMPORTANT NOTICE: The WUIC software implements software components governed by
+ * open source software licenses (BSD and Apache) of which CAPGEMINI is not the
+ * author or the editor. The rights granted on the said software components are
+ * governed by the specific terms and conditions specified by Apache 2.0 and BSD
+ * licenses."
+ */
+
+
+package com.github.wuic.benchmark;
+
+import com.github.wuic.exception.NutNotFoundException;
+import com.github.wuic.exception.wrapper.StreamException;
+import com.github.wuic.nut.Nut;
+import com.github.wuic.util.IOUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * <p>
+ * Generates the files used by the benchmarks. Generation is deterministic for a given size so two runs of the same
+ * benchmark always work on the same content.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @version 1.1
+ * @since 0.5.0
+ */
+public final class Fixtures {
+
+    /**
+     * Seed used to generate the content.
+     */
+    private static final long SEED = 20140901L;
+
+    /**
+     * <p>
+     * Prevent instantiation of this class which provides only static methods.
+     * </p>
+     */
+    private Fixtures() {
+
+    }
+
+    /**
+     * <p>
+     * Creates a new temporary directory deleted when the JVM exits.
+     * </p>
+     *
+     * @param prefix the directory name prefix
+     * @return the directory
+     * @throws IOException if the directory can't be created
+     */
+    public static File newDirectory(final String prefix) throws IOException {
+        final File retval = File.createTempFile(prefix, "");
+
+        if (!retval.delete() || !retval.mkdirs()) {
+            throw new IOException("Unable to create directory " + retval.getAbsolutePath());
+        }
+
+        retval.deleteOnExit();
+        return retval;
+    }
+
+    /**
+     * <p>
+     * Deletes the given file, recursively if it's a directory.
+     * </p>
+     *
+     * @param file the file to delete
+     */
+    public static void delete(final File file) {
+        final File[] children = file.listFiles();
+
+        if (children != null) {
+            for (final File child : children) {
+                delete(child);
+            }
+        }
+
+        if (!file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    /**
+     * <p>
+     * Generates a stylesheet with the given number of rules. One rule out of ten references an image with
+     * the 'url()' statement, the image being generated in the same directory. The first rule is an '@import' statement
+     * referencing the stylesheet generated at the previous index, if any.
+     * </p>
+     *
+     * @param dir the directory
+     * @param index the stylesheet index, used to name the file
+     * @param rules the number of rules
+     * @return the generated file
+     * @throws IOException if an I/O error occurs
+     */
+    public static File css(final File dir, final int index, final int rules) throws IOException {
+        final Random random = new Random(SEED + index);
+        final StringBuilder sb = new StringBuilder();
+
+        if (index > 0) {
+            sb.append("@import url(\"style-").append(index - 1).append(".css\");\n");
+        }
+
+        for (int i = 0; i < rules; i++) {
+            sb.append(".block-").append(index).append('-').append(i).append(" > .item:hover, #id-").append(i).append(" {\n")
+                    .append("    margin: ").append(random.nextInt(20)).append("px ").append(random.nextInt(20)).append("px;\n")
+                    .append("    color: #").append(Integer.toHexString(0x100000 + random.nextInt(0xEFFFFF))).append(";\n");
+
+            if (i % 10 == 0) {
+                final String image = "img-" + (i / 10) + ".png";
+                png(dir, image, 8 + random.nextInt(24), 8 + random.nextInt(24));
+                sb.append("    background: url('").append(image).append("') no-repeat;\n");
+            }
+
+            sb.append("}\n\n");
+        }
+
+        return write(new File(dir, "style-" + index + ".css"), sb.toString());
+    }
+
+    /**
+     * <p>
+     * Generates a script with the given number of functions.
+     * </p>
+     *
+     * @param dir the directory
+     * @param index the script index, used to name the file
+     * @param functions the number of functions
+     * @return the generated file
+     * @throws IOException if an I/O error occurs
+     */
+    public static File js(final File dir, final int index, final int functions) throws IOException {
+        final Random random = new Random(SEED + index);
+        final StringBuilder sb = new StringBuilder();
+        sb.append("var module").append(index).append(" = {};\n\n");
+
+        for (int i = 0; i < functions; i++) {
+            sb.append("// computes the value ").append(i).append('\n')
+                    .append("module").append(index).append(".compute").append(i).append(" = function (firstArgument, secondArgument) {\n")
+                    .append("    var localResult = firstArgument * ").append(random.nextInt(100)).append(";\n")
+                    .append("    if (secondArgument > localResult) {\n")
+                    .append("        return \"value-").append(i).append("\" + secondArgument;\n")
+                    .append("    }\n")
+                    .append("    return localResult + secondArgument;\n")
+                    .append("};\n\n");
+        }
+
+        return write(new File(dir, "script-" + index + ".js"), sb.toString());
+    }
+
+    /**
+     * <p>
+     * Generates a page referencing the given number of stylesheets and scripts, which must be generated separately.
+     * </p>
+     *
+     * @param dir the directory
+     * @param name the file name
+     * @param stylesheets the number of referenced stylesheets
+     * @param scripts the number of referenced scripts
+     * @return the generated file
+     * @throws IOException if an I/O error occurs
+     */
+    public static File html(final File dir, final String name, final int stylesheets, final int scripts) throws IOException {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("<!DOCTYPE html>\n<html>\n<head>\n<title>benchmark</title>\n");
+
+        for (int i = 0; i < stylesheets; i++) {
+            sb.append("<link rel=\"stylesheet\" type=\"text/css\" href=\"style-").append(i).append(".css\" />\n");
+        }
+
+        sb.append("</head>\n<body>\n");
+
+        for (int i = 0; i < scripts; i++) {
+            sb.append("<div class=\"block-0-").append(i).append("\">content ").append(i).append("</div>\n")
+                    .append("<script type=\"text/javascript\" src=\"script-").append(i).append(".js\"></script>\n");
+        }
+
+        sb.append("</body>\n</html>\n");
+
+        return write(new File(dir, name), sb.toString());
+    }
+
+    /**
+     * <p>
+     * Generates a PNG image filled with a color depending on its size.
+     * </p>
+     *
+     * @param dir the directory
+     * @param name the file name
+     * @param width the width
+     * @param height the height
+     * @return the generated file
+     * @throws IOException if an I/O error occurs
+     */
+    public static File png(final File dir, final String name, final int width, final int height) throws IOException {
+        final File retval = new File(dir, name);
+        final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        final Graphics2D g = image.createGraphics();
+
+        try {
+            g.setColor(new Color(width * 8 % 256, height * 8 % 256, (width + height) % 256));
+            g.fillRect(0, 0, width, height);
+        } finally {
+            g.dispose();
+        }
+
+        ImageIO.write(image, "png", retval);
+        return retval;
+    }
+
+    /**
+     * <p>
+     * Generates the dimensions of a set of icons as found in a typical sprite: mostly squares of the usual icon sizes
+     * and, for one image out of ten, a wide button or banner.
+     * </p>
+     *
+     * @param count the number of icons
+     * @return the dimensions
+     */
+    public static Dimension[] icons(final int count) {
+        final int[] sizes = { 16, 16, 16, 24, 24, 32, 32, 48, 64, 128 };
+        final Random random = new Random(SEED + count);
+        final Dimension[] retval = new Dimension[count];
+
+        for (int i = 0; i < count; i++) {
+            if (random.nextInt(10) == 0) {
+                retval[i] = new Dimension(80 + random.nextInt(160), 20 + random.nextInt(30));
+            } else {
+                final int size = sizes[random.nextInt(sizes.length)];
+                retval[i] = new Dimension(size, size);
+            }
+        }
+
+        return retval;
+    }
+
+    /**
+     * <p>
+     * Generates a tree of directories containing small files.
+     * </p>
+     *
+     * @param dir the root directory
+     * @param depth the tree depth
+     * @param width the number of sub directories in each directory
+     * @param files the number of files in each directory
+     * @throws IOException if an I/O error occurs
+     */
+    public static void tree(final File dir, final int depth, final int width, final int files) throws IOException {
+        for (int i = 0; i < files; i++) {
+            write(new File(dir, "file-" + i + (i % 2 == 0 ? ".css" : ".js")), "/* " + i + " */");
+        }
+
+        if (depth > 0) {
+            for (int i = 0; i < width; i++) {
+                final File child = new File(dir, "dir-" + i);
+
+                if (!child.mkdir()) {
+                    throw new IOException("Unable to create directory " + child.getAbsolutePath());
+                }
+
+                tree(child, depth - 1, width, files);
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Writes the given content to the given file.
+     * </p>
+     *
+     * @param file the file
+     * @param content the content
+     * @return the file
+     * @throws IOException if an I/O error occurs
+     */
+    public static File write(final File file, final String content) throws IOException {
+        OutputStream os = null;
+
+        try {
+            os = new FileOutputStream(file);
+            os.write(content.getBytes("UTF-8"));
+        } finally {
+            IOUtils.close(os);
+        }
+
+        return file;
+    }
+
+    /**
+     * <p>
+     * Reads all the streams of the given nuts and their referenced nuts. Processing being lazy, this is the way
+     * to measure the whole work done by a chain.
+     * </p>
+     *
+     * @param nuts the nuts
+     * @return the number of bytes read
+     * @throws NutNotFoundException if a stream can't be opened
+     * @throws StreamException if an I/O error occurs
+     */
+    public static long drain(final List<Nut> nuts) throws NutNotFoundException, StreamException {
+        final byte[] buffer = new byte[IOUtils.WUIC_BUFFER_LEN];
+        long retval = 0;
+
+        for (final Nut nut : nuts) {
+            InputStream is = null;
+
+            try {
+                is = nut.openStream();
+                int read;
+
+                while ((read = is.read(buffer)) != -1) {
+                    retval += read;
+                }
+            } catch (IOException ioe) {
+                throw new StreamException(ioe);
+            } finally {
+                IOUtils.close(is);
+            }
+
+            if (nut.getReferencedNuts() != null) {
+                retval += drain(nut.getReferencedNuts());
+            }
+        }
+
+        return retval;
+    }
+}
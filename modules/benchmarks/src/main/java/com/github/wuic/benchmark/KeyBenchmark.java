@@ -0,0 +1,148 @@
+/*
+ * "Copyright (c) 2014   Capgemini Technology Services (hereinafter "Capgemini")
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * -   The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Any failure to comply with the above shall automatically terminate the license
+ * and be construed as a breach of these Terms of Use causing significant harm to
+ * Capgemini.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Capgemini shall not be used in
+ * advertising or otherwise to promote the use or other dealings in this Software
+ * without prior written authorization from Capgemini.
+ *
+ * These Terms of Use are subject to French law.
+ *
+ * IMPORTANT NOTICE: The WUIC software implements software components governed by
+ * open source software licenses (BSD and Apache) of which CAPGEMINI is not the
+ * author or the editor. The rights granted on the said software components are
+ * governed by the specific terms and conditions specified by Apache 2.0 and BSD
+ * licenses."
+ */
+
+
+package com.github.wuic.benchmark;
+
+import com.github.wuic.NutType;
+import com.github.wuic.engine.EngineRequest;
+import com.github.wuic.exception.WuicException;
+import com.github.wuic.nut.Nut;
+import com.github.wuic.nut.core.ByteArrayNut;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * Measures the {@link EngineRequest.Key} used by the caches: creation, hashing and lookup in a map.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @version 1.0
+ * @since 0.5.0
+ */
+@State(Scope.Benchmark)
+public class KeyBenchmark {
+
+    /**
+     * Number of nuts in the key.
+     */
+    @Param({ "1", "10", "100" })
+    private int nuts;
+
+    /**
+     * The nuts.
+     */
+    private List<Nut> list;
+
+    /**
+     * A key equal to the one stored in the map.
+     */
+    private EngineRequest.Key key;
+
+    /**
+     * A map containing a key.
+     */
+    private Map<EngineRequest.Key, Boolean> map;
+
+    /**
+     * <p>
+     * Creates the nuts and the map.
+     * </p>
+     *
+     * @throws WuicException if a key can't be created
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws WuicException {
+        list = new ArrayList<Nut>(nuts);
+
+        for (int i = 0; i < nuts; i++) {
+            list.add(new ByteArrayNut(new byte[0], "dir/nut-" + i + ".css", NutType.CSS, BigInteger.valueOf(i)));
+        }
+
+        map = new HashMap<EngineRequest.Key, Boolean>();
+        map.put(new EngineRequest.Key("workflow", list), Boolean.TRUE);
+        key = new EngineRequest.Key("workflow", list);
+    }
+
+    /**
+     * <p>
+     * Creates a key.
+     * </p>
+     *
+     * @return the key
+     * @throws WuicException if the key can't be created
+     */
+    @Benchmark
+    public EngineRequest.Key create() throws WuicException {
+        return new EngineRequest.Key("workflow", list);
+    }
+
+    /**
+     * <p>
+     * Computes the hash code of a key.
+     * </p>
+     *
+     * @return the hash code
+     */
+    @Benchmark
+    public int hash() {
+        return key.hashCode();
+    }
+
+    /**
+     * <p>
+     * Looks up a map with an equal but not identical key, as done by the caches.
+     * </p>
+     *
+     * @return the value
+     */
+    @Benchmark
+    public Boolean lookup() {
+        return map.get(key);
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * "Copyright (c) 2014   Capgemini Technology Services (hereinafter "Capgemini")
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * -   The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Any failure to comply with the above shall automatically terminate the license
+ * and be construed as a breach of these Terms of Use causing significant harm to
+ * Capgemini.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Capgemini shall not be used in
+ * advertising or otherwise to promote the use or other dealings in this Software
+ * without prior written authorization from Capgemini.
+ *
+ * These Terms of Use are subject to French law.
+ *
+ * IMPORTANT NOTICE: The WUIC software implements software components governed by
+ * open source software licenses (BSD and Apache) of which CAPGEMINI is not the
+ * author or the editor. The rights granted on the said software components are
+ * governed by the specific terms and conditions specified by Apache 2.0 and BSD
+ * licenses."
+ */
+
+
+
+
+package com.github.wuic.benchmark;
+
+import com.github.wuic.engine.DimensionPacker;
+import com.github.wuic.engine.Region;
+import com.github.wuic.engine.impl.embedded.CGImageAggregatorEngine;
+import com.github.wuic.engine.setter.PackerPropertySetter;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * Compares the sprites produced by each {@link DimensionPacker}: packing efficiency (area of the images versus area of
+ * the sprite), size of the resulting PNG and median packing time. The {@link BinPackerBenchmark} gives more accurate
+ * timings, this report focuses on the quality of the result.
+ * </p>
+ *
+ * <p>
+ * Generated {@link Fixtures#icons(int) icon sets} are always reported. Real icon sets can be added with the system
+ * property {@code c.g.wuic.benchmark.icons} pointing to a directory: the PNG files of the directory and of each of its
+ * sub directories are reported as a set.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @version 1.0
+ * @since 0.5.0
+ */
+public final class PackerReport {
+
+    /**
+     * System property giving the directory of the real icon sets.
+     */
+    public static final String ICONS = "c.g.wuic.benchmark.icons";
+
+    /**
+     * Number of times each set is packed to measure the time.
+     */
+    private static final int RUNS = 21;
+
+    /**
+     * Sizes of the generated sets.
+     */
+    private static final int[] GENERATED = { 20, 100, 500 };
+
+    /**
+     * Nano seconds in a milli second.
+     */
+    private static final double NANOS_PER_MILLI = 1000000d;
+
+    /**
+     * <p>
+     * Prevent instantiation of this class which provides only static methods.
+     * </p>
+     */
+    private PackerReport() {
+
+    }
+
+    /**
+     * <p>
+     * Runs the report.
+     * </p>
+     *
+     * @param args not used, the report being configured with system properties
+     * @throws Exception if the report fails
+     */
+    public static void main(final String[] args) throws Exception {
+        final Map<String, List<BufferedImage>> sets = new LinkedHashMap<String, List<BufferedImage>>();
+
+        for (final int count : GENERATED) {
+            final List<BufferedImage> images = new ArrayList<BufferedImage>(count);
+
+            for (final Dimension dim : Fixtures.icons(count)) {
+                images.add(image(dim));
+            }
+
+            sets.put("generated-" + count, images);
+        }
+
+        final String icons = System.getProperty(ICONS);
+
+        if (icons != null) {
+            readSets(new File(icons), sets);
+        }
+
+        final PrintStream out = System.out;
+        out.println(String.format("%-24s %-10s %6s %12s %10s %10s %10s",
+                "set", "packer", "images", "sprite", "filled", "png (B)", "time (ms)"));
+
+        for (final Map.Entry<String, List<BufferedImage>> set : sets.entrySet()) {
+            for (final String packer : Arrays.asList(PackerPropertySetter.BIN_TREE, PackerPropertySetter.MAX_RECTS)) {
+                report(out, set.getKey(), packer, set.getValue());
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Packs the images with the given packer and prints the result.
+     * </p>
+     *
+     * @param out the output
+     * @param name the set name
+     * @param alias the packer alias
+     * @param images the images
+     * @throws IOException if the sprite can't be encoded
+     */
+    private static void report(final PrintStream out, final String name, final String alias, final List<BufferedImage> images)
+            throws IOException {
+        final DimensionPacker<BufferedImage> packer = BinPackerBenchmark.newPacker(alias);
+        final long[] times = new long[RUNS];
+        Map<Region, BufferedImage> regions = null;
+
+        for (int i = 0; i < RUNS; i++) {
+            final long start = System.nanoTime();
+            packer.clearElements();
+
+            for (final BufferedImage image : images) {
+                packer.addElement(new Dimension(image.getWidth(), image.getHeight()), image);
+            }
+
+            regions = packer.getRegions();
+            times[i] = System.nanoTime() - start;
+        }
+
+        Arrays.sort(times);
+
+        final Dimension sprite = packer.getFilledArea();
+        final BufferedImage result = CGImageAggregatorEngine.makeTransparentImage(sprite.width, sprite.height);
+        final Graphics2D g = result.createGraphics();
+        long area = 0;
+
+        try {
+            for (final Map.Entry<Region, BufferedImage> entry : regions.entrySet()) {
+                g.drawImage(entry.getValue(), entry.getKey().getxPosition(), entry.getKey().getyPosition(), null);
+                area += (long) entry.getKey().width * entry.getKey().height;
+            }
+        } finally {
+            g.dispose();
+        }
+
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ImageIO.write(result, "png", bos);
+
+        out.println(String.format("%-24s %-10s %6d %12s %9.1f%% %10d %10.3f",
+                name,
+                alias,
+                images.size(),
+                sprite.width + "x" + sprite.height,
+                area * 100d / ((long) sprite.width * sprite.height),
+                bos.size(),
+                times[RUNS / 2] / NANOS_PER_MILLI));
+    }
+
+    /**
+     * <p>
+     * Reads the PNG files of the given directory and of its sub directories.
+     * </p>
+     *
+     * @param dir the directory
+     * @param sets the sets to complete
+     * @throws IOException if an image can't be read
+     */
+    private static void readSets(final File dir, final Map<String, List<BufferedImage>> sets) throws IOException {
+        final File[] files = dir.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(final File file) {
+                return file.isDirectory() || file.getName().toLowerCase().endsWith(".png");
+            }
+        });
+
+        if (files == null) {
+            throw new IOException(String.format("%s is not a directory", dir.getAbsolutePath()));
+        }
+
+        final List<BufferedImage> images = new ArrayList<BufferedImage>();
+
+        for (final File file : files) {
+            if (file.isDirectory()) {
+                readSets(file, sets);
+            } else {
+                images.add(ImageIO.read(file));
+            }
+        }
+
+        if (!images.isEmpty()) {
+            sets.put(dir.getName(), images);
+        }
+    }
+
+    /**
+     * <p>
+     * Generates an icon with a border and a background depending on its size, so the PNG compression is not trivial.
+     * </p>
+     *
+     * @param dim the dimension
+     * @return the image
+     */
+    private static BufferedImage image(final Dimension dim) {
+        final BufferedImage retval = new BufferedImage(dim.width, dim.height, BufferedImage.TYPE_INT_ARGB);
+        final Graphics2D g = retval.createGraphics();
+
+        try {
+            g.setColor(new Color(dim.width * 8 % 256, dim.height * 8 % 256, (dim.width + dim.height) % 256));
+            g.fillRect(1, 1, dim.width - 2, dim.height - 2);
+            g.setColor(Color.DARK_GRAY);
+            g.drawRect(0, 0, dim.width - 1, dim.height - 1);
+        } finally {
+            g.dispose();
+        }
+
+        return retval;
+    }
+}
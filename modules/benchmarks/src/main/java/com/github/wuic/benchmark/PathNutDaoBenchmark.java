@@ -0,0 +1,126 @@
+/*
+ * "Copyright (c) 2014   Capgemini Technology Services (hereinafter "Capgemini")
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * -   The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Any failure to comply with the above shall automatically terminate the license
+ * and be construed as a breach of these Terms of Use causing significant harm to
+ * Capgemini.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Capgemini shall not be used in
+ * advertising or otherwise to promote the use or other dealings in this Software
+ * without prior written authorization from Capgemini.
+ *
+ * These Terms of Use are subject to French law.
+ *
+ * IMPORTANT NOTICE: The WUIC software implements software components governed by
+ * open source software licenses (BSD and Apache) of which CAPGEMINI is not the
+ * author or the editor. The rights granted on the said software components are
+ * governed by the specific terms and conditions specified by Apache 2.0 and BSD
+ * licenses."
+ */
+
+
+package com.github.wuic.benchmark;
+
+import com.github.wuic.exception.wrapper.StreamException;
+import com.github.wuic.nut.core.DiskNutDao;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * <p>
+ * Measures the listing done by {@link com.github.wuic.nut.core.PathNutDao} when a heap is declared with a regular
+ * expression, walking a large tree of directories.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @version 1.0
+ * @since 0.5.0
+ */
+@State(Scope.Benchmark)
+public class PathNutDaoBenchmark {
+
+    /**
+     * Depth of the tree.
+     */
+    @Param({ "3", "5" })
+    private int depth;
+
+    /**
+     * Number of sub directories and files in each directory.
+     */
+    @Param({ "5" })
+    private int width;
+
+    /**
+     * The fixtures directory.
+     */
+    private File directory;
+
+    /**
+     * The DAO.
+     */
+    private DiskNutDao dao;
+
+    /**
+     * <p>
+     * Generates the tree.
+     * </p>
+     *
+     * @throws Exception if setup fails
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        directory = Fixtures.newDirectory("wuic-tree");
+        Fixtures.tree(directory, depth, width, width);
+        dao = new DiskNutDao(directory.getAbsolutePath(), Boolean.FALSE, null, -1, Boolean.TRUE, Boolean.FALSE);
+    }
+
+    /**
+     * <p>
+     * Deletes the tree.
+     * </p>
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dao.shutdown();
+        Fixtures.delete(directory);
+    }
+
+    /**
+     * <p>
+     * Lists all the stylesheets in the tree.
+     * </p>
+     *
+     * @return the paths
+     * @throws StreamException if an I/O error occurs
+     */
+    @Benchmark
+    public List<String> list() throws StreamException {
+        return dao.listNutsPaths(".*\\.css");
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * "Copyright (c) 2014   Capgemini Technology Services (hereinafter "Capgemini")
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * -   The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Any failure to comply with the above shall automatically terminate the license
+ * and be construed as a breach of these Terms of Use causing significant harm to
+ * Capgemini.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Capgemini shall not be used in
+ * advertising or otherwise to promote the use or other dealings in this Software
+ * without prior written authorization from Capgemini.
+ *
+ * These Terms of Use are subject to French law.
+ *
+ * IMPORTANT NOTICE: The WUIC software implements software components governed by
+ * open source software licenses (BSD and Apache) of which CAPGEMINI is not the
+ * author or the editor. The rights granted on the said software components are
+ * governed by the specific terms and conditions specified by Apache 2.0 and BSD
+ * licenses."
+ */
+
+
+package com.github.wuic.benchmark;
+
+import com.github.wuic.ApplicationConfig;
+import com.github.wuic.ContextBuilder;
+import com.github.wuic.ContextBuilderConfigurator;
+import com.github.wuic.WuicFacade;
+import com.github.wuic.exception.WuicException;
+import com.github.wuic.nut.Nut;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * <p>
+ * Measures the lookups performed by {@link WuicFacade#runWorkflow(String)} and
+ * {@link WuicFacade#runWorkflow(String, String)} once the workflows have been processed. This is the path followed
+ * by each request served by the servlet when the cache is warm.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @version 1.0
+ * @since 0.5.0
+ */
+@State(Scope.Benchmark)
+public class WorkflowBenchmark {
+
+    /**
+     * Number of stylesheets and scripts in the heaps.
+     */
+    @Param({ "10", "100" })
+    private int files;
+
+    /**
+     * Number of rules or functions in each file.
+     */
+    @Param({ "50" })
+    private int size;
+
+    /**
+     * The fixtures directory.
+     */
+    private File directory;
+
+    /**
+     * The facade.
+     */
+    private WuicFacade facade;
+
+    /**
+     * The name of a nut returned by the CSS workflow.
+     */
+    private String cssName;
+
+    /**
+     * <p>
+     * Generates the fixtures, configures the facade and processes once the workflows.
+     * </p>
+     *
+     * @throws Exception if setup fails
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        directory = Fixtures.newDirectory("wuic-workflow");
+        final String[] css = new String[files];
+        final String[] js = new String[files];
+
+        for (int i = 0; i < files; i++) {
+            css[i] = Fixtures.css(directory, i, size).getName();
+            js[i] = Fixtures.js(directory, i, size).getName();
+        }
+
+        facade = WuicFacade.newInstance("", null, Boolean.TRUE);
+        facade.configure(new ContextBuilderConfigurator() {
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public int internalConfigure(final ContextBuilder ctxBuilder) {
+                try {
+                    ctxBuilder.contextNutDaoBuilder("benchmarkDao", "DiskNutDaoBuilder")
+                            .property(ApplicationConfig.BASE_PATH, directory.getAbsolutePath())
+                            .toContext()
+                            .heap("css", "benchmarkDao", css)
+                            .heap("js", "benchmarkDao", js);
+                } catch (WuicException we) {
+                    throw new IllegalStateException(we);
+                }
+
+                return -1;
+            }
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public String getTag() {
+                return "benchmark";
+            }
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            protected Long getLastUpdateTimestampFor(final String path) {
+                return -1L;
+            }
+        });
+
+        final List<Nut> nuts = facade.runWorkflow("css");
+        Fixtures.drain(nuts);
+        Fixtures.drain(facade.runWorkflow("js"));
+        cssName = nuts.get(0).getName();
+    }
+
+    /**
+     * <p>
+     * Deletes the fixtures.
+     * </p>
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Fixtures.delete(directory);
+    }
+
+    /**
+     * <p>
+     * Retrieves all the nuts of a warm workflow.
+     * </p>
+     *
+     * @return the nuts
+     * @throws WuicException if lookup fails
+     */
+    @Benchmark
+    public List<Nut> runWorkflow() throws WuicException {
+        return facade.runWorkflow("css");
+    }
+
+    /**
+     * <p>
+     * Retrieves one nut of a warm workflow, as done when a single file is requested.
+     * </p>
+     *
+     * @return the nut
+     * @throws WuicException if lookup fails
+     */
+    @Benchmark
+    public Nut runWorkflowPath() throws WuicException {
+        return facade.runWorkflow("css", cssName);
+    }
+}
@@ -0,0 +1,298 @@
+/*
+ * "Copyright (c) 2014   Capgemini Technology Services (hereinafter "Capgemini")
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * -   The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Any failure to comply with the above shall automatically terminate the license
+ * and be construed as a breach of these Terms of Use causing significant harm to
+ * Capgemini.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Capgemini shall not be used in
+ * advertising or otherwise to promote the use or other dealings in this Software
+ * without prior written authorization from Capgemini.
+ *
+ * These Terms of Use are subject to French law.
+ *
+ * IMPORTANT NOTICE: The WUIC software implements software components governed by
+ * open source software licenses (BSD and Apache) of which CAPGEMINI is not the
+ * author or the editor. The rights granted on the said software components are
+ * governed by the specific terms and conditions specified by Apache 2.0 and BSD
+ * licenses."
+ */
+
+
+package com.github.wuic.benchmark.load;
+
+import com.github.wuic.util.IOUtils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * A client thread sending requests to the {@link LoadWebapp} until it is stopped. Each request is an {@link Action}
+ * randomly chosen according to the weights of the mix.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @version 1.0
+ * @since 0.5.0
+ */
+public class LoadClient implements Runnable {
+
+    /**
+     * Connect and read timeout in milliseconds.
+     */
+    private static final int TIMEOUT = 10000;
+
+    /**
+     * <p>
+     * The actions performed by a client.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @version 1.0
+     * @since 0.5.0
+     */
+    public enum Action {
+
+        /**
+         * Gets a nut served by the {@link com.github.wuic.servlet.WuicServlet}.
+         */
+        ASSET,
+
+        /**
+         * Gets a static page transformed by the {@link com.github.wuic.servlet.HtmlParserFilter}.
+         */
+        PAGE,
+
+        /**
+         * Gets a page rendered with the {@link com.github.wuic.tag.WuicTag}.
+         */
+        TAG,
+
+        /**
+         * Edits a stylesheet, the change being detected by the polling DAO which invalidates the cache.
+         */
+        EDIT
+    }
+
+    /**
+     * The webapp.
+     */
+    private final LoadWebapp webapp;
+
+    /**
+     * The URIs of the nuts.
+     */
+    private final List<String> assets;
+
+    /**
+     * The weight of each action, indexed by ordinal.
+     */
+    private final int[] weights;
+
+    /**
+     * The sum of the weights.
+     */
+    private final int totalWeight;
+
+    /**
+     * The statistics.
+     */
+    private final LoadStatistics statistics;
+
+    /**
+     * Set to {@code false} to stop the client.
+     */
+    private final AtomicBoolean running;
+
+    /**
+     * Edit counter shared by all clients.
+     */
+    private final AtomicLong edits;
+
+    /**
+     * The random generator of this client.
+     */
+    private final Random random;
+
+    /**
+     * Buffer used to read the responses.
+     */
+    private final byte[] buffer;
+
+    /**
+     * <p>
+     * Builds a new instance.
+     * </p>
+     *
+     * @param webapp the webapp
+     * @param assets the URIs of the nuts
+     * @param weights the weight of each action, indexed by ordinal
+     * @param statistics the statistics
+     * @param running the flag stopping the client
+     * @param edits the edit counter
+     * @param seed the seed of the random generator
+     */
+    public LoadClient(final LoadWebapp webapp,
+                      final List<String> assets,
+                      final int[] weights,
+                      final LoadStatistics statistics,
+                      final AtomicBoolean running,
+                      final AtomicLong edits,
+                      final long seed) {
+        this.webapp = webapp;
+        this.assets = assets;
+        this.weights = weights;
+        this.statistics = statistics;
+        this.running = running;
+        this.edits = edits;
+        this.random = new Random(seed);
+        this.buffer = new byte[IOUtils.WUIC_BUFFER_LEN];
+
+        int total = 0;
+
+        for (final int weight : weights) {
+            total += weight;
+        }
+
+        totalWeight = total;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run() {
+        while (running.get()) {
+            final Action action = nextAction();
+            final long start = System.nanoTime();
+            long bytes = 0L;
+            boolean success = true;
+
+            try {
+                switch (action) {
+                    case ASSET:
+                        bytes = get(assets.get(random.nextInt(assets.size())));
+                        break;
+                    case PAGE:
+                        bytes = get("/page-" + random.nextInt(webapp.getFiles()) + ".html");
+                        break;
+                    case TAG:
+                        bytes = get("/tag/" + random.nextInt(webapp.getFiles()));
+                        break;
+                    default:
+                        edit(webapp.getStylesheet(random.nextInt(webapp.getFiles())));
+                        break;
+                }
+            } catch (IOException ioe) {
+                success = false;
+            }
+
+            statistics.record(action, (System.nanoTime() - start) / LoadStatistics.NANOS_PER_MICRO, success, bytes);
+        }
+    }
+
+    /**
+     * <p>
+     * Picks the next action according to the weights.
+     * </p>
+     *
+     * @return the action
+     */
+    private Action nextAction() {
+        int pick = random.nextInt(totalWeight);
+
+        for (final Action action : Action.values()) {
+            pick -= weights[action.ordinal()];
+
+            if (pick < 0) {
+                return action;
+            }
+        }
+
+        // Not reachable while weights are positive
+        return Action.ASSET;
+    }
+
+    /**
+     * <p>
+     * Gets the given URI and reads the whole response.
+     * </p>
+     *
+     * @param uri the URI relative to the webapp
+     * @return the number of bytes read
+     * @throws IOException if the request fails or if the response status is not 200
+     */
+    public long get(final String uri) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) new URL(webapp.getBaseUrl() + uri).openConnection();
+        connection.setConnectTimeout(TIMEOUT);
+        connection.setReadTimeout(TIMEOUT);
+        InputStream is = null;
+
+        try {
+            final int status = connection.getResponseCode();
+
+            // Read the error stream too, otherwise the connection is not kept alive
+            is = status == HttpURLConnection.HTTP_OK ? connection.getInputStream() : connection.getErrorStream();
+            long retval = 0L;
+            int read;
+
+            while (is != null && (read = is.read(buffer)) != -1) {
+                retval += read;
+            }
+
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw new IOException(String.format("%s returned status %d", uri, status));
+            }
+
+            return retval;
+        } finally {
+            IOUtils.close(is);
+        }
+    }
+
+    /**
+     * <p>
+     * Appends a comment to the given file.
+     * </p>
+     *
+     * @param file the file
+     * @throws IOException if the file can't be written
+     */
+    private void edit(final File file) throws IOException {
+        OutputStream os = null;
+
+        try {
+            os = new FileOutputStream(file, true);
+            os.write(("\n/* edit " + edits.incrementAndGet() + " */\n").getBytes("UTF-8"));
+        } finally {
+            IOUtils.close(os);
+        }
+    }
+}
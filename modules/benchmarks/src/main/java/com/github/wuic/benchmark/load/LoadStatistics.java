@@ -0,0 +1,281 @@
+/*
+ * "Copyright (c) 2014   Capgemini Technology Services (hereinafter "Capgemini")
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * -   The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Any failure to comply with the above shall automatically terminate the license
+ * and be construed as a breach of these Terms of Use causing significant harm to
+ * Capgemini.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Capgemini shall not be used in
+ * advertising or otherwise to promote the use or other dealings in this Software
+ * without prior written authorization from Capgemini.
+ *
+ * These Terms of Use are subject to French law.
+ *
+ * IMPORTANT NOTICE: The WUIC software implements software components governed by
+ * open source software licenses (BSD and Apache) of which CAPGEMINI is not the
+ * author or the editor. The rights granted on the said software components are
+ * governed by the specific terms and conditions specified by Apache 2.0 and BSD
+ * licenses."
+ */
+
+
+package com.github.wuic.benchmark.load;
+
+import com.github.wuic.metric.Histogram;
+
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * Collects the latencies of the requests sent by the {@link LoadClient clients} between {@link #start()} and
+ * {@link #stop()}, and samples the JVM to compute the allocation rate and the GC activity over the same period.
+ * Clients and server share the JVM, so allocation and GC include the work of both sides.
+ * </p>
+ *
+ * <p>
+ * Percentiles are computed by a {@link Histogram}: they are upper bounds within a factor of two.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @version 1.0
+ * @since 0.5.0
+ */
+public class LoadStatistics {
+
+    /**
+     * Nanoseconds in a microsecond.
+     */
+    public static final long NANOS_PER_MICRO = 1000L;
+
+    /**
+     * Bytes in a megabyte.
+     */
+    private static final double MEGABYTE = 1024d * 1024d;
+
+    /**
+     * Milliseconds in a second.
+     */
+    private static final double MILLIS_PER_SECOND = 1000d;
+
+    /**
+     * Latencies in microseconds for each action.
+     */
+    private final Map<LoadClient.Action, Histogram> latencies;
+
+    /**
+     * Failures for each action.
+     */
+    private final Map<LoadClient.Action, AtomicLong> errors;
+
+    /**
+     * Bytes received.
+     */
+    private final AtomicLong bytes;
+
+    /**
+     * {@code true} between start and stop.
+     */
+    private volatile boolean recording;
+
+    /**
+     * Start and stop time in milliseconds.
+     */
+    private long startTime;
+
+    /**
+     * Elapsed time in milliseconds.
+     */
+    private long elapsed;
+
+    /**
+     * Bytes allocated by live threads at start, then during the period.
+     */
+    private long allocated;
+
+    /**
+     * Collections count and time of each collector at start, then during the period.
+     */
+    private final Map<String, long[]> collections;
+
+    /**
+     * <p>
+     * Builds a new instance.
+     * </p>
+     */
+    public LoadStatistics() {
+        latencies = new EnumMap<LoadClient.Action, Histogram>(LoadClient.Action.class);
+        errors = new EnumMap<LoadClient.Action, AtomicLong>(LoadClient.Action.class);
+        bytes = new AtomicLong();
+        collections = new LinkedHashMap<String, long[]>();
+
+        for (final LoadClient.Action action : LoadClient.Action.values()) {
+            latencies.put(action, new Histogram());
+            errors.put(action, new AtomicLong());
+        }
+    }
+
+    /**
+     * <p>
+     * Records a request if the statistics are started.
+     * </p>
+     *
+     * @param action the action
+     * @param micros the latency in microseconds
+     * @param success if the request succeeded
+     * @param received the number of bytes received
+     */
+    public void record(final LoadClient.Action action, final long micros, final boolean success, final long received) {
+        if (recording) {
+            latencies.get(action).record(micros);
+            bytes.addAndGet(received);
+
+            if (!success) {
+                errors.get(action).incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Starts the measurement.
+     * </p>
+     */
+    public void start() {
+        allocated = allocatedBytes();
+
+        for (final GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            collections.put(gc.getName(), new long[] { gc.getCollectionCount(), gc.getCollectionTime() });
+        }
+
+        startTime = System.currentTimeMillis();
+        recording = true;
+    }
+
+    /**
+     * <p>
+     * Stops the measurement.
+     * </p>
+     */
+    public void stop() {
+        recording = false;
+        elapsed = Math.max(1L, System.currentTimeMillis() - startTime);
+        allocated = allocated < 0L ? -1L : allocatedBytes() - allocated;
+
+        for (final GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            final long[] start = collections.get(gc.getName());
+
+            if (start != null) {
+                start[0] = gc.getCollectionCount() - start[0];
+                start[1] = gc.getCollectionTime() - start[1];
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Gets the bytes allocated so far by the live threads, -1 if the JVM does not support this measurement.
+     * Allocation of threads terminated during the period is lost, which is negligible as the pools reuse their
+     * threads.
+     * </p>
+     *
+     * @return the allocated bytes
+     */
+    private static long allocatedBytes() {
+        final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return -1L;
+        }
+
+        final com.sun.management.ThreadMXBean sunBean = com.sun.management.ThreadMXBean.class.cast(bean);
+
+        if (!sunBean.isThreadAllocatedMemorySupported() || !sunBean.isThreadAllocatedMemoryEnabled()) {
+            return -1L;
+        }
+
+        long retval = 0L;
+
+        for (final long threadBytes : sunBean.getThreadAllocatedBytes(bean.getAllThreadIds())) {
+            if (threadBytes > 0L) {
+                retval += threadBytes;
+            }
+        }
+
+        return retval;
+    }
+
+    /**
+     * <p>
+     * Prints the report.
+     * </p>
+     *
+     * @param out the stream
+     * @param settings the settings of the test, printed as a header
+     */
+    public void print(final PrintStream out, final List<String> settings) {
+        final double seconds = elapsed / MILLIS_PER_SECOND;
+        long total = 0L;
+
+        for (final String setting : settings) {
+            out.println(setting);
+        }
+
+        out.println();
+        out.printf("%-8s %10s %8s %10s %10s %10s %10s %10s %10s%n",
+                "action", "requests", "errors", "req/s", "mean(us)", "p50(us)", "p90(us)", "p99(us)", "max(us)");
+
+        for (final LoadClient.Action action : LoadClient.Action.values()) {
+            final Histogram histogram = latencies.get(action);
+            total += histogram.getCount();
+            out.printf("%-8s %10d %8d %10.1f %10d %10d %10d %10d %10d%n",
+                    action.name().toLowerCase(),
+                    histogram.getCount(),
+                    errors.get(action).get(),
+                    histogram.getCount() / seconds,
+                    histogram.getMean(),
+                    histogram.getPercentile(50),
+                    histogram.getPercentile(90),
+                    histogram.getPercentile(99),
+                    histogram.getMax());
+        }
+
+        out.println();
+        out.printf("throughput: %.1f req/s, %.2f MB/s received over %.1f s%n", total / seconds, bytes.get() / MEGABYTE / seconds, seconds);
+
+        if (allocated < 0L) {
+            out.println("allocation: not supported by this JVM");
+        } else {
+            out.printf("allocation: %.1f MB/s, %.1f KB/request%n", allocated / MEGABYTE / seconds, total == 0L ? 0d : allocated / 1024d / total);
+        }
+
+        for (final Map.Entry<String, long[]> entry : collections.entrySet()) {
+            out.printf("gc %s: %d collections, %d ms (%.2f%% of the time)%n",
+                    entry.getKey(), entry.getValue()[0], entry.getValue()[1], entry.getValue()[1] * 100d / elapsed);
+        }
+    }
+}
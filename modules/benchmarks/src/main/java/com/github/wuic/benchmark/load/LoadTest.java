@@ -0,0 +1,291 @@
+/*
+ * "Copyright (c) 2014   Capgemini Technology Services (hereinafter "Capgemini")
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * -   The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Any failure to comply with the above shall automatically terminate the license
+ * and be construed as a breach of these Terms of Use causing significant harm to
+ * Capgemini.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Capgemini shall not be used in
+ * advertising or otherwise to promote the use or other dealings in this Software
+ * without prior written authorization from Capgemini.
+ *
+ * These Terms of Use are subject to French law.
+ *
+ * IMPORTANT NOTICE: The WUIC software implements software components governed by
+ * open source software licenses (BSD and Apache) of which CAPGEMINI is not the
+ * author or the editor. The rights granted on the said software components are
+ * governed by the specific terms and conditions specified by Apache 2.0 and BSD
+ * licenses."
+ */
+
+
+package com.github.wuic.benchmark.load;
+
+import com.github.wuic.util.IOUtils;
+import com.github.wuic.util.WuicScheduledThreadPool;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * <p>
+ * End-to-end load test of the webapp integration: the {@link com.github.wuic.servlet.WuicServlet}, the
+ * {@link com.github.wuic.servlet.HtmlParserFilter} and the {@link com.github.wuic.tag.WuicTag} are deployed in an
+ * embedded Jetty and driven by concurrent {@link LoadClient clients} while stylesheets are edited, so the polling
+ * invalidates the caches during the test. Everything runs offline in the same JVM.
+ * </p>
+ *
+ * <p>
+ * The test is configured with the following system properties:
+ * </p>
+ *
+ * <ul>
+ *     <li>{@link #THREADS}: number of client threads, 8 by default</li>
+ *     <li>{@link #WARM_UP}: seconds of load before measuring, 10 by default</li>
+ *     <li>{@link #DURATION}: seconds of measured load, 30 by default</li>
+ *     <li>{@link #MIX}: the weight of each action, 'asset=80,page=10,tag=8,edit=2' by default</li>
+ *     <li>{@link #FILES}: number of stylesheets, scripts and pages, 10 by default</li>
+ *     <li>{@link #RULES}: number of rules or functions in each stylesheet or script, 200 by default</li>
+ *     <li>{@link #POLLING}: polling interleave in seconds, 1 by default</li>
+ * </ul>
+ *
+ * <p>
+ * The report gives the latency percentiles of each action, the throughput, the allocation rate and the GC activity.
+ * Run with the same options than production, for instance the same heap size and collector, to get meaningful
+ * allocation and GC figures.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @version 1.0
+ * @since 0.5.0
+ */
+public final class LoadTest {
+
+    /**
+     * Number of client threads.
+     */
+    public static final String THREADS = "c.g.wuic.load.threads";
+
+    /**
+     * Seconds of load before measuring.
+     */
+    public static final String WARM_UP = "c.g.wuic.load.warmUp";
+
+    /**
+     * Seconds of measured load.
+     */
+    public static final String DURATION = "c.g.wuic.load.duration";
+
+    /**
+     * Weight of each action.
+     */
+    public static final String MIX = "c.g.wuic.load.mix";
+
+    /**
+     * Number of stylesheets, scripts and pages.
+     */
+    public static final String FILES = "c.g.wuic.load.files";
+
+    /**
+     * Number of rules or functions in each file.
+     */
+    public static final String RULES = "c.g.wuic.load.rules";
+
+    /**
+     * Polling interleave in seconds.
+     */
+    public static final String POLLING = "c.g.wuic.load.polling";
+
+    /**
+     * Matches the nuts referenced in a page.
+     */
+    private static final Pattern NUT_URI = Pattern.compile("(?:href|src)=\"(" + Pattern.quote(LoadWebapp.WUIC_MAPPING) + "/[^\"]+)\"");
+
+    /**
+     * Milliseconds in a second.
+     */
+    private static final long MILLIS_PER_SECOND = 1000L;
+
+    /**
+     * <p>
+     * Prevent instantiation of this class which provides only a main method.
+     * </p>
+     */
+    private LoadTest() {
+
+    }
+
+    /**
+     * <p>
+     * Runs the test.
+     * </p>
+     *
+     * @param args not used, the test being configured with system properties
+     * @throws Exception if the test fails
+     */
+    public static void main(final String[] args) throws Exception {
+        final int threads = Integer.getInteger(THREADS, 8);
+        final int warmUp = Integer.getInteger(WARM_UP, 10);
+        final int duration = Integer.getInteger(DURATION, 30);
+        final String mix = System.getProperty(MIX, "asset=80,page=10,tag=8,edit=2");
+        final int files = Integer.getInteger(FILES, 10);
+        final int rules = Integer.getInteger(RULES, 200);
+        final int polling = Integer.getInteger(POLLING, 1);
+        final int[] weights = parseMix(mix);
+
+        final LoadWebapp webapp = new LoadWebapp(files, rules, polling);
+        webapp.start();
+
+        try {
+            final List<String> assets = collectAssets(webapp);
+            final LoadStatistics statistics = new LoadStatistics();
+            final AtomicBoolean running = new AtomicBoolean(true);
+            final AtomicLong edits = new AtomicLong();
+            final Thread[] clients = new Thread[threads];
+
+            for (int i = 0; i < threads; i++) {
+                clients[i] = new Thread(new LoadClient(webapp, assets, weights, statistics, running, edits, i), "load-client-" + i);
+                clients[i].start();
+            }
+
+            Thread.sleep(warmUp * MILLIS_PER_SECOND);
+            statistics.start();
+            Thread.sleep(duration * MILLIS_PER_SECOND);
+            statistics.stop();
+            running.set(false);
+
+            for (final Thread client : clients) {
+                client.join();
+            }
+
+            statistics.print(System.out, Arrays.asList(
+                    String.format("threads: %d, warm up: %d s, duration: %d s, mix: %s", threads, warmUp, duration, mix),
+                    String.format("files: %d, rules: %d, polling: %d s, nuts: %d, edits: %d",
+                            files, rules, polling, assets.size(), edits.get())));
+        } finally {
+            try {
+                webapp.stop();
+            } finally {
+                WuicScheduledThreadPool.getInstance().shutdown();
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Parses the mix, each action missing from the mix having a weight of 0.
+     * </p>
+     *
+     * @param mix the mix, for instance 'asset=80,page=10,tag=8,edit=2'
+     * @return the weights indexed by ordinal
+     */
+    static int[] parseMix(final String mix) {
+        final int[] retval = new int[LoadClient.Action.values().length];
+        int total = 0;
+
+        for (final String entry : mix.split(",")) {
+            final String[] keyValue = entry.trim().split("=");
+
+            if (keyValue.length != 2) {
+                throw new IllegalArgumentException(String.format("'%s' is not a valid entry of the mix '%s'", entry, mix));
+            }
+
+            final int weight = Integer.parseInt(keyValue[1].trim());
+            retval[LoadClient.Action.valueOf(keyValue[0].trim().toUpperCase()).ordinal()] = weight;
+            total += weight;
+        }
+
+        if (total <= 0) {
+            throw new IllegalArgumentException(String.format("The mix '%s' has no positive weight", mix));
+        }
+
+        return retval;
+    }
+
+    /**
+     * <p>
+     * Requests each page once, which processes the workflows, and collects the URIs of the referenced nuts.
+     * </p>
+     *
+     * @param webapp the webapp
+     * @return the URIs
+     * @throws Exception if a page can't be retrieved
+     */
+    private static List<String> collectAssets(final LoadWebapp webapp) throws Exception {
+        final Set<String> retval = new LinkedHashSet<String>();
+        for (int i = 0; i < webapp.getFiles(); i++) {
+            collect(read(webapp, "/page-" + i + ".html"), retval);
+            collect(read(webapp, "/tag/" + i), retval);
+        }
+
+        if (retval.isEmpty()) {
+            throw new IllegalStateException("No nut is referenced by the pages");
+        }
+
+        return new ArrayList<String>(retval);
+    }
+
+    /**
+     * <p>
+     * Reads the page at the given URI.
+     * </p>
+     *
+     * @param webapp the webapp
+     * @param uri the URI relative to the webapp
+     * @return the page
+     * @throws IOException if the page can't be read
+     */
+    private static String read(final LoadWebapp webapp, final String uri) throws IOException {
+        InputStreamReader reader = null;
+
+        try {
+            reader = new InputStreamReader(new URL(webapp.getBaseUrl() + uri).openStream(), "UTF-8");
+            return IOUtils.readString(reader);
+        } finally {
+            IOUtils.close(reader);
+        }
+    }
+
+    /**
+     * <p>
+     * Adds to the given set the URIs of the nuts referenced in the given page.
+     * </p>
+     *
+     * @param page the page
+     * @param uris the set
+     */
+    private static void collect(final String page, final Set<String> uris) {
+        final Matcher matcher = NUT_URI.matcher(page);
+
+        while (matcher.find()) {
+            uris.add(matcher.group(1));
+        }
+    }
+}
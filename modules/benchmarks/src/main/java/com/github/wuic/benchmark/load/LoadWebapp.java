@@ -0,0 +1,246 @@
+/*
+ * "Copyright (c) 2014   Capgemini Technology Services (hereinafter "Capgemini")
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * -   The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Any failure to comply with the above shall automatically terminate the license
+ * and be construed as a breach of these Terms of Use causing significant harm to
+ * Capgemini.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Capgemini shall not be used in
+ * advertising or otherwise to promote the use or other dealings in this Software
+ * without prior written authorization from Capgemini.
+ *
+ * These Terms of Use are subject to French law.
+ *
+ * IMPORTANT NOTICE: The WUIC software implements software components governed by
+ * open source software licenses (BSD and Apache) of which CAPGEMINI is not the
+ * author or the editor. The rights granted on the said software components are
+ * governed by the specific terms and conditions specified by Apache 2.0 and BSD
+ * licenses."
+ */
+
+
+package com.github.wuic.benchmark.load;
+
+import com.github.wuic.ApplicationConfig;
+import com.github.wuic.benchmark.Fixtures;
+import com.github.wuic.jee.WuicServletContextListener;
+import com.github.wuic.servlet.HtmlParserFilter;
+import com.github.wuic.servlet.WuicServlet;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.servlet.DefaultServlet;
+import org.eclipse.jetty.servlet.FilterHolder;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+
+import javax.servlet.DispatcherType;
+import java.io.File;
+import java.io.IOException;
+import java.util.EnumSet;
+
+/**
+ * <p>
+ * A sample webapp served by an embedded Jetty. The webapp directory is generated with the {@link Fixtures} and
+ * contains:
+ * </p>
+ *
+ * <ul>
+ *     <li>stylesheets importing each other, scripts and images</li>
+ *     <li>static pages referencing them, transformed by the {@link HtmlParserFilter}</li>
+ *     <li>a 'wuic.xml' declaring a heap for each stylesheet and each script, read by a polling DAO</li>
+ * </ul>
+ *
+ * <p>
+ * Nuts are served by the {@link WuicServlet} under '/wuic' and the pages importing the heaps with the
+ * {@link com.github.wuic.tag.WuicTag} are rendered by the {@link TagServlet} under '/tag'.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @version 1.0
+ * @since 0.5.0
+ */
+public class LoadWebapp {
+
+    /**
+     * Prefix of the heaps containing a stylesheet.
+     */
+    public static final String CSS_HEAP_PREFIX = "css-";
+
+    /**
+     * Prefix of the heaps containing a script.
+     */
+    public static final String JS_HEAP_PREFIX = "js-";
+
+    /**
+     * Mapping of the {@link WuicServlet}.
+     */
+    public static final String WUIC_MAPPING = "/wuic";
+
+    /**
+     * The webapp directory.
+     */
+    private final File directory;
+
+    /**
+     * Number of stylesheets, scripts and pages.
+     */
+    private final int files;
+
+    /**
+     * The server.
+     */
+    private Server server;
+
+    /**
+     * <p>
+     * Generates the webapp.
+     * </p>
+     *
+     * @param files number of stylesheets, scripts and pages
+     * @param rules number of rules or functions in each stylesheet or script
+     * @param pollingSeconds polling interleave of the DAO
+     * @throws IOException if the webapp can't be generated
+     */
+    public LoadWebapp(final int files, final int rules, final int pollingSeconds) throws IOException {
+        this.directory = Fixtures.newDirectory("wuic-webapp");
+        this.files = files;
+
+        final StringBuilder heaps = new StringBuilder();
+
+        for (int i = 0; i < files; i++) {
+            heaps.append(heap(CSS_HEAP_PREFIX + i, Fixtures.css(directory, i, rules).getName()));
+            heaps.append(heap(JS_HEAP_PREFIX + i, Fixtures.js(directory, i, rules).getName()));
+            Fixtures.html(directory, "page-" + i + ".html", i + 1, 1);
+        }
+
+        final File webInf = new File(directory, "WEB-INF");
+
+        if (!webInf.mkdir()) {
+            throw new IOException("Unable to create " + webInf.getAbsolutePath());
+        }
+
+        Fixtures.write(new File(webInf, "wuic.xml"), String.format(
+                "<?xml version=\"1.0\"?>\n"
+                        + "<wuic>\n"
+                        + "    <nut-dao-builders>\n"
+                        + "        <nut-dao-builder id=\"appDao\" type=\"DiskNutDaoBuilder\">\n"
+                        + "            <properties>\n"
+                        + "                <property key=\"%s\">%s</property>\n"
+                        + "                <property key=\"%s\">%d</property>\n"
+                        + "            </properties>\n"
+                        + "        </nut-dao-builder>\n"
+                        + "    </nut-dao-builders>\n"
+                        + "    <heaps>\n%s    </heaps>\n"
+                        + "</wuic>\n",
+                ApplicationConfig.BASE_PATH, directory.getAbsolutePath(),
+                ApplicationConfig.POLLING_INTERLEAVE, pollingSeconds,
+                heaps));
+    }
+
+    /**
+     * <p>
+     * Builds the XML declaration of a heap containing one nut.
+     * </p>
+     *
+     * @param id the heap ID
+     * @param path the nut path
+     * @return the declaration
+     */
+    private static String heap(final String id, final String path) {
+        return String.format("        <heap id=\"%s\" dao-builder-id=\"appDao\"><nut-path>%s</nut-path></heap>%n", id, path);
+    }
+
+    /**
+     * <p>
+     * Starts the server on a free port.
+     * </p>
+     *
+     * @throws Exception if the server can't start
+     */
+    public void start() throws Exception {
+        final ServletContextHandler handler = new ServletContextHandler(ServletContextHandler.NO_SESSIONS);
+        handler.setContextPath("/");
+        handler.setResourceBase(directory.getAbsolutePath());
+        handler.setInitParameter(WuicServletContextListener.WUIC_SERVLET_CONTEXT_PARAM, WUIC_MAPPING);
+        handler.setInitParameter(WuicServletContextListener.WUIC_SERVLET_XML_PATH_PARAM,
+                new File(directory, "WEB-INF/wuic.xml").toURI().toURL().toString());
+        handler.addEventListener(new WuicServletContextListener());
+        handler.addServlet(new ServletHolder(new WuicServlet()), WUIC_MAPPING + "/*");
+        handler.addServlet(new ServletHolder(new TagServlet()), "/tag/*");
+        handler.addFilter(new FilterHolder(new HtmlParserFilter()), "*.html", EnumSet.of(DispatcherType.REQUEST));
+
+        // Files are edited during the test: never map them in memory
+        final ServletHolder defaultServlet = new ServletHolder(new DefaultServlet());
+        defaultServlet.setInitParameter("useFileMappedBuffer", "false");
+        handler.addServlet(defaultServlet, "/");
+
+        server = new Server(0);
+        server.setHandler(handler);
+        server.start();
+    }
+
+    /**
+     * <p>
+     * Stops the server and deletes the webapp.
+     * </p>
+     *
+     * @throws Exception if the server can't stop
+     */
+    public void stop() throws Exception {
+        try {
+            server.stop();
+        } finally {
+            Fixtures.delete(directory);
+        }
+    }
+
+    /**
+     * <p>
+     * Gets the base URL of the webapp, without trailing slash.
+     * </p>
+     *
+     * @return the URL
+     */
+    public String getBaseUrl() {
+        return "http://localhost:" + server.getConnectors()[0].getLocalPort();
+    }
+
+    /**
+     * <p>
+     * Gets the number of stylesheets, scripts and pages.
+     * </p>
+     *
+     * @return the number of files
+     */
+    public int getFiles() {
+        return files;
+    }
+
+    /**
+     * <p>
+     * Gets the stylesheet at the given index.
+     * </p>
+     *
+     * @param index the index
+     * @return the file
+     */
+    public File getStylesheet(final int index) {
+        return new File(directory, "style-" + index + ".css");
+    }
+}
@@ -0,0 +1,674 @@
+/*
+ * "Copyright (c) 2014   Capgemini Technology Services (hereinafter "Capgemini")
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * -   The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Any failure to comply with the above shall automatically terminate the license
+ * and be construed as a breach of these Terms of Use causing significant harm to
+ * Capgemini.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Capgemini shall not be used in
+ * advertising or otherwise to promote the use or other dealings in this Software
+ * without prior written authorization from Capgemini.
+ *
+ * These Terms of Use are subject to French law.
+ *
+ * IMPORTANT NOTICE: The WUIC software implements software components governed by
+ * open source software licenses (BSD and Apache) of which CAPGEMINI is not the
+ * author or the editor. The rights granted on the said software components are
+ * governed by the specific terms and conditions specified by Apache 2.0 and BSD
+ * licenses."
+ */
+
+
+package com.github.wuic.benchmark.load;
+
+import javax.el.ELContext;
+import javax.servlet.RequestDispatcher;
+import javax.servlet.Servlet;
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+import javax.servlet.jsp.JspWriter;
+import javax.servlet.jsp.PageContext;
+import javax.servlet.jsp.el.ExpressionEvaluator;
+import javax.servlet.jsp.el.VariableResolver;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>
+ * A minimal {@link PageContext} letting a servlet render a tag without any JSP engine. The writer is not buffered,
+ * the attributes of the page scope are kept in memory and the other operations delegate to the wrapped request and
+ * response. Expression language is not supported.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @version 1.1
+ * @since 0.5.0
+ */
+public class TagPageContext extends PageContext {
+
+    /**
+     * The servlet rendering the tag.
+     */
+    private Servlet servlet;
+
+    /**
+     * The request.
+     */
+    private HttpServletRequest request;
+
+    /**
+     * The response.
+     */
+    private ServletResponse response;
+
+    /**
+     * The page attributes.
+     */
+    private final Map<String, Object> attributes;
+
+    /**
+     * The writer.
+     */
+    private JspWriter out;
+
+    /**
+     * The exception handled by the page, if any.
+     */
+    private Exception exception;
+
+    /**
+     * <p>
+     * Builds a new instance.
+     * </p>
+     *
+     * @param servlet the servlet rendering the tag
+     * @param request the request
+     * @param response the response
+     * @throws IOException if the response writer can't be retrieved
+     */
+    public TagPageContext(final Servlet servlet, final HttpServletRequest request, final ServletResponse response)
+            throws IOException {
+        this.attributes = new HashMap<String, Object>();
+        initialize(servlet, request, response, null, false, JspWriter.NO_BUFFER, true);
+    }
+
+    /**
+     * <p>
+     * Initializes this context with the given servlet, request and response. The error page, the session and the
+     * buffer settings are ignored: the writer is never buffered.
+     * </p>
+     *
+     * @param s the servlet rendering the tag
+     * @param req the HTTP request
+     * @param res the response
+     * @param errorPageURL ignored
+     * @param needsSession ignored
+     * @param bufferSize ignored
+     * @param autoFlush ignored
+     * @throws IOException if the response writer can't be retrieved
+     */
+    @Override
+    public void initialize(final Servlet s,
+                           final ServletRequest req,
+                           final ServletResponse res,
+                           final String errorPageURL,
+                           final boolean needsSession,
+                           final int bufferSize,
+                           final boolean autoFlush) throws IOException {
+        servlet = s;
+        request = HttpServletRequest.class.cast(req);
+        response = res;
+        out = new ResponseJspWriter(res.getWriter());
+        exception = null;
+        attributes.clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void release() {
+        attributes.clear();
+        exception = null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public HttpSession getSession() {
+        return request.getSession(false);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object getPage() {
+        return servlet;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ServletRequest getRequest() {
+        return request;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ServletResponse getResponse() {
+        return response;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Exception getException() {
+        return exception;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ServletConfig getServletConfig() {
+        return servlet.getServletConfig();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ServletContext getServletContext() {
+        return servlet.getServletConfig().getServletContext();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void forward(final String relativeUrlPath) throws ServletException, IOException {
+        dispatcher(relativeUrlPath).forward(request, response);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void include(final String relativeUrlPath) throws ServletException, IOException {
+        include(relativeUrlPath, true);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void include(final String relativeUrlPath, final boolean flush) throws ServletException, IOException {
+        // What the page already wrote must be written before the included resource
+        if (flush) {
+            out.flush();
+        }
+
+        dispatcher(relativeUrlPath).include(request, response);
+    }
+
+    /**
+     * <p>
+     * Gets the dispatcher of the given path. A relative path is resolved by the request.
+     * </p>
+     *
+     * @param relativeUrlPath the path
+     * @return the dispatcher
+     * @throws ServletException if the path can't be dispatched
+     */
+    private RequestDispatcher dispatcher(final String relativeUrlPath) throws ServletException {
+        final RequestDispatcher retval = request.getRequestDispatcher(relativeUrlPath);
+
+        if (retval == null) {
+            throw new ServletException(String.format("No dispatcher available for '%s'", relativeUrlPath));
+        }
+
+        return retval;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void handlePageException(final Exception e) throws ServletException, IOException {
+        handlePageException((Throwable) e);
+    }
+
+    /**
+     * <p>
+     * Keeps the exception in the request, then throws it to the servlet rendering the tag. A checked exception which
+     * is neither an {@link IOException} nor a {@link ServletException} is wrapped in a {@link ServletException}.
+     * </p>
+     *
+     * @param t the exception
+     * @throws ServletException the exception or its wrapper
+     * @throws IOException the exception if it is an I/O error
+     */
+    @Override
+    public void handlePageException(final Throwable t) throws ServletException, IOException {
+        if (t instanceof Exception) {
+            exception = Exception.class.cast(t);
+        }
+
+        request.setAttribute(EXCEPTION, t);
+
+        if (t instanceof IOException) {
+            throw IOException.class.cast(t);
+        } else if (t instanceof ServletException) {
+            throw ServletException.class.cast(t);
+        } else if (t instanceof RuntimeException) {
+            throw RuntimeException.class.cast(t);
+        } else if (t instanceof Error) {
+            throw Error.class.cast(t);
+        } else {
+            throw new ServletException(t);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setAttribute(final String name, final Object value) {
+        attributes.put(name, value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setAttribute(final String name, final Object value, final int scope) {
+        if (scope == REQUEST_SCOPE) {
+            request.setAttribute(name, value);
+        } else if (scope == APPLICATION_SCOPE) {
+            getServletContext().setAttribute(name, value);
+        } else {
+            setAttribute(name, value);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object getAttribute(final String name) {
+        return attributes.get(name);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object getAttribute(final String name, final int scope) {
+        if (scope == REQUEST_SCOPE) {
+            return request.getAttribute(name);
+        } else if (scope == APPLICATION_SCOPE) {
+            return getServletContext().getAttribute(name);
+        } else {
+            return getAttribute(name);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object findAttribute(final String name) {
+        final Object retval = getAttribute(name);
+        return retval != null ? retval : getAttribute(name, REQUEST_SCOPE);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeAttribute(final String name) {
+        attributes.remove(name);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeAttribute(final String name, final int scope) {
+        if (scope == REQUEST_SCOPE) {
+            request.removeAttribute(name);
+        } else if (scope == APPLICATION_SCOPE) {
+            getServletContext().removeAttribute(name);
+        } else {
+            removeAttribute(name);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getAttributesScope(final String name) {
+        return attributes.containsKey(name) ? PAGE_SCOPE : 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Enumeration<String> getAttributeNamesInScope(final int scope) {
+        return Collections.enumeration(attributes.keySet());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public JspWriter getOut() {
+        return out;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("deprecation")
+    public ExpressionEvaluator getExpressionEvaluator() {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("deprecation")
+    public VariableResolver getVariableResolver() {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ELContext getELContext() {
+        return null;
+    }
+
+    /**
+     * <p>
+     * An unbuffered {@link JspWriter} writing directly to the response.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @version 1.0
+     * @since 0.5.0
+     */
+    private static final class ResponseJspWriter extends JspWriter {
+
+        /**
+         * The response writer.
+         */
+        private final Writer writer;
+
+        /**
+         * <p>
+         * Builds a new instance.
+         * </p>
+         *
+         * @param writer the response writer
+         */
+        private ResponseJspWriter(final Writer writer) {
+            super(NO_BUFFER, true);
+            this.writer = writer;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void write(final char[] cbuf, final int off, final int len) throws IOException {
+            writer.write(cbuf, off, len);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void newLine() throws IOException {
+            writer.write('\n');
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void print(final boolean b) throws IOException {
+            writer.write(String.valueOf(b));
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void print(final char c) throws IOException {
+            writer.write(c);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void print(final int i) throws IOException {
+            writer.write(String.valueOf(i));
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void print(final long l) throws IOException {
+            writer.write(String.valueOf(l));
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void print(final float f) throws IOException {
+            writer.write(String.valueOf(f));
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void print(final double d) throws IOException {
+            writer.write(String.valueOf(d));
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void print(final char[] s) throws IOException {
+            writer.write(s);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void print(final String s) throws IOException {
+            writer.write(String.valueOf(s));
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void print(final Object obj) throws IOException {
+            writer.write(String.valueOf(obj));
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void println() throws IOException {
+            newLine();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void println(final boolean x) throws IOException {
+            print(x);
+            newLine();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void println(final char x) throws IOException {
+            print(x);
+            newLine();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void println(final int x) throws IOException {
+            print(x);
+            newLine();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void println(final long x) throws IOException {
+            print(x);
+            newLine();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void println(final float x) throws IOException {
+            print(x);
+            newLine();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void println(final double x) throws IOException {
+            print(x);
+            newLine();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void println(final char[] x) throws IOException {
+            print(x);
+            newLine();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void println(final String x) throws IOException {
+            print(x);
+            newLine();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void println(final Object x) throws IOException {
+            print(x);
+            newLine();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void clear() {
+            throw new UnsupportedOperationException("Writer is not buffered");
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void clearBuffer() {
+            // Nothing buffered
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void flush() throws IOException {
+            writer.flush();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int getRemaining() {
+            return 0;
+        }
+    }
+}
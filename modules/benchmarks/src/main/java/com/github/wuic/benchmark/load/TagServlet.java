@@ -0,0 +1,118 @@
+/*
+ * "Copyright (c) 2014   Capgemini Technology Services (hereinafter "Capgemini")
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * -   The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Any failure to comply with the above shall automatically terminate the license
+ * and be construed as a breach of these Terms of Use causing significant harm to
+ * Capgemini.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Capgemini shall not be used in
+ * advertising or otherwise to promote the use or other dealings in this Software
+ * without prior written authorization from Capgemini.
+ *
+ * These Terms of Use are subject to French law.
+ *
+ * IMPORTANT NOTICE: The WUIC software implements software components governed by
+ * open source software licenses (BSD and Apache) of which CAPGEMINI is not the
+ * author or the editor. The rights granted on the said software components are
+ * governed by the specific terms and conditions specified by Apache 2.0 and BSD
+ * licenses."
+ */
+
+
+package com.github.wuic.benchmark.load;
+
+import com.github.wuic.tag.WuicTag;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.jsp.JspException;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * <p>
+ * Renders a page importing the stylesheet and the script of a given index with the {@link WuicTag}, as a JSP would
+ * do. The index is the last segment of the request URI.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @version 1.0
+ * @since 0.5.0
+ */
+public class TagServlet extends HttpServlet {
+
+    /**
+     * Serial version UID.
+     */
+    private static final long serialVersionUID = -1584936250312866047L;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doGet(final HttpServletRequest request, final HttpServletResponse response)
+            throws ServletException, IOException {
+        final String uri = request.getRequestURI();
+        final String index = uri.substring(uri.lastIndexOf('/') + 1);
+
+        response.setContentType("text/html");
+        final PrintWriter writer = response.getWriter();
+        writer.print("<!DOCTYPE html>\n<html>\n<head>\n<title>tag ");
+        writer.print(index);
+        writer.print("</title>\n");
+
+        final TagPageContext pageContext = new TagPageContext(this, request, response);
+
+        try {
+            render(pageContext, LoadWebapp.CSS_HEAP_PREFIX + index);
+            render(pageContext, LoadWebapp.JS_HEAP_PREFIX + index);
+        } catch (JspException je) {
+            throw new ServletException(je);
+        } finally {
+            pageContext.release();
+        }
+
+        writer.print("</head>\n<body>\n</body>\n</html>\n");
+    }
+
+    /**
+     * <p>
+     * Renders the imports of the given workflow.
+     * </p>
+     *
+     * @param pageContext the page context
+     * @param workflowId the workflow
+     * @throws JspException if the tag fails
+     */
+    private void render(final TagPageContext pageContext, final String workflowId) throws JspException {
+        final WuicTag tag = new WuicTag();
+        tag.setPageContext(pageContext);
+        tag.setWorkflowId(workflowId);
+
+        try {
+            tag.doStartTag();
+            tag.doEndTag();
+        } finally {
+            tag.release();
+        }
+    }
+}
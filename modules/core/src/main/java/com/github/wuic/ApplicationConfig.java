@@ -44,7 +44,7 @@ package com.github.wuic;
  * </p>
  *
  * @author Guillaume DROUET
- * @version 1.4
+ * @version 1.10
  * @since 0.3.1
  */
 public interface ApplicationConfig {
@@ -73,13 +73,19 @@ public interface ApplicationConfig {
      */
     String POLLING_INTERLEAVE = "c.g.wuic.dao.pollingInterleave";
 
+    /**
+     * Maximum interval the polling interleave could be increased to when no change is detected.
+     */
+    String POLLING_MAX_INTERLEAVE = "c.g.wuic.dao.pollingMaxInterleave";
+
     /**
      * Boolean which indicates if path are evaluated as regex or not.
      */
     String REGEX = "c.g.wuic.dao.regex";
 
     /**
-     * Proxies that can be use to access the nuts.
+     * Proxies that can be use to access the nuts, separated by '|'. Each proxy can be followed by ';weight=n' to
+     * receive more nuts than the others.
      */
     String PROXY_URIS = "c.g.wuic.dao.proxyUris";
 
@@ -151,6 +157,30 @@ public interface ApplicationConfig {
      */
     String TIME_TO_LIVE = "c.g.wuic.engine.timeToLive";
 
+    /**
+     * <p>
+     * Indicates the maximum size in megabytes of the memory a cache can reserve outside the java heap to store the nuts
+     * content. A value lower or equals to zero keeps the content in the java heap.
+     * </p>
+     */
+    String OFF_HEAP_SIZE = "c.g.wuic.engine.offHeapSize";
+
+    /**
+     * <p>
+     * Indicates the number of seconds a cache entry can be served while it is recomputed after an invalidation. A value
+     * lower or equals to zero removes the entry as soon as it is invalidated.
+     * </p>
+     */
+    String MAX_STALENESS = "c.g.wuic.engine.maxStaleness";
+
+    /**
+     * <p>
+     * Indicates the maximum size in bytes of a nut an inspector writes inline in the inspected nut instead of referencing
+     * it. A value lower or equals to zero disables inlining.
+     * </p>
+     */
+    String INLINE_MAX_SIZE = "c.g.wuic.engine.inlineMaxSize";
+
     /**
      * <p>
      * Indicates a particular {@link com.github.wuic.engine.CacheProvider} implementation.
@@ -179,6 +209,29 @@ public interface ApplicationConfig {
      */
     String AGGREGATE = "c.g.wuic.engine.aggregate";
 
+    /**
+     * <p>
+     * Indicates the maximum size in bytes of a bundle created by an aggregator. Nuts are spread across several bundles
+     * when they are larger. A value lower or equals to zero does not limit the size.
+     * </p>
+     */
+    String BUNDLE_MAX_SIZE = "c.g.wuic.engine.bundleMaxSize";
+
+    /**
+     * <p>
+     * Indicates how many times the version of a nut must change before an aggregator considers it as volatile and
+     * bundles it apart from the stable nuts. A value lower or equals to zero does not track changes.
+     * </p>
+     */
+    String VOLATILE_CHANGE_COUNT = "c.g.wuic.engine.volatileChangeCount";
+
+    /**
+     * <p>
+     * Indicates if an aggregator creates a separated bundle for the nuts of each heap composing the processed heap.
+     * </p>
+     */
+    String SPLIT_BY_HEAP = "c.g.wuic.engine.splitByHeap";
+
     /**
      * <p>
      * Indicates if the engine should inspects and eventually transform or not.
@@ -189,7 +242,7 @@ public interface ApplicationConfig {
     /**
      * <p>
      * Indicates the class name of a {@link com.github.wuic.engine.DimensionPacker} implementation to use when
-     * aggregating images.
+     * aggregating images. The aliases {@code binTree} and {@code maxRects} designate the built-in implementations.
      * </p>
      */
     String PACKER_CLASS_NAME = "c.g.wuic.engine.packerClassName";
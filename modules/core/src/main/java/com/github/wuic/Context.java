@@ -43,6 +43,8 @@ import com.github.wuic.engine.HeadEngine;
 import com.github.wuic.exception.NutNotFoundException;
 import com.github.wuic.exception.WorkflowNotFoundException;
 import com.github.wuic.exception.WuicException;
+import com.github.wuic.metric.Span;
+import com.github.wuic.metric.Tracer;
 import com.github.wuic.nut.*;
 import com.github.wuic.util.NutUtils;
 
@@ -58,8 +60,12 @@ import java.util.*;
  * up to date regarding configuration changes since it has been built.
  * </p>
  *
+ * <p>
+ * The processed nuts are given to the {@link Workflow} which saves them in its stores without delaying the caller.
+ * </p>
+ *
  * @author Guillaume DROUET
- * @version 1.2
+ * @version 1.5
  * @since 0.4.0
  */
 public class Context implements Observer {
@@ -136,6 +142,20 @@ public class Context implements Observer {
         return upToDate;
     }
 
+    /**
+     * <p>
+     * Registers the given listener to the heap of the workflow associated to the specified ID. The listener will be
+     * notified each time a nut is updated in the heap.
+     * </p>
+     *
+     * @param workflowId the workflow ID
+     * @param listener the listener
+     * @throws WuicException if no workflow is associated to the ID
+     */
+    public void observe(final String workflowId, final HeapListener listener) throws WuicException {
+        getWorkflow(workflowId).getHeap().addObserver(listener);
+    }
+
     /**
      * <p>
      * Returns the workflow associated to the given ID
@@ -168,17 +188,28 @@ public class Context implements Observer {
      */
     private Nut process(final String contextPath, final String wId, final Workflow workflow, final String path) throws WuicException {
         final EngineRequest request = new EngineRequest(wId, contextPath, workflow.getHeap(), workflow.getHeap().getNuts(), workflow.getChains(), "");
+        final Span span = Tracer.startTrace(wId, path);
 
-        if (workflow.getHead() != null) {
-            return workflow.getHead().parse(request, path);
-        } else {
-            final Nut nut = NutUtils.findByName(HeadEngine.runChains(request, Boolean.FALSE), path);
+        try {
+            final Nut nut;
+
+            if (workflow.getHead() != null) {
+                nut = workflow.getHead().parse(request, path);
+            } else {
+                nut = NutUtils.findByName(HeadEngine.runChains(request, Boolean.FALSE), path);
+
+                if (nut == null) {
+                    throw new NutNotFoundException(path, wId);
+                }
+            }
 
             if (nut != null) {
-                return nut;
+                workflow.store(Arrays.asList(nut));
             }
 
-            throw new NutNotFoundException(path, wId);
+            return nut;
+        } finally {
+            Tracer.end(span);
         }
     }
 
@@ -194,11 +225,22 @@ public class Context implements Observer {
      */
     private List<Nut> process(final String contextPath, final String wId, final Workflow workflow) throws WuicException {
         final EngineRequest request = new EngineRequest(wId, contextPath, workflow.getHeap(), workflow.getHeap().getNuts(), workflow.getChains(), "");
+        final Span span = Tracer.startTrace(wId, null);
 
-        if (workflow.getHead() != null) {
-            return workflow.getHead().parse(request);
-        } else {
-           return HeadEngine.runChains(request, Boolean.FALSE);
+        try {
+            final List<Nut> retval;
+
+            if (workflow.getHead() != null) {
+                retval = workflow.getHead().parse(request);
+            } else {
+                retval = HeadEngine.runChains(request, Boolean.FALSE);
+            }
+
+            workflow.store(retval);
+
+            return retval;
+        } finally {
+            Tracer.end(span);
         }
     }
 
@@ -55,12 +55,12 @@ import com.github.wuic.nut.filter.NutFilterBuilderFactory;
 import com.github.wuic.util.AbstractBuilderFactory;
 import com.github.wuic.util.CollectionUtils;
 import com.github.wuic.util.GenericBuilder;
+import com.github.wuic.util.PathMatcher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
 import java.util.concurrent.locks.ReentrantLock;
-import java.util.regex.Pattern;
 
 /**
  * <p>
@@ -110,7 +110,7 @@ import java.util.regex.Pattern;
  * </p>
  *
  * @author Guillaume DROUET
- * @version 1.2
+ * @version 1.6
  * @since 0.4.0
  */
 public class ContextBuilder extends Observable {
@@ -135,6 +135,11 @@ public class ContextBuilder extends Observable {
      */
     private Map<String, ContextSetting> taggedSettings;
 
+    /**
+     * The heads created for the default workflows of the last built context.
+     */
+    private List<HeadEngine> defaultHeads;
+
     /**
      * <p>
      * Creates a new instance.
@@ -142,6 +147,7 @@ public class ContextBuilder extends Observable {
      */
     public ContextBuilder() {
         taggedSettings = new HashMap<String, ContextSetting>();
+        defaultHeads = new ArrayList<HeadEngine>();
         lock = new ReentrantLock();
     }
 
@@ -323,11 +329,20 @@ public class ContextBuilder extends Observable {
 
             final ContextSetting setting = taggedSettings.remove(tagName);
 
-            // Shutdown all DAO (scheduled jobs, etc)
+            // Shutdown all DAO and head engines (scheduled jobs, metrics, etc)
             if (setting != null) {
                 for (final NutDao dao : setting.nutDaoMap.values()) {
                     dao.shutdown();
                 }
+
+                for (final WorkflowTemplate template : setting.getTemplateMap().values()) {
+                    shutdown(template.getHead());
+                }
+
+                for (final Workflow workflow : setting.getWorkflowMap().values()) {
+                    workflow.shutdown();
+                    shutdown(workflow.getHead());
+                }
             }
 
             setChanged();
@@ -1041,14 +1056,15 @@ public class ContextBuilder extends Observable {
 
                 // Will override existing element
                 for (final ContextSetting s : taggedSettings.values()) {
-                    s.getWorkflowMap().remove(id);
+                    shutdown(s.getWorkflowMap().remove(id));
                 }
 
-                setting.getWorkflowMap().put(id, new Workflow(template.getHead(), chains, heap, nutDaos));
+                shutdown(setting.getWorkflowMap().put(id, new Workflow(id, template.getHead(), chains, heap, nutDaos)));
             }
         } else {
             final NutsHeap[] array = heaps.toArray(new NutsHeap[heaps.size()]);
-            setting.getWorkflowMap().put(identifier, new Workflow(template.getHead(), chains, new NutsHeap(null, null, heapIdPattern, array)));
+            final NutsHeap heap = new NutsHeap(null, null, heapIdPattern, array);
+            shutdown(setting.getWorkflowMap().put(identifier, new Workflow(identifier, template.getHead(), chains, heap, nutDaos)));
         }
 
         taggedSettings.put(currentTag, setting);
@@ -1106,7 +1122,13 @@ public class ContextBuilder extends Observable {
                 }
             }
 
-            // Create a default workflow for heaps not referenced by any workflow
+            // Create a default workflow for heaps not referenced by any workflow, the previous ones are replaced
+            for (final HeadEngine head : defaultHeads) {
+                shutdown(head);
+            }
+
+            defaultHeads.clear();
+
             heapLoop :
             for (final NutsHeap heap : heapMap.values()) {
                 for (final Workflow workflow : workflowMap.values()) {
@@ -1116,7 +1138,12 @@ public class ContextBuilder extends Observable {
                 }
 
                 // No workflow has been found : create a default with the heap ID as ID
-                workflowMap.put(heap.getId(), new Workflow(createHead(Boolean.TRUE, null), createChains(Boolean.TRUE, null), heap));
+                final HeadEngine head = createHead(Boolean.TRUE, null);
+                workflowMap.put(heap.getId(), new Workflow(heap.getId(), head, createChains(Boolean.TRUE, null), heap));
+
+                if (head != null) {
+                    defaultHeads.add(head);
+                }
             }
 
             return new Context(this, workflowMap);
@@ -1127,6 +1154,60 @@ public class ContextBuilder extends Observable {
         }
     }
 
+    /**
+     * <p>
+     * Clears all the tags and shutdowns the engines created for the default workflows. The nuts queued by the
+     * workflows are saved before this method returns.
+     * </p>
+     */
+    public void shutdown() {
+        final List<String> tags;
+
+        lock.lock();
+
+        try {
+            tags = new ArrayList<String>(taggedSettings.keySet());
+
+            for (final HeadEngine head : defaultHeads) {
+                shutdown(head);
+            }
+
+            defaultHeads.clear();
+        } finally {
+            lock.unlock();
+        }
+
+        for (final String tag : tags) {
+            clearTag(tag);
+        }
+    }
+
+    /**
+     * <p>
+     * Shutdowns the given workflow which has been replaced.
+     * </p>
+     *
+     * @param workflow the workflow, {@code null} if nothing has been replaced
+     */
+    private void shutdown(final Workflow workflow) {
+        if (workflow != null) {
+            workflow.shutdown();
+        }
+    }
+
+    /**
+     * <p>
+     * Shutdowns the given head engine which is not used anymore.
+     * </p>
+     *
+     * @param head the head, {@code null} if the workflow has no head
+     */
+    private void shutdown(final HeadEngine head) {
+        if (head != null) {
+            head.shutdown();
+        }
+    }
+
     /**
      * <p>
      * Creates a new set of chains. If we don't include default engines, then the returned map will be empty.
@@ -1403,11 +1484,11 @@ public class ContextBuilder extends Observable {
      */
     private List<NutsHeap> getNutsHeap(final String regex) {
         final List<NutsHeap> retval = new ArrayList<NutsHeap>();
-        final Pattern pattern = Pattern.compile(regex);
+        final PathMatcher matcher = PathMatcher.compile(regex, true);
 
         for (final ContextSetting setting : taggedSettings.values()) {
             for (final NutsHeap heap : setting.getNutsHeaps().values()) {
-                if (pattern.matcher(heap.getId()).matches()) {
+                if (matcher.matches(heap.getId())) {
                     retval.add(heap);
                 }
             }
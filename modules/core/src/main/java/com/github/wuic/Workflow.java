@@ -41,8 +41,11 @@ package com.github.wuic;
 import com.github.wuic.engine.HeadEngine;
 import com.github.wuic.engine.NodeEngine;
 import com.github.wuic.nut.NutDao;
+import com.github.wuic.nut.Nut;
 import com.github.wuic.nut.NutsHeap;
+import com.github.wuic.nut.WriteBehindNutStore;
 
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -61,11 +64,12 @@ import java.util.Map;
  * <p>
  * Finally, the workflow could have zero to many {@link NutDao} where resulting nut should be saved. Consequently,
  * {@link NutDao} must supports {@link NutDao#save(com.github.wuic.nut.Nut)}. This is something which is checked by the
- * {@link ContextBuilder}.
+ * {@link ContextBuilder}. Processed nuts are saved asynchronously thanks to a {@link WriteBehindNutStore}, under the
+ * path of their URL. The workflow must be {@link #shutdown() shutdown} when it is replaced to save the queued nuts.
  * </p>
  *
  * @author Guillaume DROUET
- * @version 1.2
+ * @version 1.4
  * @since 0.4.0
  */
 public class Workflow extends WorkflowTemplate {
@@ -75,19 +79,30 @@ public class Workflow extends WorkflowTemplate {
      */
     private NutsHeap heap;
 
+    /**
+     * Writes the processed nuts to the stores, {@code null} if there is no store.
+     */
+    private WriteBehindNutStore writeBehind;
+
     /**
      * <p>
      * Creates a new instance.
      * </p>
      *
+     * @param id the workflow ID
      * @param c the chains
      * @param h the heap
      * @param store the DAO stores
      * @param head the head (could be {@code null})
      */
-    public Workflow(final HeadEngine head, final Map<NutType, ? extends NodeEngine> c, final NutsHeap h, final NutDao ... store) {
+    public Workflow(final String id,
+                    final HeadEngine head,
+                    final Map<NutType, ? extends NodeEngine> c,
+                    final NutsHeap h,
+                    final NutDao ... store) {
         super(head, c, store);
         heap = h;
+        writeBehind = store.length == 0 ? null : new WriteBehindNutStore(id, store);
     }
 
     /**
@@ -100,4 +115,28 @@ public class Workflow extends WorkflowTemplate {
     public NutsHeap getHeap() {
         return heap;
     }
+
+    /**
+     * <p>
+     * Queues the given processed nuts to save them in the stores. Does nothing if the workflow has no store.
+     * </p>
+     *
+     * @param nuts the processed nuts
+     */
+    public void store(final List<Nut> nuts) {
+        if (writeBehind != null) {
+            writeBehind.enqueue(nuts);
+        }
+    }
+
+    /**
+     * <p>
+     * Saves the queued nuts and stops saving the processed nuts. Does nothing if the workflow has no store.
+     * </p>
+     */
+    public void shutdown() {
+        if (writeBehind != null) {
+            writeBehind.shutdown();
+        }
+    }
 }
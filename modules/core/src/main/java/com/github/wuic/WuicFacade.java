@@ -47,6 +47,7 @@ import com.github.wuic.exception.xml.WuicXmlReadException;
 import java.net.URL;
 import java.util.*;
 
+import com.github.wuic.nut.HeapListener;
 import com.github.wuic.nut.Nut;
 import com.github.wuic.util.NumberUtils;
 import com.github.wuic.xml.FileXmlContextBuilderConfigurator;
@@ -62,7 +63,7 @@ import javax.xml.bind.JAXBException;
  * </p>
  *
  * @author Guillaume DROUET
- * @version 1.9
+ * @version 1.11
  * @since 0.1.0
  */
 public final class WuicFacade {
@@ -116,6 +117,16 @@ public final class WuicFacade {
         builder.clearTag(tag);
     }
 
+    /**
+     * <p>
+     * Shutdowns the DAOs, the engines and the workflows of the configuration. The processed nuts waiting to be saved
+     * are written before this method returns. The facade should not be used anymore.
+     * </p>
+     */
+    public synchronized void shutdown() {
+        builder.shutdown();
+    }
+
     /**
      * <p>
      * Gets a new instance. If an error occurs, it will be wrapped in a
@@ -223,6 +234,41 @@ public final class WuicFacade {
         return retval;
     }
 
+    /**
+     * <p>
+     * Registers a listener notified each time a nut is updated in the heap of the workflow identified by the given ID.
+     * </p>
+     *
+     * <p>
+     * The listener is registered to the heap of the current context. When the context is rebuilt, the listener must be
+     * registered again. Observing the configuration with {@link #addObserver(Observer)} allows to be notified when
+     * this happens.
+     * </p>
+     *
+     * @param id the workflow ID
+     * @param listener the listener
+     * @throws WuicException if no workflow is associated to the ID
+     */
+    public synchronized void observe(final String id, final HeapListener listener) throws WuicException {
+        if (!context.isUpToDate()) {
+            context = builder.build();
+        }
+
+        context.observe(id, listener);
+    }
+
+    /**
+     * <p>
+     * Adds an observer notified each time the configuration is modified. Once notified, the current context is not up
+     * to date anymore and will be rebuilt when a workflow is run.
+     * </p>
+     *
+     * @param observer the observer
+     */
+    public void addObserver(final Observer observer) {
+        builder.addObserver(observer);
+    }
+
     /**
      * <p>
      * Returns the workflow IDs.
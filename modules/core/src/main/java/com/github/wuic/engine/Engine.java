@@ -39,6 +39,8 @@
 package com.github.wuic.engine;
 
 import com.github.wuic.exception.WuicException;
+import com.github.wuic.metric.Span;
+import com.github.wuic.metric.Tracer;
 import com.github.wuic.nut.Nut;
 
 import java.util.List;
@@ -55,7 +57,7 @@ import java.util.List;
  * </p>
  * 
  * @author Guillaume DROUET
- * @version 1.5
+ * @version 1.6
  * @since 0.1.0
  */
 public abstract class Engine implements Comparable<Engine> {
@@ -105,6 +107,28 @@ public abstract class Engine implements Comparable<Engine> {
      */
     public abstract Boolean works();
 
+    /**
+     * <p>
+     * Starts the span of this engine if the current thread is recording a trace.
+     * </p>
+     *
+     * @param request the request to parse
+     * @return the span to end with {@link Tracer#end(Span)}, {@code null} if not traced
+     */
+    protected Span beginSpan(final EngineRequest request) {
+        if (!Tracer.isTracing()) {
+            return null;
+        }
+
+        final StringBuilder nuts = new StringBuilder();
+
+        for (final Nut nut : request.getNuts()) {
+            nuts.append(nuts.length() == 0 ? "" : ", ").append(nut.getName());
+        }
+
+        return Tracer.begin(getClass().getSimpleName(), nuts.toString());
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -40,6 +40,9 @@ package com.github.wuic.engine;
 
 import com.github.wuic.NutType;
 import com.github.wuic.exception.WuicException;
+import com.github.wuic.metric.Metrics;
+import com.github.wuic.metric.Span;
+import com.github.wuic.metric.Tracer;
 import com.github.wuic.nut.Nut;
 import com.github.wuic.nut.core.CompositeNut;
 
@@ -59,18 +62,38 @@ import java.util.List;
  * </p>
  *
  * @author Guillaume DROUET
- * @version 1.0
+ * @version 1.3
  * @since 0.4.4
  */
 public abstract class HeadEngine extends Engine {
 
+    /**
+     * <p>
+     * Releases the resources of this engine when it is not used anymore, for instance because the template declaring
+     * it has been replaced. Does nothing by default.
+     * </p>
+     */
+    public void shutdown() {
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public List<Nut> parse(final EngineRequest request) throws WuicException {
         if (works()) {
-            return internalParse(request);
+            final Metrics.Timing timing = Metrics.start();
+            final Span span = beginSpan(request);
+
+            try {
+                return internalParse(request);
+            } finally {
+                Tracer.end(span);
+
+                if (timing != null) {
+                    timing.stop(Metrics.Component.ENGINE, getClass().getSimpleName());
+                }
+            }
         } else {
             return runChains(request, Boolean.FALSE);
         }
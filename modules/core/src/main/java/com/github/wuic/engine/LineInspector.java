@@ -39,11 +39,16 @@
 package com.github.wuic.engine;
 
 import com.github.wuic.exception.WuicException;
+import com.github.wuic.exception.wrapper.BadArgumentException;
+import com.github.wuic.exception.wrapper.StreamException;
 import com.github.wuic.nut.Nut;
 import com.github.wuic.nut.NutsHeap;
 import com.github.wuic.nut.core.CompositeNut;
 import com.github.wuic.util.IOUtils;
+import com.github.wuic.util.NutUtils;
+import com.github.wuic.util.StringUtils;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.regex.Matcher;
@@ -51,36 +56,91 @@ import java.util.regex.Pattern;
 
 /**
  * <p>
- * Represents an object providing replacement functionality inside a line for a group of character matching a particular
- * pattern.
+ * Represents an object providing replacement functionality inside a line for the groups of characters referencing
+ * other nuts.
+ * </p>
+ *
+ * <p>
+ * Inspectors built with a pattern and implementing
+ * {@link #appendTransformation(Matcher, StringBuilder, EngineRequest, NutsHeap, Nut)} are still supported: the line
+ * is inspected by a {@link RegexLineInspector} delegating each match to this method. New inspectors should extend
+ * {@link RegexLineInspector} or override {@link #inspect(String, StringBuilder, EngineRequest, NutsHeap, Nut)}.
  * </p>
  *
  * @author Guillaume DROUET
- * @version 1.3
+ * @version 1.9
  * @since 0.3.3
  */
 public abstract class LineInspector {
 
     /**
-     * The pattern.
+     * Prefix of the operation memorizing the data URI of an inlined nut.
      */
-    private Pattern pattern;
+    private static final String INLINE_OPERATION = "inline-";
+
+    /**
+     * The nuts resulting from the processing of referenced nuts.
+     */
+    private final ReferencedNutMemo memo;
+
+    /**
+     * The inspector delegating each match of the pattern to this instance, {@code null} if built without pattern.
+     */
+    private final RegexLineInspector regexAdapter;
 
     /**
      * <p>
      * Builds a new instance.
      * </p>
+     */
+    public LineInspector() {
+        memo = new ReferencedNutMemo();
+        regexAdapter = null;
+    }
+
+    /**
+     * <p>
+     * Builds a new instance inspecting the text matching the given pattern with
+     * {@link #appendTransformation(Matcher, StringBuilder, EngineRequest, NutsHeap, Nut)}.
+     * </p>
      *
-     * @param p the pattern.
+     * @param p the pattern
+     * @deprecated extend {@link RegexLineInspector} instead
      */
+    @Deprecated
     public LineInspector(final Pattern p) {
-        pattern = p;
+        memo = new ReferencedNutMemo();
+        regexAdapter = new RegexLineInspector(p) {
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public List<Nut> appendTransformation(final Matcher matcher,
+                                                  final StringBuilder replacement,
+                                                  final EngineRequest request,
+                                                  final NutsHeap heap,
+                                                  final Nut originalNut) throws WuicException {
+                return LineInspector.this.appendTransformation(matcher, replacement, request, heap, originalNut);
+            }
+        };
+    }
+
+    /**
+     * <p>
+     * Gets the memo used by this inspector to process once the nuts referenced many times in the same version.
+     * </p>
+     *
+     * @return the memo
+     */
+    protected ReferencedNutMemo getMemo() {
+        return memo;
     }
 
     /**
      * <p>
      * Manages the given nut that corresponds to the specified referenced path and append the transformation with proper
-     * path.
+     * path. The nut is processed each time this method is called.
      * </p>
      *
      * @param nut the nut retrieved with path
@@ -90,22 +150,43 @@ public abstract class LineInspector {
      * @param skippedEngine the engine to skip when processing resulting nuts
      * @return the processed nuts specified in parameter
      * @throws WuicException if processing fails
+     * @see #manageAppend(ReferencedNutMemo, Nut, StringBuilder, EngineRequest, NutsHeap, EngineType...)
      */
     public static List<Nut> manageAppend(final Nut nut,
                                          final StringBuilder replacement,
                                          final EngineRequest request,
                                          final NutsHeap heap,
                                          final EngineType ... skippedEngine) throws WuicException {
-        List<Nut> res;
-
-        // If nut name is null, it means that nothing has been changed by the inspector
-        res = Arrays.asList(nut);
+        return manageAppend(null, nut, replacement, request, heap, skippedEngine);
+    }
 
-        // Process nut
-        final NodeEngine engine = request.getChainFor(nut.getNutType());
-        if (engine != null) {
-            res = engine.parse(new EngineRequest(res, heap, request, skippedEngine));
-        }
+    /**
+     * <p>
+     * Manages the given nut that corresponds to the specified referenced path and append the transformation with proper
+     * path.
+     * </p>
+     *
+     * <p>
+     * The result of the chain executed for the nut is memorized in the given memo, so a nut referenced many times in
+     * the same version is processed once.
+     * </p>
+     *
+     * @param memo the memo, {@code null} if the nut must be processed anyway
+     * @param nut the nut retrieved with path
+     * @param replacement the string builder to append
+     * @param request the engine request
+     * @param heap the heap that contains the original nut
+     * @param skippedEngine the engine to skip when processing resulting nuts
+     * @return the processed nuts specified in parameter
+     * @throws WuicException if processing fails
+     */
+    public static List<Nut> manageAppend(final ReferencedNutMemo memo,
+                                         final Nut nut,
+                                         final StringBuilder replacement,
+                                         final EngineRequest request,
+                                         final NutsHeap heap,
+                                         final EngineType ... skippedEngine) throws WuicException {
+        final List<Nut> res = process(memo, nut, request, heap, skippedEngine);
 
         // Use proxy URI if DAO provide it
         final String proxy = nut.getProxyUri();
@@ -134,21 +215,110 @@ public abstract class LineInspector {
         return res;
     }
 
+    /**
+     * <p>
+     * Runs the chain of the given nut's type or returns the result memorized for the nut in the same version.
+     * </p>
+     *
+     * @param memo the memo, {@code null} if the nut must be processed anyway
+     * @param nut the nut to process
+     * @param request the engine request
+     * @param heap the heap that contains the original nut
+     * @param skippedEngine the engine to skip when processing resulting nuts
+     * @return a copy of the processed nuts
+     * @throws WuicException if processing fails
+     */
+    private static List<Nut> process(final ReferencedNutMemo memo,
+                                     final Nut nut,
+                                     final EngineRequest request,
+                                     final NutsHeap heap,
+                                     final EngineType ... skippedEngine) throws WuicException {
+        final String operation = Arrays.toString(skippedEngine);
+        List<Nut> res = memo == null ? null : memo.get(request, nut, operation);
+
+        if (res == null) {
+            // If nut name is null, it means that nothing has been changed by the inspector
+            res = Arrays.asList(nut);
+
+            // Process nut
+            final NodeEngine engine = request.getChainFor(nut.getNutType());
+            if (engine != null) {
+                res = engine.parse(new EngineRequest(res, heap, request, skippedEngine));
+            }
+
+            if (memo != null) {
+                memo.put(request, nut, operation, res);
+            }
+
+            res = new ArrayList<Nut>(res);
+        }
+
+        return res;
+    }
+
+    /**
+     * <p>
+     * Appends to the given builder a data URI embedding the content of the given nut, instead of a path to the nut.
+     * The nut is inlined only if its content does not exceed the specified size and if it does not reference any other
+     * nut. An inlined nut is not processed by the chain since only its content is written. The data URI or the decision
+     * to not inline the nut is memorized for the nut in its version.
+     * </p>
+     *
+     * @param nut the nut retrieved with path
+     * @param replacement the string builder to append
+     * @param request the engine request
+     * @param maxSize the maximum size in bytes of an inlined nut
+     * @return {@code true} if the data URI has been appended, {@code false} if nothing has been appended
+     * @throws WuicException if the nut can't be read
+     */
+    public Boolean manageInline(final Nut nut,
+                                final StringBuilder replacement,
+                                final EngineRequest request,
+                                final int maxSize) throws WuicException {
+        final String operation = INLINE_OPERATION + maxSize;
+        String dataUri = memo.getText(request, nut, operation);
+
+        if (dataUri == null) {
+            // An empty text memorizes that the nut is not inlined
+            dataUri = "";
+
+            if (nut.getReferencedNuts() == null || nut.getReferencedNuts().isEmpty()) {
+                final byte[] content = NutUtils.readBytes(nut, maxSize);
+
+                if (content != null) {
+                    dataUri = "data:" + nut.getNutType().getMimeType() + ";base64," + StringUtils.encodeBase64(content);
+                }
+            }
+
+            memo.putText(request, nut, operation, dataUri);
+        }
+
+        if (dataUri.isEmpty()) {
+            return Boolean.FALSE;
+        }
+
+        replacement.append(dataUri);
+        return Boolean.TRUE;
+    }
+
     /**
      * <p>
      * Gets the pattern to find text to be replaced inside the lines.
      * </p>
      *
-     * @return the pattern to use
+     * @return the pattern given to the constructor, {@code null} if built without pattern
+     * @deprecated use {@link RegexLineInspector#getPattern()}
      */
-    public final Pattern getPattern() {
-        return pattern;
+    @Deprecated
+    public Pattern getPattern() {
+        return regexAdapter == null ? null : regexAdapter.getPattern();
     }
 
     /**
      * <p>
      * Computes the replacement to be made inside the text for the given {@code Matcher} which its {@code find()}
-     * method as just been called.
+     * method as just been called. This method is called only if the instance has been built with a pattern. By
+     * default, the matching text is kept as is.
      * </p>
      *
      * @param matcher the matcher which provides found text thanks to its {@code group()} method.
@@ -158,10 +328,47 @@ public abstract class LineInspector {
      * @param originalNut the original nut
      * @return the nut that was referenced in the matching text, {@code null} if the inspector did not perform any change
      * @throws WuicException if an exception occurs
+     * @deprecated extend {@link RegexLineInspector} instead
      */
-    public abstract List<Nut> appendTransformation(Matcher matcher,
-                                                   StringBuilder replacement,
-                                                   EngineRequest request,
-                                                   NutsHeap heap,
-                                                   Nut originalNut) throws WuicException;
+    @Deprecated
+    public List<Nut> appendTransformation(final Matcher matcher,
+                                          final StringBuilder replacement,
+                                          final EngineRequest request,
+                                          final NutsHeap heap,
+                                          final Nut originalNut) throws WuicException {
+        replacement.append(matcher.group());
+        return null;
+    }
+
+    /**
+     * <p>
+     * Inspects the given line and appends it to the specified builder with the transformations applied to the text
+     * referencing other nuts.
+     * </p>
+     *
+     * <p>
+     * This method must be overridden unless the instance has been built with a pattern, in which case each match is
+     * given to {@link #appendTransformation(Matcher, StringBuilder, EngineRequest, NutsHeap, Nut)}.
+     * </p>
+     *
+     * @param line the line to inspect
+     * @param out the builder where the transformed line is appended
+     * @param request the request that orders this transformation
+     * @param heap use when we need to create nut
+     * @param originalNut the original nut
+     * @return the nuts referenced in the line
+     * @throws WuicException if an exception occurs
+     */
+    public List<Nut> inspect(final String line,
+                             final StringBuilder out,
+                             final EngineRequest request,
+                             final NutsHeap heap,
+                             final Nut originalNut) throws WuicException {
+        if (regexAdapter == null) {
+            throw new BadArgumentException(new IllegalArgumentException(String.format(
+                    "%s must be built with a pattern or override inspect", getClass().getName())));
+        }
+
+        return regexAdapter.inspect(line, out, request, heap, originalNut);
+    }
 }
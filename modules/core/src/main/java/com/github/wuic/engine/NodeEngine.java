@@ -3,6 +3,9 @@ package com.github.wuic.engine;
 import com.github.wuic.NutType;
 import com.github.wuic.exception.WuicException;
 import com.github.wuic.exception.wrapper.BadArgumentException;
+import com.github.wuic.metric.Metrics;
+import com.github.wuic.metric.Span;
+import com.github.wuic.metric.Tracer;
 import com.github.wuic.nut.Nut;
 
 import java.util.*;
@@ -19,7 +22,7 @@ import java.util.*;
  * </p>
  *
  * @author Guillaume DROUET
- * @version 1.0
+ * @version 1.2
  * @since 0.4.4
  */
 public abstract class NodeEngine extends Engine {
@@ -143,8 +146,19 @@ public abstract class NodeEngine extends Engine {
                 return request.getNuts();
             }
         } else {
-            // Delegate to subclass
-            return internalParse(request);
+            final Metrics.Timing timing = Metrics.start();
+            final Span span = beginSpan(request);
+
+            try {
+                // Delegate to subclass
+                return internalParse(request);
+            } finally {
+                Tracer.end(span);
+
+                if (timing != null) {
+                    timing.stop(Metrics.Component.ENGINE, getClass().getSimpleName());
+                }
+            }
         }
     }
 
@@ -0,0 +1,348 @@
+/*
+ * "Copyright (c) 2014   Capgemini Technology Services (hereinafter "Capgemini")
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * -   The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Any failure to comply with the above shall automatically terminate the license
+ * and be construed as a breach of these Terms of Use causing significant harm to
+ * Capgemini.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Capgemini shall not be used in
+ * advertising or otherwise to promote the use or other dealings in this Software
+ * without prior written authorization from Capgemini.
+ *
+ * These Terms of Use are subject to French law.
+ *
+ * IMPORTANT NOTICE: The WUIC software implements software components governed by
+ * open source software licenses (BSD and Apache) of which CAPGEMINI is not the
+ * author or the editor. The rights granted on the said software components are
+ * governed by the specific terms and conditions specified by Apache 2.0 and BSD
+ * licenses."
+ */
+
+
+package com.github.wuic.engine;
+
+import com.github.wuic.exception.wrapper.StreamException;
+import com.github.wuic.nut.HeapChangeListener;
+import com.github.wuic.nut.Nut;
+import com.github.wuic.nut.NutsHeap;
+import com.github.wuic.util.NutUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>
+ * Memorizes the nuts resulting from the processing of a referenced nut. A nut referenced by many other nuts inside a
+ * workflow (for instance a CSS file imported by many stylesheets or an image used in many rules) is processed only once
+ * per version thanks to this class.
+ * </p>
+ *
+ * <p>
+ * An entry is identified by the referenced nut name, which contains the location it has been created from, its version
+ * and an operation that distinguishes different processing applied to the same nut. The resolved path and the version
+ * are not enough to share an entry between workflows, so entries are also isolated per workflow:
+ * <ul>
+ *     <li>the workflow ID and the context path are written inside the processed nuts, for instance in the URLs
+ *     rewritten inside a CSS</li>
+ *     <li>the prefix of the created nuts distinguishes the best effort process, which runs other engines</li>
+ *     <li>the heap ID identifies the heap this memo observes to remove the entries when paths are updated</li>
+ * </ul>
+ * When the heap of a workflow notifies an update of some paths, only the entries built from those paths are removed.
+ * All the entries are cleared if the updated paths are unknown.
+ * </p>
+ *
+ * <p>
+ * A text computed from a referenced nut, for instance the data URI embedding its content, can also be memorized.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @version 1.3
+ * @since 0.5.0
+ */
+public final class ReferencedNutMemo {
+
+    /**
+     * Logger.
+     */
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    /**
+     * Memorized nuts associated to their key for each workflow.
+     */
+    private final Map<String, WorkflowMemo> memoByWorkflow;
+
+    /**
+     * <p>
+     * Builds a new instance.
+     * </p>
+     */
+    public ReferencedNutMemo() {
+        memoByWorkflow = new HashMap<String, WorkflowMemo>();
+    }
+
+    /**
+     * <p>
+     * Gets the nuts memorized for the given nut and operation in the context of the specified request.
+     * </p>
+     *
+     * @param request the request
+     * @param nut the referenced nut
+     * @param operation the operation
+     * @return a copy of the memorized list, {@code null} if nothing is memorized
+     */
+    public List<Nut> get(final EngineRequest request, final Nut nut, final String operation) {
+        final WorkflowMemo workflowMemo;
+
+        synchronized (memoByWorkflow) {
+            workflowMemo = memoByWorkflow.get(workflowKey(request));
+        }
+
+        if (workflowMemo == null) {
+            return null;
+        }
+
+        final List<Nut> retval;
+
+        synchronized (workflowMemo.nuts) {
+            retval = workflowMemo.nuts.get(nutKey(nut, operation));
+        }
+
+        return retval == null ? null : new ArrayList<Nut>(retval);
+    }
+
+    /**
+     * <p>
+     * Memorizes the nuts resulting from the given operation applied to the specified nut in the context of the request.
+     * </p>
+     *
+     * @param request the request
+     * @param nut the referenced nut
+     * @param operation the operation
+     * @param result the nuts to memorize
+     * @throws StreamException if the heap can't be observed
+     */
+    public void put(final EngineRequest request, final Nut nut, final String operation, final List<Nut> result)
+            throws StreamException {
+        final WorkflowMemo workflowMemo = workflowMemo(request);
+        final List<Nut> graph = new ArrayList<Nut>(result.size() + 1);
+        graph.add(nut);
+        graph.addAll(result);
+
+        synchronized (workflowMemo.nuts) {
+            workflowMemo.nuts.put(nutKey(nut, operation), new ArrayList<Nut>(result));
+            workflowMemo.graphs.put(nutKey(nut, operation), graph);
+        }
+    }
+
+    /**
+     * <p>
+     * Gets the text memorized for the given nut and operation in the context of the specified request.
+     * </p>
+     *
+     * @param request the request
+     * @param nut the referenced nut
+     * @param operation the operation
+     * @return the memorized text, {@code null} if nothing is memorized
+     */
+    public String getText(final EngineRequest request, final Nut nut, final String operation) {
+        final WorkflowMemo workflowMemo;
+
+        synchronized (memoByWorkflow) {
+            workflowMemo = memoByWorkflow.get(workflowKey(request));
+        }
+
+        if (workflowMemo == null) {
+            return null;
+        }
+
+        synchronized (workflowMemo.nuts) {
+            return workflowMemo.texts.get(nutKey(nut, operation));
+        }
+    }
+
+    /**
+     * <p>
+     * Memorizes the text computed by the given operation from the specified nut in the context of the request.
+     * </p>
+     *
+     * @param request the request
+     * @param nut the referenced nut
+     * @param operation the operation
+     * @param text the text to memorize
+     * @throws StreamException if the heap can't be observed
+     */
+    public void putText(final EngineRequest request, final Nut nut, final String operation, final String text)
+            throws StreamException {
+        final WorkflowMemo workflowMemo = workflowMemo(request);
+
+        synchronized (workflowMemo.nuts) {
+            workflowMemo.texts.put(nutKey(nut, operation), text);
+            workflowMemo.graphs.put(nutKey(nut, operation), Arrays.asList(nut));
+        }
+    }
+
+    /**
+     * <p>
+     * Gets the memo of the workflow the given request belongs to and observes its heap.
+     * </p>
+     *
+     * @param request the request
+     * @return the workflow memo
+     * @throws StreamException if the heap can't be observed
+     */
+    private WorkflowMemo workflowMemo(final EngineRequest request) throws StreamException {
+        final String workflowKey = workflowKey(request);
+        WorkflowMemo retval;
+
+        synchronized (memoByWorkflow) {
+            retval = memoByWorkflow.get(workflowKey);
+
+            if (retval == null) {
+                retval = new WorkflowMemo(workflowKey);
+                memoByWorkflow.put(workflowKey, retval);
+            }
+        }
+
+        // Heap keeps its listeners in a set, the same memo is registered only once
+        request.getHeap().addObserver(retval);
+
+        return retval;
+    }
+
+    /**
+     * <p>
+     * Computes the key isolating the entries of the workflow the given request belongs to. The key is composed of the
+     * parts of the request the processed nuts depend on and of the ID of the observed heap.
+     * </p>
+     *
+     * @param request the request
+     * @return the key
+     */
+    private static String workflowKey(final EngineRequest request) {
+        return new StringBuilder(request.getWorkflowId())
+                .append('|').append(request.getContextPath())
+                .append('|').append(request.getPrefixCreatedNut())
+                .append('|').append(request.getHeap().getId())
+                .toString();
+    }
+
+    /**
+     * <p>
+     * Computes the key identifying the given operation applied to the given nut.
+     * </p>
+     *
+     * @param nut the nut
+     * @param operation the operation
+     * @return the key
+     */
+    private static String nutKey(final Nut nut, final String operation) {
+        return new StringBuilder(nut.getName())
+                .append('|').append(nut.getVersionNumber())
+                .append('|').append(operation)
+                .toString();
+    }
+
+    /**
+     * <p>
+     * The nuts memorized for a particular workflow. Invalidated when the workflow's heap is updated.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @version 1.2
+     * @since 0.5.0
+     */
+    private final class WorkflowMemo implements HeapChangeListener {
+
+        /**
+         * The key of this workflow.
+         */
+        private final String workflowKey;
+
+        /**
+         * The memorized nuts.
+         */
+        private final Map<String, List<Nut>> nuts;
+
+        /**
+         * The memorized texts.
+         */
+        private final Map<String, String> texts;
+
+        /**
+         * The referenced nut and the memorized nuts for each key, used to find the entries depending on a path.
+         */
+        private final Map<String, List<Nut>> graphs;
+
+        /**
+         * <p>
+         * Builds a new instance.
+         * </p>
+         *
+         * @param key the workflow key
+         */
+        private WorkflowMemo(final String key) {
+            workflowKey = key;
+            nuts = new HashMap<String, List<Nut>>();
+            texts = new HashMap<String, String>();
+            graphs = new HashMap<String, List<Nut>>();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void nutUpdated(final NutsHeap heap) {
+            log.debug("Heap {} updated, clearing referenced nuts memorized for {}", heap.getId(), workflowKey);
+
+            synchronized (nuts) {
+                nuts.clear();
+                texts.clear();
+                graphs.clear();
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void nutsUpdated(final NutsHeap heap, final Set<String> paths) {
+            log.debug("Paths {} updated in heap {}, removing referenced nuts memorized for {}", paths, heap.getId(), workflowKey);
+
+            synchronized (nuts) {
+                for (final Iterator<Map.Entry<String, List<Nut>>> it = graphs.entrySet().iterator(); it.hasNext();) {
+                    final Map.Entry<String, List<Nut>> entry = it.next();
+
+                    if (NutUtils.dependsOn(entry.getValue(), paths)) {
+                        nuts.remove(entry.getKey());
+                        texts.remove(entry.getKey());
+                        it.remove();
+                    }
+                }
+            }
+        }
+    }
+}
@@ -41,6 +41,7 @@ import com.github.wuic.exception.wrapper.StreamException;
 import com.github.wuic.nut.Nut;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * <p>
@@ -57,24 +58,14 @@ import java.util.List;
  * </p>
  * 
  * @author Guillaume DROUET
- * @version 1.4
+ * @version 1.5
  * @since 0.2.0
  */
 public interface SpriteProvider {
 
     /**
      * <p>
-     * Registers a new region in the image.
-     * </p>
-     * 
-     * @param region the region
-     * @param name the region name
-     */
-    void addRegion(Region region, String name);
-    
-    /**
-     * <p>
-     * Get the sprite of all the added images in a map associating
+     * Get the sprite of all the given regions in a map associating
      * a {@link com.github.wuic.NutType} as key a {@link com.github.wuic.nut.Nut} as value.
      * </p>
      * 
@@ -83,22 +74,21 @@ public interface SpriteProvider {
      * {@link com.github.wuic.NutType} which helps
      * to determinate the language used to represent them. 
      * </p>
+     *
+     * <p>
+     * The regions and the image name are given for each invocation, so an implementation has no state and a single
+     * instance can be shared by concurrent requests.
+     * </p>
      * 
      * @param url of the final image
      * @param workflowId the workflow ID
      * @param nutNamePrefix the prefix to append to the sprite nut name
+     * @param image the image name
+     * @param regions the regions in the image associated to their name, in declaration order
      * @param originals the original nuts
      * @return a nut representing the sprite path
      * @throws com.github.wuic.exception.wrapper.StreamException if an I/O error occurs while aggregating images
      */
-    Nut getSprite(String url, String workflowId, String nutNamePrefix, List<Nut> originals) throws StreamException;
-
-    /**
-     * <p>
-     * Initializes this provider with a new image. Previous regions will be cleared.
-     * </p>
-     * 
-     * @param imageName the new image name
-     */
-    void init(String imageName);
+    Nut getSprite(String url, String workflowId, String nutNamePrefix, String image, Map<String, Region> regions, List<Nut> originals)
+            throws StreamException;
 }
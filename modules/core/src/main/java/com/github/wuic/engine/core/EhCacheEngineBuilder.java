@@ -46,6 +46,7 @@ import com.github.wuic.engine.impl.ehcache.EhCacheEngine;
 import com.github.wuic.engine.setter.BestEffortPropertySetter;
 import com.github.wuic.engine.setter.CachePropertySetter;
 import com.github.wuic.engine.setter.CacheProviderClassPropertySetter;
+import com.github.wuic.engine.setter.MaxStalenessPropertySetter;
 import com.github.wuic.exception.BuilderPropertyNotSupportedException;
 import com.github.wuic.exception.wrapper.BadArgumentException;
 
@@ -55,7 +56,7 @@ import com.github.wuic.exception.wrapper.BadArgumentException;
  * </p>
  *
  * @author Guillaume DROUET
- * @version 1.1
+ * @version 1.2
  * @since 0.4.0
  */
 public class EhCacheEngineBuilder extends AbstractEngineBuilder {
@@ -69,7 +70,8 @@ public class EhCacheEngineBuilder extends AbstractEngineBuilder {
         super();
         addPropertySetter(new CachePropertySetter(this),
                 new CacheProviderClassPropertySetter(this),
-                new BestEffortPropertySetter(this));
+                new BestEffortPropertySetter(this),
+                new MaxStalenessPropertySetter(this));
     }
 
     /**
@@ -79,9 +81,11 @@ public class EhCacheEngineBuilder extends AbstractEngineBuilder {
     protected Engine internalBuild() throws BuilderPropertyNotSupportedException {
         try {
             final Object cacheProvider = Class.forName(property(ApplicationConfig.CACHE_PROVIDER_CLASS).toString()).newInstance();
-            return new EhCacheEngine((Boolean) property(ApplicationConfig.CACHE),
+            final EhCacheEngine retval = new EhCacheEngine((Boolean) property(ApplicationConfig.CACHE),
                     ((WuicEhcacheProvider) cacheProvider).getCache(),
                     (Boolean) property(ApplicationConfig.BEST_EFFORT));
+            retval.setMaxStaleness((Integer) property(ApplicationConfig.MAX_STALENESS));
+            return retval;
         } catch (InstantiationException ie) {
             throw new BadArgumentException(new IllegalArgumentException(ie));
         } catch (IllegalAccessException iae) {
@@ -43,6 +43,7 @@ import com.github.wuic.engine.AbstractEngineBuilder;
 import com.github.wuic.engine.Engine;
 import com.github.wuic.engine.impl.embedded.HtmlInspectorEngine;
 import com.github.wuic.engine.setter.CharsetPropertySetter;
+import com.github.wuic.engine.setter.InlineMaxSizePropertySetter;
 import com.github.wuic.engine.setter.InspectPropertySetter;
 import com.github.wuic.exception.BuilderPropertyNotSupportedException;
 
@@ -52,7 +53,7 @@ import com.github.wuic.exception.BuilderPropertyNotSupportedException;
  * </p>
  *
  * @author Guillaume DROUET
- * @version 1.0
+ * @version 1.1
  * @since 0.4.4
  */
 public class HtmlInspectorEngineBuilder extends AbstractEngineBuilder {
@@ -66,6 +67,7 @@ public class HtmlInspectorEngineBuilder extends AbstractEngineBuilder {
         super();
         addPropertySetter(new InspectPropertySetter(this));
         addPropertySetter(new CharsetPropertySetter(this));
+        addPropertySetter(new InlineMaxSizePropertySetter(this));
     }
 
     /**
@@ -75,6 +77,7 @@ public class HtmlInspectorEngineBuilder extends AbstractEngineBuilder {
     protected Engine internalBuild() throws BuilderPropertyNotSupportedException {
         return new HtmlInspectorEngine(contextBuilder().getFilters(),
                 (Boolean) property(ApplicationConfig.INSPECT),
-                ((String) property(ApplicationConfig.CHARSET)));
+                ((String) property(ApplicationConfig.CHARSET)),
+                (Integer) property(ApplicationConfig.INLINE_MAX_SIZE));
     }
 }
@@ -44,6 +44,8 @@ import com.github.wuic.engine.Engine;
 import com.github.wuic.engine.impl.embedded.MemoryMapCacheEngine;
 import com.github.wuic.engine.setter.BestEffortPropertySetter;
 import com.github.wuic.engine.setter.CachePropertySetter;
+import com.github.wuic.engine.setter.MaxStalenessPropertySetter;
+import com.github.wuic.engine.setter.OffHeapSizePropertySetter;
 import com.github.wuic.engine.setter.TimeToLivePropertySetter;
 import com.github.wuic.exception.BuilderPropertyNotSupportedException;
 
@@ -53,7 +55,7 @@ import com.github.wuic.exception.BuilderPropertyNotSupportedException;
  * </p>
  *
  * @author Guillaume DROUET
- * @version 1.1
+ * @version 1.3
  * @since 0.4.0
  */
 public class MemoryMapCacheEngineBuilder extends AbstractEngineBuilder {
@@ -67,7 +69,9 @@ public class MemoryMapCacheEngineBuilder extends AbstractEngineBuilder {
         super();
         addPropertySetter(new CachePropertySetter(this),
                 new TimeToLivePropertySetter(this),
-                new BestEffortPropertySetter(this));
+                new BestEffortPropertySetter(this),
+                new OffHeapSizePropertySetter(this),
+                new MaxStalenessPropertySetter(this));
     }
 
     /**
@@ -75,8 +79,11 @@ public class MemoryMapCacheEngineBuilder extends AbstractEngineBuilder {
      */
     @Override
     protected Engine internalBuild() throws BuilderPropertyNotSupportedException {
-        return new MemoryMapCacheEngine((Boolean) property(ApplicationConfig.CACHE),
+        final MemoryMapCacheEngine retval = new MemoryMapCacheEngine((Boolean) property(ApplicationConfig.CACHE),
                 (Integer) property(ApplicationConfig.TIME_TO_LIVE),
-                (Boolean) property(ApplicationConfig.BEST_EFFORT));
+                (Boolean) property(ApplicationConfig.BEST_EFFORT),
+                (Integer) property(ApplicationConfig.OFF_HEAP_SIZE));
+        retval.setMaxStaleness((Integer) property(ApplicationConfig.MAX_STALENESS));
+        return retval;
     }
 }
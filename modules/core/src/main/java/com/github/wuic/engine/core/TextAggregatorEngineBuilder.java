@@ -43,6 +43,9 @@ import com.github.wuic.engine.AbstractEngineBuilder;
 import com.github.wuic.engine.Engine;
 import com.github.wuic.engine.impl.embedded.CGTextAggregatorEngine;
 import com.github.wuic.engine.setter.AggregatePropertySetter;
+import com.github.wuic.engine.setter.BundleMaxSizePropertySetter;
+import com.github.wuic.engine.setter.SplitByHeapPropertySetter;
+import com.github.wuic.engine.setter.VolatileChangeCountPropertySetter;
 import com.github.wuic.exception.BuilderPropertyNotSupportedException;
 
 /**
@@ -51,7 +54,7 @@ import com.github.wuic.exception.BuilderPropertyNotSupportedException;
  * </p>
  *
  * @author Guillaume DROUET
- * @version 1.0
+ * @version 1.1
  * @since 0.4.0
  */
 public class TextAggregatorEngineBuilder extends AbstractEngineBuilder {
@@ -64,6 +67,9 @@ public class TextAggregatorEngineBuilder extends AbstractEngineBuilder {
     public TextAggregatorEngineBuilder() {
         super();
         addPropertySetter(new AggregatePropertySetter(this));
+        addPropertySetter(new BundleMaxSizePropertySetter(this));
+        addPropertySetter(new VolatileChangeCountPropertySetter(this));
+        addPropertySetter(new SplitByHeapPropertySetter(this));
     }
 
     /**
@@ -71,6 +77,9 @@ public class TextAggregatorEngineBuilder extends AbstractEngineBuilder {
      */
     @Override
     protected Engine internalBuild() throws BuilderPropertyNotSupportedException {
-        return new CGTextAggregatorEngine((Boolean) property(ApplicationConfig.AGGREGATE));
+        return new CGTextAggregatorEngine((Boolean) property(ApplicationConfig.AGGREGATE),
+                (Integer) property(ApplicationConfig.BUNDLE_MAX_SIZE),
+                (Integer) property(ApplicationConfig.VOLATILE_CHANGE_COUNT),
+                (Boolean) property(ApplicationConfig.SPLIT_BY_HEAP));
     }
 }
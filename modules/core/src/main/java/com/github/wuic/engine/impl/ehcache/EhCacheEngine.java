@@ -40,6 +40,8 @@ package com.github.wuic.engine.impl.ehcache;
 
 import com.github.wuic.engine.EngineRequest;
 import com.github.wuic.engine.impl.embedded.AbstractCacheEngine;
+import com.github.wuic.metric.Gauge;
+import com.github.wuic.metric.Metrics;
 
 import net.sf.ehcache.Cache;
 import net.sf.ehcache.Element;
@@ -49,9 +51,14 @@ import net.sf.ehcache.Element;
  * This {@link com.github.wuic.engine.Engine engine} reads from a cache provided by EhCache the nuts associated to a
  * workflow to be processed.
  * </p>
+ *
+ * <p>
+ * When the cache overflows to disk or is replicated, the cached {@link CacheResult results} are serialized with the
+ * compact format defined by {@link com.github.wuic.engine.impl.embedded.CacheResultCodec}.
+ * </p>
  * 
  * @author Guillaume DROUET
- * @version 1.9
+ * @version 1.12
  * @since 0.1.1
  */
 public class EhCacheEngine extends AbstractCacheEngine {
@@ -73,6 +80,17 @@ public class EhCacheEngine extends AbstractCacheEngine {
     public EhCacheEngine(final Boolean work, final Cache cache, final Boolean bestEffort) {
         super(work, bestEffort);
         ehCache = cache;
+
+        Metrics.gauge(Metrics.Component.CACHE, getMetricName(), "entries", new Gauge() {
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public long value() {
+                return ehCache.getSize();
+            }
+        });
     }
 
     /**
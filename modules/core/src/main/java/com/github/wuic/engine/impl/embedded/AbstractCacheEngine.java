@@ -43,22 +43,32 @@ import com.github.wuic.engine.EngineType;
 import com.github.wuic.engine.HeadEngine;
 import com.github.wuic.exception.WuicException;
 import com.github.wuic.exception.wrapper.BadArgumentException;
-import com.github.wuic.nut.HeapListener;
+import com.github.wuic.metric.Gauge;
+import com.github.wuic.metric.Metrics;
+import com.github.wuic.metric.Tracer;
+import com.github.wuic.nut.HeapChangeListener;
 import com.github.wuic.nut.Nut;
 import com.github.wuic.nut.NutsHeap;
 import com.github.wuic.nut.PrefixedNut;
 import com.github.wuic.nut.core.ByteArrayNut;
+import com.github.wuic.util.DemandPrioritizedQueue;
 import com.github.wuic.util.NumberUtils;
 import com.github.wuic.util.NutUtils;
 import com.github.wuic.util.WuicScheduledThreadPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.*;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * <p>
@@ -76,20 +86,47 @@ import java.util.concurrent.Future;
  * </p>
  *
  * <p>
+ * When a {@link #setMaxStaleness(int) max staleness} is specified, an entry invalidated by a change in a heap is not
+ * removed. The entry is marked as stale and is still served while exactly one background task recomputes it. The fresh
+ * result replaces the stale entry when it is ready. If the entry remains stale more than the max staleness, requests
+ * wait for the end of the recomputation.
+ * </p>
+ *
+ * <p>
  * The cache itself is abstract here and it needs to be provided by subclass.
  * </p>
  *
+ * <p>
+ * Each instance publishes its metrics under its own {@link #getMetricName() name}, so the caches of different
+ * workflows are not merged. The metrics are released when the engine is {@link #shutdown() shutdown}.
+ * </p>
+ *
  * @author Guillaume DROUET
- * @version 1.3
+ * @version 1.13
  * @since 0.4.0
  */
 public abstract class AbstractCacheEngine extends HeadEngine {
 
+    /**
+     * Prefix of the names of the nuts resulting from a best effort process.
+     */
+    public static final String BEST_EFFORT_PREFIX = "best-effort";
+
+    /**
+     * Number of created instances, used to name the metrics of each one.
+     */
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+
     /**
      * Logger.
      */
     private final Logger log = LoggerFactory.getLogger(this.getClass());
 
+    /**
+     * The name of the component publishing the metrics of this instance.
+     */
+    private final String metricName;
+
     /**
      * If cache or not.
      */
@@ -110,6 +147,21 @@ public abstract class AbstractCacheEngine extends HeadEngine {
      */
     private final Map<EngineRequest.Key, ParseBestEffortCall> parsingBestEffort;
 
+    /**
+     * The stale entries being recomputed asynchronously.
+     */
+    private final Map<EngineRequest.Key, RevalidateCall> revalidating;
+
+    /**
+     * The default parsing waiting for a thread, the most requested workflows being processed first.
+     */
+    private final DemandPrioritizedQueue<EngineRequest.Key, Map<String, Nut>> background;
+
+    /**
+     * The number of seconds a stale entry can be served, stale entries are immediately removed if lower or equals to 0.
+     */
+    private int maxStaleness;
+
     /**
      * <p>
      * Builds a new engine.
@@ -123,6 +175,54 @@ public abstract class AbstractCacheEngine extends HeadEngine {
         bestEffort = be;
         parsingDefault = new HashMap<EngineRequest.Key, Future<Map<String, Nut>>>();
         parsingBestEffort = new HashMap<EngineRequest.Key, ParseBestEffortCall>();
+        revalidating = new HashMap<EngineRequest.Key, RevalidateCall>();
+        background = new DemandPrioritizedQueue<EngineRequest.Key, Map<String, Nut>>(WuicScheduledThreadPool.Lane.PROCESSING);
+        maxStaleness = -1;
+        metricName = getClass().getSimpleName() + '-' + INSTANCES.incrementAndGet();
+
+        Metrics.gauge(Metrics.Component.CACHE, metricName, "pendingProcessing", new Gauge() {
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public long value() {
+                return background.size();
+            }
+        });
+    }
+
+    /**
+     * <p>
+     * Gets the name of the component publishing the metrics of this engine. The name is unique for each instance.
+     * </p>
+     *
+     * @return the metric name
+     */
+    public String getMetricName() {
+        return metricName;
+    }
+
+    /**
+     * <p>
+     * Releases the metrics of this engine.
+     * </p>
+     */
+    @Override
+    public void shutdown() {
+        Metrics.unregister(Metrics.Component.CACHE, metricName);
+    }
+
+    /**
+     * <p>
+     * Sets the number of seconds a stale entry can be served while it is recomputed. If the value is lower or equals to
+     * 0, entries are removed as soon as they are invalidated.
+     * </p>
+     *
+     * @param seconds the max staleness
+     */
+    public void setMaxStaleness(final int seconds) {
+        maxStaleness = seconds;
     }
 
     /**
@@ -136,15 +236,22 @@ public abstract class AbstractCacheEngine extends HeadEngine {
         List<Nut> retval;
 
         final EngineRequest.Key key = request.getKey();
+        background.hit(key);
+        awaitIfTooStale(key);
         final CacheResult value = getFromCache(key);
 
         // Nuts exist in cache, returns them
         if (value != null) {
+            Metrics.count(Metrics.Component.CACHE, metricName, "hits", 1L);
+            Tracer.tag("cache", "hit");
             log.info("Nuts for request '{}' found in cache", request);
             retval = new ArrayList<Nut>((value.getDefaultResult() != null ? value.getDefaultResult() : value.getBestEffortResult()).values());
         } else {
             // Nut does not exists
-            request.getHeap().addObserver(new InvalidateCache(key));
+            Metrics.count(Metrics.Component.CACHE, metricName, "misses", 1L);
+            Tracer.tag("cache", "miss");
+            Tracer.tag("bestEffort", bestEffort.toString());
+            request.getHeap().addObserver(new InvalidateCache(request, key));
             final Map<String, Nut> toCache;
 
             // We are in best effort, do the minimal of operations and return the resulting nut
@@ -153,10 +260,10 @@ public abstract class AbstractCacheEngine extends HeadEngine {
 
                 for (final Nut nut : request.getNuts()) {
                     // Nut will differ from full processed version thanks to its prefix
-                    prefixed.add(new PrefixedNut(nut, "best-effort"));
+                    prefixed.add(new PrefixedNut(nut, BEST_EFFORT_PREFIX));
                 }
 
-                retval = runChains(new EngineRequest(request.getWorkflowId(), prefixed, request, "best-effort"), Boolean.TRUE);
+                retval = runChains(new EngineRequest(request.getWorkflowId(), prefixed, request, BEST_EFFORT_PREFIX), Boolean.TRUE);
 
                 final Map<String, Nut> bestEffortResult = new HashMap<String, Nut>(retval.size());
 
@@ -168,8 +275,14 @@ public abstract class AbstractCacheEngine extends HeadEngine {
                 synchronized (parsingBestEffort) {
                     if (parsingBestEffort.get(key) == null) {
                         final ParseBestEffortCall call = new ParseBestEffortCall(request, bestEffortResult);
-                        WuicScheduledThreadPool.getInstance().executeAsap(call);
-                        parsingBestEffort.put(key, call);
+
+                        try {
+                            WuicScheduledThreadPool.getInstance().executeAsap(WuicScheduledThreadPool.Lane.PROCESSING, call);
+                            parsingBestEffort.put(key, call);
+                        } catch (RejectedExecutionException ree) {
+                            // Next request will try again
+                            log.warn("Background processing is full, '{}' will not be cached", key, ree);
+                        }
                     }
                 }
             } else {
@@ -215,9 +328,10 @@ public abstract class AbstractCacheEngine extends HeadEngine {
             final EngineRequest.Key key = request.getKey();
             final Future<Map<String, Nut>> future;
             final Map<String, Nut> value;
+            background.hit(key);
 
             // Indicates if we are looking for a nut from best effort process or not
-            final Boolean isBestEffort = path.startsWith("best-effort");
+            final Boolean isBestEffort = path.startsWith(BEST_EFFORT_PREFIX);
 
             if (isBestEffort) {
                 final ParseBestEffortCall call;
@@ -243,9 +357,14 @@ public abstract class AbstractCacheEngine extends HeadEngine {
                 }
 
                 if (future != null) {
+                    Tracer.tag("cache", "awaiting processing");
+
+                    // No need to wait for the job to be dispatched if it's still pending
+                    background.runIfPending(key);
                     waitAndGet(future);
                 }
 
+                awaitIfTooStale(key);
                 final CacheResult result = getFromCache(key);
 
                 if (result == null) {
@@ -293,7 +412,7 @@ public abstract class AbstractCacheEngine extends HeadEngine {
      * Waits for the end of the given future and returns the result. If any {@link InterruptedException} occurs, then it
      * is wrapped in a {@link BadArgumentException} which is unchecked. If any {@link ExecutionException} occurs, then it
      * is also wrapped to a {@link BadArgumentException} except if its cause IS-A {@link WuicException}. In that case,
-     * the cause is just re-thrown.
+     * the cause is just re-thrown. If the future has been cancelled, {@code null} is returned.
      * </p>
      *
      * @param future the future to wait for
@@ -303,6 +422,8 @@ public abstract class AbstractCacheEngine extends HeadEngine {
     private Map<String, Nut> waitAndGet(final Future<Map<String, Nut>> future) throws WuicException {
         try {
             return future.get();
+        } catch (CancellationException ce) {
+            return null;
         } catch (InterruptedException ie) {
             throw new BadArgumentException(new IllegalArgumentException(ie));
         } catch (ExecutionException ee) {
@@ -314,6 +435,30 @@ public abstract class AbstractCacheEngine extends HeadEngine {
         }
     }
 
+    /**
+     * <p>
+     * Waits for the recomputation of the entry associated to the given key if it is stale for more than the max
+     * staleness.
+     * </p>
+     *
+     * @param key the entry key
+     * @throws WuicException if the recomputation fails
+     */
+    private void awaitIfTooStale(final EngineRequest.Key key) throws WuicException {
+        final Future<Map<String, Nut>> future;
+
+        synchronized (revalidating) {
+            final RevalidateCall call = revalidating.get(key);
+            future = call != null && System.currentTimeMillis() - call.staleSince > maxStaleness * (long) NumberUtils.ONE_THOUSAND ?
+                    call.future : null;
+        }
+
+        if (future != null) {
+            log.info("Entry '{}' is stale for too long, waiting for its recomputation", key);
+            waitAndGet(future);
+        }
+    }
+
     /**
      * <p>
      * Puts the given list of nuts associated to the specified request to the cache.
@@ -346,14 +491,29 @@ public abstract class AbstractCacheEngine extends HeadEngine {
     /**
      * <p>
      * Internal class that invalidates a cache entry identified with a workflow ID when it's notified that a nut has been
-     * updated in an associated heap.
+     * updated in an associated heap. If a max staleness is specified, the entry is recomputed in background instead of
+     * being removed.
+     * </p>
+     *
+     * <p>
+     * When the heap notifies the updated paths, the entry is invalidated only if it has been built from one of them,
+     * either as a nut of the request or as a nut of the cached graph (for instance an image referenced by a stylesheet).
+     * </p>
+     *
+     * <p>
+     * A full processing of the entry still waiting for a thread is cancelled since it would work on outdated nuts.
      * </p>
      *
      * @author Guillaume DROUET
-     * @version 1.0
+     * @version 1.4
      * @since 0.4.0
      */
-    private final class InvalidateCache implements HeapListener {
+    private final class InvalidateCache implements HeapChangeListener {
+
+        /**
+         * The request which has produced the entry.
+         */
+        private EngineRequest request;
 
         /**
          * The request key as cache key.
@@ -365,9 +525,11 @@ public abstract class AbstractCacheEngine extends HeadEngine {
          * Builds a new instance.
          * </p>
          *
+         * @param r the request
          * @param k the request key
          */
-        private InvalidateCache(final EngineRequest.Key k) {
+        private InvalidateCache(final EngineRequest r, final EngineRequest.Key k) {
+            request = r;
             key = k;
         }
 
@@ -376,17 +538,184 @@ public abstract class AbstractCacheEngine extends HeadEngine {
          */
         @Override
         public void nutUpdated(final NutsHeap heap) {
-            removeFromCache(key);
+            if (background.cancel(key)) {
+                log.info("Heap updated before background processing of '{}', cancelling it", key);
+
+                synchronized (parsingDefault) {
+                    parsingDefault.remove(key);
+                }
+            }
+
+            if (maxStaleness <= 0) {
+                Metrics.count(Metrics.Component.CACHE, metricName, "evictions", 1L);
+                removeFromCache(key);
+                return;
+            }
+
+            synchronized (revalidating) {
+                final RevalidateCall call = revalidating.get(key);
+
+                // Already recomputing: recompute again when finished to take this change in consideration
+                if (call != null) {
+                    call.again = Boolean.TRUE;
+                } else {
+                    revalidate(new RevalidateCall(this, System.currentTimeMillis()));
+                }
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void nutsUpdated(final NutsHeap heap, final Set<String> paths) {
+            final CacheResult cached = getFromCache(key);
+
+            // Entry is kept as is if no nut it depends on has been updated
+            if (cached != null && !dependsOn(cached, paths)) {
+                log.debug("Entry '{}' does not depend on updated paths {}, keeping it", key, paths);
+            } else {
+                nutUpdated(heap);
+            }
+        }
+
+        /**
+         * <p>
+         * Indicates if the given cached entry or the request which has produced it depends on one of the given paths.
+         * </p>
+         *
+         * @param cached the cached entry
+         * @param paths the paths
+         * @return {@code true} if entry depends on a path, {@code false} otherwise
+         */
+        private Boolean dependsOn(final CacheResult cached, final Set<String> paths) {
+            final List<Nut> graph = new ArrayList<Nut>(request.getNuts());
+
+            if (cached.getDefaultResult() != null) {
+                graph.addAll(cached.getDefaultResult().values());
+            }
+
+            if (cached.getBestEffortResult() != null) {
+                graph.addAll(cached.getBestEffortResult().values());
+            }
+
+            return NutUtils.dependsOn(graph, paths);
         }
     }
 
     /**
      * <p>
-     * This callable put the best effort result into the cache.
+     * Schedules the given recomputation. Caller must own the lock on {@link #revalidating}.
+     * </p>
+     *
+     * @param call the recomputation
+     */
+    private void revalidate(final RevalidateCall call) {
+        log.info("Entry '{}' is stale, recomputing it in background", call.invalidate.key);
+        Metrics.count(Metrics.Component.CACHE, metricName, "revalidations", 1L);
+        revalidating.put(call.invalidate.key, call);
+
+        try {
+            call.future = WuicScheduledThreadPool.getInstance().executeAsap(WuicScheduledThreadPool.Lane.WARM_UP, call);
+        } catch (RejectedExecutionException ree) {
+            // Can't recompute in background, the entry will be computed by next request
+            log.warn("Background recomputation is full, removing stale entry '{}'", call.invalidate.key, ree);
+            revalidating.remove(call.invalidate.key);
+            removeFromCache(call.invalidate.key);
+        }
+    }
+
+    /**
+     * <p>
+     * This callable recomputes a stale entry and replaces it in the cache.
      * </p>
      *
      * @author Guillaume DROUET
      * @version 1.0
+     * @since 0.5.0
+     */
+    private final class RevalidateCall implements Callable<Map<String, Nut>> {
+
+        /**
+         * The listener which has been notified.
+         */
+        private final InvalidateCache invalidate;
+
+        /**
+         * When the entry became stale.
+         */
+        private final long staleSince;
+
+        /**
+         * The result of the scheduled call.
+         */
+        private Future<Map<String, Nut>> future;
+
+        /**
+         * The entry has been invalidated again during the recomputation.
+         */
+        private Boolean again;
+
+        /**
+         * <p>
+         * Builds a new instance.
+         * </p>
+         *
+         * @param i the notified listener
+         * @param since when the entry became stale
+         */
+        private RevalidateCall(final InvalidateCache i, final long since) {
+            invalidate = i;
+            staleSince = since;
+            again = Boolean.FALSE;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Map<String, Nut> call() throws WuicException {
+            final EngineRequest.Key key = invalidate.key;
+
+            try {
+                final NutsHeap heap = invalidate.request.getHeap();
+                final EngineRequest fresh = new EngineRequest(heap.getNuts(), heap, invalidate.request);
+                final Map<String, Nut> retval = new ParseDefaultCall(fresh).call();
+
+                // The nuts of the workflow have changed: the stale entry can't be requested anymore
+                if (!fresh.getKey().equals(key)) {
+                    removeFromCache(key);
+
+                    synchronized (revalidating) {
+                        invalidate.request = fresh;
+                        invalidate.key = fresh.getKey();
+                    }
+                }
+
+                return retval;
+            } catch (WuicException we) {
+                log.error(String.format("Unable to recompute stale entry '%s', removing it", key), we);
+                removeFromCache(key);
+                throw we;
+            } finally {
+                synchronized (revalidating) {
+                    revalidating.remove(key);
+
+                    if (again) {
+                        revalidate(new RevalidateCall(invalidate, staleSince));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * This callable put the best effort result into the cache.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @version 1.3
      * @since 0.4.4
      */
     private final class ParseBestEffortCall implements Callable<Map<String, Nut>> {
@@ -421,10 +750,11 @@ public abstract class AbstractCacheEngine extends HeadEngine {
         public Map<String, Nut> call() throws WuicException {
             try {
                 final Map<String, Nut> toCache = new LinkedHashMap<String, Nut>(bestEffortResult.size());
-                final List<Nut> nuts = new ArrayList<Nut>(bestEffortResult.values());
 
-                for (final Nut nut : nuts) {
-                    final Nut byteArray = ByteArrayNut.toByteArrayNut(nut);
+                // Nuts shared by several graphs are converted once
+                final List<Nut> nuts = ByteArrayNut.toByteArrayNut(new ArrayList<Nut>(bestEffortResult.values()));
+
+                for (final Nut byteArray : nuts) {
                     if (byteArray.isCacheable()) {
                         toCache.put(byteArray.getName(), byteArray);
 
@@ -441,11 +771,19 @@ public abstract class AbstractCacheEngine extends HeadEngine {
                 log.debug("Caching nut with key '{}'", request);
                 putToCache(request.getKey(), new CacheResult(toCache, null));
 
-                // Now let's parse the default result asynchronously
-                final Future<Map<String, Nut>> future = WuicScheduledThreadPool.getInstance().executeAsap(new ParseDefaultCall(request));
+                // Now let's parse the default result asynchronously, by order of demand
+                try {
+                    final Future<Map<String, Nut>> future = background.submit(request.getKey(), new ParseDefaultCall(request));
 
-                synchronized (parsingDefault) {
-                    parsingDefault.put(request.getKey(), future);
+                    synchronized (parsingDefault) {
+                        // Job could have been already executed by the caller
+                        if (!future.isDone()) {
+                            parsingDefault.put(request.getKey(), future);
+                        }
+                    }
+                } catch (RejectedExecutionException ree) {
+                    log.warn("Background processing is full, processing '{}' in current thread", request.getKey(), ree);
+                    new ParseDefaultCall(request).call();
                 }
 
                 return toCache;
@@ -464,7 +802,7 @@ public abstract class AbstractCacheEngine extends HeadEngine {
      * </p>
      *
      * @author Guillaume DROUET
-     * @version 1.0
+     * @version 1.2
      * @since 0.4.4
      */
     private final class ParseDefaultCall implements Callable<Map<String, Nut>> {
@@ -494,20 +832,27 @@ public abstract class AbstractCacheEngine extends HeadEngine {
                 final List<Nut> nuts = runChains(new EngineRequest(request), Boolean.FALSE);
                 final Map<String, Nut> toCache = new LinkedHashMap<String, Nut>(nuts.size());
 
+                final List<Nut> cacheable = new ArrayList<Nut>(nuts.size());
+
                 for (final Nut nut : nuts) {
                     if (nut.isCacheable()) {
-                        toCache.put(nut.getName(), ByteArrayNut.toByteArrayNut(nut));
+                        cacheable.add(nut);
                     }
                 }
 
+                // Nuts shared by several graphs are converted once
+                for (final Nut nut : ByteArrayNut.toByteArrayNut(cacheable)) {
+                    toCache.put(nut.getName(), nut);
+                }
+
                 CacheResult cached = getFromCache(request.getKey());
 
                 // Not in best effort mode
                 if (cached == null) {
                     cached = new CacheResult(null, toCache);
                 } else {
-                    // Add the default result to the cache
-                    cached.setDefaultResult(toCache);
+                    // Add the default result to the cache, a new instance replaces a stale result atomically
+                    cached = new CacheResult(cached.getBestEffortResult(), toCache);
                 }
 
                 // Update cache
@@ -530,21 +875,31 @@ public abstract class AbstractCacheEngine extends HeadEngine {
      * classic and full process result.
      * </p>
      *
+     * <p>
+     * When serialized, for instance when a cache overflows to disk, the result is written with the compact format
+     * defined by {@link CacheResultCodec} instead of the default java serialization of the nut graphs.
+     * </p>
+     *
      * @author Guillaume DROUET
-     * @version 1.0
+     * @version 1.1
      * @since 0.4.4
      */
     public static class CacheResult implements Serializable {
 
+        /**
+         * Serial version UID.
+         */
+        private static final long serialVersionUID = 2594398187563187421L;
+
         /**
          * The best effort result.
          */
-        private Map<String, Nut> bestEffortResult;
+        private transient Map<String, Nut> bestEffortResult;
 
         /**
          * The default result.
          */
-        private Map<String, Nut> defaultResult;
+        private transient Map<String, Nut> defaultResult;
 
         /**
          * <p>
@@ -591,5 +946,34 @@ public abstract class AbstractCacheEngine extends HeadEngine {
         public void setDefaultResult(Map<String, Nut> defaultResult) {
             this.defaultResult = defaultResult;
         }
+
+        /**
+         * <p>
+         * Writes this result with the {@link CacheResultCodec}.
+         * </p>
+         *
+         * @param out the output
+         * @throws IOException if an I/O error occurs
+         */
+        private void writeObject(final ObjectOutputStream out) throws IOException {
+            out.defaultWriteObject();
+            CacheResultCodec.encode(this, out);
+        }
+
+        /**
+         * <p>
+         * Reads this result with the {@link CacheResultCodec}.
+         * </p>
+         *
+         * @param in the input
+         * @throws IOException if an I/O error occurs
+         * @throws ClassNotFoundException if a class is not found when reading default fields
+         */
+        private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+            in.defaultReadObject();
+            final CacheResult decoded = CacheResultCodec.decode(in);
+            bestEffortResult = decoded.bestEffortResult;
+            defaultResult = decoded.defaultResult;
+        }
     }
 }
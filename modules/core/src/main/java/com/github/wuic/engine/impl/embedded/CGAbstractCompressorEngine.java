@@ -41,18 +41,22 @@ package com.github.wuic.engine.impl.embedded;
 import com.github.wuic.engine.NodeEngine;
 import com.github.wuic.exception.WuicException;
 import com.github.wuic.exception.wrapper.StreamException;
-import com.github.wuic.nut.core.ByteArrayNut;
+import com.github.wuic.metric.Metrics;
+import com.github.wuic.metric.Span;
+import com.github.wuic.metric.Tracer;
+import com.github.wuic.nut.core.TransformedNut;
 import com.github.wuic.nut.Nut;
+import com.github.wuic.util.CountingInputStream;
+import com.github.wuic.util.CountingOutputStream;
+import com.github.wuic.util.NumberUtils;
 
-import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 import com.github.wuic.engine.EngineRequest;
-import com.github.wuic.util.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -68,7 +72,7 @@ import org.slf4j.LoggerFactory;
  * </p>
  * 
  * @author Guillaume DROUET
- * @version 1.7
+ * @version 1.12
  * @since 0.1.0
  */
 public abstract class CGAbstractCompressorEngine extends NodeEngine {
@@ -154,45 +158,23 @@ public abstract class CGAbstractCompressorEngine extends NodeEngine {
             return nut;
         }
 
-        // Compression has to be implemented by sub-classes
-        InputStream is = null;
+        // Build new name
+        final StringBuilder nameBuilder = new StringBuilder(nut.getName());
+        nameBuilder.insert(nut.getName().lastIndexOf('.'), renameExtensionPrefix);
 
-        try {
-            log.debug("Compressing {}", nut.getName());
+        // Compression will be performed by sub-classes when the content is read
+        final Nut res = new CompressedNut(this, nut, nameBuilder.toString());
 
-            // Source
-            is = nut.openStream();
-
-            // Where compression result will be written
-            final ByteArrayOutputStream os = new ByteArrayOutputStream();
-
-            // Do compression
-            compress(is, os);
-
-            // Build new name
-            final StringBuilder nameBuilder = new StringBuilder(nut.getName());
-            nameBuilder.insert(nut.getName().lastIndexOf('.'), renameExtensionPrefix);
-
-            // Now create nut
-            final Nut res = new ByteArrayNut(os.toByteArray(), nameBuilder.toString(), nut.getNutType(), Arrays.asList(nut));
-            res.setAggregatable(nut.isAggregatable());
-            res.setBinaryCompressible(nut.isBinaryCompressible());
-            res.setTextCompressible(nut.isTextCompressible());
-            res.setCacheable(nut.isCacheable());
-
-            // Also compress referenced nuts
-            if (nut.getReferencedNuts() != null) {
-                for (Nut ref : nut.getReferencedNuts()) {
-                    res.addReferencedNut(compress(ref));
-                }
+        // Also compress referenced nuts
+        if (nut.getReferencedNuts() != null) {
+            for (Nut ref : nut.getReferencedNuts()) {
+                res.addReferencedNut(compress(ref));
             }
-
-            return res;
-        } finally {
-            IOUtils.close(is);
         }
+
+        return res;
     }
-    
+
     /**
      * {@inheritDoc}
      */
@@ -200,4 +182,85 @@ public abstract class CGAbstractCompressorEngine extends NodeEngine {
     public Boolean works() {
         return doCompression;
     }
+
+    /**
+     * <p>
+     * A nut whose content is compressed the first time its stream is opened. This avoids to keep the compressed content
+     * in memory when the engine produces it: only the stage consuming the stream materializes it, then the nut keeps it.
+     * </p>
+     *
+     * <p>
+     * The nut only refers the engine which compresses it. The engine is not serialized: a deserialized nut which has
+     * not been read before can't be compressed.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @version 1.4
+     * @since 0.5.0
+     */
+    private static final class CompressedNut extends TransformedNut {
+
+        /**
+         * Serial version UID.
+         */
+        private static final long serialVersionUID = 5361867493187306235L;
+
+        /**
+         * The engine which compresses the content.
+         */
+        private final transient CGAbstractCompressorEngine compressor;
+
+        /**
+         * <p>
+         * Builds a new instance.
+         * </p>
+         *
+         * @param engine the engine which compresses the content
+         * @param nut the nut to compress
+         * @param name the compressed nut's name
+         */
+        private CompressedNut(final CGAbstractCompressorEngine engine, final Nut nut, final String name) {
+            super(nut, name, nut.getNutType());
+            compressor = engine;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void transform(final InputStream source, final OutputStream target) throws StreamException {
+            if (compressor == null) {
+                final String message = String.format("%s has been deserialized and can't be compressed", getName());
+                throw new StreamException(new IOException(message));
+            }
+
+            compressor.log.debug("Compressing {}", getOriginalNuts().get(0).getName());
+
+            if (!Metrics.isEnabled() && !Tracer.isTracing()) {
+                compressor.compress(source, target);
+                return;
+            }
+
+            // Compression happens when the stream is read, so it's measured here and not when the engine is invoked
+            final String engine = compressor.getClass().getSimpleName();
+            final Span span = Tracer.begin(engine + ".compress", getName());
+            final CountingInputStream in = new CountingInputStream(source);
+            final CountingOutputStream out = new CountingOutputStream(target);
+            final long start = System.nanoTime();
+
+            try {
+                compressor.compress(in, out);
+            } finally {
+                Tracer.end(span);
+            }
+
+            if (span != null) {
+                span.addBytes(out.getCount());
+            }
+
+            Metrics.record(Metrics.Component.ENGINE, engine, "compressionLatency", (System.nanoTime() - start) / NumberUtils.ONE_THOUSAND);
+            Metrics.count(Metrics.Component.ENGINE, engine, Metrics.BYTES_IN, in.getCount());
+            Metrics.count(Metrics.Component.ENGINE, engine, Metrics.BYTES_OUT, out.getCount());
+        }
+    }
 }
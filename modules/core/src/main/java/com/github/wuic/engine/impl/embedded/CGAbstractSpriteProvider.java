@@ -41,7 +41,6 @@ package com.github.wuic.engine.impl.embedded;
 import com.github.wuic.engine.Region;
 import com.github.wuic.engine.SpriteProvider;
 
-import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
@@ -49,46 +48,42 @@ import java.util.Map;
  * Abstraction of the implementation of what is a {@link SpriteProvider}.
  * </p>
  *
+ * <p>
+ * Implementations have no state: everything related to an image is given to
+ * {@link SpriteProvider#getSprite(String, String, String, String, Map, java.util.List)}.
+ * </p>
+ *
  * @author Guillaume DROUET
- * @version 1.1
+ * @version 1.2
  * @since 0.3.1
  */
 public abstract class CGAbstractSpriteProvider implements SpriteProvider {
 
-    /**
-     * Region in the image.
-     */
-    protected Map<String, Region> regions;
-
-    /**
-     * The image name.
-     */
-    protected String image;
-
     /**
      * <p>
-     * Builds a new instance.
+     * Estimates the capacity of the buffer where a sprite is written to avoid resizing it while appending. Each region
+     * costs its name, the workflow ID used in its declaration, the image URL and the given constant length.
      * </p>
+     *
+     * @param header the length written once
+     * @param perRegion the constant length written for each region
+     * @param workflowId the workflow ID
+     * @param imageUrl the image URL
+     * @param regions the regions
+     * @return the capacity
      */
-    public CGAbstractSpriteProvider() {
-        regions = new LinkedHashMap<String, Region>();
-    }
+    protected int bufferCapacity(final int header,
+                                 final int perRegion,
+                                 final String workflowId,
+                                 final String imageUrl,
+                                 final Map<String, Region> regions) {
+        int retval = header;
 
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public void addRegion(final Region region, final String name) {
-        regions.put(name, region);
-    }
+        for (final String name : regions.keySet()) {
+            retval += perRegion + name.length() + workflowId.length() + imageUrl.length();
+        }
 
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public void init(final String imageName) {
-        regions.clear();
-        image = imageName;
+        return retval;
     }
 
     /**
@@ -51,7 +51,7 @@ import java.util.List;
  * </p>
  *
  * @author Guillaume DROUET
- * @version 1.3
+ * @version 1.4
  * @since 0.3.3
  */
 public class CGCssInspectorEngine extends CGTextInspectorEngine {
@@ -66,7 +66,24 @@ public class CGCssInspectorEngine extends CGTextInspectorEngine {
      * @param charset inspected files charset
      */
     public CGCssInspectorEngine(final List<NutFilter> filters, final Boolean inspect, final String charset) {
-        super(inspect, charset, new CGCssUrlLineInspector(filters));
+        this(filters, inspect, charset, 0);
+    }
+
+    /**
+     * <p>
+     * Builds a new instance inlining small referenced nuts as data URIs.
+     * </p>
+     *
+     * @param filters the nut filters
+     * @param inspect activate inspection or not
+     * @param charset inspected files charset
+     * @param inlineMaxSize the maximum size in bytes of a referenced nut inlined in the CSS, zero to never inline
+     */
+    public CGCssInspectorEngine(final List<NutFilter> filters,
+                                final Boolean inspect,
+                                final String charset,
+                                final int inlineMaxSize) {
+        super(inspect, charset, new CGCssUrlLineInspector(filters, inlineMaxSize));
         addInspector(new SourceMapLineInspector(this));
     }
 
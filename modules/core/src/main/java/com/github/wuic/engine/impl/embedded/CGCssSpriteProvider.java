@@ -46,6 +46,7 @@ import com.github.wuic.nut.Nut;
 import com.github.wuic.util.IOUtils;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * <p>
@@ -53,38 +54,49 @@ import java.util.List;
  * </p>
  *
  * @author Guillaume DROUET
- * @version 1.6
+ * @version 1.7
  * @since 0.3.1
  */
 public class CGCssSpriteProvider extends CGAbstractSpriteProvider {
 
+    /**
+     * Length of the CSS written for each region, excluding the names and the URL, with a margin for the numbers.
+     */
+    private static final int REGION_LENGTH = 128;
+
     /**
      * {@inheritDoc}
      */
     @Override
-    public Nut getSprite(final String url, final String workflowId, final String nutNameSuffix, final List<Nut> originals)
+    public Nut getSprite(final String url,
+                         final String workflowId,
+                         final String nutNameSuffix,
+                         final String image,
+                         final Map<String, Region> regions,
+                         final List<Nut> originals)
             throws StreamException {
         final ByteArrayNut retval = new ByteArrayNut(nutNameSuffix + "sprites.css", NutType.CSS, originals);
-        final StringBuilder cssBuilder = new StringBuilder();
+        final String imageUrl = IOUtils.mergePath("/", url, retval.getVersionNumber().toString(), image);
+        final StringBuilder cssBuilder = new StringBuilder(bufferCapacity(0, REGION_LENGTH, workflowId, imageUrl, regions));
 
-        for (String name : regions.keySet()) {
-            final Region reg = regions.get(name);
-            final String className = convertAllowedName(workflowId, name);
+        for (final Map.Entry<String, Region> entry : regions.entrySet()) {
+            final Region reg = entry.getValue();
+            final String className = convertAllowedName(workflowId, entry.getKey());
 
             // Define region within the image
-            cssBuilder.append(".");
-            cssBuilder.append(className);
-            cssBuilder.append("{display:inline-block;background:url('");
-            cssBuilder.append(IOUtils.mergePath("/", url, retval.getVersionNumber().toString(), image));
-            cssBuilder.append("') ");
-            cssBuilder.append(String.valueOf(reg.getxPosition() * -1));
-            cssBuilder.append("px ");
-            cssBuilder.append(String.valueOf(reg.getyPosition() * -1));
-            cssBuilder.append("px;width:");
-            cssBuilder.append(String.valueOf((int) reg.getWidth()));
-            cssBuilder.append("px;height:");
-            cssBuilder.append(String.valueOf((int) reg.getHeight()));
-            cssBuilder.append("px;}");
+            cssBuilder.append('.')
+                    .append(className)
+                    .append("{display:inline-block;background:url('")
+                    .append(imageUrl)
+                    .append("') ")
+                    .append(reg.getxPosition() * -1)
+                    .append("px ")
+                    .append(reg.getyPosition() * -1)
+                    .append("px;width:")
+                    .append((int) reg.getWidth())
+                    .append("px;height:")
+                    .append((int) reg.getHeight())
+                    .append("px;}");
         }
 
         // Make a byte array and return wrapper nut
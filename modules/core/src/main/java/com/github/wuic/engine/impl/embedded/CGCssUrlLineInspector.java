@@ -54,17 +54,31 @@ import org.slf4j.LoggerFactory;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * <p>
- * This class inspects CSS files to extract nuts referenced with @import statement to process it. Then it adapts
- * the path of those processed nuts to be accessible when exposed to the browser through WUIC uri.
+ * This class inspects CSS files to extract nuts referenced with @import statement or url() function to process it.
+ * Then it adapts the path of those processed nuts to be accessible when exposed to the browser through WUIC uri.
+ * </p>
+ *
+ * <p>
+ * The CSS is scanned in one pass without any regular expression. Comments and strings are copied as is, the strings
+ * following an @import statement and the arguments of the url() function (in a background, a @font-face source, etc)
+ * are considered as references to other nuts.
+ * </p>
+ *
+ * <p>
+ * When a referenced path is removed by a {@link NutFilter}, the @import statement or the declaration containing the url()
+ * function is removed from the CSS.
+ * </p>
+ *
+ * <p>
+ * When a maximum inline size is set, the images and fonts which are not larger are written in the CSS as base64 data
+ * URIs instead of being referenced. They are not processed nor served anymore as separated nuts.
  * </p>
  *
  * @author Guillaume DROUET
- * @version 1.5
+ * @version 1.9
  * @since 0.3.3
  */
 public class CGCssUrlLineInspector extends LineInspector {
@@ -75,70 +89,40 @@ public class CGCssUrlLineInspector extends LineInspector {
     private static final EngineType[] SKIPPED_ENGINE = new EngineType[] { EngineType.AGGREGATOR, EngineType.CACHE, EngineType.INSPECTOR };
 
     /**
-     * Possible value for CSS file name.
+     * The @import keyword.
      */
-    private static final String STRING_LITERAL_REGEX = "(\"(?:\\.|[^\\\"])*\"|'(?:\\.|[^\\'])*')";
+    private static final String IMPORT = "@import";
 
     /**
-     * Url pattern.
+     * The url function.
      */
-    private static final String URL_REGEX = String.format("(?:url\\(\\s*(%s|[^)]*)\\s*\\))", STRING_LITERAL_REGEX);
+    private static final String URL = "url(";
 
     /**
-     * Finds the @import, background URL or @font-face statements within CSS script. The pattern describes a string:
-     * <ul>
-     * <li>starting with @import</li>
-     * <li>followed any set of characters</li>
-     * <li>followed by either a double quote or single quote</li>
-     * <li>followed by any set of character until a repetition of the previously viewed quote is found</li>
-     * </ul>
-     *
-     * OR
-     *
-     * <ul>
-     * <li>starting with @import</li>
-     * <li>followed by a set of characters with the term 'url' inside them</li>
-     * <li>followed by a '('</li>
-     * <li>followed by a set of characters</li>
-     * <li>followed by a set of characters with ')' at the beginning and a ';' at the end</li>
-     * </ul>
-     *
-     * OR
-     * <ul>
-     * <li>starting with background</li>
-     * <li>followed by a string ending with 'url('</li>
-     * <li>followed by either a single quote or a double quote (optional)</li>
-     * <li>followed by everything which does not contain a repetition of the quote previously found</li>
-     * </ul>
-     *
-     * OR
-     * <ul>
-     * <li>Starting with @font-face</li>
-     * <li>followed by a string with '{' and ending with '}'</li>
-     * </ul>
+     * Logger.
      */
-    private static final Pattern CSS_URL_PATTERN = Pattern.compile(
-            String.format("(/\\*(?:.)*?\\*/)|((?:@import.*?(%s|%s))|(?:background[(/\\*(?:.\\{\\})*?\\*/)\\s:\\w#-]*?(%s).*?))|(?:@font-face.*?\\{.*?\\})", URL_REGEX, STRING_LITERAL_REGEX, URL_REGEX), Pattern.DOTALL);
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
 
     /**
-     * Three groups could contain the name, test the second one if first returns null.
+     * The filters to apply.
      */
-    private static final int[] GROUP_INDEXES = new int[] {
-        NumberUtils.HEIGHT, // background case
-        NumberUtils.FOUR, // import with url case
-        NumberUtils.THREE, // import without url case
-        1  // comment case
-    };
+    private List<NutFilter> nutFilters;
 
     /**
-     * Logger.
+     * The maximum size in bytes of an inlined nut, zero or less to never inline.
      */
-    private final Logger log = LoggerFactory.getLogger(this.getClass());
+    private final int inlineMaxSize;
 
     /**
-     * The filters to apply.
+     * <p>
+     * Builds a new instance.
+     * </p>
+     *
+     * @param filters the filters to apply
      */
-    private List<NutFilter> nutFilters;
+    public CGCssUrlLineInspector(final List<NutFilter> filters) {
+        this(filters, 0);
+    }
 
     /**
      * <p>
@@ -146,278 +130,400 @@ public class CGCssUrlLineInspector extends LineInspector {
      * </p>
      *
      * @param filters the filters to apply
+     * @param maxSize the maximum size in bytes of an inlined nut, zero or less to never inline
      */
-    public CGCssUrlLineInspector(final List<NutFilter> filters) {
-        super(CSS_URL_PATTERN);
+    public CGCssUrlLineInspector(final List<NutFilter> filters, final int maxSize) {
         nutFilters = filters;
+        inlineMaxSize = maxSize;
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public List<Nut> appendTransformation(final Matcher matcher,
-                                          final StringBuilder replacement,
-                                          final EngineRequest request,
-                                          final NutsHeap heap,
-                                          final Nut originalNut) throws WuicException {
-        // Search the right group
+    public List<Nut> inspect(final String line,
+                             final StringBuilder out,
+                             final EngineRequest request,
+                             final NutsHeap heap,
+                             final Nut originalNut) throws WuicException {
+        final List<Nut> retval = new ArrayList<Nut>();
+        final int length = line.length();
+
+        // Position in the output where the current declaration and the current @import statement start
+        int declarationStart = out.length();
+        int importStart = -1;
         int i = 0;
-        int groupIndex;
-        String rawPath;
-        String group = matcher.group();
-
-        // in comment, ignoring
-        if (matcher.group(1) != null)  {
-            replacement.append(group);
-            return null;
-        }
-
-        do {
-            groupIndex = GROUP_INDEXES[i++];
-            rawPath = matcher.group(groupIndex);
-        } while (rawPath == null && i < GROUP_INDEXES.length);
-
-        // @font-face case
-        if (rawPath == null) {
-            final Pattern patternUrl = Pattern.compile(URL_REGEX);
-            final Matcher matcherUrl = patternUrl.matcher(matcher.group());
-            final List<Nut> retval = new ArrayList<Nut>();
-            final StringBuffer sb = new StringBuffer();
-
-            // Process each font URL inside the font rule
-            while (matcherUrl.find()) {
-                final StringBuilder replacementUrl = new StringBuilder();
-                retval.addAll(processData(new MatcherData(matcherUrl, 1), replacementUrl, request, heap, originalNut));
-                matcherUrl.appendReplacement(sb, replacementUrl.toString());
-            }
-
-            matcherUrl.appendTail(sb);
-            replacement.append(sb.toString());
 
-            return retval;
-        } else {
-            if (group.isEmpty()) {
-                group = matcher.group(NumberUtils.TWO);
+        while (i < length) {
+            final char c = line.charAt(i);
+
+            if (c == '/' && i + 1 < length && line.charAt(i + 1) == '*') {
+                // Comment copied as is
+                final int end = commentEnd(line, i);
+                out.append(line, i, end);
+                i = end;
+            } else if (c == '"' || c == '\'') {
+                // String copied as is
+                final int end = stringEnd(line, i);
+                out.append(line, i, end);
+                i = end;
+            } else if (c == '@' && line.regionMatches(true, i, IMPORT, 0, IMPORT.length())) {
+                importStart = out.length();
+                final int start = skipSpacesAndComments(line, i + IMPORT.length());
+                out.append(line, i, start);
+                i = start;
+
+                // @import "path" form, the url() form is handled as any other url() function
+                if (i < length && (line.charAt(i) == '"' || line.charAt(i) == '\'')) {
+                    final int end = stringEnd(line, i);
+                    final List<Nut> res = processPath(line.substring(i, end), out, request, heap, originalNut);
+
+                    if (res == null) {
+                        out.setLength(importStart);
+                        i = statementEnd(line, end, true);
+                    } else {
+                        retval.addAll(res);
+                        i = end;
+                    }
+                }
+            } else if ((c == 'u' || c == 'U')
+                    && line.regionMatches(true, i, URL, 0, URL.length())
+                    && (i == 0 || !isIdentifierPart(line.charAt(i - 1)))) {
+                final int start = skipSpaces(line, i + URL.length());
+                final int end = urlEnd(line, start);
+                out.append(line, i, start);
+
+                if (start == end) {
+                    i = end;
+                } else {
+                    final List<Nut> res = processPath(line.substring(start, end), out, request, heap, originalNut);
+
+                    if (res == null) {
+                        // Remove the whole @import statement or declaration referencing the filtered path
+                        if (importStart != -1) {
+                            out.setLength(importStart);
+                            i = statementEnd(line, end, true);
+                        } else {
+                            out.setLength(declarationStart);
+                            i = statementEnd(line, end, false);
+                        }
+                    } else {
+                        retval.addAll(res);
+                        i = end;
+                    }
+                }
+            } else {
+                out.append(c);
+                i++;
+
+                // End of a declaration or a statement
+                if (c == ';' || c == '{' || c == '}') {
+                    declarationStart = out.length();
+                    importStart = -1;
+                }
             }
-
-            return processData(new MatcherData(rawPath, matcher, groupIndex, group), replacement, request, heap, originalNut);
         }
+
+        return retval;
     }
 
     /**
      * <p>
-     * Process the given data to append the resulting URL to the specified {@link StringBuilder} and returns the extracted
-     * nuts.
+     * Process the given path to append the resulting URL to the specified {@link StringBuilder} and returns the
+     * extracted nuts.
      * </p>
      *
-     * @param data the data that contains matcher result
-     * @param replacement the replacement
+     * @param rawPath the path as written in the CSS, with its quotes if any
+     * @param out the builder where the URL is appended
      * @param request the request
      * @param heap the heap
      * @param originalNut the original nut
-     * @return the extracted nuts
+     * @return the extracted nuts, {@code null} if the path is removed by a filter
      * @throws WuicException if processing fails
      */
-    private List<Nut> processData(final MatcherData data,
-                                  final StringBuilder replacement,
+    private List<Nut> processPath(final String rawPath,
+                                  final StringBuilder out,
                                   final EngineRequest request,
                                   final NutsHeap heap,
                                   final Nut originalNut) throws WuicException {
-        final Matcher matcher = data.getMatcher();
-        final String rawPath = data.getGroupValue();
-        final int groupIndex = data.getGroupIndex();
-        final String group = data.getWrapper();
-
-        // Compute once operations performed multiple times
-        final int start = matcher.start(groupIndex) - matcher.start();
-        String referencedPath = path(rawPath);
+        final String unquoted = unquote(rawPath);
+        final String referencedPath = path(unquoted);
 
         // Ignore absolute CSS
-        final Boolean isAbsolute = referencedPath.startsWith("http://") || referencedPath.startsWith("/");
+        final Boolean isAbsolute = referencedPath.startsWith("http://")
+                || referencedPath.startsWith("https://")
+                || referencedPath.startsWith("/");
+
+        if (isAbsolute) {
+            log.warn("{} is referenced as an absolute file and won't be processed by WUIC. You should only use relative URL reachable by nut DAO.", referencedPath);
+            out.append(rawPath);
+            return Collections.emptyList();
+        } else if (referencedPath.isEmpty() || referencedPath.startsWith("data:")) {
+            // Ignore "data:" URL
+            out.append(rawPath);
+            return Collections.emptyList();
+        }
 
         // Check filters
-        if (!isAbsolute) {
-             List<String> filtered = CollectionUtils.newList(referencedPath);
+        List<String> filtered = CollectionUtils.newList(referencedPath);
 
-            for (final NutFilter filter : nutFilters) {
-                filtered = filter.filterPaths(filtered);
-            }
+        for (final NutFilter filter : nutFilters) {
+            filtered = filter.filterPaths(filtered);
+        }
 
-            // Removed
-            if (filtered.isEmpty()) {
-                return Collections.emptyList();
-            }
+        // Removed
+        if (filtered.isEmpty()) {
+            return null;
         }
 
         log.info("url statement found for nut {}", referencedPath);
 
-        // Rewrite the statement from its beginning to the beginning of the nut name
-        replacement.append(group.substring(0, start));
+        // Extract the nut
+        final List<Nut> nuts = heap.create(originalNut, referencedPath, NutDao.PathFormat.RELATIVE_FILE);
 
-        // Write path to nut
-        replacement.append("\"");
+        if (nuts.isEmpty()) {
+            log.warn("{} is referenced as a relative file but not found with in the DAO. Keeping same value...", referencedPath);
+            out.append(rawPath);
+            return Collections.emptyList();
+        }
 
-        List<Nut> res;
+        final Nut nut = nuts.iterator().next();
+        out.append('"');
 
-        // Don't change nut if absolute
-        if (isAbsolute) {
-            log.warn("{} is referenced as an absolute file and won't be processed by WUIC. You should only use relative URL reachable by nut DAO.", referencedPath);
-            replacement.append(referencedPath);
-            res = Collections.emptyList();
-        } else if (referencedPath.startsWith("data:")) {
-            // Ignore "data:" URL
-            replacement.append(referencedPath);
-            res = Collections.emptyList();
-        } else {
-            // Extract the nut
-            final List<Nut> nuts = heap.create(originalNut, referencedPath, NutDao.PathFormat.RELATIVE_FILE);
+        // Write small nut as data URI, a query string or a fragment needs the real URL
+        if (isInlinable(nut) && unquoted.length() == referencedPath.length()
+                && manageInline(nut, out, request, inlineMaxSize)) {
+            out.append('"');
+            return Collections.emptyList();
+        }
 
-            if (nuts.isEmpty()) {
-                log.warn("{} is referenced as a relative file but not found with in the DAO. Keeping same value...", referencedPath);
-                replacement.append(referencedPath);
-                res = Collections.emptyList();
-            } else {
-                res = manageAppend(nuts.iterator().next(), replacement, request, heap, SKIPPED_ENGINE);
-            }
+        // Write path to nut, keeping any query string or fragment
+        final List<Nut> retval = manageAppend(getMemo(), nut, out, request, heap, SKIPPED_ENGINE);
+        out.append(unquoted, referencedPath.length(), unquoted.length());
+        out.append('"');
+
+        return retval;
+    }
+
+    /**
+     * <p>
+     * Indicates if the given nut can be inlined. Stylesheets and scripts are never inlined since their own references
+     * are relative to their location.
+     * </p>
+     *
+     * @param nut the referenced nut
+     * @return {@code true} if the nut is inlined when it is small enough, {@code false} otherwise
+     */
+    private Boolean isInlinable(final Nut nut) {
+        if (inlineMaxSize <= 0) {
+            return Boolean.FALSE;
         }
 
-        replacement.append("\"");
-        replacement.append(group.substring(start + matcher.group(groupIndex).length()));
+        switch (nut.getNutType()) {
+            case CSS :
+            case JAVASCRIPT :
+            case HTML :
+            case MAP :
+                return Boolean.FALSE;
 
-        // Return null means we don't change the original nut
-        return res;
+            default :
+                return Boolean.TRUE;
+        }
     }
 
     /**
      * <p>
-     * Returns the nut path from the extracted path.
+     * Removes the quotes around the given path if any.
      * </p>
      *
-     * @param referencedPath the referenced path
-     * @return the path that could be retrieved from the dao
+     * @param rawPath the path
+     * @return the path without quotes
      */
-    private String path(final String referencedPath) {
-        String retval = referencedPath;
+    private static String unquote(final String rawPath) {
+        final char first = rawPath.charAt(0);
 
-        // Quotes must be removed
-        if (retval.charAt(0) == '\'' || retval.charAt(0) == '"') {
-            retval = retval.substring(1, referencedPath.length() - 1);
+        if ((first == '\'' || first == '"') && rawPath.length() > 1 && rawPath.charAt(rawPath.length() - 1) == first) {
+            return rawPath.substring(1, rawPath.length() - 1);
+        } else {
+            return rawPath;
         }
+    }
 
+    /**
+     * <p>
+     * Returns the nut path from the extracted path.
+     * </p>
+     *
+     * @param referencedPath the referenced path without quotes
+     * @return the path that could be retrieved from the dao
+     */
+    private static String path(final String referencedPath) {
         // '?' or '#' could follow the extension
-        int cutIndex = retval.lastIndexOf('?');
+        int cutIndex = referencedPath.lastIndexOf('?');
 
         if (cutIndex == -1) {
-            cutIndex = retval.lastIndexOf('#');
+            cutIndex = referencedPath.lastIndexOf('#');
         }
 
-        return cutIndex != -1 ? retval.substring(0, cutIndex) : retval;
+        return cutIndex != -1 ? referencedPath.substring(0, cutIndex) : referencedPath;
     }
 
     /**
      * <p>
-     * This class wraps the analysis of results provided by a {@link Matcher}.
+     * Returns the index following the end of the comment starting at the given index.
      * </p>
      *
-     * @author Guillaume DROUET
-     * @version 1.0
-     * @since 0.4.5
+     * @param line the line
+     * @param start the index of the '/' character starting the comment
+     * @return the index following the '*' '/' sequence, the line length if the comment is not closed
      */
-    private static final class MatcherData {
-
-        /**
-         * The value extracted from the group that corresponds to a path.
-         */
-        private String groupValue;
-
-        /**
-         * The group index that delimit the beginning of the replacement.
-         */
-        private int groupIndex;
-
-        /**
-         * The whole {@code String} that wraps the path.
-         */
-        private String wrapper;
-
-        /**
-         * The matcher.
-         */
-        private Matcher matcher;
-
-        /**
-         * <p>
-         * Builds a new instance.
-         * </p>
-         *
-         * @param groupValue the group value
-         * @param matcher the matcher
-         * @param groupIndex the group index
-         * @param wrapper the wrapper
-         */
-        private MatcherData(final String groupValue, final Matcher matcher, final int groupIndex, final String wrapper) {
-            this.groupValue = groupValue;
-            this.matcher = matcher;
-            this.groupIndex = groupIndex;
-            this.wrapper = wrapper;
+    private static int commentEnd(final String line, final int start) {
+        final int end = line.indexOf("*/", start + NumberUtils.TWO);
+        return end == -1 ? line.length() : end + NumberUtils.TWO;
+    }
+
+    /**
+     * <p>
+     * Returns the index following the end of the string starting at the given index. Escaped characters are skipped.
+     * </p>
+     *
+     * @param line the line
+     * @param start the index of the quote starting the string
+     * @return the index following the closing quote, the line length if the string is not closed
+     */
+    private static int stringEnd(final String line, final int start) {
+        final char quote = line.charAt(start);
+        final int length = line.length();
+        int i = start + 1;
+
+        while (i < length) {
+            final char c = line.charAt(i);
+
+            if (c == '\\') {
+                i += NumberUtils.TWO;
+            } else if (c == quote) {
+                return i + 1;
+            } else {
+                i++;
+            }
         }
 
-        /**
-         * <p>
-         * Builds a new instance with the matcher's group for the specified index as group value and the whole matcher's
-         * group as wrapper.
-         * </p>
-         *
-         * @param matcher the matcher
-         * @param groupIndex the group index
-         */
-        private MatcherData(final Matcher matcher, final int groupIndex) {
-            this(matcher.group(groupIndex), matcher, groupIndex, matcher.group());
+        return length;
+    }
+
+    /**
+     * <p>
+     * Returns the index following the end of the url() function's argument starting at the given index. Whitespaces
+     * before the closing parenthesis are not included.
+     * </p>
+     *
+     * @param line the line
+     * @param start the index of the argument
+     * @return the index following the argument
+     */
+    private static int urlEnd(final String line, final int start) {
+        final int length = line.length();
+
+        if (start < length && (line.charAt(start) == '"' || line.charAt(start) == '\'')) {
+            return stringEnd(line, start);
         }
 
-        /**
-         * <p>
-         * Gets the group value.
-         * </p>
-         *
-         * @return the value
-         */
-        private String getGroupValue() {
-            return groupValue;
+        int end = start;
+
+        while (end < length && line.charAt(end) != ')') {
+            end += line.charAt(end) == '\\' ? NumberUtils.TWO : 1;
         }
 
-        /**
-         * <p>
-         * Gets the group index.
-         * </p>
-         *
-         * @return the index
-         */
-        private int getGroupIndex() {
-            return groupIndex;
+        end = Math.min(end, length);
+
+        while (end > start && Character.isWhitespace(line.charAt(end - 1))) {
+            end--;
         }
 
-        /**
-         * <p>
-         * Gets the wrapper.
-         * </p>
-         *
-         * @return the wrapper
-         */
-        private String getWrapper() {
-            return wrapper;
+        return end;
+    }
+
+    /**
+     * <p>
+     * Returns the index following the end of the statement or the declaration containing the given index. Strings and
+     * comments are skipped.
+     * </p>
+     *
+     * @param line the line
+     * @param start the index inside the statement
+     * @param statement {@code true} if the end of a statement is searched, {@code false} for a declaration
+     * @return the index following the ';' character or the index of the '}' character closing the block
+     */
+    private static int statementEnd(final String line, final int start, final Boolean statement) {
+        final int length = line.length();
+        int i = start;
+
+        while (i < length) {
+            final char c = line.charAt(i);
+
+            if (c == '"' || c == '\'') {
+                i = stringEnd(line, i);
+            } else if (c == '/' && i + 1 < length && line.charAt(i + 1) == '*') {
+                i = commentEnd(line, i);
+            } else if (c == ';') {
+                return i + 1;
+            } else if (c == '}' && !statement) {
+                return i;
+            } else {
+                i++;
+            }
+        }
+
+        return length;
+    }
+
+    /**
+     * <p>
+     * Returns the index of the first character which is not a whitespace from the given index.
+     * </p>
+     *
+     * @param line the line
+     * @param start the start index
+     * @return the index
+     */
+    private static int skipSpaces(final String line, final int start) {
+        int i = start;
+
+        while (i < line.length() && Character.isWhitespace(line.charAt(i))) {
+            i++;
         }
 
-        /**
-         * <p>
-         * Gets the matcher.
-         * </p>
-         *
-         * @return the matcher
-         */
-        private Matcher getMatcher() {
-            return matcher;
+        return i;
+    }
+
+    /**
+     * <p>
+     * Returns the index of the first character which is neither a whitespace nor inside a comment from the given index.
+     * </p>
+     *
+     * @param line the line
+     * @param start the start index
+     * @return the index
+     */
+    private static int skipSpacesAndComments(final String line, final int start) {
+        int i = skipSpaces(line, start);
+
+        while (i + 1 < line.length() && line.charAt(i) == '/' && line.charAt(i + 1) == '*') {
+            i = skipSpaces(line, commentEnd(line, i));
         }
+
+        return i;
+    }
+
+    /**
+     * <p>
+     * Indicates if the given character could be a part of a CSS identifier.
+     * </p>
+     *
+     * @param c the character
+     * @return {@code true} if the character is a letter, a digit, '-' or '_'
+     */
+    private static boolean isIdentifierPart(final char c) {
+        return Character.isLetterOrDigit(c) || c == '-' || c == '_';
     }
 }
@@ -61,6 +61,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -71,9 +72,14 @@ import javax.imageio.ImageIO;
  * <p>
  * This engine is in charge to merge images into one final image.
  * </p>
+ *
+ * <p>
+ * The {@link DimensionPacker} is shared by the requests and used under its own lock, so several images can be
+ * aggregated concurrently.
+ * </p>
  * 
  * @author Guillaume DROUET
- * @version 1.8
+ * @version 1.9
  * @since 0.2.0
  */
 public class CGImageAggregatorEngine extends AbstractAggregatorEngine {
@@ -109,11 +115,19 @@ public class CGImageAggregatorEngine extends AbstractAggregatorEngine {
         if (!works()) {
             return request.getNuts();
         } else {
-            final Map<Region, Nut> packed = pack(request.getNuts());
+            final Map<Nut, Dimension> dimensions = readDimensions(request.getNuts());
+            final Map<Region, Nut> packed;
+            final Dimension finalDim;
+
+            // The packer is shared: pack and read the resulting area atomically, the images being merged concurrently
+            synchronized (dimensionPacker) {
+                packed = pack(dimensions);
+                finalDim = getDimensionPack();
+            }
+
             final List<Nut> originals = new ArrayList<Nut>(packed.size());
 
             // Initializing the final image
-            final Dimension finalDim = getDimensionPack();
             final BufferedImage transparentImage = makeTransparentImage((int) finalDim.getWidth(), (int) finalDim.getHeight());
 
             // Merge each image into the final image
@@ -219,19 +233,29 @@ public class CGImageAggregatorEngine extends AbstractAggregatorEngine {
      * @throws WuicException if one image could not be read
      */
     public Map<Region, Nut> pack(final List<Nut> nuts) throws WuicException {
+        return pack(readDimensions(nuts));
+    }
 
-        // Clear previous work
-        dimensionPacker.clearElements();
+    /**
+     * <p>
+     * Reads the dimension of each given image.
+     * </p>
+     *
+     * @param nuts the images
+     * @return the dimensions associated to their image, in the order of the list
+     * @throws WuicException if one image could not be read
+     */
+    private Map<Nut, Dimension> readDimensions(final List<Nut> nuts) throws WuicException {
+        final Map<Nut, Dimension> retval = new LinkedHashMap<Nut, Dimension>(nuts.size());
 
-        // Load each image, read its dimension and add it to the packer with the ile as data
+        // Images are read outside the lock of the packer
         for (final Nut nut : nuts) {
             InputStream is = null;
 
             try {
                 is = nut.openStream();
                 final BufferedImage buff = ImageIO.read(is);
-
-                dimensionPacker.addElement(new Dimension(buff.getWidth(), buff.getHeight()), nut);
+                retval.put(nut, new Dimension(buff.getWidth(), buff.getHeight()));
             } catch (IOException ioe) {
                 throw new StreamException(ioe);
             } finally {
@@ -239,8 +263,29 @@ public class CGImageAggregatorEngine extends AbstractAggregatorEngine {
             }
         }
 
-        // Get the regions calculated by the packer !
-        return dimensionPacker.getRegions();
+        return retval;
+    }
+
+    /**
+     * <p>
+     * Packs the given dimensions in the smallest area.
+     * </p>
+     *
+     * @param dimensions the dimension of each image
+     * @return a map which associates each packed image to its allocated region
+     */
+    private Map<Region, Nut> pack(final Map<Nut, Dimension> dimensions) {
+        synchronized (dimensionPacker) {
+            // Clear previous work
+            dimensionPacker.clearElements();
+
+            for (final Map.Entry<Nut, Dimension> entry : dimensions.entrySet()) {
+                dimensionPacker.addElement(entry.getValue(), entry.getKey());
+            }
+
+            // Get the regions calculated by the packer !
+            return dimensionPacker.getRegions();
+        }
     }
 
     /**
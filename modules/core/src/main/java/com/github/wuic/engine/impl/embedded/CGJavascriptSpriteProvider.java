@@ -46,6 +46,7 @@ import com.github.wuic.engine.Region;
 import com.github.wuic.util.IOUtils;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * <p>
@@ -62,7 +63,7 @@ import java.util.List;
  * </p>
  * 
  * @author Guillaume DROUET
- * @version 1.8
+ * @version 1.9
  * @since 0.2.0
  */
 public class CGJavascriptSpriteProvider extends CGAbstractSpriteProvider {
@@ -72,42 +73,54 @@ public class CGJavascriptSpriteProvider extends CGAbstractSpriteProvider {
      */
     private static final String JS_CONSTANT = "WUIC_SPRITE";
 
+    /**
+     * Declaration of the constant written before the regions.
+     */
+    private static final String JS_DECLARATION = "if (typeof(" + JS_CONSTANT + ") === 'undefined') {\n"
+            + "\tvar " + JS_CONSTANT + " = {};\n"
+            + "}\n";
+
+    /**
+     * Length of the javascript written for each region, excluding the names and the URL, with a margin for the numbers.
+     */
+    private static final int REGION_LENGTH = 160;
+
     /**
      * {@inheritDoc}
      */
     @Override
-    public Nut getSprite(final String url, final String heapId, final String nutNameSuffix, final List<Nut> originals)
+    public Nut getSprite(final String url,
+                         final String heapId,
+                         final String nutNameSuffix,
+                         final String image,
+                         final Map<String, Region> regions,
+                         final List<Nut> originals)
             throws StreamException {
         final ByteArrayNut retval = new ByteArrayNut(nutNameSuffix + "sprites.js", NutType.JAVASCRIPT, originals);
-        final StringBuilder jsBuilder = new StringBuilder();
+        final String imageUrl = IOUtils.mergePath("/", url, retval.getVersionNumber().toString(), image);
+        final StringBuilder jsBuilder = new StringBuilder(bufferCapacity(JS_DECLARATION.length(), REGION_LENGTH, heapId, imageUrl, regions));
 
         // Inject instantiation
-        jsBuilder.append("if (typeof(");
-        jsBuilder.append(JS_CONSTANT);
-        jsBuilder.append(") === 'undefined') {\n");
-        jsBuilder.append("\tvar ");
-        jsBuilder.append(JS_CONSTANT);
-        jsBuilder.append(" = {};\n");
-        jsBuilder.append("}\n");
+        jsBuilder.append(JS_DECLARATION);
+
+        for (final Map.Entry<String, Region> entry : regions.entrySet()) {
+            final Region reg = entry.getValue();
 
-        for (String name : regions.keySet()) {
-            final Region reg = regions.get(name);
-            
             // Instruction that affect the new object to the WUIC_SPRITE constant
-            jsBuilder.append(JS_CONSTANT);
-            jsBuilder.append("['");
-            jsBuilder.append(convertAllowedName(heapId, name));
-            jsBuilder.append("'] = {\n\tx : \"");
-            jsBuilder.append(reg.getxPosition());
-            jsBuilder.append("\",\n\ty : \"");
-            jsBuilder.append(reg.getyPosition());
-            jsBuilder.append("\",\n\tw : \"");
-            jsBuilder.append(reg.getWidth());
-            jsBuilder.append("\",\n\th : \"");
-            jsBuilder.append(reg.getHeight());
-            jsBuilder.append("\",\n\turl : \"");
-            jsBuilder.append(IOUtils.mergePath("/", url, retval.getVersionNumber().toString(), image));
-            jsBuilder.append("\"\n};\n");
+            jsBuilder.append(JS_CONSTANT)
+                    .append("['")
+                    .append(convertAllowedName(heapId, entry.getKey()))
+                    .append("'] = {\n\tx : \"")
+                    .append(reg.getxPosition())
+                    .append("\",\n\ty : \"")
+                    .append(reg.getyPosition())
+                    .append("\",\n\tw : \"")
+                    .append(reg.getWidth())
+                    .append("\",\n\th : \"")
+                    .append(reg.getHeight())
+                    .append("\",\n\turl : \"")
+                    .append(imageUrl)
+                    .append("\"\n};\n");
         }
 
         // Make a byte array and return nut wrapper
@@ -115,4 +128,4 @@ public class CGJavascriptSpriteProvider extends CGAbstractSpriteProvider {
 
         return retval;
     }
-}
\ No newline at end of file
+}
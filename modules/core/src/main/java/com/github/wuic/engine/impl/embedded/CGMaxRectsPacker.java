@@ -0,0 +1,549 @@
+/*
+ * "Copyright (c) 2014   Capgemini Technology Services (hereinafter "Capgemini")
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * -   The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Any failure to comply with the above shall automatically terminate the license
+ * and be construed as a breach of these Terms of Use causing significant harm to
+ * Capgemini.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Capgemini shall not be used in
+ * advertising or otherwise to promote the use or other dealings in this Software
+ * without prior written authorization from Capgemini.
+ *
+ * These Terms of Use are subject to French law.
+ *
+ * IMPORTANT NOTICE: The WUIC software implements software components governed by
+ * open source software licenses (BSD and Apache) of which CAPGEMINI is not the
+ * author or the editor. The rights granted on the said software components are
+ * governed by the specific terms and conditions specified by Apache 2.0 and BSD
+ * licenses."
+ */
+
+
+
+
+package com.github.wuic.engine.impl.embedded;
+
+import com.github.wuic.engine.DimensionPacker;
+import com.github.wuic.engine.Region;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.Dimension;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * This packer implements the MaxRects algorithm described by Jukka Jylanki in "A Thousand Ways to Pack the Bin". The
+ * free space of the bin is tracked as the list of the maximal free rectangles, so an element can be placed in any hole
+ * left by the previous ones. Compared to the {@link CGBinPacker}, it leaves less transparent space when images of
+ * mixed sizes are aggregated.
+ * </p>
+ *
+ * <p>
+ * Images can't be rotated in a sprite, so only the rotation-free {@link Heuristic heuristics} are supported. The bin
+ * has no predefined size: several widths around the square root of the total area are tried, the height being
+ * increased until all the elements fit, and the layout with the smallest area is kept.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @version 1.0
+ * @since 0.5.0
+ * @param <T> a type of data associated to the dimensions
+ */
+public final class CGMaxRectsPacker<T> implements DimensionPacker<T> {
+
+    /**
+     * <p>
+     * The rule used to choose the free rectangle where an element is placed.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @version 1.0
+     * @since 0.5.0
+     */
+    public enum Heuristic {
+
+        /**
+         * Minimizes the shortest leftover side, then the longest one.
+         */
+        BEST_SHORT_SIDE_FIT,
+
+        /**
+         * Minimizes the area of the free rectangle, then the shortest leftover side.
+         */
+        BEST_AREA_FIT,
+
+        /**
+         * Minimizes the bottom side of the placed element, then its left side.
+         */
+        BOTTOM_LEFT
+    }
+
+    /**
+     * Factors applied to the square root of the total area to get the widths to try.
+     */
+    private static final double[] WIDTH_FACTORS = { 1d, 1.25d, 1.5d, 2d };
+
+    /**
+     * The height of the bin is increased by this fraction of itself when the elements don't fit.
+     */
+    private static final int HEIGHT_GROWTH_DIVISOR = 16;
+
+    /**
+     * Logger.
+     */
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    /**
+     * The heuristic.
+     */
+    private final Heuristic heuristic;
+
+    /**
+     * All data with their dimensions.
+     */
+    private Map<T, Dimension> dataMap;
+
+    /**
+     * The area of the last computed layout.
+     */
+    private Dimension filledArea;
+
+    /**
+     * <p>
+     * Builds a new packer using the {@link Heuristic#BEST_SHORT_SIDE_FIT} heuristic.
+     * </p>
+     */
+    public CGMaxRectsPacker() {
+        this(Heuristic.BEST_SHORT_SIDE_FIT);
+    }
+
+    /**
+     * <p>
+     * Builds a new packer.
+     * </p>
+     *
+     * @param h the heuristic
+     */
+    public CGMaxRectsPacker(final Heuristic h) {
+        heuristic = h;
+        dataMap = new LinkedHashMap<T, Dimension>();
+        filledArea = new Dimension(0, 0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addElement(final Dimension dimension, final T data) {
+        dataMap.put(data, dimension);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clearElements() {
+        dataMap.clear();
+        filledArea = new Dimension(0, 0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Dimension getFilledArea() {
+        return filledArea;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<Region, T> getRegions() {
+        if (dataMap.isEmpty()) {
+            log.error("You must add at least one element to pack the dimensions", new IllegalStateException());
+            filledArea = new Dimension(0, 0);
+            return new LinkedHashMap<Region, T>();
+        }
+
+        // Biggest elements first, the sort being stable to always give the same result
+        final List<Map.Entry<T, Dimension>> elements = new ArrayList<Map.Entry<T, Dimension>>(dataMap.entrySet());
+        Collections.sort(elements, new Comparator<Map.Entry<T, Dimension>>() {
+            @Override
+            public int compare(final Map.Entry<T, Dimension> a, final Map.Entry<T, Dimension> b) {
+                final Dimension dimA = a.getValue();
+                final Dimension dimB = b.getValue();
+                final int side = Math.max(dimB.width, dimB.height) - Math.max(dimA.width, dimA.height);
+                return side != 0 ? side : (dimB.width * dimB.height) - (dimA.width * dimA.height);
+            }
+        });
+
+        int maxWidth = 0;
+        int sumWidth = 0;
+        long area = 0;
+
+        for (final Map.Entry<T, Dimension> element : elements) {
+            final Dimension dim = element.getValue();
+            maxWidth = Math.max(maxWidth, dim.width);
+            sumWidth += dim.width;
+            area += (long) dim.width * dim.height;
+        }
+
+        Layout best = null;
+
+        for (final int width : candidateWidths(maxWidth, sumWidth, area)) {
+            final Layout layout = pack(elements, width, area);
+
+            if (best == null || layout.isSmallerThan(best)) {
+                best = layout;
+            }
+        }
+
+        filledArea = new Dimension(best.right, best.bottom);
+        return best.regions;
+    }
+
+    /**
+     * <p>
+     * Computes the widths of the bins to try.
+     * </p>
+     *
+     * @param maxWidth the largest element width
+     * @param sumWidth the sum of the element widths
+     * @param area the sum of the element areas
+     * @return the distinct widths
+     */
+    private List<Integer> candidateWidths(final int maxWidth, final int sumWidth, final long area) {
+        final List<Integer> retval = new ArrayList<Integer>(WIDTH_FACTORS.length + 1);
+        retval.add(maxWidth);
+
+        for (final double factor : WIDTH_FACTORS) {
+            final int width = Math.min(sumWidth, Math.max(maxWidth, (int) Math.ceil(Math.sqrt(area) * factor)));
+
+            if (!retval.contains(width)) {
+                retval.add(width);
+            }
+        }
+
+        return retval;
+    }
+
+    /**
+     * <p>
+     * Packs the elements in a bin with the given width. The height starts from the smallest possible value and grows
+     * until all elements fit. Elements are stacked if the height reaches the sum of their heights.
+     * </p>
+     *
+     * @param elements the sorted elements
+     * @param width the bin width
+     * @param area the sum of the element areas
+     * @return the layout
+     */
+    private Layout pack(final List<Map.Entry<T, Dimension>> elements, final int width, final long area) {
+        int maxHeight = 0;
+        int sumHeight = 0;
+
+        for (final Map.Entry<T, Dimension> element : elements) {
+            maxHeight = Math.max(maxHeight, element.getValue().height);
+            sumHeight += element.getValue().height;
+        }
+
+        int height = (int) Math.min(sumHeight, Math.max(maxHeight, (area + width - 1) / width));
+
+        while (height < sumHeight) {
+            final Layout layout = new Bin(width, height).pack(elements);
+
+            if (layout != null) {
+                return layout;
+            }
+
+            height = Math.min(sumHeight, height + Math.max(1, height / HEIGHT_GROWTH_DIVISOR));
+        }
+
+        // The elements always fit when they are stacked
+        final Layout retval = new Layout(elements.size());
+
+        for (final Map.Entry<T, Dimension> element : elements) {
+            retval.add(new Region(0, retval.bottom, element.getValue()), element.getKey());
+        }
+
+        return retval;
+    }
+
+    /**
+     * <p>
+     * The regions computed for a bin, with the area they fill.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @version 1.0
+     * @since 0.5.0
+     */
+    private final class Layout {
+
+        /**
+         * The regions.
+         */
+        private final Map<Region, T> regions;
+
+        /**
+         * The right side of the filled area.
+         */
+        private int right;
+
+        /**
+         * The bottom side of the filled area.
+         */
+        private int bottom;
+
+        /**
+         * <p>
+         * Builds an empty layout.
+         * </p>
+         *
+         * @param size the number of regions
+         */
+        private Layout(final int size) {
+            regions = new LinkedHashMap<Region, T>(size);
+        }
+
+        /**
+         * <p>
+         * Adds a region.
+         * </p>
+         *
+         * @param region the region
+         * @param data the data
+         */
+        private void add(final Region region, final T data) {
+            regions.put(region, data);
+            right = Math.max(right, region.getxPosition() + region.width);
+            bottom = Math.max(bottom, region.getyPosition() + region.height);
+        }
+
+        /**
+         * <p>
+         * Indicates if this layout fills a smaller area than the given one. With the same area, the squarest wins.
+         * </p>
+         *
+         * @param other the other layout
+         * @return {@code true} if this layout is smaller
+         */
+        private boolean isSmallerThan(final Layout other) {
+            final long area = (long) right * bottom;
+            final long otherArea = (long) other.right * other.bottom;
+            return area < otherArea || (area == otherArea && Math.max(right, bottom) < Math.max(other.right, other.bottom));
+        }
+    }
+
+    /**
+     * <p>
+     * A bin with a fixed size and its maximal free rectangles.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @version 1.0
+     * @since 0.5.0
+     */
+    private final class Bin {
+
+        /**
+         * The maximal free rectangles, as regions.
+         */
+        private final List<Region> free;
+
+        /**
+         * <p>
+         * Builds an empty bin.
+         * </p>
+         *
+         * @param width the width
+         * @param height the height
+         */
+        private Bin(final int width, final int height) {
+            free = new ArrayList<Region>();
+            free.add(new Region(0, 0, width, height));
+        }
+
+        /**
+         * <p>
+         * Places all the elements.
+         * </p>
+         *
+         * @param elements the elements
+         * @return the layout, {@code null} if an element does not fit
+         */
+        private Layout pack(final List<Map.Entry<T, Dimension>> elements) {
+            final Layout retval = new Layout(elements.size());
+
+            for (final Map.Entry<T, Dimension> element : elements) {
+                final Region placed = find(element.getValue());
+
+                if (placed == null) {
+                    return null;
+                }
+
+                place(placed);
+                retval.add(placed, element.getKey());
+            }
+
+            return retval;
+        }
+
+        /**
+         * <p>
+         * Finds the best position for the given dimension according to the heuristic.
+         * </p>
+         *
+         * @param dim the dimension
+         * @return the region, {@code null} if no free rectangle is big enough
+         */
+        private Region find(final Dimension dim) {
+            Region retval = null;
+            long bestPrimary = Long.MAX_VALUE;
+            long bestSecondary = Long.MAX_VALUE;
+
+            for (final Region rect : free) {
+                if (dim.width <= rect.width && dim.height <= rect.height) {
+                    final int leftoverX = rect.width - dim.width;
+                    final int leftoverY = rect.height - dim.height;
+                    final long primary;
+                    final long secondary;
+
+                    switch (heuristic) {
+                        case BEST_AREA_FIT:
+                            primary = (long) rect.width * rect.height;
+                            secondary = Math.min(leftoverX, leftoverY);
+                            break;
+                        case BOTTOM_LEFT:
+                            primary = rect.getyPosition() + dim.height;
+                            secondary = rect.getxPosition();
+                            break;
+                        default:
+                            primary = Math.min(leftoverX, leftoverY);
+                            secondary = Math.max(leftoverX, leftoverY);
+                            break;
+                    }
+
+                    if (primary < bestPrimary || (primary == bestPrimary && secondary < bestSecondary)) {
+                        bestPrimary = primary;
+                        bestSecondary = secondary;
+                        retval = new Region(rect.getxPosition(), rect.getyPosition(), dim);
+                    }
+                }
+            }
+
+            return retval;
+        }
+
+        /**
+         * <p>
+         * Removes the given region from the free space: each free rectangle it overlaps is split into the maximal
+         * rectangles around it, then the rectangles contained in another one are removed.
+         * </p>
+         *
+         * @param placed the placed region
+         */
+        private void place(final Region placed) {
+            final int left = placed.getxPosition();
+            final int top = placed.getyPosition();
+            final int right = left + placed.width;
+            final int bottom = top + placed.height;
+            final List<Region> created = new ArrayList<Region>();
+
+            for (int i = free.size() - 1; i >= 0; i--) {
+                final Region rect = free.get(i);
+                final int rectLeft = rect.getxPosition();
+                final int rectTop = rect.getyPosition();
+                final int rectRight = rectLeft + rect.width;
+                final int rectBottom = rectTop + rect.height;
+
+                if (left >= rectRight || right <= rectLeft || top >= rectBottom || bottom <= rectTop) {
+                    continue;
+                }
+
+                free.remove(i);
+
+                if (left > rectLeft) {
+                    created.add(new Region(rectLeft, rectTop, left - rectLeft, rect.height));
+                }
+
+                if (right < rectRight) {
+                    created.add(new Region(right, rectTop, rectRight - right, rect.height));
+                }
+
+                if (top > rectTop) {
+                    created.add(new Region(rectLeft, rectTop, rect.width, top - rectTop));
+                }
+
+                if (bottom < rectBottom) {
+                    created.add(new Region(rectLeft, bottom, rect.width, rectBottom - bottom));
+                }
+            }
+
+            // Only the created rectangles can be contained in another one or contain an existing one
+            for (int i = 0; i < created.size(); i++) {
+                final Region rect = created.get(i);
+                boolean contained = false;
+
+                for (int j = 0; j < created.size() && !contained; j++) {
+                    // Keep the first of two identical rectangles
+                    contained = j != i && contains(created.get(j), rect) && (j < i || !contains(rect, created.get(j)));
+                }
+
+                for (int j = 0; j < free.size() && !contained; j++) {
+                    contained = contains(free.get(j), rect);
+                }
+
+                if (!contained) {
+                    for (int j = free.size() - 1; j >= 0; j--) {
+                        if (contains(rect, free.get(j))) {
+                            free.remove(j);
+                        }
+                    }
+
+                    free.add(rect);
+                }
+            }
+        }
+
+        /**
+         * <p>
+         * Indicates if a region contains another one.
+         * </p>
+         *
+         * @param outer the outer region
+         * @param inner the inner region
+         * @return {@code true} if inner is inside outer
+         */
+        private boolean contains(final Region outer, final Region inner) {
+            return inner.getxPosition() >= outer.getxPosition()
+                    && inner.getyPosition() >= outer.getyPosition()
+                    && inner.getxPosition() + inner.width <= outer.getxPosition() + outer.width
+                    && inner.getyPosition() + inner.height <= outer.getyPosition() + outer.height;
+        }
+    }
+}
@@ -39,16 +39,27 @@
 package com.github.wuic.engine.impl.embedded;
 
 import com.github.wuic.NutType;
+import com.github.wuic.exception.NutNotFoundException;
 import com.github.wuic.exception.WuicException;
+import com.github.wuic.exception.wrapper.StreamException;
 import com.github.wuic.nut.Nut;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.github.wuic.engine.EngineRequest;
+import com.github.wuic.nut.NutsHeap;
 import com.github.wuic.nut.core.CompositeNut;
 import com.github.wuic.util.IOUtils;
+import com.github.wuic.util.NumberUtils;
+import com.github.wuic.util.NutUtils;
 
 /**
  * <p>
@@ -56,13 +67,52 @@ import com.github.wuic.util.IOUtils;
  * Files are aggregated in the order of apparition in the given list. Note that
  * nothing will be done if {@link CGTextAggregatorEngine#doAggregation} flag is {@code false}.
  * </p>
+ *
+ * <p>
+ * The nuts can also be spread across several bundles, so a change in one nut does not invalidate in the browser cache
+ * the content of the other bundles. The list is cut between two consecutive nuts when they belong to different
+ * composed heaps, when one is volatile and not the other or when the bundle exceeds a maximum size. Cutting the list
+ * in consecutive runs keeps the order of the nuts in the page. A nut becomes volatile once its version has changed a
+ * given number of times since the engine has been created. Each bundle is named after its nuts and versioned after
+ * their versions, so a bundle keeps its URL as long as none of its nuts changes.
+ * </p>
  * 
  * @author Guillaume DROUET
- * @version 2.0
+ * @version 2.1
  * @since 0.1.0
  */
 public class CGTextAggregatorEngine extends AbstractAggregatorEngine {
 
+    /**
+     * Bytes between two aggregated nuts.
+     */
+    private static final byte[] SEPARATOR = "\r\n".getBytes();
+
+    /**
+     * Number of hexadecimal digits of the key in a bundle name.
+     */
+    private static final int KEY_LENGTH = 8;
+
+    /**
+     * The maximum size in bytes of a bundle, zero or less for no limit.
+     */
+    private final int bundleMaxSize;
+
+    /**
+     * Number of version changes which make a nut volatile, zero or less to not track changes.
+     */
+    private final int volatileChangeCount;
+
+    /**
+     * Creates a bundle per composed heap or not.
+     */
+    private final Boolean splitByHeap;
+
+    /**
+     * The changes observed for each nut, identified by its heap and its name.
+     */
+    private final ConcurrentMap<String, ChangeHistory> changeHistories;
+
     /**
      * <p>
      * Builds the engine.
@@ -71,7 +121,25 @@ public class CGTextAggregatorEngine extends AbstractAggregatorEngine {
      * @param aggregate activate aggregation or not
      */
     public CGTextAggregatorEngine(final Boolean aggregate) {
+        this(aggregate, 0, 0, Boolean.FALSE);
+    }
+
+    /**
+     * <p>
+     * Builds the engine spreading the nuts across several bundles.
+     * </p>
+     *
+     * @param aggregate activate aggregation or not
+     * @param maxSize the maximum size in bytes of a bundle, zero for no limit
+     * @param changeCount number of version changes which make a nut volatile, zero to not track changes
+     * @param byHeap creates a bundle per composed heap or not
+     */
+    public CGTextAggregatorEngine(final Boolean aggregate, final int maxSize, final int changeCount, final Boolean byHeap) {
         super(aggregate);
+        bundleMaxSize = maxSize;
+        volatileChangeCount = changeCount;
+        splitByHeap = byHeap;
+        changeHistories = new ConcurrentHashMap<String, ChangeHistory>();
     }
     
     /**
@@ -86,10 +154,17 @@ public class CGTextAggregatorEngine extends AbstractAggregatorEngine {
         }
         
         final List<Nut> retval = new ArrayList<Nut>();
-        final String name = "aggregate" + request.getNuts().get(0).getNutType().getExtensions()[0];
-        retval.add(new CompositeNut(request.getPrefixCreatedNut().isEmpty() ? name : IOUtils.mergePath(request.getPrefixCreatedNut(), name),
-                "\r\n".getBytes(),
-                request.getNuts().toArray(new Nut[request.getNuts().size()])));
+        final String extension = request.getNuts().get(0).getNutType().getExtensions()[0];
+        final List<List<Nut>> bundles = partition(request);
+
+        if (bundles.size() == 1) {
+            retval.add(new CompositeNut(bundleName(request, "aggregate" + extension), SEPARATOR,
+                    request.getNuts().toArray(new Nut[request.getNuts().size()])));
+        } else {
+            for (final List<Nut> bundle : bundles) {
+                retval.add(new Bundle(bundleName(request, "aggregate-" + bundleKey(bundle) + extension), bundle));
+            }
+        }
 
         if (getNext() != null) {
             return getNext().parse(new EngineRequest(retval, request));
@@ -98,6 +173,146 @@ public class CGTextAggregatorEngine extends AbstractAggregatorEngine {
         }
     }
 
+    /**
+     * <p>
+     * Adds the prefix of the request to the given bundle name.
+     * </p>
+     *
+     * @param request the request
+     * @param name the name
+     * @return the prefixed name
+     */
+    private String bundleName(final EngineRequest request, final String name) {
+        return request.getPrefixCreatedNut().isEmpty() ? name : IOUtils.mergePath(request.getPrefixCreatedNut(), name);
+    }
+
+    /**
+     * <p>
+     * Computes a key identifying the nuts of the given bundle, whatever their versions.
+     * </p>
+     *
+     * @param bundle the bundle
+     * @return the key
+     */
+    private String bundleKey(final List<Nut> bundle) {
+        final MessageDigest md = IOUtils.newMessageDigest();
+
+        for (final Nut nut : bundle) {
+            md.update(nut.getName().getBytes());
+            md.update(SEPARATOR);
+        }
+
+        final String retval = new BigInteger(1, md.digest()).toString(NumberUtils.SIXTEEN);
+        return retval.length() > KEY_LENGTH ? retval.substring(0, KEY_LENGTH) : retval;
+    }
+
+    /**
+     * <p>
+     * Cuts the nuts of the given request in runs of consecutive nuts which belong to the same group and don't exceed
+     * the maximum bundle size.
+     * </p>
+     *
+     * @param request the request
+     * @return the bundles
+     * @throws WuicException if the size of a nut can't be computed
+     */
+    private List<List<Nut>> partition(final EngineRequest request) throws WuicException {
+        final List<List<Nut>> retval = new ArrayList<List<Nut>>();
+        List<Nut> current = null;
+        String currentGroup = null;
+        long currentSize = 0L;
+
+        for (final Nut nut : request.getNuts()) {
+            final String group = group(request, nut);
+            final long size = bundleMaxSize > 0 ? sizeOf(nut) : 0L;
+
+            if (current == null || !group.equals(currentGroup) || (bundleMaxSize > 0 && currentSize + size > bundleMaxSize)) {
+                current = new ArrayList<Nut>();
+                retval.add(current);
+                currentGroup = group;
+                currentSize = 0L;
+            }
+
+            current.add(nut);
+            currentSize += size;
+        }
+
+        return retval;
+    }
+
+    /**
+     * <p>
+     * Computes the group of the given nut from its heap and its change history.
+     * </p>
+     *
+     * @param request the request
+     * @param nut the nut
+     * @return the group
+     */
+    private String group(final EngineRequest request, final Nut nut) {
+        final StringBuilder retval = new StringBuilder();
+
+        if (splitByHeap) {
+            final NutsHeap heap = request.getHeap().findHeapFor(nut);
+            retval.append(heap == null ? request.getHeap().getId() : heap.getId());
+        }
+
+        if (volatileChangeCount > 0) {
+            final String key = request.getHeap().getId() + '|' + nut.getName();
+            ChangeHistory history = changeHistories.get(key);
+
+            if (history == null) {
+                final ChangeHistory newHistory = new ChangeHistory(nut.getVersionNumber());
+                history = changeHistories.putIfAbsent(key, newHistory);
+
+                if (history == null) {
+                    history = newHistory;
+                }
+            }
+
+            retval.append('|').append(history.record(nut.getVersionNumber()) >= volatileChangeCount);
+        }
+
+        return retval.toString();
+    }
+
+    /**
+     * <p>
+     * Computes the size of the given nut, reading its stream if its content is not in memory.
+     * </p>
+     *
+     * @param nut the nut
+     * @return the size in bytes
+     * @throws NutNotFoundException if the nut can't be opened
+     * @throws StreamException if an I/O error occurs
+     */
+    private static long sizeOf(final Nut nut) throws NutNotFoundException, StreamException {
+        final long known = NutUtils.sizeOf(nut);
+
+        if (known >= 0) {
+            return known;
+        }
+
+        InputStream is = null;
+
+        try {
+            is = nut.openStream();
+            final byte[] buffer = new byte[IOUtils.WUIC_BUFFER_LEN];
+            long retval = 0L;
+            int read;
+
+            while ((read = is.read(buffer)) != -1) {
+                retval += read;
+            }
+
+            return retval;
+        } catch (IOException ioe) {
+            throw new StreamException(ioe);
+        } finally {
+            IOUtils.close(is);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -105,4 +320,98 @@ public class CGTextAggregatorEngine extends AbstractAggregatorEngine {
     public List<NutType> getNutTypes() {
         return Arrays.asList(NutType.CSS, NutType.JAVASCRIPT);
     }
+
+    /**
+     * <p>
+     * The versions of a nut observed by the engine.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @version 1.0
+     * @since 0.5.0
+     */
+    private static final class ChangeHistory {
+
+        /**
+         * The last observed version.
+         */
+        private BigInteger lastVersion;
+
+        /**
+         * Number of observed changes.
+         */
+        private int changes;
+
+        /**
+         * <p>
+         * Builds a new instance.
+         * </p>
+         *
+         * @param version the first observed version
+         */
+        private ChangeHistory(final BigInteger version) {
+            lastVersion = version;
+        }
+
+        /**
+         * <p>
+         * Records the given version.
+         * </p>
+         *
+         * @param version the observed version
+         * @return the number of changes observed so far
+         */
+        private synchronized int record(final BigInteger version) {
+            if (version != null && !version.equals(lastVersion)) {
+                lastVersion = version;
+                changes++;
+            }
+
+            return changes;
+        }
+    }
+
+    /**
+     * <p>
+     * A bundle aggregating some of the nuts processed by the engine, versioned after the versions of its nuts.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @version 1.0
+     * @since 0.5.0
+     */
+    private static final class Bundle extends CompositeNut {
+
+        /**
+         * The version computed from the nuts.
+         */
+        private final BigInteger version;
+
+        /**
+         * <p>
+         * Builds a new instance.
+         * </p>
+         *
+         * @param name the bundle name
+         * @param nuts the aggregated nuts
+         */
+        private Bundle(final String name, final List<Nut> nuts) {
+            super(name, SEPARATOR, nuts.toArray(new Nut[nuts.size()]));
+            final MessageDigest md = IOUtils.newMessageDigest();
+
+            for (final Nut nut : nuts) {
+                md.update(String.valueOf(nut.getVersionNumber()).getBytes());
+            }
+
+            version = new BigInteger(md.digest());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public BigInteger getVersionNumber() {
+            return version;
+        }
+    }
 }
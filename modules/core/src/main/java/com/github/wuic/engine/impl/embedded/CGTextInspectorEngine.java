@@ -42,6 +42,7 @@ import com.github.wuic.NutType;
 import com.github.wuic.engine.EngineRequest;
 import com.github.wuic.engine.LineInspector;
 import com.github.wuic.engine.NodeEngine;
+import com.github.wuic.engine.ReferencedNutMemo;
 import com.github.wuic.exception.WuicException;
 import com.github.wuic.exception.wrapper.StreamException;
 import com.github.wuic.nut.Nut;
@@ -49,14 +50,17 @@ import com.github.wuic.nut.NutsHeap;
 import com.github.wuic.nut.core.ByteArrayNut;
 import com.github.wuic.util.CollectionUtils;
 import com.github.wuic.util.IOUtils;
+import com.github.wuic.util.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
-import java.util.regex.Matcher;
+import java.util.Set;
 
 /**
  * <p>
@@ -65,12 +69,46 @@ import java.util.regex.Matcher;
  * thanks to a set of {@link LineInspector inspectors}.
  * </p>
  *
+ * <p>
+ * The inspection of a referenced CSS nut is memorized, so a stylesheet imported by many other stylesheets is inspected
+ * only once per version. Stylesheets importing each other are detected and not inspected recursively indefinitely.
+ * </p>
+ *
  * @author Guillaume DROUET
- * @version 1.5
+ * @version 1.9
  * @since 0.3.3
  */
 public abstract class CGTextInspectorEngine extends NodeEngine {
 
+    /**
+     * Operation identifying inspection in the memo.
+     */
+    private static final String INSPECT_OPERATION = "inspect";
+
+    /**
+     * A buffer having a larger capacity in characters is not kept for reuse.
+     */
+    private static final int MAX_REUSED_CAPACITY = 1 << 20;
+
+    /**
+     * The buffer where each thread writes the transformed lines, {@code null} while it is used.
+     */
+    private static final ThreadLocal<StringBuilder> BUFFER = new ThreadLocal<StringBuilder>() {
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder();
+        }
+    };
+
+    /**
+     * Logger.
+     */
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
     /**
      * The inspectors of each line
      */
@@ -86,6 +124,11 @@ public abstract class CGTextInspectorEngine extends NodeEngine {
      */
     private String charset;
 
+    /**
+     * The inspected referenced nuts.
+     */
+    private final ReferencedNutMemo memo;
+
     /**
      * <p>
      * Builds a new instance.
@@ -99,6 +142,7 @@ public abstract class CGTextInspectorEngine extends NodeEngine {
         lineInspectors = CollectionUtils.newList(inspectors);
         doInspection = inspect;
         charset = cs;
+        memo = new ReferencedNutMemo();
     }
 
     /**
@@ -122,7 +166,7 @@ public abstract class CGTextInspectorEngine extends NodeEngine {
 
         if (works()) {
             for (Nut nut : request.getNuts()) {
-                retval.add(inspect(nut, request));
+                retval.add(inspect(nut, request, new HashSet<String>()));
             }
         }
 
@@ -144,10 +188,11 @@ public abstract class CGTextInspectorEngine extends NodeEngine {
      *
      * @param nut the nut
      * @param request the initial request
+     * @param inspecting the paths of the nuts currently inspected in the recursion
      * @return the nut corresponding the inspected nut specified in parameter
      * @throws WuicException if an I/O error occurs while reading
      */
-    protected Nut inspect(final Nut nut, final EngineRequest request)
+    protected Nut inspect(final Nut nut, final EngineRequest request, final Set<String> inspecting)
             throws WuicException {
         // Extracts the location where nut is listed in order to compute the location of the extracted imported nuts
         final int lastIndexOfSlash = nut.getName().lastIndexOf("/") + 1;
@@ -155,24 +200,23 @@ public abstract class CGTextInspectorEngine extends NodeEngine {
         final String nutLocation = lastIndexOfSlash == 0 ? "" : name.substring(0, lastIndexOfSlash);
 
         InputStreamReader isr = null;
+        final String path = canonicalPath(nut);
+        inspecting.add(path);
 
         try {
             // Reads as a line and keep the transformations in memory
             isr = new InputStreamReader(nut.openStream(), charset);
             String line = IOUtils.readString(isr);
-            final ByteArrayOutputStream os = new ByteArrayOutputStream();
             final List<Nut> referencedNuts = new ArrayList<Nut>();
 
             for (final LineInspector inspector : lineInspectors) {
                 final NutsHeap heap = new NutsHeap(request.getHeap());
                 heap.setNutDao(request.getHeap().withRootPath(nutLocation, nut), nut);
-                line = inspectLine(line, request, inspector, referencedNuts, heap, nut);
+                line = inspectLine(line, request, inspector, referencedNuts, heap, nut, inspecting);
             }
 
-            os.write((line + "\n").getBytes());
-
-            // Create and add the inspected nut with its transformations
-            final Nut inspected = new ByteArrayNut(os.toByteArray(), nut.getName(), nut.getNutType(), Arrays.asList(nut));
+            // Create and add the inspected nut with its transformations, the encoded bytes are not copied again
+            final Nut inspected = new ByteArrayNut((line + "\n").getBytes(charset), nut.getName(), nut.getNutType(), Arrays.asList(nut));
             inspected.setCacheable(nut.isCacheable());
             inspected.setAggregatable(nut.isAggregatable());
             inspected.setTextCompressible(nut.isTextCompressible());
@@ -187,10 +231,63 @@ public abstract class CGTextInspectorEngine extends NodeEngine {
         } catch (IOException ioe) {
             throw new StreamException(ioe);
         } finally {
+            inspecting.remove(path);
             IOUtils.close(isr);
         }
     }
 
+    /**
+     * <p>
+     * Inspects the given nut referenced by another nut. The result is memorized and returned without any inspection
+     * if the nut has been already inspected in the same version. If the nut is currently inspected in the recursion,
+     * which means that stylesheets import each other, it is returned without inspection.
+     * </p>
+     *
+     * @param nut the referenced nut
+     * @param request the request
+     * @param inspecting the paths of the nuts currently inspected in the recursion
+     * @return the inspected nut
+     * @throws WuicException if inspection fails
+     */
+    private Nut inspectReferenced(final Nut nut, final EngineRequest request, final Set<String> inspecting)
+            throws WuicException {
+        if (inspecting.contains(canonicalPath(nut))) {
+            log.warn("{} is imported recursively, it won't be inspected again", nut.getName());
+            return nut;
+        }
+
+        final List<Nut> memorized = memo.get(request, nut, INSPECT_OPERATION);
+
+        if (memorized != null) {
+            return memorized.get(0);
+        }
+
+        final Nut retval = inspect(nut, request, inspecting);
+        memo.put(request, nut, INSPECT_OPERATION, Arrays.asList(retval));
+
+        return retval;
+    }
+
+    /**
+     * <p>
+     * Computes the path of the nut originally created by a DAO for the given nut. The path is simplified to be
+     * compared to other paths when looking for recursive imports.
+     * </p>
+     *
+     * @param nut the nut
+     * @return the path
+     */
+    private String canonicalPath(final Nut nut) {
+        Nut origin = nut;
+
+        while (origin.getOriginalNuts() != null && !origin.getOriginalNuts().isEmpty()) {
+            origin = origin.getOriginalNuts().get(0);
+        }
+
+        final String simplified = StringUtils.simplifyPathWithDoubleDot(origin.getName());
+        return simplified == null ? origin.getName() : simplified;
+    }
+
     /**
      * <p>
      * Inspects the given line and eventually adds some extracted nuts to the nut referencing it.
@@ -206,6 +303,7 @@ public abstract class CGTextInspectorEngine extends NodeEngine {
      * @param referencedNuts the collection where any referenced nut identified by the method will be added
      * @param nutsHeap the heap wrapping the DAO to use
      * @param original the inspected nut
+     * @param inspecting the paths of the nuts currently inspected in the recursion
      * @throws WuicException if an I/O error occurs while reading
      * @return the given line eventually transformed
      */
@@ -214,40 +312,45 @@ public abstract class CGTextInspectorEngine extends NodeEngine {
                                  final LineInspector inspector,
                                  final List<Nut> referencedNuts,
                                  final NutsHeap nutsHeap,
-                                 final Nut original)
+                                 final Nut original,
+                                 final Set<String> inspecting)
             throws WuicException {
-        // Use a builder to transform the line
-        final StringBuffer retval = new StringBuffer();
+        // Reuse the buffer of the thread, a new one is used if a nested inspection occurs while it is taken
+        StringBuilder buffer = BUFFER.get();
 
-        // Looking for import statements
-        final Matcher matcher = inspector.getPattern().matcher(line);
-
-        while (matcher.find()) {
-            // Compute replacement, extract nut name and referenced nuts
-            final StringBuilder replacement = new StringBuilder();
-            final List<Nut> res = inspector.appendTransformation(matcher, replacement, request, nutsHeap, original);
+        if (buffer == null) {
+            buffer = new StringBuilder(line.length());
+        } else {
+            BUFFER.set(null);
+            buffer.setLength(0);
+            buffer.ensureCapacity(line.length());
+        }
 
-            // Evict special $ character
-            matcher.appendReplacement(retval, replacement.toString().replaceAll("\\$", ""));
+        final List<Nut> res;
+        final String retval;
 
-            // Add the nut and inspect it recursively if it's a CSS path
-            if (res != null) {
-                for (final Nut r : res) {
-                    Nut inspected = r;
+        try {
+            res = inspector.inspect(line, buffer, request, nutsHeap, original);
+            retval = buffer.toString();
+        } finally {
+            if (buffer.capacity() <= MAX_REUSED_CAPACITY) {
+                BUFFER.set(buffer);
+            }
+        }
 
-                    if (r.getNutType().equals(NutType.CSS)) {
-                        inspected = inspect(r, new EngineRequest(res, request));
-                    }
+        // Add the nut and inspect it recursively if it's a CSS path
+        for (final Nut r : res) {
+            Nut inspected = r;
 
-                    configureExtracted(inspected);
-                    referencedNuts.add(inspected);
-                }
+            if (r.getNutType().equals(NutType.CSS)) {
+                inspected = inspectReferenced(r, new EngineRequest(res, request), inspecting);
             }
-        }
 
-        matcher.appendTail(retval);
+            configureExtracted(inspected);
+            referencedNuts.add(inspected);
+        }
 
-        return retval.toString();
+        return retval;
     }
 
     /**
@@ -0,0 +1,542 @@
+/*
+ * "Copyright (c) 2014   Capgemini Technology Services (hereinafter "Capgemini")
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * -   The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Any failure to comply with the above shall automatically terminate the license
+ * and be construed as a breach of these Terms of Use causing significant harm to
+ * Capgemini.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Capgemini shall not be used in
+ * advertising or otherwise to promote the use or other dealings in this Software
+ * without prior written authorization from Capgemini.
+ *
+ * These Terms of Use are subject to French law.
+ *
+ * IMPORTANT NOTICE: The WUIC software implements software components governed by
+ * open source software licenses (BSD and Apache) of which CAPGEMINI is not the
+ * author or the editor. The rights granted on the said software components are
+ * governed by the specific terms and conditions specified by Apache 2.0 and BSD
+ * licenses."
+ */
+
+
+package com.github.wuic.engine.impl.embedded;
+
+import com.github.wuic.NutType;
+import com.github.wuic.exception.WuicException;
+import com.github.wuic.nut.Nut;
+import com.github.wuic.nut.core.ByteArrayNut;
+import com.github.wuic.util.IOUtils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * Encodes and decodes a {@link AbstractCacheEngine.CacheResult} in a compact and versioned binary format. The nut
+ * graphs are flattened into a table of payloads followed by a table of metadata referencing the payloads:
+ * </p>
+ *
+ * <ul>
+ *     <li>header: {@link #MAGIC} followed by the {@link #VERSION format version}</li>
+ *     <li>payloads: the distinct contents, a content shared by several nuts being written only once</li>
+ *     <li>nuts: name, type, flags, proxy URI, version number of original nuts, payload index and original nuts</li>
+ *     <li>references: the referenced nuts of each nut</li>
+ *     <li>results: the best effort and default maps, associating a name to a nut index</li>
+ * </ul>
+ *
+ * <p>
+ * Nuts which are not in memory, like nuts reading files, are never serialized: their content is read and written as
+ * a payload. Decoded nuts are {@link ByteArrayNut byte array nuts} sharing the same array when they share a payload.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @version 1.0
+ * @since 0.5.0
+ */
+public final class CacheResultCodec {
+
+    /**
+     * Magic number at the beginning of an encoded result ("WUIC" in ASCII).
+     */
+    public static final int MAGIC = 0x57554943;
+
+    /**
+     * Current version of the format.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * Value written instead of a size when a list or a map is {@code null}.
+     */
+    private static final int NULL = -1;
+
+    /**
+     * Binary compressible flag.
+     */
+    private static final int BINARY_COMPRESSIBLE = 1;
+
+    /**
+     * Text compressible flag.
+     */
+    private static final int TEXT_COMPRESSIBLE = 1 << 1;
+
+    /**
+     * Cacheable flag.
+     */
+    private static final int CACHEABLE = 1 << 2;
+
+    /**
+     * Aggregatable flag.
+     */
+    private static final int AGGREGATABLE = 1 << 3;
+
+    /**
+     * <p>
+     * Prevent instantiation of this class which provides only static methods.
+     * </p>
+     */
+    private CacheResultCodec() {
+        // Nothing to do
+    }
+
+    /**
+     * <p>
+     * Encodes the given result in the specified stream.
+     * </p>
+     *
+     * @param result the result to encode
+     * @param os the stream
+     * @throws IOException if an I/O error occurs or if the content of a nut can't be read
+     */
+    public static void encode(final AbstractCacheEngine.CacheResult result, final OutputStream os) throws IOException {
+        final DataOutputStream out = new DataOutputStream(os);
+        final List<Nut> values = new ArrayList<Nut>();
+
+        if (result.getBestEffortResult() != null) {
+            values.addAll(result.getBestEffortResult().values());
+        }
+
+        if (result.getDefaultResult() != null) {
+            values.addAll(result.getDefaultResult().values());
+        }
+
+        // Both maps are converted together to share the nuts referenced by several graphs
+        final Iterator<Nut> converted;
+
+        try {
+            converted = ByteArrayNut.toByteArrayNut(values).iterator();
+        } catch (WuicException we) {
+            throw new IOException(we);
+        }
+
+        final Map<String, Nut> bestEffort = convert(result.getBestEffortResult(), converted);
+        final Map<String, Nut> defaultResult = convert(result.getDefaultResult(), converted);
+
+        // Flatten the graphs
+        final Map<Nut, Integer> ids = new IdentityHashMap<Nut, Integer>();
+        final List<Nut> nuts = new ArrayList<Nut>();
+        index(bestEffort, ids, nuts);
+        index(defaultResult, ids, nuts);
+
+        // Deduplicate the contents
+        final Map<String, Integer> payloadIds = new HashMap<String, Integer>();
+        final List<ByteArrayNut> payloads = new ArrayList<ByteArrayNut>();
+        final int[] payloadOfNut = new int[nuts.size()];
+
+        for (int i = 0; i < nuts.size(); i++) {
+            final ByteArrayNut nut = ByteArrayNut.class.cast(nuts.get(i));
+            final String key = digest(nut);
+            Integer id = payloadIds.get(key);
+
+            if (id == null) {
+                id = payloads.size();
+                payloadIds.put(key, id);
+                payloads.add(nut);
+            }
+
+            payloadOfNut[i] = id;
+        }
+
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeInt(payloads.size());
+
+        for (final ByteArrayNut payload : payloads) {
+            out.writeInt(payload.getLength());
+
+            try {
+                payload.writeTo(out);
+            } catch (WuicException we) {
+                throw new IOException(we);
+            }
+        }
+
+        out.writeInt(nuts.size());
+
+        for (int i = 0; i < nuts.size(); i++) {
+            writeNut(nuts.get(i), payloadOfNut[i], ids, out);
+        }
+
+        for (final Nut nut : nuts) {
+            writeIds(nut.getReferencedNuts(), ids, out);
+        }
+
+        writeResult(bestEffort, ids, out);
+        writeResult(defaultResult, ids, out);
+        out.flush();
+    }
+
+    /**
+     * <p>
+     * Decodes a result from the given stream.
+     * </p>
+     *
+     * @param is the stream
+     * @return the decoded result
+     * @throws IOException if an I/O error occurs or if the stream does not contain a result in a supported format
+     */
+    public static AbstractCacheEngine.CacheResult decode(final InputStream is) throws IOException {
+        final DataInputStream in = new DataInputStream(is);
+
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Stream does not contain an encoded cache result");
+        }
+
+        final int version = in.readUnsignedByte();
+
+        if (version != VERSION) {
+            throw new IOException(String.format("Unsupported cache result format version %d", version));
+        }
+
+        final byte[][] payloads = new byte[in.readInt()][];
+
+        for (int i = 0; i < payloads.length; i++) {
+            payloads[i] = new byte[in.readInt()];
+            in.readFully(payloads[i]);
+        }
+
+        final Nut[] nuts = new Nut[in.readInt()];
+
+        for (int i = 0; i < nuts.length; i++) {
+            nuts[i] = readNut(payloads, nuts, in);
+        }
+
+        for (final Nut nut : nuts) {
+            final List<Nut> refs = readIds(nuts, in);
+
+            if (refs != null) {
+                for (final Nut ref : refs) {
+                    nut.addReferencedNut(ref);
+                }
+            }
+        }
+
+        final Map<String, Nut> bestEffort = readResult(nuts, in);
+        return new AbstractCacheEngine.CacheResult(bestEffort, readResult(nuts, in));
+    }
+
+    /**
+     * <p>
+     * Associates each key of the given map to the next converted nut.
+     * </p>
+     *
+     * @param result the map, could be {@code null}
+     * @param converted the converted nuts, in the order of the map
+     * @return the map of converted nuts, {@code null} if given map is {@code null}
+     */
+    private static Map<String, Nut> convert(final Map<String, Nut> result, final Iterator<Nut> converted) {
+        if (result == null) {
+            return null;
+        }
+
+        final Map<String, Nut> retval = new LinkedHashMap<String, Nut>(result.size());
+
+        for (final String key : result.keySet()) {
+            retval.put(key, converted.next());
+        }
+
+        return retval;
+    }
+
+    /**
+     * <p>
+     * Indexes the nuts of the given result and their original and referenced nuts. Original nuts are indexed before
+     * the nut itself in order to be decoded first.
+     * </p>
+     *
+     * @param result the result, could be {@code null}
+     * @param ids the index of each nut
+     * @param nuts the indexed nuts
+     */
+    private static void index(final Map<String, Nut> result, final Map<Nut, Integer> ids, final List<Nut> nuts) {
+        if (result != null) {
+            for (final Nut nut : result.values()) {
+                index(nut, ids, nuts);
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Indexes the given nut and its original and referenced nuts.
+     * </p>
+     *
+     * @param nut the nut
+     * @param ids the index of each nut
+     * @param nuts the indexed nuts
+     */
+    private static void index(final Nut nut, final Map<Nut, Integer> ids, final List<Nut> nuts) {
+        if (ids.containsKey(nut)) {
+            return;
+        }
+
+        if (nut.getOriginalNuts() != null) {
+            for (final Nut original : nut.getOriginalNuts()) {
+                index(original, ids, nuts);
+            }
+        }
+
+        ids.put(nut, nuts.size());
+        nuts.add(nut);
+
+        if (nut.getReferencedNuts() != null) {
+            for (final Nut ref : nut.getReferencedNuts()) {
+                index(ref, ids, nuts);
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Computes a key identifying the content of the given nut.
+     * </p>
+     *
+     * @param nut the nut
+     * @return the key
+     * @throws IOException if content can't be read
+     */
+    private static String digest(final ByteArrayNut nut) throws IOException {
+        final MessageDigest md = IOUtils.newMessageDigest();
+
+        try {
+            nut.writeTo(new DigestOutputStream(new OutputStream() {
+                @Override
+                public void write(final int b) {
+                    // Only digest is computed
+                }
+
+                @Override
+                public void write(final byte[] b, final int off, final int len) {
+                    // Only digest is computed
+                }
+            }, md));
+        } catch (WuicException we) {
+            throw new IOException(we);
+        }
+
+        return new BigInteger(md.digest()).toString() + ':' + nut.getLength();
+    }
+
+    /**
+     * <p>
+     * Writes the metadata of the given nut.
+     * </p>
+     *
+     * @param nut the nut
+     * @param payload the index of the nut's payload
+     * @param ids the index of each nut
+     * @param out the output
+     * @throws IOException if an I/O error occurs
+     */
+    private static void writeNut(final Nut nut, final int payload, final Map<Nut, Integer> ids, final DataOutputStream out)
+            throws IOException {
+        out.writeUTF(nut.getName());
+        out.writeUTF(nut.getNutType().name());
+        out.writeByte((Boolean.TRUE.equals(nut.isBinaryCompressible()) ? BINARY_COMPRESSIBLE : 0)
+                | (Boolean.TRUE.equals(nut.isTextCompressible()) ? TEXT_COMPRESSIBLE : 0)
+                | (Boolean.TRUE.equals(nut.isCacheable()) ? CACHEABLE : 0)
+                | (Boolean.TRUE.equals(nut.isAggregatable()) ? AGGREGATABLE : 0));
+        out.writeBoolean(nut.getProxyUri() != null);
+
+        if (nut.getProxyUri() != null) {
+            out.writeUTF(nut.getProxyUri());
+        }
+
+        out.writeInt(payload);
+        writeIds(nut.getOriginalNuts(), ids, out);
+
+        // Version of a transformed nut is computed from its original nuts
+        if (nut.getOriginalNuts() == null) {
+            final byte[] version = nut.getVersionNumber().toByteArray();
+            out.writeInt(version.length);
+            out.write(version);
+        }
+    }
+
+    /**
+     * <p>
+     * Reads the metadata of a nut and creates it.
+     * </p>
+     *
+     * @param payloads the payloads
+     * @param nuts the nuts already read
+     * @param in the input
+     * @return the nut
+     * @throws IOException if an I/O error occurs
+     */
+    private static Nut readNut(final byte[][] payloads, final Nut[] nuts, final DataInputStream in) throws IOException {
+        final String name = in.readUTF();
+        final NutType nutType = NutType.valueOf(in.readUTF());
+        final int flags = in.readUnsignedByte();
+        final String proxyUri = in.readBoolean() ? in.readUTF() : null;
+        final byte[] payload = payloads[in.readInt()];
+        final List<Nut> originals = readIds(nuts, in);
+        final Nut retval;
+
+        if (originals == null) {
+            final byte[] version = new byte[in.readInt()];
+            in.readFully(version);
+            retval = new ByteArrayNut(payload, name, nutType, new BigInteger(version));
+        } else {
+            retval = new ByteArrayNut(payload, name, nutType, originals);
+        }
+
+        retval.setBinaryCompressible((flags & BINARY_COMPRESSIBLE) != 0);
+        retval.setTextCompressible((flags & TEXT_COMPRESSIBLE) != 0);
+        retval.setCacheable((flags & CACHEABLE) != 0);
+        retval.setAggregatable((flags & AGGREGATABLE) != 0);
+        retval.setProxyUri(proxyUri);
+
+        return retval;
+    }
+
+    /**
+     * <p>
+     * Writes the indexes of the given nuts.
+     * </p>
+     *
+     * @param nuts the nuts, could be {@code null}
+     * @param ids the index of each nut
+     * @param out the output
+     * @throws IOException if an I/O error occurs
+     */
+    private static void writeIds(final List<Nut> nuts, final Map<Nut, Integer> ids, final DataOutputStream out)
+            throws IOException {
+        if (nuts == null) {
+            out.writeInt(NULL);
+        } else {
+            out.writeInt(nuts.size());
+
+            for (final Nut nut : nuts) {
+                out.writeInt(ids.get(nut));
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Reads indexes and returns the corresponding nuts.
+     * </p>
+     *
+     * @param nuts the nuts already read
+     * @param in the input
+     * @return the nuts, {@code null} if a {@code null} list has been written
+     * @throws IOException if an I/O error occurs
+     */
+    private static List<Nut> readIds(final Nut[] nuts, final DataInputStream in) throws IOException {
+        final int size = in.readInt();
+
+        if (size == NULL) {
+            return null;
+        }
+
+        final List<Nut> retval = new ArrayList<Nut>(size);
+
+        for (int i = 0; i < size; i++) {
+            retval.add(nuts[in.readInt()]);
+        }
+
+        return retval;
+    }
+
+    /**
+     * <p>
+     * Writes the given map of the result.
+     * </p>
+     *
+     * @param result the map, could be {@code null}
+     * @param ids the index of each nut
+     * @param out the output
+     * @throws IOException if an I/O error occurs
+     */
+    private static void writeResult(final Map<String, Nut> result, final Map<Nut, Integer> ids, final DataOutputStream out)
+            throws IOException {
+        if (result == null) {
+            out.writeInt(NULL);
+        } else {
+            out.writeInt(result.size());
+
+            for (final Map.Entry<String, Nut> entry : result.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeInt(ids.get(entry.getValue()));
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Reads a map of the result.
+     * </p>
+     *
+     * @param nuts the nuts already read
+     * @param in the input
+     * @return the map, {@code null} if a {@code null} map has been written
+     * @throws IOException if an I/O error occurs
+     */
+    private static Map<String, Nut> readResult(final Nut[] nuts, final DataInputStream in) throws IOException {
+        final int size = in.readInt();
+
+        if (size == NULL) {
+            return null;
+        }
+
+        final Map<String, Nut> retval = new LinkedHashMap<String, Nut>(size);
+
+        for (int i = 0; i < size; i++) {
+            final String key = in.readUTF();
+            retval.put(key, nuts[in.readInt()]);
+        }
+
+        return retval;
+    }
+}
@@ -75,9 +75,14 @@ import java.util.regex.Pattern;
  *     <li>Version number is based on content hash because this is the unique strategy that applies to inline scripts</li>
  * </ul>
  *
+ * <p>
+ * When a maximum inline size is set, the processed scripts and stylesheets which are not larger are written inside
+ * the page instead of being imported, saving a request for small pages. Larger nuts remain external. Since the
+ * transformed page is cached, this decision is taken once per page version.
+ * </p>
  *
  * @author Guillaume DROUET
- * @version 1.0
+ * @version 1.1
  * @since 0.4.4
  */
 public class HtmlInspectorEngine extends NodeEngine {
@@ -158,6 +163,11 @@ public class HtmlInspectorEngine extends NodeEngine {
      */
     private String charset;
 
+    /**
+     * The maximum size in bytes of a script or a stylesheet written inline, zero or less to never inline.
+     */
+    private final int inlineMaxSize;
+
     /**
      * <p>
      * Builds a new instance.
@@ -168,9 +178,24 @@ public class HtmlInspectorEngine extends NodeEngine {
      * @param filters the nut filters to apply
      */
     public HtmlInspectorEngine(final List<NutFilter> filters, final Boolean inspect, final String cs) {
+        this(filters, inspect, cs, 0);
+    }
+
+    /**
+     * <p>
+     * Builds a new instance inlining small scripts and stylesheets.
+     * </p>
+     *
+     * @param inspect activate inspection or not
+     * @param cs files charset
+     * @param filters the nut filters to apply
+     * @param maxSize the maximum size in bytes of a script or a stylesheet written inline, zero to never inline
+     */
+    public HtmlInspectorEngine(final List<NutFilter> filters, final Boolean inspect, final String cs, final int maxSize) {
         doInspection = inspect;
         charset = cs;
         nutFilters = filters;
+        inlineMaxSize = maxSize;
     }
 
     /**
@@ -644,6 +669,18 @@ public class HtmlInspectorEngine extends NodeEngine {
 
             for (final Nut n : merged) {
                 try {
+                    final String inline = inline(n);
+
+                    // Nuts referenced by the inlined content (images, etc) are still served
+                    if (inline != null) {
+                        if (n.getReferencedNuts() != null) {
+                            referenced.addAll(n.getReferencedNuts());
+                        }
+
+                        html.append(inline).append("\r\n");
+                        continue;
+                    }
+
                     // Just add the heap ID as prefix to refer many nuts with same name but from different heaps
                     final Nut renamed = new PrefixedNut(n, parseInfo.getHeap().getId(), Boolean.FALSE);
                     referenced.add(renamed);
@@ -682,6 +719,34 @@ public class HtmlInspectorEngine extends NodeEngine {
         return retval;
     }
 
+    /**
+     * <p>
+     * Renders the given script or stylesheet inline if it does not exceed the maximum inline size. A content which
+     * contains its own closing tag can't be written inline.
+     * </p>
+     *
+     * @param nut the processed nut
+     * @return the inline markup, {@code null} if the nut must be imported
+     * @throws WuicException if the nut can't be read
+     * @throws IOException if the charset is not supported
+     */
+    private String inline(final Nut nut) throws WuicException, IOException {
+        if (inlineMaxSize <= 0 || (nut.getNutType() != NutType.CSS && nut.getNutType() != NutType.JAVASCRIPT)) {
+            return null;
+        }
+
+        final byte[] content = NutUtils.readBytes(nut, inlineMaxSize);
+
+        if (content == null) {
+            return null;
+        }
+
+        final String script = new String(content, charset);
+        final String closingTag = nut.getNutType() == NutType.CSS ? "</style" : "</script";
+
+        return script.toLowerCase().contains(closingTag) ? null : HtmlUtil.writeInlineScript(nut.getNutType(), script);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -39,9 +39,22 @@
 package com.github.wuic.engine.impl.embedded;
 
 import com.github.wuic.engine.EngineRequest;
+import com.github.wuic.exception.WuicException;
+import com.github.wuic.metric.Gauge;
+import com.github.wuic.metric.Metrics;
+import com.github.wuic.nut.Nut;
+import com.github.wuic.nut.core.ByteArrayNut;
+import com.github.wuic.nut.core.ByteBufferNut;
+import com.github.wuic.util.SlabAllocator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.Set;
 
 /**
  * <p>
@@ -49,20 +62,58 @@ import java.util.HashMap;
  * the nuts associated to a workflow to be processed.
  * </p>
  *
+ * <p>
+ * The content of the resulting nuts can be optionally stored outside the java heap in slabs managed by a
+ * {@link SlabAllocator}. In that case, only the metadata of the cached nuts and their original nuts remain in the heap.
+ * The slot of a nut is freed when the last entry containing it is removed or replaced, but a nut retrieved before
+ * remains readable: its content is copied back in the heap. If no more memory can be reserved, the content is kept in
+ * the heap.
+ * </p>
+ *
+ * <p>
+ * The number of entries containing each nut is counted when entries are added and removed, so the heap usage is
+ * maintained incrementally and read without walking the cached nuts.
+ * </p>
+ *
  * @author Guillaume DROUET
- * @version 1.1
+ * @version 1.6
  * @since 0.4.0
  */
 public class MemoryMapCacheEngine extends ScheduledCacheEngine {
 
+    /**
+     * Number of bytes in one megabyte.
+     */
+    private static final long MEGABYTE = 1024L * 1024L;
+
+    /**
+     * Logger.
+     */
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
     /**
      * Memory map.
      */
     private Map<EngineRequest.Key, CacheResult> cache;
 
+    /**
+     * The allocator storing content outside the heap, {@code null} if content is kept in the heap.
+     */
+    private SlabAllocator allocator;
+
+    /**
+     * The number of entries containing each cached nut.
+     */
+    private Map<Nut, Integer> cachedNuts;
+
+    /**
+     * The number of bytes of cached content stored in the heap.
+     */
+    private volatile long heapBytes;
+
     /**
      * <p>
-     * Builds a new engine.
+     * Builds a new engine keeping content in the java heap.
      * </p>
      *
      * @param work if cache should be activated or not
@@ -70,31 +121,103 @@ public class MemoryMapCacheEngine extends ScheduledCacheEngine {
      * @param bestEffort enable best effort mode or not
      */
     public MemoryMapCacheEngine(final Boolean work, final int timeToLiveSeconds, final Boolean bestEffort) {
+        this(work, timeToLiveSeconds, bestEffort, 0);
+    }
+
+    /**
+     * <p>
+     * Builds a new engine.
+     * </p>
+     *
+     * @param work if cache should be activated or not
+     * @param timeToLiveSeconds the time this cache could live
+     * @param bestEffort enable best effort mode or not
+     * @param offHeapSize the maximum size in megabytes to reserve outside the heap, content is kept in the heap if lower
+     * or equals to zero
+     */
+    public MemoryMapCacheEngine(final Boolean work,
+                                final int timeToLiveSeconds,
+                                final Boolean bestEffort,
+                                final int offHeapSize) {
         super(timeToLiveSeconds, work, bestEffort);
         cache = new HashMap<EngineRequest.Key, CacheResult>();
+        cachedNuts = new IdentityHashMap<Nut, Integer>();
+        allocator = offHeapSize > 0 ? new SlabAllocator(offHeapSize * MEGABYTE) : null;
+
+        Metrics.gauge(Metrics.Component.CACHE, getMetricName(), "entries", new Gauge() {
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public long value() {
+                return getEntryCount();
+            }
+        });
+
+        Metrics.gauge(Metrics.Component.CACHE, getMetricName(), "heapBytes", new Gauge() {
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public long value() {
+                return getHeapBytes();
+            }
+        });
+
+        Metrics.gauge(Metrics.Component.CACHE, getMetricName(), "offHeapBytes", new Gauge() {
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public long value() {
+                return getOffHeapBytes();
+            }
+        });
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public void putToCache(final EngineRequest.Key request, final CacheResult nuts) {
-        cache.put(request, nuts);
+    public synchronized void putToCache(final EngineRequest.Key request, final CacheResult nuts) {
+        CacheResult result = nuts;
+
+        if (allocator != null) {
+            final Map<Nut, Nut> converted = new IdentityHashMap<Nut, Nut>();
+
+            try {
+                result = new CacheResult(toByteBufferNut(nuts.getBestEffortResult(), converted),
+                        toByteBufferNut(nuts.getDefaultResult(), converted));
+            } catch (WuicException we) {
+                log.warn("Unable to move cached nuts outside the heap, content is kept in the heap", we);
+                result = nuts;
+            }
+        }
+
+        // Count the new entry before releasing the replaced one, so the nuts they share are kept
+        for (final Nut nut : collect(result)) {
+            retain(nut);
+        }
+
+        release(cache.put(request, result));
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public void removeFromCache(final EngineRequest.Key request) {
-        cache.remove(request);
+    public synchronized void removeFromCache(final EngineRequest.Key request) {
+        release(cache.remove(request));
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public CacheResult getFromCache(final EngineRequest.Key request) {
+    public synchronized CacheResult getFromCache(final EngineRequest.Key request) {
         return cache.get(request);
     }
 
@@ -102,7 +225,177 @@ public class MemoryMapCacheEngine extends ScheduledCacheEngine {
      * {@inheritDoc}
      */
     @Override
-    public void clearCache() {
+    public synchronized void clearCache() {
+        for (final CacheResult result : cache.values()) {
+            release(result);
+        }
+
         this.cache.clear();
     }
+
+    /**
+     * <p>
+     * Gets the number of cached entries.
+     * </p>
+     *
+     * @return the number of entries
+     */
+    public synchronized int getEntryCount() {
+        return cache.size();
+    }
+
+    /**
+     * <p>
+     * Gets the number of bytes of cached content stored in the java heap.
+     * </p>
+     *
+     * @return the heap usage
+     */
+    public long getHeapBytes() {
+        return heapBytes;
+    }
+
+    /**
+     * <p>
+     * Gets the number of bytes of the memory chunks used outside the java heap.
+     * </p>
+     *
+     * @return the off-heap usage, 0 if content is kept in the heap
+     */
+    public long getOffHeapBytes() {
+        return allocator == null ? 0L : allocator.getUsedBytes();
+    }
+
+    /**
+     * <p>
+     * Gets the number of bytes reserved outside the java heap.
+     * </p>
+     *
+     * @return the reserved off-heap memory, 0 if content is kept in the heap
+     */
+    public long getOffHeapReservedBytes() {
+        return allocator == null ? 0L : allocator.getReservedBytes();
+    }
+
+    /**
+     * <p>
+     * Moves the content of the given nuts outside the heap.
+     * </p>
+     *
+     * @param nuts the nuts, could be {@code null}
+     * @param converted the nuts already converted
+     * @return the converted nuts
+     * @throws WuicException if content can't be read
+     */
+    private Map<String, Nut> toByteBufferNut(final Map<String, Nut> nuts, final Map<Nut, Nut> converted)
+            throws WuicException {
+        if (nuts == null) {
+            return null;
+        }
+
+        final Map<String, Nut> retval = new LinkedHashMap<String, Nut>(nuts.size());
+
+        for (final Map.Entry<String, Nut> entry : nuts.entrySet()) {
+            retval.put(entry.getKey(), ByteBufferNut.toByteBufferNut(entry.getValue(), allocator, converted));
+        }
+
+        return retval;
+    }
+
+    /**
+     * <p>
+     * Counts a new entry containing the given nut.
+     * </p>
+     *
+     * @param nut the nut
+     */
+    private void retain(final Nut nut) {
+        final Integer count = cachedNuts.get(nut);
+
+        if (count == null) {
+            cachedNuts.put(nut, 1);
+
+            if (nut instanceof ByteArrayNut) {
+                heapBytes += ByteArrayNut.class.cast(nut).getLength();
+            }
+        } else {
+            cachedNuts.put(nut, count + 1);
+        }
+    }
+
+    /**
+     * <p>
+     * Uncounts the entry corresponding to the given result. The slots used by the nuts which are not contained by any
+     * other entry are freed.
+     * </p>
+     *
+     * @param result the result, could be {@code null}
+     */
+    private void release(final CacheResult result) {
+        for (final Nut nut : collect(result)) {
+            final Integer count = cachedNuts.remove(nut);
+
+            if (count == null) {
+                continue;
+            } else if (count > 1) {
+                cachedNuts.put(nut, count - 1);
+            } else if (nut instanceof ByteArrayNut) {
+                heapBytes -= ByteArrayNut.class.cast(nut).getLength();
+            } else if (nut instanceof ByteBufferNut) {
+                allocator.free(ByteBufferNut.class.cast(nut).getSlot());
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Collects all the nuts of the given result, including their original and referenced nuts.
+     * </p>
+     *
+     * @param result the result, could be {@code null}
+     * @return the collected nuts
+     */
+    private Set<Nut> collect(final CacheResult result) {
+        final Set<Nut> retval = Collections.newSetFromMap(new IdentityHashMap<Nut, Boolean>());
+
+        if (result != null) {
+            if (result.getBestEffortResult() != null) {
+                for (final Nut nut : result.getBestEffortResult().values()) {
+                    collect(nut, retval);
+                }
+            }
+
+            if (result.getDefaultResult() != null) {
+                for (final Nut nut : result.getDefaultResult().values()) {
+                    collect(nut, retval);
+                }
+            }
+        }
+
+        return retval;
+    }
+
+    /**
+     * <p>
+     * Collects the given nut and its original and referenced nuts.
+     * </p>
+     *
+     * @param nut the nut
+     * @param collected the collected nuts
+     */
+    private void collect(final Nut nut, final Set<Nut> collected) {
+        if (collected.add(nut)) {
+            if (nut.getOriginalNuts() != null) {
+                for (final Nut original : nut.getOriginalNuts()) {
+                    collect(original, collected);
+                }
+            }
+
+            if (nut.getReferencedNuts() != null) {
+                for (final Nut ref : nut.getReferencedNuts()) {
+                    collect(ref, collected);
+                }
+            }
+        }
+    }
 }
@@ -38,6 +38,7 @@
 
 package com.github.wuic.engine.impl.embedded;
 
+import com.github.wuic.metric.Metrics;
 import com.github.wuic.util.WuicScheduledThreadPool;
 
 import java.util.concurrent.Future;
@@ -48,7 +49,7 @@ import java.util.concurrent.Future;
  * </p>
  *
  * @author Guillaume DROUET
- * @version 1.1
+ * @version 1.4
  * @since 0.4.0
  */
 public abstract class ScheduledCacheEngine extends AbstractCacheEngine implements Runnable {
@@ -90,15 +91,28 @@ public abstract class ScheduledCacheEngine extends AbstractCacheEngine implement
 
         // Create new scheduling if necessary
         if (timeToLiveSeconds > 0) {
-            clearCacheResult = WuicScheduledThreadPool.getInstance().executeEveryTimeInSeconds(this, timeToLiveSeconds);
+            clearCacheResult = WuicScheduledThreadPool.getInstance().executeEveryTimeInSeconds(
+                    WuicScheduledThreadPool.Lane.POLLING, this, timeToLiveSeconds);
         }
     }
 
+    /**
+     * <p>
+     * Stops the scheduled clearing of the cache and releases the metrics.
+     * </p>
+     */
+    @Override
+    public void shutdown() {
+        setTimeToLive(0);
+        super.shutdown();
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public void run() {
+        Metrics.count(Metrics.Component.CACHE, getMetricName(), "expirations", 1L);
         clearCache();
     }
 
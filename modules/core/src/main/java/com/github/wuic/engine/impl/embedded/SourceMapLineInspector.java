@@ -40,8 +40,8 @@ package com.github.wuic.engine.impl.embedded;
 
 import com.github.wuic.engine.EngineRequest;
 import com.github.wuic.engine.EngineType;
-import com.github.wuic.engine.LineInspector;
 import com.github.wuic.engine.NodeEngine;
+import com.github.wuic.engine.RegexLineInspector;
 import com.github.wuic.exception.WuicException;
 import com.github.wuic.nut.Nut;
 import com.github.wuic.nut.NutDao;
@@ -61,10 +61,10 @@ import java.util.regex.Pattern;
  * </p>
  *
  * @author Guillaume DROUET
- * @version 1.0
+ * @version 1.2
  * @since 0.4.5
  */
-public class SourceMapLineInspector extends LineInspector {
+public class SourceMapLineInspector extends RegexLineInspector {
 
     /**
      * Logger.
@@ -116,7 +116,7 @@ public class SourceMapLineInspector extends LineInspector {
         final List<Nut> res;
 
         if (!nuts.isEmpty()) {
-            res = manageAppend(nuts.iterator().next(), replacement, request, heap);
+            res = manageAppend(getMemo(), nuts.iterator().next(), replacement, request, heap);
         } else {
             log.warn("{} is referenced as a relative file but not found with in the DAO. Keeping same value...", referencedPath);
             replacement.append(matcher.group());
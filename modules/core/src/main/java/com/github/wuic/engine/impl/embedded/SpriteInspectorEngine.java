@@ -51,7 +51,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.imageio.ImageIO;
 import javax.imageio.ImageReader;
@@ -63,8 +65,13 @@ import javax.imageio.stream.ImageInputStream;
  * a potential aggregated image.
  * </p>
  *
+ * <p>
+ * The {@link SpriteProvider providers} are shared by all the requests, the regions of each image being given to them
+ * for each invocation. Consequently, several images can be inspected concurrently.
+ * </p>
+ *
  * @author Guillaume DROUET
- * @version 1.0
+ * @version 1.1
  * @since 0.4.4
  */
 public class SpriteInspectorEngine extends NodeEngine {
@@ -111,13 +118,13 @@ public class SpriteInspectorEngine extends NodeEngine {
 
             // Calculate type and dimensions of the final image
             for (final Nut n : res) {
-                // Clear previous work
-                initSpriteProviders(n.getName());
+                // Regions are collected for each image so the shared providers keep no state
+                final Map<String, Region> regions = new LinkedHashMap<String, Region>();
 
                 if (n.getOriginalNuts() != null) {
                     for (final Nut origin : n.getOriginalNuts()) {
                         if (origin instanceof ImageNut) {
-                            addRegionToSpriteProviders(ImageNut.class.cast(origin).getRegion(), origin.getName());
+                            regions.put(origin.getName(), ImageNut.class.cast(origin).getRegion());
                         } else {
                             throw new BadArgumentException(new IllegalArgumentException("Processed nuts must refer ImageNut instances as original nuts"));
                         }
@@ -131,7 +138,7 @@ public class SpriteInspectorEngine extends NodeEngine {
 
                         ImageReader reader = ImageIO.getImageReaders(iis).next();
                         reader.setInput(iis);
-                        addRegionToSpriteProviders(new Region(0, 0, reader.getWidth(0) - 1, reader.getHeight(0) - 1), n.getName());
+                        regions.put(n.getName(), new Region(0, 0, reader.getWidth(0) - 1, reader.getHeight(0) - 1));
                     } catch (IOException ioe) {
                         throw new StreamException(ioe);
                     } finally {
@@ -148,40 +155,13 @@ public class SpriteInspectorEngine extends NodeEngine {
                     suffix  = IOUtils.mergePath(request.getPrefixCreatedNut(), String.valueOf(spriteCpt++));
                 }
 
-                retval.add(applySpriteProviders(url, request.getHeap().getId(), suffix, n, request));
+                retval.add(applySpriteProviders(url, request.getHeap().getId(), suffix, n, regions, request));
             }
 
             return retval;
         }
     }
 
-    /**
-     * <p>
-     * Initializes all sprite providers.
-     * </p>
-     *
-     * @param name the name
-     */
-    private void initSpriteProviders(final String name) {
-        for (final SpriteProvider sp : spriteProviders) {
-            sp.init(name);
-        }
-    }
-
-    /**
-     * <p>
-     * Adds the region to all sprite providers.
-     * </p>
-     *
-     * @param region the region
-     * @param name the region name
-     */
-    private void addRegionToSpriteProviders(final Region region, final String name) {
-        for (final SpriteProvider sp : spriteProviders) {
-            sp.addRegion(region, name);
-        }
-    }
-
     /**
      * <p>
      * Generates sprites from all sprite providers and add it to the given nut.
@@ -191,10 +171,16 @@ public class SpriteInspectorEngine extends NodeEngine {
      * @param heapId the HEAP id
      * @param suffix the name suffix
      * @param n the nut
+     * @param regions the regions in the nut
      * @param request the initial engine request
      * @throws WuicException if generation fails
      */
-    private Nut applySpriteProviders(final String url, final String heapId, final String suffix, final Nut n, final EngineRequest request)
+    private Nut applySpriteProviders(final String url,
+                                     final String heapId,
+                                     final String suffix,
+                                     final Nut n,
+                                     final Map<String, Region> regions,
+                                     final EngineRequest request)
             throws WuicException {
         if (spriteProviders.length == 0) {
             return n;
@@ -203,7 +189,7 @@ public class SpriteInspectorEngine extends NodeEngine {
         Nut retval = null;
 
         for (final SpriteProvider sp : spriteProviders) {
-            Nut nut = sp.getSprite(url, request.getWorkflowId(), suffix, Arrays.asList(n));
+            Nut nut = sp.getSprite(url, request.getWorkflowId(), suffix, n.getName(), regions, Arrays.asList(n));
             final NodeEngine chain = request.getChainFor(nut.getNutType());
 
             if (chain != null) {
@@ -41,6 +41,7 @@ package com.github.wuic.engine.setter;
 import com.github.wuic.ApplicationConfig;
 import com.github.wuic.engine.AbstractEngineBuilder;
 import com.github.wuic.engine.impl.embedded.CGBinPacker;
+import com.github.wuic.engine.impl.embedded.CGMaxRectsPacker;
 import com.github.wuic.util.PropertySetter;
 
 /**
@@ -48,12 +49,27 @@ import com.github.wuic.util.PropertySetter;
  * Setter for the {@link com.github.wuic.ApplicationConfig#PACKER_CLASS_NAME} property.
  * </p>
  *
+ * <p>
+ * Besides a class name, the value could be {@link #BIN_TREE} for the {@link CGBinPacker} or {@link #MAX_RECTS} for
+ * the {@link CGMaxRectsPacker}.
+ * </p>
+ *
  * @author Guillaume DROUET
- * @version 1.0
+ * @version 1.1
  * @since 0.4.0
  */
 public class PackerPropertySetter extends PropertySetter.PropertySetterOfObject {
 
+    /**
+     * Alias of the {@link CGBinPacker}.
+     */
+    public static final String BIN_TREE = "binTree";
+
+    /**
+     * Alias of the {@link CGMaxRectsPacker}.
+     */
+    public static final String MAX_RECTS = "maxRects";
+
     /**
      * <p>
      * Creates a new instance with a specific default value.
@@ -84,4 +100,18 @@ public class PackerPropertySetter extends PropertySetter.PropertySetterOfObject
     public String getPropertyKey() {
         return ApplicationConfig.PACKER_CLASS_NAME;
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void set(final Object value) {
+        if (BIN_TREE.equals(value)) {
+            super.set(CGBinPacker.class.getName());
+        } else if (MAX_RECTS.equals(value)) {
+            super.set(CGMaxRectsPacker.class.getName());
+        } else {
+            super.set(value);
+        }
+    }
 }
@@ -44,7 +44,7 @@ package com.github.wuic.exception;
  * </p>
  *
  * @author Guillaume DROUET
- * @version 1.2
+ * @version 1.3
  * @since 0.3.4
  */
 public interface ErrorCode {
@@ -75,6 +75,11 @@ public interface ErrorCode {
      */
     long POLLING_NOT_SUPPORTED_EXCEPTION = 19860606005L;
 
+    /**
+     * {@link com.github.wuic.nut.NutDao#save(com.github.wuic.nut.Nut)} is supported but failed to write a nut.
+     */
+    long SAVE_FAILED_EXCEPTION = 19860606006L;
+
     /**
      * Default code when the wuic.xml path can't be read.
      */
@@ -0,0 +1,175 @@
+/*
+ * "Copyright (c) 2014   Capgemini Technology Services (hereinafter "Capgemini")
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * -   The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Any failure to comply with the above shall automatically terminate the license
+ * and be construed as a breach of these Terms of Use causing significant harm to
+ * Capgemini.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Capgemini shall not be used in
+ * advertising or otherwise to promote the use or other dealings in this Software
+ * without prior written authorization from Capgemini.
+ *
+ * These Terms of Use are subject to French law.
+ *
+ * IMPORTANT NOTICE: The WUIC software implements software components governed by
+ * open source software licenses (BSD and Apache) of which CAPGEMINI is not the
+ * author or the editor. The rights granted on the said software components are
+ * governed by the specific terms and conditions specified by Apache 2.0 and BSD
+ * licenses."
+ */
+
+
+package com.github.wuic.metric;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>
+ * A lock-free distribution of positive samples. Samples are counted in buckets whose bounds are powers of two, so
+ * recording a sample never allocates and the percentiles are approximated by the upper bound of their bucket.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @version 1.0
+ * @since 0.5.0
+ */
+public final class Histogram {
+
+    /**
+     * One bucket per possible position of the highest bit.
+     */
+    private static final int BUCKETS = Long.SIZE;
+
+    /**
+     * Base of the percentiles.
+     */
+    private static final double PERCENT = 100d;
+
+    /**
+     * Number of samples in each bucket.
+     */
+    private final AtomicLongArray buckets;
+
+    /**
+     * Number of samples.
+     */
+    private final AtomicLong count;
+
+    /**
+     * Sum of the samples.
+     */
+    private final AtomicLong sum;
+
+    /**
+     * Highest sample.
+     */
+    private final AtomicLong max;
+
+    /**
+     * <p>
+     * Builds a new empty histogram.
+     * </p>
+     */
+    public Histogram() {
+        buckets = new AtomicLongArray(BUCKETS);
+        count = new AtomicLong();
+        sum = new AtomicLong();
+        max = new AtomicLong();
+    }
+
+    /**
+     * <p>
+     * Records a sample. Negative samples are recorded as 0.
+     * </p>
+     *
+     * @param value the sample
+     */
+    public void record(final long value) {
+        final long sample = Math.max(0L, value);
+
+        // Bucket i contains the samples having their highest bit at position i - 1, bucket 0 contains 0
+        buckets.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(sample));
+        count.incrementAndGet();
+        sum.addAndGet(sample);
+
+        long current = max.get();
+
+        while (sample > current && !max.compareAndSet(current, sample)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * <p>
+     * Gets the number of samples.
+     * </p>
+     *
+     * @return the count
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * <p>
+     * Gets the mean of the samples.
+     * </p>
+     *
+     * @return the mean, 0 if no sample has been recorded
+     */
+    public long getMean() {
+        final long c = count.get();
+        return c == 0L ? 0L : sum.get() / c;
+    }
+
+    /**
+     * <p>
+     * Gets the highest sample.
+     * </p>
+     *
+     * @return the max
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * <p>
+     * Gets an approximation of the given percentile, never higher than the max.
+     * </p>
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return the approximation
+     */
+    public long getPercentile(final int percentile) {
+        long remaining = (long) Math.ceil(count.get() * percentile / PERCENT);
+
+        for (int i = 0; i < BUCKETS; i++) {
+            remaining -= buckets.get(i);
+
+            if (remaining <= 0L) {
+                return Math.min(max.get(), (1L << i) - 1L);
+            }
+        }
+
+        return max.get();
+    }
+}
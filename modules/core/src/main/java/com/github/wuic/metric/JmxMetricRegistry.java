@@ -0,0 +1,404 @@
+/*
+ * "Copyright (c) 2014   Capgemini Technology Services (hereinafter "Capgemini")
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * -   The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Any failure to comply with the above shall automatically terminate the license
+ * and be construed as a breach of these Terms of Use causing significant harm to
+ * Capgemini.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Capgemini shall not be used in
+ * advertising or otherwise to promote the use or other dealings in this Software
+ * without prior written authorization from Capgemini.
+ *
+ * These Terms of Use are subject to French law.
+ *
+ * IMPORTANT NOTICE: The WUIC software implements software components governed by
+ * open source software licenses (BSD and Apache) of which CAPGEMINI is not the
+ * author or the editor. The rights granted on the said software components are
+ * governed by the specific terms and conditions specified by Apache 2.0 and BSD
+ * licenses."
+ */
+
+
+package com.github.wuic.metric;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * A {@link MetricRegistry} exposing each component as a MBean of the platform server, named
+ * {@code com.github.wuic:type=<kind>,name=<component name>}.
+ * </p>
+ *
+ * <p>
+ * Each counter and gauge is a read-only attribute. Each distribution is exposed with the attributes
+ * {@code <metric>.count}, {@code <metric>.mean}, {@code <metric>.p50}, {@code <metric>.p99} and {@code <metric>.max}.
+ * When a component counts both {@link Metrics#BYTES_IN} and {@link Metrics#BYTES_OUT}, a {@code ratio} attribute gives the size of
+ * the output in percent of the input, for instance the compression ratio of a compressor.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @version 1.1
+ * @since 0.5.0
+ */
+public class JmxMetricRegistry implements MetricRegistry {
+
+    /**
+     * The domain of the MBeans.
+     */
+    public static final String DOMAIN = "com.github.wuic";
+
+    /**
+     * The median.
+     */
+    private static final int MEDIAN = 50;
+
+    /**
+     * The high percentile exposed, which reveals the outliers.
+     */
+    private static final int HIGH_PERCENTILE = 99;
+
+    /**
+     * Base of the ratio.
+     */
+    private static final long PERCENT = 100L;
+
+    /**
+     * The logger.
+     */
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    /**
+     * The server where MBeans are registered.
+     */
+    private final MBeanServer server;
+
+    /**
+     * The MBeans by object name.
+     */
+    private final ConcurrentMap<String, ComponentMBean> components;
+
+    /**
+     * <p>
+     * Builds a new registry for the platform MBean server.
+     * </p>
+     */
+    public JmxMetricRegistry() {
+        this(ManagementFactory.getPlatformMBeanServer());
+    }
+
+    /**
+     * <p>
+     * Builds a new registry for the given server.
+     * </p>
+     *
+     * @param mBeanServer the server
+     */
+    public JmxMetricRegistry(final MBeanServer mBeanServer) {
+        server = mBeanServer;
+        components = new ConcurrentHashMap<String, ComponentMBean>();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void count(final Metrics.Component component, final String name, final String metric, final long delta) {
+        final ComponentMBean mBean = getComponent(component, name);
+        AtomicLong counter = mBean.counters.get(metric);
+
+        if (counter == null) {
+            final AtomicLong created = new AtomicLong();
+            counter = mBean.counters.putIfAbsent(metric, created);
+
+            if (counter == null) {
+                counter = created;
+            }
+        }
+
+        counter.addAndGet(delta);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void record(final Metrics.Component component, final String name, final String metric, final long value) {
+        final ComponentMBean mBean = getComponent(component, name);
+        Histogram histogram = mBean.histograms.get(metric);
+
+        if (histogram == null) {
+            final Histogram created = new Histogram();
+            histogram = mBean.histograms.putIfAbsent(metric, created);
+
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+
+        histogram.record(value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void gauge(final Metrics.Component component, final String name, final String metric, final Gauge gauge) {
+        getComponent(component, name).gauges.put(metric, gauge);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void unregister(final Metrics.Component component, final String name) {
+        final String objectName = objectName(component, name);
+
+        if (components.remove(objectName) != null) {
+            try {
+                server.unregisterMBean(new ObjectName(objectName));
+            } catch (JMException je) {
+                log.warn("Unable to unregister MBean {}", objectName, je);
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Unregisters all the MBeans created by this registry.
+     * </p>
+     */
+    public void unregisterAll() {
+        for (final String objectName : components.keySet()) {
+            try {
+                server.unregisterMBean(new ObjectName(objectName));
+            } catch (JMException je) {
+                log.warn("Unable to unregister MBean {}", objectName, je);
+            }
+        }
+
+        components.clear();
+    }
+
+    /**
+     * <p>
+     * Gets the MBean of the given component, registering it if it does not exist.
+     * </p>
+     *
+     * @param component the kind of component
+     * @param name the component name
+     * @return the MBean
+     */
+    private ComponentMBean getComponent(final Metrics.Component component, final String name) {
+        final String objectName = objectName(component, name);
+        ComponentMBean retval = components.get(objectName);
+
+        if (retval == null) {
+            final ComponentMBean created = new ComponentMBean();
+            retval = components.putIfAbsent(objectName, created);
+
+            if (retval == null) {
+                retval = created;
+
+                try {
+                    final ObjectName on = new ObjectName(objectName);
+
+                    // A previous registry could have registered the same component
+                    if (server.isRegistered(on)) {
+                        server.unregisterMBean(on);
+                    }
+
+                    server.registerMBean(created, on);
+                } catch (JMException je) {
+                    log.warn("Unable to register MBean {}, metrics are collected but not exposed", objectName, je);
+                }
+            }
+        }
+
+        return retval;
+    }
+
+    /**
+     * <p>
+     * Builds the object name of the MBean of the given component.
+     * </p>
+     *
+     * @param component the kind of component
+     * @param name the component name
+     * @return the object name
+     */
+    private static String objectName(final Metrics.Component component, final String name) {
+        return String.format("%s:type=%s,name=%s", DOMAIN, component.name().toLowerCase(), ObjectName.quote(name));
+    }
+
+    /**
+     * <p>
+     * The MBean of a component, whose attributes are created with the metrics.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @version 1.0
+     * @since 0.5.0
+     */
+    private static final class ComponentMBean implements DynamicMBean {
+
+        /**
+         * The counters.
+         */
+        private final ConcurrentMap<String, AtomicLong> counters = new ConcurrentHashMap<String, AtomicLong>();
+
+        /**
+         * The distributions.
+         */
+        private final ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap<String, Histogram>();
+
+        /**
+         * The gauges.
+         */
+        private final ConcurrentMap<String, Gauge> gauges = new ConcurrentHashMap<String, Gauge>();
+
+        /**
+         * <p>
+         * Reads all the attributes.
+         * </p>
+         *
+         * @return the value of each attribute
+         */
+        private Map<String, Long> snapshot() {
+            final Map<String, Long> retval = new TreeMap<String, Long>();
+
+            for (final Map.Entry<String, AtomicLong> entry : counters.entrySet()) {
+                retval.put(entry.getKey(), entry.getValue().get());
+            }
+
+            for (final Map.Entry<String, Gauge> entry : gauges.entrySet()) {
+                retval.put(entry.getKey(), entry.getValue().value());
+            }
+
+            for (final Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+                final Histogram histogram = entry.getValue();
+                retval.put(entry.getKey() + ".count", histogram.getCount());
+                retval.put(entry.getKey() + ".mean", histogram.getMean());
+                retval.put(entry.getKey() + ".p50", histogram.getPercentile(MEDIAN));
+                retval.put(entry.getKey() + ".p99", histogram.getPercentile(HIGH_PERCENTILE));
+                retval.put(entry.getKey() + ".max", histogram.getMax());
+            }
+
+            final AtomicLong in = counters.get(Metrics.BYTES_IN);
+            final AtomicLong out = counters.get(Metrics.BYTES_OUT);
+
+            if (in != null && out != null && in.get() > 0L) {
+                retval.put("ratio", out.get() * PERCENT / in.get());
+            }
+
+            return retval;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Object getAttribute(final String attribute) throws AttributeNotFoundException {
+            final Long retval = snapshot().get(attribute);
+
+            if (retval == null) {
+                throw new AttributeNotFoundException(attribute);
+            }
+
+            return retval;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void setAttribute(final Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException(String.format("%s is read-only", attribute.getName()));
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public AttributeList getAttributes(final String[] attributes) {
+            final Map<String, Long> snapshot = snapshot();
+            final AttributeList retval = new AttributeList();
+
+            for (final String attribute : attributes) {
+                final Long value = snapshot.get(attribute);
+
+                if (value != null) {
+                    retval.add(new Attribute(attribute, value));
+                }
+            }
+
+            return retval;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public AttributeList setAttributes(final AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Object invoke(final String actionName, final Object[] params, final String[] signature) {
+            throw new UnsupportedOperationException(actionName);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            final List<MBeanAttributeInfo> attributes = new ArrayList<MBeanAttributeInfo>();
+
+            for (final String attribute : snapshot().keySet()) {
+                attributes.add(new MBeanAttributeInfo(attribute, Long.class.getName(), attribute, true, false, false));
+            }
+
+            return new MBeanInfo(getClass().getName(), "WUIC metrics", attributes.toArray(new MBeanAttributeInfo[attributes.size()]),
+                    null, null, null);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * "Copyright (c) 2014   Capgemini Technology Services (hereinafter "Capgemini")
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * -   The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Any failure to comply with the above shall automatically terminate the license
+ * and be construed as a breach of these Terms of Use causing significant harm to
+ * Capgemini.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Capgemini shall not be used in
+ * advertising or otherwise to promote the use or other dealings in this Software
+ * without prior written authorization from Capgemini.
+ *
+ * These Terms of Use are subject to French law.
+ *
+ * IMPORTANT NOTICE: The WUIC software implements software components governed by
+ * open source software licenses (BSD and Apache) of which CAPGEMINI is not the
+ * author or the editor. The rights granted on the said software components are
+ * governed by the specific terms and conditions specified by Apache 2.0 and BSD
+ * licenses."
+ */
+
+
+package com.github.wuic.metric;
+
+/**
+ * <p>
+ * A registry receiving the metrics. Each metric belongs to a named component of a given kind, for instance the
+ * {@code invocations} metric of the {@code CGTextAggregatorEngine} engine.
+ * </p>
+ *
+ * <p>
+ * Implementations are invoked from the threads doing the work, so they must be thread-safe and fast. A custom registry
+ * can be installed with {@link Metrics#setRegistry(MetricRegistry)} or its class name specified with the
+ * {@link Metrics#REGISTRY_PROPERTY} system property to bridge any monitoring library.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @version 1.1
+ * @since 0.5.0
+ */
+public interface MetricRegistry {
+
+    /**
+     * <p>
+     * Adds the given delta to a counter.
+     * </p>
+     *
+     * @param component the kind of component
+     * @param name the component name
+     * @param metric the metric name
+     * @param delta the value to add
+     */
+    void count(Metrics.Component component, String name, String metric, long delta);
+
+    /**
+     * <p>
+     * Records a sample of a distribution, like a latency.
+     * </p>
+     *
+     * @param component the kind of component
+     * @param name the component name
+     * @param metric the metric name
+     * @param value the sample
+     */
+    void record(Metrics.Component component, String name, String metric, long value);
+
+    /**
+     * <p>
+     * Registers a gauge. A gauge already registered with the same names is replaced.
+     * </p>
+     *
+     * @param component the kind of component
+     * @param name the component name
+     * @param metric the metric name
+     * @param gauge the gauge
+     */
+    void gauge(Metrics.Component component, String name, String metric, Gauge gauge);
+
+    /**
+     * <p>
+     * Removes all the metrics of a component, for instance when the engine publishing them has been replaced. The
+     * registry must not reference its gauges anymore.
+     * </p>
+     *
+     * @param component the kind of component
+     * @param name the component name
+     */
+    void unregister(Metrics.Component component, String name);
+}
@@ -0,0 +1,444 @@
+/*
+ * "Copyright (c) 2014   Capgemini Technology Services (hereinafter "Capgemini")
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * -   The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Any failure to comply with the above shall automatically terminate the license
+ * and be construed as a breach of these Terms of Use causing significant harm to
+ * Capgemini.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Capgemini shall not be used in
+ * advertising or otherwise to promote the use or other dealings in this Software
+ * without prior written authorization from Capgemini.
+ *
+ * These Terms of Use are subject to French law.
+ *
+ * IMPORTANT NOTICE: The WUIC software implements software components governed by
+ * open source software licenses (BSD and Apache) of which CAPGEMINI is not the
+ * author or the editor. The rights granted on the said software components are
+ * governed by the specific terms and conditions specified by Apache 2.0 and BSD
+ * licenses."
+ */
+
+
+package com.github.wuic.metric;
+
+import com.github.wuic.util.NumberUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>
+ * Entry point used by WUIC to publish its metrics. Metrics are disabled by default: each method then returns after
+ * reading a single volatile field, so the instrumentation can stay in the code paths without overhead.
+ * </p>
+ *
+ * <p>
+ * Metrics are enabled when a {@link MetricRegistry} is installed with {@link #setRegistry(MetricRegistry)}, or at startup
+ * with the {@link #REGISTRY_PROPERTY} system property: {@code jmx} installs a {@link JmxMetricRegistry}, any other value
+ * is the class name of a registry to instantiate.
+ * </p>
+ *
+ * <p>
+ * The gauges are kept here even if metrics are disabled, so a registry installed later still exposes the gauges of the
+ * components created before. A component must {@link #unregister(Component, String) unregister} its metrics when it is
+ * not used anymore to release its gauges.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @version 1.1
+ * @since 0.5.0
+ */
+public final class Metrics {
+
+    /**
+     * System property enabling the metrics.
+     */
+    public static final String REGISTRY_PROPERTY = "c.g.wuic.metrics";
+
+    /**
+     * Value of {@link #REGISTRY_PROPERTY} enabling the JMX registry.
+     */
+    public static final String JMX = "jmx";
+
+    /**
+     * Name of the counter incremented by {@link Timing#stop(Component, String)}.
+     */
+    public static final String INVOCATIONS = "invocations";
+
+    /**
+     * Name of the latency recorded by {@link Timing#stop(Component, String)}, in microseconds.
+     */
+    public static final String LATENCY = "latency";
+
+    /**
+     * Name of the latency excluding nested timings recorded by {@link Timing#stop(Component, String)}, in microseconds.
+     */
+    public static final String SELF_LATENCY = "selfLatency";
+
+    /**
+     * Name of the counter of bytes read by a component.
+     */
+    public static final String BYTES_IN = "bytesIn";
+
+    /**
+     * Name of the counter of bytes written by a component.
+     */
+    public static final String BYTES_OUT = "bytesOut";
+
+    /**
+     * The logger.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(Metrics.class);
+
+    /**
+     * Time spent by the nested timings of the current {@link Timing} of each thread.
+     */
+    private static final ThreadLocal<long[]> NESTED = new ThreadLocal<long[]>() {
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected long[] initialValue() {
+            return new long[1];
+        }
+    };
+
+    /**
+     * The registered gauges by component kind, component name and metric name.
+     */
+    private static final ConcurrentMap<String, GaugeRegistration> GAUGES = new ConcurrentHashMap<String, GaugeRegistration>();
+
+    /**
+     * The registry, {@code null} if metrics are disabled.
+     */
+    private static volatile MetricRegistry registry = createRegistry(System.getProperty(REGISTRY_PROPERTY));
+
+    /**
+     * <p>
+     * The different kinds of components publishing metrics.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @version 1.0
+     * @since 0.5.0
+     */
+    public enum Component {
+
+        /**
+         * Node and head engines.
+         */
+        ENGINE,
+
+        /**
+         * Nut DAOs.
+         */
+        DAO,
+
+        /**
+         * Cache engines.
+         */
+        CACHE
+    }
+
+    /**
+     * <p>
+     * Prevent instantiation of this class which provides only static methods.
+     * </p>
+     */
+    private Metrics() {
+    }
+
+    /**
+     * <p>
+     * Installs the given registry. The gauges already registered are registered in the new registry.
+     * </p>
+     *
+     * @param r the registry, {@code null} to disable metrics
+     */
+    public static void setRegistry(final MetricRegistry r) {
+        registry = r;
+
+        // A gauge registered concurrently is either seen here or registered with the new registry by gauge()
+        if (r != null) {
+            for (final GaugeRegistration registration : GAUGES.values()) {
+                r.gauge(registration.component, registration.name, registration.metric, registration.gauge);
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Gets the installed registry.
+     * </p>
+     *
+     * @return the registry, {@code null} if metrics are disabled
+     */
+    public static MetricRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * <p>
+     * Indicates if the metrics are enabled.
+     * </p>
+     *
+     * @return {@code true} if a registry is installed, {@code false} otherwise
+     */
+    public static Boolean isEnabled() {
+        return registry != null;
+    }
+
+    /**
+     * <p>
+     * Adds the given delta to a counter if metrics are enabled.
+     * </p>
+     *
+     * @param component the kind of component
+     * @param name the component name
+     * @param metric the metric name
+     * @param delta the value to add
+     */
+    public static void count(final Component component, final String name, final String metric, final long delta) {
+        final MetricRegistry r = registry;
+
+        if (r != null) {
+            r.count(component, name, metric, delta);
+        }
+    }
+
+    /**
+     * <p>
+     * Records a sample if metrics are enabled.
+     * </p>
+     *
+     * @param component the kind of component
+     * @param name the component name
+     * @param metric the metric name
+     * @param value the sample
+     */
+    public static void record(final Component component, final String name, final String metric, final long value) {
+        final MetricRegistry r = registry;
+
+        if (r != null) {
+            r.record(component, name, metric, value);
+        }
+    }
+
+    /**
+     * <p>
+     * Registers a gauge. The gauge is exposed by the current registry and by any registry installed later, until its
+     * component is {@link #unregister(Component, String) unregistered}.
+     * </p>
+     *
+     * @param component the kind of component
+     * @param name the component name
+     * @param metric the metric name
+     * @param gauge the gauge
+     */
+    public static void gauge(final Component component, final String name, final String metric, final Gauge gauge) {
+        GAUGES.put(key(component, name) + metric, new GaugeRegistration(component, name, metric, gauge));
+        final MetricRegistry r = registry;
+
+        if (r != null) {
+            r.gauge(component, name, metric, gauge);
+        }
+    }
+
+    /**
+     * <p>
+     * Removes the gauges of the given component and its metrics from the current registry.
+     * </p>
+     *
+     * @param component the kind of component
+     * @param name the component name
+     */
+    public static void unregister(final Component component, final String name) {
+        final String prefix = key(component, name);
+
+        for (final Iterator<String> it = GAUGES.keySet().iterator(); it.hasNext();) {
+            if (it.next().startsWith(prefix)) {
+                it.remove();
+            }
+        }
+
+        final MetricRegistry r = registry;
+
+        if (r != null) {
+            r.unregister(component, name);
+        }
+    }
+
+    /**
+     * <p>
+     * Builds the key prefixing the gauges of a component.
+     * </p>
+     *
+     * @param component the kind of component
+     * @param name the component name
+     * @return the key
+     */
+    private static String key(final Component component, final String name) {
+        return component.name() + '/' + name + '/';
+    }
+
+    /**
+     * <p>
+     * Starts a timing in the current thread.
+     * </p>
+     *
+     * @return the timing to stop, {@code null} if metrics are disabled
+     */
+    public static Timing start() {
+        return registry == null ? null : new Timing();
+    }
+
+    /**
+     * <p>
+     * Creates the registry specified by the system property.
+     * </p>
+     *
+     * @param value the property value
+     * @return the registry, {@code null} if the value is {@code null} or the registry can't be created
+     */
+    private static MetricRegistry createRegistry(final String value) {
+        if (value == null) {
+            return null;
+        } else if (JMX.equals(value)) {
+            return new JmxMetricRegistry();
+        }
+
+        try {
+            return MetricRegistry.class.cast(Class.forName(value).newInstance());
+        } catch (Exception e) {
+            LOG.error("Unable to create metric registry {}, metrics are disabled", value, e);
+            return null;
+        }
+    }
+
+    /**
+     * <p>
+     * A gauge with the names it is registered with.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @version 1.0
+     * @since 0.5.0
+     */
+    private static final class GaugeRegistration {
+
+        /**
+         * The kind of component.
+         */
+        private final Component component;
+
+        /**
+         * The component name.
+         */
+        private final String name;
+
+        /**
+         * The metric name.
+         */
+        private final String metric;
+
+        /**
+         * The gauge.
+         */
+        private final Gauge gauge;
+
+        /**
+         * <p>
+         * Builds a new instance.
+         * </p>
+         *
+         * @param c the kind of component
+         * @param n the component name
+         * @param m the metric name
+         * @param g the gauge
+         */
+        private GaugeRegistration(final Component c, final String n, final String m, final Gauge g) {
+            component = c;
+            name = n;
+            metric = m;
+            gauge = g;
+        }
+    }
+
+    /**
+     * <p>
+     * Measures an operation. When timings are nested in the same thread, the self latency of the enclosing operation
+     * excludes the time spent in the nested ones. This way, an engine calling the next engine of its chain is not charged
+     * for the work of its successors.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @version 1.0
+     * @since 0.5.0
+     */
+    public static final class Timing {
+
+        /**
+         * When the operation started.
+         */
+        private final long start;
+
+        /**
+         * The nested time of the enclosing timing.
+         */
+        private final long enclosingNested;
+
+        /**
+         * <p>
+         * Starts a new timing.
+         * </p>
+         */
+        private Timing() {
+            final long[] nested = NESTED.get();
+            enclosingNested = nested[0];
+            nested[0] = 0L;
+            start = System.nanoTime();
+        }
+
+        /**
+         * <p>
+         * Stops this timing and records it for the given component.
+         * </p>
+         *
+         * @param component the kind of component
+         * @param name the component name
+         */
+        public void stop(final Component component, final String name) {
+            final long elapsed = System.nanoTime() - start;
+            final long[] nested = NESTED.get();
+            final long self = elapsed - nested[0];
+
+            // Enclosing timing will exclude this one from its self latency
+            nested[0] = enclosingNested + elapsed;
+
+            count(component, name, INVOCATIONS, 1L);
+            record(component, name, LATENCY, elapsed / NumberUtils.ONE_THOUSAND);
+            record(component, name, SELF_LATENCY, self / NumberUtils.ONE_THOUSAND);
+        }
+    }
+}
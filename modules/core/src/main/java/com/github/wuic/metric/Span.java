@@ -0,0 +1,239 @@
+/*
+ * "Copyright (c) 2014   Capgemini Technology Services (hereinafter "Capgemini")
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * -   The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Any failure to comply with the above shall automatically terminate the license
+ * and be construed as a breach of these Terms of Use causing significant harm to
+ * Capgemini.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Capgemini shall not be used in
+ * advertising or otherwise to promote the use or other dealings in this Software
+ * without prior written authorization from Capgemini.
+ *
+ * These Terms of Use are subject to French law.
+ *
+ * IMPORTANT NOTICE: The WUIC software implements software components governed by
+ * open source software licenses (BSD and Apache) of which CAPGEMINI is not the
+ * author or the editor. The rights granted on the said software components are
+ * governed by the specific terms and conditions specified by Apache 2.0 and BSD
+ * licenses."
+ */
+
+
+package com.github.wuic.metric;
+
+import com.github.wuic.util.NumberUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * An operation recorded by the {@link Tracer}, like the invocation of an engine. A span is created and completed by the
+ * same thread, it's read by other threads only once its {@link Trace} is completed.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @version 1.0
+ * @since 0.5.0
+ */
+public final class Span {
+
+    /**
+     * The enclosing span, {@code null} for the root span.
+     */
+    private final Span parent;
+
+    /**
+     * The operation name.
+     */
+    private final String name;
+
+    /**
+     * What the operation works on.
+     */
+    private final String detail;
+
+    /**
+     * When the operation started.
+     */
+    private final long start;
+
+    /**
+     * The duration in nanoseconds, -1 while the operation is running.
+     */
+    private long duration;
+
+    /**
+     * The bytes produced by the operation, -1 if unknown.
+     */
+    private long bytes;
+
+    /**
+     * Some information about the execution.
+     */
+    private Map<String, String> tags;
+
+    /**
+     * The nested spans.
+     */
+    private List<Span> children;
+
+    /**
+     * <p>
+     * Starts a new span.
+     * </p>
+     *
+     * @param p the parent span
+     * @param n the name
+     * @param d the detail
+     */
+    Span(final Span p, final String n, final String d) {
+        parent = p;
+        name = n;
+        detail = d;
+        start = System.nanoTime();
+        duration = -1L;
+        bytes = -1L;
+
+        if (parent != null) {
+            if (parent.children == null) {
+                parent.children = new ArrayList<Span>();
+            }
+
+            parent.children.add(this);
+        }
+    }
+
+    /**
+     * <p>
+     * Completes this span.
+     * </p>
+     */
+    void end() {
+        duration = System.nanoTime() - start;
+    }
+
+    /**
+     * <p>
+     * Gets the enclosing span.
+     * </p>
+     *
+     * @return the parent, {@code null} for the root span
+     */
+    Span getParent() {
+        return parent;
+    }
+
+    /**
+     * <p>
+     * Adds some information about the execution.
+     * </p>
+     *
+     * @param key the information key
+     * @param value the information value
+     */
+    public void tag(final String key, final String value) {
+        if (tags == null) {
+            tags = new LinkedHashMap<String, String>();
+        }
+
+        tags.put(key, value);
+    }
+
+    /**
+     * <p>
+     * Adds bytes produced by the operation.
+     * </p>
+     *
+     * @param count the number of bytes
+     */
+    public void addBytes(final long count) {
+        bytes = bytes < 0L ? count : bytes + count;
+    }
+
+    /**
+     * <p>
+     * Gets the operation name.
+     * </p>
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * <p>
+     * Gets what the operation works on.
+     * </p>
+     *
+     * @return the detail
+     */
+    public String getDetail() {
+        return detail;
+    }
+
+    /**
+     * <p>
+     * Gets the duration in microseconds.
+     * </p>
+     *
+     * @return the duration, -1 if the operation is running
+     */
+    public long getDuration() {
+        return duration < 0L ? -1L : duration / NumberUtils.ONE_THOUSAND;
+    }
+
+    /**
+     * <p>
+     * Gets the bytes produced by the operation.
+     * </p>
+     *
+     * @return the bytes, -1 if unknown
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * <p>
+     * Gets the information about the execution.
+     * </p>
+     *
+     * @return the tags
+     */
+    public Map<String, String> getTags() {
+        return tags == null ? Collections.<String, String>emptyMap() : Collections.unmodifiableMap(tags);
+    }
+
+    /**
+     * <p>
+     * Gets the nested spans.
+     * </p>
+     *
+     * @return the children
+     */
+    public List<Span> getChildren() {
+        return children == null ? Collections.<Span>emptyList() : Collections.unmodifiableList(children);
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * "Copyright (c) 2014   Capgemini Technology Services (hereinafter "Capgemini")
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * -   The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Any failure to comply with the above shall automatically terminate the license
+ * and be construed as a breach of these Terms of Use causing significant harm to
+ * Capgemini.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Capgemini shall not be used in
+ * advertising or otherwise to promote the use or other dealings in this Software
+ * without prior written authorization from Capgemini.
+ *
+ * These Terms of Use are subject to French law.
+ *
+ * IMPORTANT NOTICE: The WUIC software implements software components governed by
+ * open source software licenses (BSD and Apache) of which CAPGEMINI is not the
+ * author or the editor. The rights granted on the said software components are
+ * governed by the specific terms and conditions specified by Apache 2.0 and BSD
+ * licenses."
+ */
+
+
+package com.github.wuic.metric;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * <p>
+ * A bounded ring buffer of the last completed {@link Trace traces}. Adding a trace never blocks: when the buffer is
+ * full, the oldest trace is overwritten.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @version 1.0
+ * @since 0.5.0
+ */
+public final class TraceBuffer {
+
+    /**
+     * The slots.
+     */
+    private final AtomicReferenceArray<Trace> traces;
+
+    /**
+     * Number of traces added since creation.
+     */
+    private final AtomicLong added;
+
+    /**
+     * <p>
+     * Builds a new instance.
+     * </p>
+     *
+     * @param capacity the number of traces kept
+     */
+    public TraceBuffer(final int capacity) {
+        traces = new AtomicReferenceArray<Trace>(Math.max(1, capacity));
+        added = new AtomicLong();
+    }
+
+    /**
+     * <p>
+     * Adds a trace, overwriting the oldest one if the buffer is full.
+     * </p>
+     *
+     * @param trace the trace
+     */
+    public void add(final Trace trace) {
+        traces.set((int) (added.getAndIncrement() % traces.length()), trace);
+    }
+
+    /**
+     * <p>
+     * Gets the last traces.
+     * </p>
+     *
+     * @param limit the maximum number of traces to return
+     * @return the traces, the most recent first
+     */
+    public List<Trace> recent(final int limit) {
+        final List<Trace> retval = snapshot();
+        Collections.sort(retval, new Comparator<Trace>() {
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public int compare(final Trace first, final Trace second) {
+                return Long.valueOf(second.getTimestamp()).compareTo(first.getTimestamp());
+            }
+        });
+
+        return retval.subList(0, Math.min(limit, retval.size()));
+    }
+
+    /**
+     * <p>
+     * Gets the slowest traces among the traces kept.
+     * </p>
+     *
+     * @param limit the maximum number of traces to return
+     * @return the traces, the slowest first
+     */
+    public List<Trace> slowest(final int limit) {
+        final List<Trace> retval = snapshot();
+        Collections.sort(retval, new Comparator<Trace>() {
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public int compare(final Trace first, final Trace second) {
+                return Long.valueOf(second.getDuration()).compareTo(first.getDuration());
+            }
+        });
+
+        return retval.subList(0, Math.min(limit, retval.size()));
+    }
+
+    /**
+     * <p>
+     * Copies the traces currently kept.
+     * </p>
+     *
+     * @return the traces
+     */
+    private List<Trace> snapshot() {
+        final List<Trace> retval = new ArrayList<Trace>(traces.length());
+
+        for (int i = 0; i < traces.length(); i++) {
+            final Trace trace = traces.get(i);
+
+            if (trace != null) {
+                retval.add(trace);
+            }
+        }
+
+        return retval;
+    }
+}
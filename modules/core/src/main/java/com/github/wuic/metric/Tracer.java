@@ -0,0 +1,234 @@
+/*
+ * "Copyright (c) 2014   Capgemini Technology Services (hereinafter "Capgemini")
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * -   The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Any failure to comply with the above shall automatically terminate the license
+ * and be construed as a breach of these Terms of Use causing significant harm to
+ * Capgemini.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Capgemini shall not be used in
+ * advertising or otherwise to promote the use or other dealings in this Software
+ * without prior written authorization from Capgemini.
+ *
+ * These Terms of Use are subject to French law.
+ *
+ * IMPORTANT NOTICE: The WUIC software implements software components governed by
+ * open source software licenses (BSD and Apache) of which CAPGEMINI is not the
+ * author or the editor. The rights granted on the said software components are
+ * governed by the specific terms and conditions specified by Apache 2.0 and BSD
+ * licenses."
+ */
+
+
+package com.github.wuic.metric;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * Records the {@link Span spans} of the processings into a {@link TraceBuffer}. Tracing is disabled by default. When
+ * enabled, only a sample of the processings is traced: with a sampling of 0.1, one processing out of ten is traced.
+ * The sampling is specified with the {@link #SAMPLING_PROPERTY} system property or {@link #setSampling(double)}, the
+ * number of traces kept with the {@link #CAPACITY_PROPERTY} system property.
+ * </p>
+ *
+ * <p>
+ * The spans are attached to the thread which starts the trace. Work done by other threads, for instance a background
+ * processing in best effort mode, is not part of the trace.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @version 1.0
+ * @since 0.5.0
+ */
+public final class Tracer {
+
+    /**
+     * System property specifying the sampling, between 0 (disabled) and 1 (everything is traced).
+     */
+    public static final String SAMPLING_PROPERTY = "c.g.wuic.trace.sampling";
+
+    /**
+     * System property specifying the number of traces kept.
+     */
+    public static final String CAPACITY_PROPERTY = "c.g.wuic.trace.capacity";
+
+    /**
+     * Default number of traces kept.
+     */
+    private static final int DEFAULT_CAPACITY = 256;
+
+    /**
+     * The span currently running in each thread.
+     */
+    private static final ThreadLocal<Span> CURRENT = new ThreadLocal<Span>();
+
+    /**
+     * The completed traces.
+     */
+    private static final TraceBuffer BUFFER = new TraceBuffer(Integer.getInteger(CAPACITY_PROPERTY, DEFAULT_CAPACITY));
+
+    /**
+     * Number of processings started, to sample them.
+     */
+    private static final AtomicLong STARTED = new AtomicLong();
+
+    /**
+     * One processing out of period is traced, 0 if tracing is disabled.
+     */
+    private static volatile long period = periodOf(Double.parseDouble(System.getProperty(SAMPLING_PROPERTY, "0")));
+
+    /**
+     * <p>
+     * Prevent instantiation of this class which provides only static methods.
+     * </p>
+     */
+    private Tracer() {
+    }
+
+    /**
+     * <p>
+     * Sets the sampling.
+     * </p>
+     *
+     * @param sampling the part of processings to trace, between 0 (disabled) and 1 (everything is traced)
+     */
+    public static void setSampling(final double sampling) {
+        period = periodOf(sampling);
+    }
+
+    /**
+     * <p>
+     * Gets the completed traces.
+     * </p>
+     *
+     * @return the buffer
+     */
+    public static TraceBuffer getBuffer() {
+        return BUFFER;
+    }
+
+    /**
+     * <p>
+     * Indicates if the current thread is recording a trace.
+     * </p>
+     *
+     * @return {@code true} if a span is running, {@code false} otherwise
+     */
+    public static Boolean isTracing() {
+        return CURRENT.get() != null;
+    }
+
+    /**
+     * <p>
+     * Starts a processing. If the processing is sampled, a new trace is started with the returned span as root. If the
+     * current thread is already recording a trace, the processing is nested like with {@link #begin(String, String)}.
+     * </p>
+     *
+     * @param name the operation name
+     * @param detail what the operation works on
+     * @return the span to end, {@code null} if the processing is not traced
+     */
+    public static Span startTrace(final String name, final String detail) {
+        if (CURRENT.get() != null) {
+            return begin(name, detail);
+        }
+
+        final long p = period;
+
+        if (p <= 0L || STARTED.getAndIncrement() % p != 0L) {
+            return null;
+        }
+
+        final Span retval = new Span(null, name, detail);
+        CURRENT.set(retval);
+        return retval;
+    }
+
+    /**
+     * <p>
+     * Starts a span nested in the span currently running in this thread.
+     * </p>
+     *
+     * @param name the operation name
+     * @param detail what the operation works on
+     * @return the span to end, {@code null} if the current thread is not recording a trace
+     */
+    public static Span begin(final String name, final String detail) {
+        final Span parent = CURRENT.get();
+
+        if (parent == null) {
+            return null;
+        }
+
+        final Span retval = new Span(parent, name, detail);
+        CURRENT.set(retval);
+        return retval;
+    }
+
+    /**
+     * <p>
+     * Adds an information to the span currently running in this thread, if any.
+     * </p>
+     *
+     * @param key the information key
+     * @param value the information value
+     */
+    public static void tag(final String key, final String value) {
+        final Span span = CURRENT.get();
+
+        if (span != null) {
+            span.tag(key, value);
+        }
+    }
+
+    /**
+     * <p>
+     * Ends the given span. When the root span is ended, the trace is added to the buffer.
+     * </p>
+     *
+     * @param span the span returned when the operation has been started, {@code null} if not traced
+     */
+    public static void end(final Span span) {
+        if (span == null) {
+            return;
+        }
+
+        span.end();
+
+        if (span.getParent() == null) {
+            CURRENT.remove();
+            BUFFER.add(new Trace(span));
+        } else {
+            CURRENT.set(span.getParent());
+        }
+    }
+
+    /**
+     * <p>
+     * Converts a sampling to a period.
+     * </p>
+     *
+     * @param sampling the sampling
+     * @return the period, 0 if tracing is disabled
+     */
+    private static long periodOf(final double sampling) {
+        return sampling <= 0d ? 0L : Math.max(1L, Math.round(1d / Math.min(1d, sampling)));
+    }
+}
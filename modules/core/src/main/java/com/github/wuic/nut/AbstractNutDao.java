@@ -42,10 +42,15 @@ import com.github.wuic.NutType;
 import com.github.wuic.exception.SaveOperationNotSupportedException;
 import com.github.wuic.exception.wrapper.BadArgumentException;
 import com.github.wuic.exception.wrapper.StreamException;
+import com.github.wuic.metric.Metrics;
+import com.github.wuic.metric.Span;
+import com.github.wuic.metric.Tracer;
+import com.github.wuic.util.ConsistentHashRing;
 import com.github.wuic.util.IOUtils;
 import com.github.wuic.util.NumberUtils;
 import com.github.wuic.util.PollingScheduler;
 import com.github.wuic.util.StringUtils;
+import com.github.wuic.util.WuicScheduledThreadPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -54,7 +59,12 @@ import java.io.InputStream;
 import java.math.BigInteger;
 import java.security.MessageDigest;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * <p>
@@ -67,7 +77,7 @@ import java.util.concurrent.atomic.AtomicInteger;
  * </p>
  *
  * @author Guillaume DROUET
- * @version 1.4
+ * @version 1.14
  * @since 0.3.1
  */
 public abstract class AbstractNutDao extends PollingScheduler<NutDaoListener> implements NutDao {
@@ -83,19 +93,19 @@ public abstract class AbstractNutDao extends PollingScheduler<NutDaoListener> im
     private String basePath;
 
     /**
-     * The proxy URIs.
+     * The proxy URIs sharded on a consistent hash ring, {@code null} if no proxy is set.
      */
-    private String[] proxyUris;
+    private final ConsistentHashRing proxyRing;
 
     /**
-     * Index of the next proxy URI to use.
+     * Computes the version number from content or on timestamp.
      */
-    private final AtomicInteger nextProxyIndex;
+    private Boolean contentBasedVersionNumber;
 
     /**
-     * Computes the version number from content or on timestamp.
+     * The timestamps retrieved during the last polling operation, used to detect changes between two operations.
      */
-    private Boolean contentBasedVersionNumber;
+    private volatile Map<String, Long> lastTimestamps;
 
     /**
      * <p>
@@ -118,9 +128,9 @@ public abstract class AbstractNutDao extends PollingScheduler<NutDaoListener> im
         }
 
         basePath = IOUtils.mergePath("/", basePathAsSysProp ? System.getProperty(base) : base);
-        proxyUris = proxies == null ? null : Arrays.copyOf(proxies, proxies.length);
-        nextProxyIndex = new AtomicInteger(0);
+        proxyRing = proxies == null || proxies.length == 0 ? null : new ConsistentHashRing(proxies);
         contentBasedVersionNumber = contentBasedHash;
+        lastTimestamps = Collections.emptyMap();
         setPollingInterleave(pollingSeconds);
     }
 
@@ -130,75 +140,127 @@ public abstract class AbstractNutDao extends PollingScheduler<NutDaoListener> im
     public void run() {
         // Log duration
         final Long start = System.currentTimeMillis();
+        final Metrics.Timing timing = Metrics.start();
         log.info("Running polling operation for {}", toString());
 
-        // Keep in this set all listeners that told that they don't want to be notified until the end of the operation
-        final Set<NutDaoListener> exclusions = new HashSet<NutDaoListener>();
+        // Work on a snapshot, new observers could be added during the operation
+        final Map<NutDaoListener, ? extends Polling> observers = getNutObservers();
+        final Set<String> patterns = new LinkedHashSet<String>();
 
-        // Keep all paths already retrieved associated to their pattern
-        final Map<String, List<String>> nutsPathByPattern = new HashMap<String, List<String>>();
-
-        // We keep all timestamps already retrieved for each path
-        final Map<String, Long> timestamps = new HashMap<String, Long>();
+        for (final Polling polling : observers.values()) {
+            patterns.addAll(polling.getPatterns());
+        }
 
-        synchronized (getNutObservers()) {
+        // All the observed patterns are listed together, each path being associated to the patterns it matches
+        final Map<String, List<String>> nutsPathByPattern = listNutsPaths(patterns);
 
-            // Poll each nut's path
-            for (final Map.Entry<NutDaoListener, ? extends Polling> entry : getNutObservers().entrySet()) {
-                final NutDaoListener listener = entry.getKey();
-                final Polling pollingData = entry.getValue();
+        // Paths to poll for each listener which has not asked for exclusion
+        final Map<NutDaoListener, Set<String>> pathsByListener = new LinkedHashMap<NutDaoListener, Set<String>>();
+        final Set<String> allPaths = new HashSet<String>();
 
-                final Set<String> nutPathsToPoll = new LinkedHashSet<String>();
+        for (final Map.Entry<NutDaoListener, ? extends Polling> entry : observers.entrySet()) {
+            final NutDaoListener listener = entry.getKey();
+            final Set<String> nutPathsToPoll = new LinkedHashSet<String>();
 
-                for (final String pattern : pollingData.getPatterns()) {
-                    List<String> nutPaths = nutsPathByPattern.get(pattern);
+            for (final String pattern : entry.getValue().getPatterns()) {
+                final List<String> nutPaths = nutsPathByPattern.get(pattern);
 
-                    try {
-                        if (nutPaths == null) {
-                            nutPaths = listNutsPaths(pattern);
-                            nutsPathByPattern.put(pattern, nutPaths);
-                        }
+                if (nutPaths != null) {
+                    nutPathsToPoll.addAll(nutPaths);
+                }
+            }
 
-                        nutPathsToPoll.addAll(nutPaths);
-                    } catch (StreamException se) {
-                        log.error("Unable to list path for {}", pattern, se);
-                    }
+            // Notify listener, which could ask for exclusion
+            try {
+                if (listener.polling(nutPathsToPoll)) {
+                    pathsByListener.put(listener, nutPathsToPoll);
+                    allPaths.addAll(nutPathsToPoll);
                 }
+            } catch (RuntimeException re) {
+                // The other listeners must be polled anyway
+                log.error("Listener {} failed before polling {}", listener, toString(), re);
+            }
+        }
 
-                // Notify listener
-                final boolean excluded = exclusions.contains(listener);
-
-                // Not already excluded and asks for exclusion
-                if (!excluded && !listener.polling(nutPathsToPoll)) {
-                    exclusions.add(listener);
-                } else if (!excluded) {
-                    for (final String path : nutPathsToPoll) {
-                        Long timestamp = timestamps.get(path);
-
-                        // Timestamps not already retrieved
-                        if (timestamp == null) {
-                            try {
-                                timestamp = getLastUpdateTimestampFor(path);
-                                timestamps.put(path, timestamp);
-                            } catch (StreamException se) {
-                                log.error("Unable to poll nut {}", path, se);
-                            }
-                        }
-
-                        // Stop notifying
-                        if (!listener.nutPolled(this, path, timestamp)) {
-                            exclusions.add(listener);
-                            break;
-                        }
-                    }
+        // Each timestamp is retrieved once even if the path is polled for many listeners
+        final Map<String, Long> timestamps = pollTimestamps(allPaths);
+
+        // Notify each listener once with all its timestamps
+        for (final Map.Entry<NutDaoListener, Set<String>> entry : pathsByListener.entrySet()) {
+            final Map<String, Long> polled = new LinkedHashMap<String, Long>();
+
+            for (final String path : entry.getValue()) {
+                final Long timestamp = timestamps.get(path);
+
+                if (timestamp != null) {
+                    polled.put(path, timestamp);
                 }
             }
+
+            try {
+                entry.getKey().nutsPolled(this, polled);
+            } catch (RuntimeException re) {
+                log.error("Listener {} failed when notified by {}", entry.getKey(), toString(), re);
+            }
+        }
+
+        // Adapt the interval to the changes detected since the last operation
+        final Map<String, Long> previous = lastTimestamps;
+        lastTimestamps = timestamps;
+        pollingDone(!timestamps.equals(previous));
+
+        if (timing != null) {
+            timing.stop(Metrics.Component.DAO, getClass().getSimpleName());
+            Metrics.count(Metrics.Component.DAO, getClass().getSimpleName(), "polledPaths", allPaths.size());
         }
 
         log.info("Polling operation for {} run in {} seconds", getClass().getName(),
                 (float) (System.currentTimeMillis() - start) / (float) NumberUtils.ONE_THOUSAND);
     }
 
+    /**
+     * <p>
+     * Retrieves the timestamps of the given paths. Some threads of the {@link WuicScheduledThreadPool.Lane#IO I/O lane}
+     * help the current thread to poll the paths in parallel. The current thread always polls too, so the operation never
+     * waits for a thread of the pool: a helper which has not started when all the paths are polled is cancelled.
+     * </p>
+     *
+     * @param paths the paths to poll
+     * @return the timestamps associated to their path, without the paths that could not be polled
+     */
+    private Map<String, Long> pollTimestamps(final Set<String> paths) {
+        final Map<String, Long> retval = new ConcurrentHashMap<String, Long>(paths.size());
+        final TimestampProbe probe = new TimestampProbe(new ConcurrentLinkedQueue<String>(paths), retval);
+        final int helpers = Math.min(WuicScheduledThreadPool.POOL_SIZE, paths.size()) - 1;
+        final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+
+        try {
+            for (int i = 0; i < helpers; i++) {
+                futures.add(WuicScheduledThreadPool.getInstance().executeAsap(WuicScheduledThreadPool.Lane.IO, probe));
+            }
+        } catch (RejectedExecutionException ree) {
+            log.debug("I/O lane is full, polling {} with {} helpers", toString(), futures.size());
+        }
+
+        probe.call();
+
+        for (final Future<Void> future : futures) {
+            // Not cancelled means running: wait for the path it is currently polling
+            if (!future.cancel(false)) {
+                try {
+                    future.get();
+                } catch (InterruptedException ie) {
+                    log.warn("Interrupted while polling {}", toString(), ie);
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException ee) {
+                    log.error("Unable to poll nuts", ee);
+                }
+            }
+        }
+
+        return retval;
+    }
+
     /**
      * <p>
      * Gets the version number for the {@link Nut} the given path.
@@ -264,23 +326,31 @@ public abstract class AbstractNutDao extends PollingScheduler<NutDaoListener> im
      */
     @Override
     public List<Nut> create(final String pathName, final PathFormat format) throws StreamException {
-        final List<String> pathNames = computeRealPaths(pathName, format);
-        final List<Nut> retval = new ArrayList<Nut>(pathNames.size());
+        final Span span = Tracer.isTracing() ? Tracer.begin(getClass().getSimpleName(), pathName) : null;
+
+        try {
+            final List<String> pathNames = computeRealPaths(pathName, format);
+            final List<Nut> retval = new ArrayList<Nut>(pathNames.size());
 
-        for (final String p : pathNames) {
-            final NutType type = NutType.getNutType(p);
+            for (final String p : pathNames) {
+                final NutType type = NutType.getNutType(p);
 
-            if (type == null) {
-                continue;
+                if (type == null) {
+                    continue;
+                }
+
+                final Nut res = accessFor(p, type);
+                res.setProxyUri(proxyUriFor(res));
+
+                retval.add(res);
             }
 
-            final Nut res = accessFor(p, type);
-            res.setProxyUri(proxyUriFor(res));
+            Metrics.count(Metrics.Component.DAO, getClass().getSimpleName(), "creates", retval.size());
 
-            retval.add(res);
+            return retval;
+        } finally {
+            Tracer.end(span);
         }
-
-        return retval;
     }
 
     /**
@@ -288,17 +358,12 @@ public abstract class AbstractNutDao extends PollingScheduler<NutDaoListener> im
      */
     @Override
     public String proxyUriFor(final Nut nut) {
-        if (proxyUris != null && proxyUris.length > 0) {
-
-            synchronized (nextProxyIndex) {
-                // End of round, restart
-                if (nextProxyIndex.intValue() >= proxyUris.length) {
-                    nextProxyIndex.set(0);
-                }
+        if (proxyRing != null) {
+            final BigInteger version = nut.getVersionNumber();
+            final String key = version == null ? nut.getName() : nut.getName() + '#' + version.toString(NumberUtils.SIXTEEN);
 
-                // Do the round-robin by incrementing nextProxyIndex counter
-                return IOUtils.mergePath(String.valueOf(proxyUris[nextProxyIndex.getAndIncrement()]), nut.getName());
-            }
+            // The same name and version are always served by the same proxy
+            return IOUtils.mergePath(proxyRing.select(key), nut.getName());
         } else {
             return null;
         }
@@ -341,6 +406,37 @@ public abstract class AbstractNutDao extends PollingScheduler<NutDaoListener> im
         return new WithRootPathNutDao(rootPath);
     }
 
+    /**
+     * <p>
+     * Indicates if the version number of the created nuts is the timestamp returned when they are polled. This is not
+     * the case when the version number is computed from the content.
+     * </p>
+     *
+     * @return {@code true} if version numbers are timestamps, {@code false} otherwise
+     */
+    Boolean hasTimestampVersionNumber() {
+        return !contentBasedVersionNumber;
+    }
+
+    /**
+     * <p>
+     * Gets the {@link AbstractNutDao} behind the given DAO, which could have been returned by
+     * {@link #withRootPath(String)}.
+     * </p>
+     *
+     * @param dao the DAO
+     * @return the {@link AbstractNutDao}, {@code null} if the given DAO is not backed by this class
+     */
+    static AbstractNutDao unwrap(final NutDao dao) {
+        if (dao instanceof AbstractNutDao) {
+            return AbstractNutDao.class.cast(dao);
+        } else if (dao instanceof WithRootPathNutDao) {
+            return WithRootPathNutDao.class.cast(dao).getEnclosingDao();
+        } else {
+            return null;
+        }
+    }
+
     /**
      * <p>
      * This class represents a modification of the the enclosing class behavior when the {@link NutDao#create(String)}
@@ -348,7 +444,7 @@ public abstract class AbstractNutDao extends PollingScheduler<NutDaoListener> im
      * </p>
      *
      * @author Guillaume DROUET
-     * @version 1.0
+     * @version 1.2
      * @since 0.4.1
      */
     private final class WithRootPathNutDao implements NutDao {
@@ -369,6 +465,17 @@ public abstract class AbstractNutDao extends PollingScheduler<NutDaoListener> im
             rootPath = rp;
         }
 
+        /**
+         * <p>
+         * Gets the enclosing DAO.
+         * </p>
+         *
+         * @return the enclosing DAO
+         */
+        private AbstractNutDao getEnclosingDao() {
+            return AbstractNutDao.this;
+        }
+
         /**
          * {@inheritDoc}
          */
@@ -504,6 +611,30 @@ public abstract class AbstractNutDao extends PollingScheduler<NutDaoListener> im
      */
     protected abstract List<String> listNutsPaths(String pattern) throws StreamException;
 
+    /**
+     * <p>
+     * Lists all the nuts path matching each given pattern. This default implementation lists each pattern separately,
+     * subclasses able to evaluate many patterns at once should override it. A pattern that can't be listed is logged
+     * and absent from the result.
+     * </p>
+     *
+     * @param patterns the patterns
+     * @return the paths associated to the pattern they match
+     */
+    protected Map<String, List<String>> listNutsPaths(final Collection<String> patterns) {
+        final Map<String, List<String>> retval = new HashMap<String, List<String>>(patterns.size());
+
+        for (final String pattern : patterns) {
+            try {
+                retval.put(pattern, listNutsPaths(pattern));
+            } catch (StreamException se) {
+                log.error("Unable to list path for {}", pattern, se);
+            }
+        }
+
+        return retval;
+    }
+
     /**
      * <p>
      * Creates an access for the given parameters through a {@link Nut} implementation.
@@ -523,4 +654,61 @@ public abstract class AbstractNutDao extends PollingScheduler<NutDaoListener> im
     public String toString() {
         return String.format("%s with base path %s", getClass().getName(), getBasePath());
     }
+
+    /**
+     * <p>
+     * Polls the paths of a shared queue until it is empty. The same instance is run by many threads.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @version 1.0
+     * @since 0.5.0
+     */
+    private final class TimestampProbe implements Callable<Void> {
+
+        /**
+         * The paths to poll.
+         */
+        private final Queue<String> queue;
+
+        /**
+         * The retrieved timestamps.
+         */
+        private final Map<String, Long> timestamps;
+
+        /**
+         * <p>
+         * Builds a new instance.
+         * </p>
+         *
+         * @param q the paths to poll
+         * @param t the map to populate
+         */
+        private TimestampProbe(final Queue<String> q, final Map<String, Long> t) {
+            queue = q;
+            timestamps = t;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Void call() {
+            String path;
+
+            while ((path = queue.poll()) != null) {
+                try {
+                    final Long timestamp = getLastUpdateTimestampFor(path);
+
+                    if (timestamp != null) {
+                        timestamps.put(path, timestamp);
+                    }
+                } catch (StreamException se) {
+                    log.error("Unable to poll nut {}", path, se);
+                }
+            }
+
+            return null;
+        }
+    }
 }
@@ -49,7 +49,7 @@ import java.util.List;
  * </p>
  *
  * @author Guillaume DROUET
- * @version 1.5
+ * @version 1.8
  * @since 0.3.1
  */
 public interface NutDao {
@@ -150,8 +150,9 @@ public interface NutDao {
      * </p>
      *
      * <p>
-     * If many proxies are defined, proxy URI is selected in a round-robin mode. Each time a proxy is used, it won't
-     * be reused until all other proxies have been used too.
+     * If many proxies are defined, proxy URI is selected with a consistent hash of the nut name and version. A given
+     * nut is always served by the same proxy, which preserves the caches of the browsers and the CDN. Adding or
+     * removing a proxy only moves the nuts it serves.
      * </p>
      *
      * @param nut the nut
@@ -165,6 +166,10 @@ public interface NutDao {
      * only nut access.
      * </p>
      *
+     * <p>
+     * When the nut can't be written, a {@link com.github.wuic.exception.SaveOperationFailedException} is thrown.
+     * </p>
+     *
      * @param nut the nut to save
      */
     void save(Nut nut);
@@ -38,6 +38,7 @@
 
 package com.github.wuic.nut;
 
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -51,8 +52,13 @@ import java.util.Set;
  * method.
  * </p>
  *
+ * <p>
+ * Listeners notified path by path can extend {@link NutDaoListenerAdapter} until they implement
+ * {@link #nutsPolled(NutDao, Map)}.
+ * </p>
+ *
  * @author Guillaume DROUET
- * @version 1.0
+ * @version 1.2
  * @since 0.4.0
  */
 public interface NutDaoListener {
@@ -79,19 +85,16 @@ public interface NutDaoListener {
 
     /**
      * <p>
-     * Called when a nut has been polled.
+     * Called when the nuts have been polled. All the timestamps retrieved for this listener during the polling operation
+     * are notified at once, so the listener is able to react to many changes in one time.
      * </p>
      *
      * <p>
-     * When the observable object checks in one operation the changes on a set of nuts, the listener could notifies the
-     * observable to stop notifying it <b>only</b> during the operation.
+     * A path is not notified when its timestamp could not be retrieved.
      * </p>
      *
      * @param dao the DAO which polls
-     * @param path the polled path
-     * @param timestamp the timestamp retrieved when poling the nut
-     * @return {@code true} if this listener needs to be notified of any other update during the observable's operation,
-     * {@code false} otherwise
+     * @param timestamps the timestamps retrieved when polling the nuts associated to their path
      */
-    boolean nutPolled(NutDao dao, String path, Long timestamp);
+    void nutsPolled(NutDao dao, Map<String, Long> timestamps);
 }
@@ -0,0 +1,93 @@
+/*
+ * "Copyright (c) 2014   Capgemini Technology Services (hereinafter "Capgemini")
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * -   The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Any failure to comply with the above shall automatically terminate the license
+ * and be construed as a breach of these Terms of Use causing significant harm to
+ * Capgemini.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Capgemini shall not be used in
+ * advertising or otherwise to promote the use or other dealings in this Software
+ * without prior written authorization from Capgemini.
+ *
+ * These Terms of Use are subject to French law.
+ *
+ * IMPORTANT NOTICE: The WUIC software implements software components governed by
+ * open source software licenses (BSD and Apache) of which CAPGEMINI is not the
+ * author or the editor. The rights granted on the said software components are
+ * governed by the specific terms and conditions specified by Apache 2.0 and BSD
+ * licenses."
+ */
+
+
+package com.github.wuic.nut;
+
+import java.util.Map;
+
+/**
+ * <p>
+ * Adapts a listener notified path by path, as {@link NutDaoListener} used to do before the timestamps of a polling
+ * operation were notified at once.
+ * </p>
+ *
+ * <p>
+ * The timestamps are given to {@link #nutPolled(NutDao, String, Long)} one by one until it asks to stop the
+ * notifications for the current polling operation.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @version 1.0
+ * @since 0.5.0
+ * @deprecated implement {@link NutDaoListener#nutsPolled(NutDao, Map)} instead
+ */
+@Deprecated
+public abstract class NutDaoListenerAdapter implements NutDaoListener {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void nutsPolled(final NutDao dao, final Map<String, Long> timestamps) {
+        for (final Map.Entry<String, Long> entry : timestamps.entrySet()) {
+            if (!nutPolled(dao, entry.getKey(), entry.getValue())) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Called when a nut has been polled.
+     * </p>
+     *
+     * <p>
+     * When the observable object checks in one operation the changes on a set of nuts, the listener could notifies the
+     * observable to stop notifying it <b>only</b> during the operation.
+     * </p>
+     *
+     * @param dao the DAO which polls
+     * @param path the polled path
+     * @param timestamp the timestamp retrieved when poling the nut
+     * @return {@code true} if this listener needs to be notified of any other update during the observable's operation,
+     * {@code false} otherwise
+     * @deprecated implement {@link NutDaoListener#nutsPolled(NutDao, Map)} instead
+     */
+    @Deprecated
+    public abstract boolean nutPolled(NutDao dao, String path, Long timestamp);
+}
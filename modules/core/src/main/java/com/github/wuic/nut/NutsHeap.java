@@ -42,6 +42,7 @@ import com.github.wuic.NutType;
 import com.github.wuic.exception.wrapper.BadArgumentException;
 import com.github.wuic.exception.wrapper.StreamException;
 import com.github.wuic.util.CollectionUtils;
+import com.github.wuic.util.NutUtils;
 import com.github.wuic.util.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -65,10 +66,10 @@ import java.util.*;
  * </p>
  * 
  * @author Guillaume DROUET
- * @version 1.7
+ * @version 1.10
  * @since 0.1.0
  */
-public class NutsHeap implements NutDaoListener, HeapListener {
+public class NutsHeap implements NutDaoListener, HeapChangeListener {
 
     /**
      * Message's template displayed when no nut has been found.
@@ -120,6 +121,16 @@ public class NutsHeap implements NutDaoListener, HeapListener {
      */
     private Set<String> created;
 
+    /**
+     * Observes the nuts created through this heap that are not part of its paths.
+     */
+    private CreatedNutsListener createdNutsListener;
+
+    /**
+     * The last polled timestamps of the paths when the version numbers are not timestamps.
+     */
+    private Map<String, Long> polledTimestamps;
+
     /**
      * <p>
      * Builds a heap by copy.
@@ -135,6 +146,8 @@ public class NutsHeap implements NutDaoListener, HeapListener {
         this.nutTypes = other.nutTypes;
         this.paths = other.paths;
         this.created = other.created != null ? other.created : new HashSet<String>();
+        this.createdNutsListener = other.createdNutsListener != null ? other.createdNutsListener : new CreatedNutsListener();
+        this.polledTimestamps = new HashMap<String, Long>();
 
         if (other.composition != null) {
             this.composition = new NutsHeap[other.composition.length];
@@ -173,6 +186,8 @@ public class NutsHeap implements NutDaoListener, HeapListener {
         this.composition = heaps;
         this.nutTypes = new HashSet<NutType>();
         this.created = new HashSet<String>();
+        this.createdNutsListener = new CreatedNutsListener();
+        this.polledTimestamps = new HashMap<String, Long>();
         checkFiles();
     }
 
@@ -292,10 +307,10 @@ public class NutsHeap implements NutDaoListener, HeapListener {
 
         if (heap != null && heap.getNutDao() != null) {
             retval = heap.getNutDao().create(path, pathFormat);
-            heap.getNutDao().observe(path, this);
 
             for (final Nut n : retval) {
                 heap.getCreated().add(n.getName());
+                heap.createdNutsListener.observe(heap.getNutDao(), originalName(nut), n);
             }
         } else {
             retval = Collections.emptyList();
@@ -475,13 +490,25 @@ public class NutsHeap implements NutDaoListener, HeapListener {
      * @return {@code true} if heap has created a {@link Nut} with this path, {@code false} otherwise
      */
     public Boolean hasCreated(final Nut nut) {
+        return getCreated().contains(originalName(nut));
+    }
+
+    /**
+     * <p>
+     * Gets the name of the nut originally created by a DAO for the given nut, which could be a generated one.
+     * </p>
+     *
+     * @param nut the nut
+     * @return the name of the original nut
+     */
+    private static String originalName(final Nut nut) {
         Nut refOrigin = nut;
 
         while (refOrigin.getOriginalNuts() != null && !refOrigin.getOriginalNuts().isEmpty()) {
             refOrigin = refOrigin.getOriginalNuts().get(0);
         }
 
-        return getCreated().contains(refOrigin.getName());
+        return refOrigin.getName();
     }
 
     /**
@@ -513,16 +540,48 @@ public class NutsHeap implements NutDaoListener, HeapListener {
      * {@inheritDoc}
      */
     @Override
-    public boolean nutPolled(final NutDao dao, final String path, final Long timestamp) {
+    public void nutsPolled(final NutDao dao, final Map<String, Long> timestamps) {
+        final Set<String> updated = new HashSet<String>();
+
+        for (final Map.Entry<String, Long> entry : timestamps.entrySet()) {
+            if (hasChanged(entry.getKey(), entry.getValue())) {
+                updated.add(entry.getKey());
+            }
+        }
+
+        // All the changes detected during the polling operation are notified at once
+        if (!updated.isEmpty()) {
+            notifyListeners(this, updated);
+        }
+    }
+
+    /**
+     * <p>
+     * Indicates if the nut corresponding to the given path has changed according to the given timestamp.
+     * </p>
+     *
+     * @param path the polled path
+     * @param timestamp the polled timestamp
+     * @return {@code true} if the nut has changed, {@code false} otherwise
+     */
+    private Boolean hasChanged(final String path, final Long timestamp) {
         for (final Nut nut : nuts) {
-            // Nut has changed
-            if (nut.getName().equals(path) && !nut.getVersionNumber().equals(new BigInteger(timestamp.toString()))) {
-                // We don't need to be notified anymore
-                return notifyListeners();
+            if (nut.getName().equals(path)) {
+                final AbstractNutDao dao = AbstractNutDao.unwrap(nutDao);
+
+                if (dao == null || dao.hasTimestampVersionNumber()) {
+                    return !nut.getVersionNumber().equals(new BigInteger(timestamp.toString()));
+                }
+
+                // Version computed from the content: the first polling operation is the reference
+                synchronized (polledTimestamps) {
+                    final Long previous = polledTimestamps.put(path, timestamp);
+                    return previous != null && !previous.equals(timestamp);
+                }
             }
         }
 
-        return true;
+        return Boolean.FALSE;
     }
 
     /**
@@ -557,6 +616,9 @@ public class NutsHeap implements NutDaoListener, HeapListener {
      */
     public boolean notifyListeners(final NutsHeap observable) {
         try {
+            // Everything is processed again, the nuts will be created again if still referenced
+            createdNutsListener.releaseAll();
+
             // Will update the nuts
             checkFiles();
 
@@ -572,6 +634,61 @@ public class NutsHeap implements NutDaoListener, HeapListener {
         return false;
     }
 
+    /**
+     * <p>
+     * Notifies the listeners that this heap has detected an update in the content of the nuts corresponding to the
+     * given paths. Contrary to {@link #notifyListeners(NutsHeap)}, only the nuts of this heap with an updated path are
+     * created again. The listeners implementing {@link HeapChangeListener} receive the paths to invalidate only what
+     * depends on them.
+     * </p>
+     *
+     * @param observable the heap where change has been detected
+     * @param updated the updated paths
+     */
+    public void notifyListeners(final NutsHeap observable, final Set<String> updated) {
+        try {
+            // Updated nuts are processed again, the nuts they reference will be created again
+            createdNutsListener.release(updated);
+            refresh(updated);
+
+            synchronized (listeners) {
+                for (final HeapListener l : listeners) {
+                    if (l instanceof HeapChangeListener) {
+                        HeapChangeListener.class.cast(l).nutsUpdated(observable, updated);
+                    } else {
+                        l.nutUpdated(observable);
+                    }
+                }
+            }
+        } catch (StreamException se) {
+            log.error("Unable to update nuts in the heap", se);
+        }
+    }
+
+    /**
+     * <p>
+     * Creates again the nuts of this heap corresponding to the given paths. Other nuts are kept as is. A new list is
+     * built so the nuts already retrieved by a caller are not modified.
+     * </p>
+     *
+     * @param updated the updated paths
+     * @throws StreamException if a nut can't be created
+     */
+    private void refresh(final Set<String> updated) throws StreamException {
+        final List<Nut> refreshed = new ArrayList<Nut>(nuts.size());
+
+        for (final Nut nut : nuts) {
+            if (updated.contains(nut.getName())) {
+                log.info("Nut '{}' updated in heap '{}'", nut.getName(), id);
+                refreshed.addAll(nutDao.create(nut.getName(), NutDao.PathFormat.RELATIVE_FILE));
+            } else {
+                refreshed.add(nut);
+            }
+        }
+
+        nuts = refreshed;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -579,4 +696,224 @@ public class NutsHeap implements NutDaoListener, HeapListener {
     public void nutUpdated(final NutsHeap heap) {
         notifyListeners(heap);
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void nutsUpdated(final NutsHeap heap, final Set<String> paths) {
+        notifyListeners(heap, paths);
+    }
+
+    /**
+     * <p>
+     * Observes the nuts created while processing the nuts of a heap, for instance an image or a stylesheet referenced
+     * in a CSS. Those nuts are not part of the heap's paths, so they are polled with this listener instead of the heap
+     * itself: a heap compares the polled paths to its own nuts to detect additions and removals. The heaps copied
+     * from a heap share the same listener, so the DAO registers it only once.
+     * </p>
+     *
+     * <p>
+     * Each observed path is associated to the paths of the nuts it has been created from. When they are updated, they
+     * will be processed again and will create again the nuts they still reference. The path is not observed anymore
+     * when no nut it has been created from is left.
+     * </p>
+     *
+     * <p>
+     * When the DAO uses timestamps as version numbers, the version of a nut when it is created is the reference and a
+     * change made before the first polling operation is detected. Otherwise, the first polling operation is the
+     * reference.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @version 1.0
+     * @since 0.5.0
+     */
+    private final class CreatedNutsListener implements NutDaoListener {
+
+        /**
+         * The observed paths.
+         */
+        private final Map<String, CreatedPath> paths;
+
+        /**
+         * <p>
+         * Builds a new instance.
+         * </p>
+         */
+        private CreatedNutsListener() {
+            paths = new HashMap<String, CreatedPath>();
+        }
+
+        /**
+         * <p>
+         * Observes the given nut with the DAO that created it. The nut's name is its path relative to the DAO's base
+         * path.
+         * </p>
+         *
+         * @param dao the DAO
+         * @param origin the name of the nut the given nut has been created from
+         * @param nut the created nut
+         * @throws StreamException if the nut can't be observed
+         */
+        private void observe(final NutDao dao, final String origin, final Nut nut) throws StreamException {
+            final String path = NutUtils.normalize(nut.getName());
+
+            synchronized (paths) {
+                CreatedPath createdPath = paths.get(path);
+
+                // Created again after a change: keep the reference until the next polling operation
+                if (createdPath == null) {
+                    final AbstractNutDao pollingDao = AbstractNutDao.unwrap(dao);
+                    final BigInteger version = nut.getVersionNumber();
+                    final Long reference = version != null && pollingDao != null && pollingDao.hasTimestampVersionNumber()
+                            ? version.longValue() : null;
+
+                    createdPath = new CreatedPath(pollingDao, reference);
+                    paths.put(path, createdPath);
+                    dao.observe(path, this);
+                }
+
+                createdPath.origins.add(NutUtils.normalize(origin));
+            }
+        }
+
+        /**
+         * <p>
+         * Stops observing the paths created only from the given updated paths.
+         * </p>
+         *
+         * @param updated the updated paths
+         */
+        private void release(final Set<String> updated) {
+            final Set<String> normalized = new HashSet<String>(updated.size());
+
+            for (final String path : updated) {
+                normalized.add(NutUtils.normalize(path));
+            }
+
+            synchronized (paths) {
+                for (final Iterator<Map.Entry<String, CreatedPath>> it = paths.entrySet().iterator(); it.hasNext();) {
+                    final Map.Entry<String, CreatedPath> entry = it.next();
+                    entry.getValue().origins.removeAll(normalized);
+
+                    if (entry.getValue().origins.isEmpty()) {
+                        unobserve(entry.getKey(), entry.getValue());
+                        it.remove();
+                    }
+                }
+            }
+        }
+
+        /**
+         * <p>
+         * Stops observing all the paths.
+         * </p>
+         */
+        private void releaseAll() {
+            synchronized (paths) {
+                for (final Map.Entry<String, CreatedPath> entry : paths.entrySet()) {
+                    unobserve(entry.getKey(), entry.getValue());
+                }
+
+                paths.clear();
+            }
+        }
+
+        /**
+         * <p>
+         * Unregisters this listener for the given path from the DAO that created it. A DAO which is not an
+         * {@link AbstractNutDao} does not support this operation and keeps notifying this listener, which ignores
+         * the paths it does not observe anymore.
+         * </p>
+         *
+         * @param path the path
+         * @param createdPath the observed path
+         */
+        private void unobserve(final String path, final CreatedPath createdPath) {
+            if (createdPath.dao != null) {
+                createdPath.dao.unobserve(path, this);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean polling(final Set<String> polled) {
+            return true;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void nutsPolled(final NutDao dao, final Map<String, Long> polled) {
+            final Set<String> updated = new HashSet<String>();
+
+            synchronized (paths) {
+                for (final Map.Entry<String, Long> entry : polled.entrySet()) {
+                    final CreatedPath createdPath = paths.get(entry.getKey());
+
+                    // Path released during the polling operation
+                    if (createdPath == null) {
+                        continue;
+                    }
+
+                    final Long previous = createdPath.timestamp;
+                    createdPath.timestamp = entry.getValue();
+
+                    if (previous != null && !previous.equals(entry.getValue())) {
+                        updated.add(entry.getKey());
+                    }
+                }
+            }
+
+            if (!updated.isEmpty()) {
+                log.info("Nut(s) {} created through heap '{}' updated", updated, id);
+                notifyListeners(NutsHeap.this, updated);
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * A path observed by a {@link CreatedNutsListener}.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @version 1.0
+     * @since 0.5.0
+     */
+    private static final class CreatedPath {
+
+        /**
+         * The DAO polling the path, {@code null} if it can't be unobserved.
+         */
+        private final AbstractNutDao dao;
+
+        /**
+         * The paths of the nuts this path has been created from.
+         */
+        private final Set<String> origins;
+
+        /**
+         * The last known timestamp, {@code null} if the next polling operation is the reference.
+         */
+        private Long timestamp;
+
+        /**
+         * <p>
+         * Builds a new instance.
+         * </p>
+         *
+         * @param d the DAO
+         * @param t the reference timestamp
+         */
+        private CreatedPath(final AbstractNutDao d, final Long t) {
+            dao = d;
+            timestamp = t;
+            origins = new HashSet<String>();
+        }
+    }
 }
@@ -0,0 +1,294 @@
+/*
+ * "Copyright (c) 2014   Capgemini Technology Services (hereinafter "Capgemini")
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * -   The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Any failure to comply with the above shall automatically terminate the license
+ * and be construed as a breach of these Terms of Use causing significant harm to
+ * Capgemini.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Capgemini shall not be used in
+ * advertising or otherwise to promote the use or other dealings in this Software
+ * without prior written authorization from Capgemini.
+ *
+ * These Terms of Use are subject to French law.
+ *
+ * IMPORTANT NOTICE: The WUIC software implements software components governed by
+ * open source software licenses (BSD and Apache) of which CAPGEMINI is not the
+ * author or the editor. The rights granted on the said software components are
+ * governed by the specific terms and conditions specified by Apache 2.0 and BSD
+ * licenses."
+ */
+
+
+
+
+package com.github.wuic.nut;
+
+import com.github.wuic.util.IOUtils;
+import com.github.wuic.util.WuicScheduledThreadPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>
+ * Saves asynchronously the processed nuts to a set of {@link NutDao stores}.
+ * </p>
+ *
+ * <p>
+ * Nuts are queued when a workflow is processed and written later by a single task running in the
+ * {@link WuicScheduledThreadPool.Lane#IO I/O lane}, so the request which triggered the processing never waits for the
+ * stores. The task is scheduled when the first nut is queued and drains the queue by batches, which coalesces the nuts
+ * produced by concurrent requests. A nut is identified by its name and its version number: a nut already queued or
+ * successfully saved is not written again. A nut that fails to be saved is forgotten and will be queued again the next
+ * time it is processed.
+ * </p>
+ *
+ * <p>
+ * A nut is saved with the name {@code [workflow ID]/[version number]/[nut name]}, which is the path of its URL in the
+ * context path. This way, the stores of several workflows don't overwrite each other and a store can be directly
+ * exposed as static content.
+ * </p>
+ *
+ * <p>
+ * The store must be {@link #shutdown() shutdown} when its workflow is not used anymore to save the queued nuts.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @version 1.1
+ * @since 0.5.0
+ */
+public class WriteBehindNutStore implements Runnable {
+
+    /**
+     * Maximum number of nuts saved in one batch.
+     */
+    public static final int BATCH_SIZE = 64;
+
+    /**
+     * How long the nuts are collected before the first batch is written.
+     */
+    private static final int FLUSH_DELAY_SECONDS = 1;
+
+    /**
+     * Number of saved keys kept to skip redundant writes. Saving a nut twice is harmless, so the keys are just
+     * forgotten when the limit is reached.
+     */
+    private static final int MAX_SAVED_KEYS = 4096;
+
+    /**
+     * The logger.
+     */
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    /**
+     * The ID of the workflow producing the nuts.
+     */
+    private final String workflowId;
+
+    /**
+     * The stores.
+     */
+    private final NutDao[] stores;
+
+    /**
+     * The nuts waiting to be saved, mapped to their key.
+     */
+    private final Map<String, Nut> pending;
+
+    /**
+     * Key of the nuts already saved.
+     */
+    private final Set<String> saved;
+
+    /**
+     * Indicates if a task is scheduled to drain the queue.
+     */
+    private boolean scheduled;
+
+    /**
+     * Indicates if this store has been shutdown.
+     */
+    private boolean stopped;
+
+    /**
+     * <p>
+     * Creates a new instance.
+     * </p>
+     *
+     * @param wId the ID of the workflow producing the nuts
+     * @param daos the stores
+     */
+    public WriteBehindNutStore(final String wId, final NutDao ... daos) {
+        workflowId = wId;
+        stores = daos;
+        pending = new LinkedHashMap<String, Nut>();
+        saved = new HashSet<String>();
+    }
+
+    /**
+     * <p>
+     * Queues the given nuts and their referenced nuts. A task writing them is scheduled if none is pending. Does nothing
+     * if this store has been shutdown.
+     * </p>
+     *
+     * @param nuts the nuts to save
+     */
+    public void enqueue(final List<Nut> nuts) {
+        synchronized (this) {
+            if (stopped) {
+                log.debug("Store of workflow {} is shutdown, nuts are not saved", workflowId);
+                return;
+            }
+
+            collect(nuts);
+
+            if (!scheduled && !pending.isEmpty()) {
+                scheduled = true;
+                WuicScheduledThreadPool.getInstance().executeOnceInSeconds(WuicScheduledThreadPool.Lane.IO, this, FLUSH_DELAY_SECONDS);
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Saves synchronously all the queued nuts.
+     * </p>
+     */
+    public void flush() {
+        List<Map.Entry<String, Nut>> batch = nextBatch();
+
+        while (!batch.isEmpty()) {
+            for (final Map.Entry<String, Nut> entry : batch) {
+                save(entry.getKey(), entry.getValue());
+            }
+
+            batch = nextBatch();
+        }
+    }
+
+    /**
+     * <p>
+     * Stops accepting nuts and saves synchronously the queued nuts.
+     * </p>
+     */
+    public void shutdown() {
+        synchronized (this) {
+            stopped = true;
+        }
+
+        flush();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run() {
+        flush();
+    }
+
+    /**
+     * <p>
+     * Adds recursively to the queue the given nuts that are not saved yet.
+     * </p>
+     *
+     * @param nuts the nuts, could be {@code null}
+     */
+    private void collect(final List<Nut> nuts) {
+        if (nuts == null) {
+            return;
+        }
+
+        for (final Nut nut : nuts) {
+            final String key = nut.getName() + '|' + nut.getVersionNumber();
+
+            if (!saved.contains(key) && !pending.containsKey(key)) {
+                pending.put(key, nut);
+                collect(nut.getReferencedNuts());
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Removes from the queue the next nuts to be saved. When the queue is empty, a new task will be scheduled by the
+     * next call to {@link #enqueue(List)}.
+     * </p>
+     *
+     * @return the batch, empty if nothing is queued
+     */
+    private synchronized List<Map.Entry<String, Nut>> nextBatch() {
+        final List<Map.Entry<String, Nut>> retval = new ArrayList<Map.Entry<String, Nut>>(Math.min(BATCH_SIZE, pending.size()));
+        final Iterator<Map.Entry<String, Nut>> it = pending.entrySet().iterator();
+
+        while (it.hasNext() && retval.size() < BATCH_SIZE) {
+            final Map.Entry<String, Nut> entry = it.next();
+            retval.add(new AbstractMap.SimpleImmutableEntry<String, Nut>(entry));
+            it.remove();
+        }
+
+        if (retval.isEmpty()) {
+            scheduled = false;
+        } else {
+            if (saved.size() + retval.size() > MAX_SAVED_KEYS) {
+                saved.clear();
+            }
+
+            // Marked before the write so a nut being saved is not queued again
+            for (final Map.Entry<String, Nut> entry : retval) {
+                saved.add(entry.getKey());
+            }
+        }
+
+        return retval;
+    }
+
+    /**
+     * <p>
+     * Saves the nut to each store. The key is forgotten if any store fails.
+     * </p>
+     *
+     * @param key the nut key
+     * @param nut the nut
+     */
+    private void save(final String key, final Nut nut) {
+        final Nut stored = new PrefixedNut(nut, IOUtils.mergePath(workflowId, nut.getVersionNumber().toString()));
+
+        for (final NutDao store : stores) {
+            try {
+                store.save(stored);
+            } catch (Exception e) {
+                log.warn(String.format("Unable to save %s with %s", nut.getName(), store), e);
+
+                synchronized (this) {
+                    saved.remove(key);
+                }
+            }
+        }
+    }
+}
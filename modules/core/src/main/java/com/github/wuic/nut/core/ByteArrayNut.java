@@ -47,19 +47,34 @@ import com.github.wuic.util.IOUtils;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * <p>
  * Represents an in-memory nut which can be created on the fly in any context.
  * </p>
+ *
+ * <p>
+ * The byte array given to this nut is not copied: the caller gives its ownership to the nut and must not modify it
+ * after. This avoids to copy the content of each nut produced by the engines.
+ * </p>
+ *
+ * <p>
+ * The content is never modified by the nut once it has been set, which allows to share the same array between the
+ * cache, the different graphs of nuts referencing it and the objects serving it.
+ * </p>
  * 
  * @author Guillaume DROUET
- * @version 1.7
+ * @version 1.12
  * @since 0.2.0
  */
 public final class ByteArrayNut extends AbstractNut {
@@ -86,7 +101,7 @@ public final class ByteArrayNut extends AbstractNut {
      */
     public ByteArrayNut(final byte[] bytes, final String name, final NutType nt, final List<Nut> originalNuts) {
         super(name, nt, Boolean.TRUE, Boolean.TRUE, Boolean.TRUE, Boolean.TRUE, originalNuts);
-        byteArray = Arrays.copyOf(bytes, bytes.length);
+        byteArray = bytes;
     }
 
     /**
@@ -115,7 +130,7 @@ public final class ByteArrayNut extends AbstractNut {
      */
     public ByteArrayNut(final byte[] bytes, final String name, final NutType nt, final BigInteger version) {
         super(name, nt, Boolean.TRUE, Boolean.TRUE, Boolean.TRUE, Boolean.TRUE, version);
-        byteArray = Arrays.copyOf(bytes, bytes.length);
+        byteArray = bytes;
     }
 
     /**
@@ -147,15 +162,51 @@ public final class ByteArrayNut extends AbstractNut {
      * Converts the given nuts list and its referenced nuts into nuts wrapping an in memory byte array.
      * </p>
      *
+     * <p>
+     * A nut referenced several times in the graphs of the given nuts is converted only once. Moreover, the content of
+     * a nut which is already a {@link ByteArrayNut} is not copied: its array is shared with the new nut.
+     * </p>
+     *
      * @return the byte array nut
      * @throws StreamException if an I/O error occurs
      * @throws NutNotFoundException if given nut not normally created
      */
     public static List<Nut> toByteArrayNut(final List<Nut> nuts) throws StreamException, NutNotFoundException {
+        return toByteArrayNut(nuts, new IdentityHashMap<Nut, Nut>());
+    }
+
+    /**
+     * <p>
+     * Converts the given nut and its referenced nuts into nuts wrapping an in memory byte array.
+     * </p>
+     *
+     * @param nut the nut to convert
+     * @return the byte array nut
+     * @throws StreamException if an I/O error occurs
+     * @throws NutNotFoundException if given nut not normally created
+     * @see #toByteArrayNut(java.util.List)
+     */
+    public static Nut toByteArrayNut(final Nut nut) throws StreamException, NutNotFoundException {
+        return toByteArrayNut(nut, new IdentityHashMap<Nut, Nut>());
+    }
+
+    /**
+     * <p>
+     * Converts the given nuts list and reuses the nuts already converted.
+     * </p>
+     *
+     * @param nuts the nuts to convert
+     * @param converted the converted nuts associated to their original instance
+     * @return the byte array nuts
+     * @throws StreamException if an I/O error occurs
+     * @throws NutNotFoundException if given nut not normally created
+     */
+    private static List<Nut> toByteArrayNut(final List<Nut> nuts, final Map<Nut, Nut> converted)
+            throws StreamException, NutNotFoundException {
         final List<Nut> retval = new ArrayList<Nut>(nuts.size());
 
         for (final Nut nut : nuts) {
-            retval.add(toByteArrayNut(nut));
+            retval.add(toByteArrayNut(nut, converted));
         }
 
         return retval;
@@ -163,54 +214,132 @@ public final class ByteArrayNut extends AbstractNut {
 
     /**
      * <p>
-     * Converts the given nut and its referenced nuts into nuts wrapping an in memory byte array.
+     * Converts the given nut and reuses the nuts already converted.
      * </p>
      *
      * @param nut the nut to convert
+     * @param converted the converted nuts associated to their original instance
      * @return the byte array nut
      * @throws StreamException if an I/O error occurs
      * @throws NutNotFoundException if given nut not normally created
      */
-    public static Nut toByteArrayNut(final Nut nut) throws StreamException, NutNotFoundException {
-        InputStream is = null;
+    private static Nut toByteArrayNut(final Nut nut, final Map<Nut, Nut> converted)
+            throws StreamException, NutNotFoundException {
+        final Nut retval = converted.get(nut);
 
-        try {
-            is = nut.openStream();
-            final ByteArrayOutputStream os = new ByteArrayOutputStream();
-            IOUtils.copyStream(is, os);
-            final Nut bytes;
-            final String name = IOUtils.mergePath(nut.getName());
-
-            // This is an original nut
-            if (nut.getOriginalNuts() == null) {
-                bytes = new ByteArrayNut(os.toByteArray(), name, nut.getNutType(), nut.getVersionNumber());
-            } else {
-                bytes = new ByteArrayNut(os.toByteArray(), name, nut.getNutType(), toByteArrayNut(nut.getOriginalNuts()));
+        if (retval != null) {
+            return retval;
+        }
+
+        final byte[] content;
+
+        // Share the immutable content, transformed nuts hand over the content they keep
+        if (nut instanceof ByteArrayNut) {
+            content = ByteArrayNut.class.cast(nut).byteArray;
+        } else if (nut instanceof TransformedNut) {
+            content = TransformedNut.class.cast(nut).getContent();
+        } else {
+            InputStream is = null;
+
+            try {
+                final ByteArrayOutputStream os = new ByteArrayOutputStream();
+                is = nut.openStream();
+                IOUtils.copyStream(is, os);
+                content = os.toByteArray();
+            } finally {
+                IOUtils.close(is);
             }
+        }
+
+        final Nut bytes;
+        final String name = IOUtils.mergePath(nut.getName());
+
+        // This is an original nut
+        if (nut.getOriginalNuts() == null) {
+            bytes = new ByteArrayNut(content, name, nut.getNutType(), nut.getVersionNumber());
+        } else {
+            bytes = new ByteArrayNut(content, name, nut.getNutType(), toByteArrayNut(nut.getOriginalNuts(), converted));
+        }
 
-            bytes.setProxyUri(nut.getProxyUri());
+        bytes.setProxyUri(nut.getProxyUri());
+        converted.put(nut, bytes);
 
-            if (nut.getReferencedNuts() != null && nut.getReferencedNuts() != bytes.getReferencedNuts()) {
-                for (final Nut ref : nut.getReferencedNuts()) {
-                    bytes.addReferencedNut(toByteArrayNut(ref));
-                }
+        if (nut.getReferencedNuts() != null && nut.getReferencedNuts() != bytes.getReferencedNuts()) {
+            for (final Nut ref : nut.getReferencedNuts()) {
+                bytes.addReferencedNut(toByteArrayNut(ref, converted));
             }
+        }
 
-            return bytes;
-        } finally {
-            IOUtils.close(is);
+        return bytes;
+    }
+
+    /**
+     * <p>
+     * Gets the content of this nut. The array must not be modified.
+     * </p>
+     *
+     * @return the content
+     */
+    byte[] getByteArray() {
+        return byteArray;
+    }
+
+    /**
+     * <p>
+     * Gets the number of bytes of this nut.
+     * </p>
+     *
+     * @return the content length
+     */
+    public int getLength() {
+        return byteArray.length;
+    }
+
+    /**
+     * <p>
+     * Writes the content of this nut into the given stream without copying it.
+     * </p>
+     *
+     * @param os the output stream
+     * @throws StreamException if an I/O error occurs
+     */
+    public void writeTo(final OutputStream os) throws StreamException {
+        try {
+            os.write(byteArray);
+        } catch (IOException ioe) {
+            throw new StreamException(ioe);
+        }
+    }
+
+    /**
+     * <p>
+     * Writes the content of this nut into the given channel through a read-only buffer wrapping the content.
+     * </p>
+     *
+     * @param channel the channel
+     * @throws StreamException if an I/O error occurs
+     */
+    public void writeTo(final WritableByteChannel channel) throws StreamException {
+        final ByteBuffer buffer = ByteBuffer.wrap(byteArray).asReadOnlyBuffer();
+
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException ioe) {
+            throw new StreamException(ioe);
         }
     }
 
     /**
      * <p>
-     * Sets the given array as byte array content.
+     * Sets the given array as byte array content. The array is not copied.
      * </p>
      *
      * @param bytes the bytes
      */
     public void setBytes(final byte[] bytes) {
-        byteArray = Arrays.copyOf(bytes, bytes.length);
+        byteArray = bytes;
     }
 
     /**
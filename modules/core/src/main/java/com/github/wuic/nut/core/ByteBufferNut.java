@@ -0,0 +1,359 @@
+/*
+ * "Copyright (c) 2014   Capgemini Technology Services (hereinafter "Capgemini")
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * -   The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Any failure to comply with the above shall automatically terminate the license
+ * and be construed as a breach of these Terms of Use causing significant harm to
+ * Capgemini.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Capgemini shall not be used in
+ * advertising or otherwise to promote the use or other dealings in this Software
+ * without prior written authorization from Capgemini.
+ *
+ * These Terms of Use are subject to French law.
+ *
+ * IMPORTANT NOTICE: The WUIC software implements software components governed by
+ * open source software licenses (BSD and Apache) of which CAPGEMINI is not the
+ * author or the editor. The rights granted on the said software components are
+ * governed by the specific terms and conditions specified by Apache 2.0 and BSD
+ * licenses."
+ */
+
+
+package com.github.wuic.nut.core;
+
+import com.github.wuic.NutType;
+import com.github.wuic.exception.NutNotFoundException;
+import com.github.wuic.exception.WuicException;
+import com.github.wuic.exception.wrapper.StreamException;
+import com.github.wuic.nut.AbstractNut;
+import com.github.wuic.nut.Nut;
+import com.github.wuic.util.IOUtils;
+import com.github.wuic.util.SlabAllocator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.NotSerializableException;
+import java.io.ObjectStreamException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * Represents a nut whose content is stored outside the java heap in a {@link SlabAllocator.Slot slot}. Only the
+ * metadata of the nut remains in the heap. The original nuts are not moved outside the heap since their content is
+ * not served.
+ * </p>
+ *
+ * <p>
+ * The slot is {@link SlabAllocator.Slot#bind(Object) bound} to the nut. When the slot is freed, for instance because
+ * the nut is evicted from a cache, the chunk is recycled and the content is copied in the heap: a nut retrieved before
+ * the eviction can still be read. When serialized, the nut is replaced by a {@link ByteArrayNut}.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @version 1.2
+ * @since 0.5.0
+ */
+public final class ByteBufferNut extends AbstractNut {
+
+    /**
+     * Serial version UID.
+     */
+    private static final long serialVersionUID = -6150218722403497263L;
+
+    /**
+     * The slot containing the content.
+     */
+    private final transient SlabAllocator.Slot slot;
+
+    /**
+     * <p>
+     * Builds a new transformed nut.
+     * </p>
+     *
+     * @param s the slot
+     * @param name the nut name
+     * @param nt the {@link NutType}
+     * @param originalNuts the original nuts
+     */
+    public ByteBufferNut(final SlabAllocator.Slot s, final String name, final NutType nt, final List<Nut> originalNuts) {
+        super(name, nt, Boolean.TRUE, Boolean.TRUE, Boolean.TRUE, Boolean.TRUE, originalNuts);
+        slot = s;
+        slot.bind(this);
+    }
+
+    /**
+     * <p>
+     * Builds a new original nut.
+     * </p>
+     *
+     * @param s the slot
+     * @param name the nut name
+     * @param nt the {@link NutType}
+     * @param version the version number
+     */
+    public ByteBufferNut(final SlabAllocator.Slot s, final String name, final NutType nt, final BigInteger version) {
+        super(name, nt, Boolean.TRUE, Boolean.TRUE, Boolean.TRUE, Boolean.TRUE, version);
+        slot = s;
+        slot.bind(this);
+    }
+
+    /**
+     * <p>
+     * Moves the content of the given nut and its referenced nuts into slots allocated with the given allocator. The
+     * original nuts are kept as is. A nut that can't be allocated because the allocator is full remains in the heap as a
+     * {@link ByteArrayNut} with all its referenced nuts.
+     * </p>
+     *
+     * @param nut the nut to convert
+     * @param allocator the allocator
+     * @param converted the nuts already converted associated to their original instance
+     * @return the converted nut
+     * @throws StreamException if an I/O error occurs
+     * @throws NutNotFoundException if given nut not normally created
+     */
+    public static Nut toByteBufferNut(final Nut nut, final SlabAllocator allocator, final Map<Nut, Nut> converted)
+            throws StreamException, NutNotFoundException {
+        if (nut instanceof ByteBufferNut) {
+            return nut;
+        }
+
+        final Nut retval = converted.get(nut);
+
+        if (retval != null) {
+            return retval;
+        }
+
+        final Nut heap = nut instanceof ByteArrayNut ? nut : ByteArrayNut.toByteArrayNut(nut);
+        final byte[] content = ByteArrayNut.class.cast(heap).getByteArray();
+        final SlabAllocator.Slot slot = allocator.allocate(content.length);
+
+        // Allocator is full, keep the content on the heap
+        if (slot == null) {
+            return heap;
+        }
+
+        slot.write(content);
+        final Nut bytes;
+
+        if (heap.getOriginalNuts() == null) {
+            bytes = new ByteBufferNut(slot, heap.getName(), heap.getNutType(), heap.getVersionNumber());
+        } else {
+            bytes = new ByteBufferNut(slot, heap.getName(), heap.getNutType(), heap.getOriginalNuts());
+        }
+
+        bytes.setProxyUri(heap.getProxyUri());
+        converted.put(nut, bytes);
+
+        if (heap.getReferencedNuts() != null) {
+            for (final Nut ref : heap.getReferencedNuts()) {
+                bytes.addReferencedNut(toByteBufferNut(ref, allocator, converted));
+            }
+        }
+
+        return bytes;
+    }
+
+    /**
+     * <p>
+     * Gets the slot containing the content.
+     * </p>
+     *
+     * @return the slot
+     */
+    public SlabAllocator.Slot getSlot() {
+        return slot;
+    }
+
+    /**
+     * <p>
+     * Writes the content of this nut into the given stream.
+     * </p>
+     *
+     * @param os the output stream
+     * @throws StreamException if an I/O error occurs
+     * @throws NutNotFoundException if the slot has been recycled
+     */
+    public void writeTo(final OutputStream os) throws StreamException, NutNotFoundException {
+        final ByteBuffer buffer = acquire();
+
+        try {
+            final byte[] chunk = new byte[Math.min(IOUtils.WUIC_BUFFER_LEN, buffer.remaining())];
+
+            while (buffer.hasRemaining()) {
+                final int len = Math.min(chunk.length, buffer.remaining());
+                buffer.get(chunk, 0, len);
+                os.write(chunk, 0, len);
+            }
+        } catch (IOException ioe) {
+            throw new StreamException(ioe);
+        } finally {
+            slot.release();
+        }
+    }
+
+    /**
+     * <p>
+     * Writes the content of this nut into the given channel without copying it in the heap.
+     * </p>
+     *
+     * @param channel the channel
+     * @throws StreamException if an I/O error occurs
+     * @throws NutNotFoundException if the slot has been recycled
+     */
+    public void writeTo(final WritableByteChannel channel) throws StreamException, NutNotFoundException {
+        final ByteBuffer buffer = acquire();
+
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException ioe) {
+            throw new StreamException(ioe);
+        } finally {
+            slot.release();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public InputStream openStream() throws NutNotFoundException {
+        return new ByteBufferInputStream(acquire());
+    }
+
+    /**
+     * <p>
+     * Replaces this nut by a {@link ByteArrayNut} when serialized.
+     * </p>
+     *
+     * @return the nut to serialize
+     * @throws ObjectStreamException if the content can't be read
+     */
+    private Object writeReplace() throws ObjectStreamException {
+        try {
+            return ByteArrayNut.toByteArrayNut(this);
+        } catch (WuicException we) {
+            final NotSerializableException nse = new NotSerializableException(getName());
+            nse.initCause(we);
+            throw nse;
+        }
+    }
+
+    /**
+     * <p>
+     * Acquires the content of the slot.
+     * </p>
+     *
+     * @return the content
+     * @throws NutNotFoundException if the slot has been recycled
+     */
+    private ByteBuffer acquire() throws NutNotFoundException {
+        final ByteBuffer retval = slot == null ? null : slot.acquire();
+
+        if (retval == null) {
+            throw new NutNotFoundException(new IOException(String.format("Content of nut '%s' has been released", getName())));
+        }
+
+        return retval;
+    }
+
+    /**
+     * <p>
+     * An input stream reading the acquired content of the slot. The content is released when the stream is closed.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @version 1.0
+     * @since 0.5.0
+     */
+    private final class ByteBufferInputStream extends InputStream {
+
+        /**
+         * The content.
+         */
+        private final ByteBuffer buffer;
+
+        /**
+         * Content already released or not.
+         */
+        private Boolean released;
+
+        /**
+         * <p>
+         * Builds a new instance.
+         * </p>
+         *
+         * @param b the acquired content
+         */
+        private ByteBufferInputStream(final ByteBuffer b) {
+            buffer = b;
+            released = Boolean.FALSE;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int read() throws IOException {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            } else if (!buffer.hasRemaining()) {
+                return -1;
+            }
+
+            final int retval = Math.min(len, buffer.remaining());
+            buffer.get(b, off, retval);
+            return retval;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int available() throws IOException {
+            return buffer.remaining();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void close() throws IOException {
+            if (!released) {
+                released = Boolean.TRUE;
+                slot.release();
+            }
+        }
+    }
+}
@@ -58,7 +58,7 @@ import java.net.URL;
  * </p>
  *
  * @author Guillaume DROUET
- * @version 1.5
+ * @version 1.6
  * @since 0.3.0
  */
 public class ClasspathNutDaoBuilder extends DiskNutDaoBuilder {
@@ -74,6 +74,7 @@ public class ClasspathNutDaoBuilder extends DiskNutDaoBuilder {
                 new BasePathAsSysPropPropertySetter(this),
                 new ProxyUrisPropertySetter(this),
                 new PollingInterleavePropertySetter(this),
+                new PollingMaxInterleavePropertySetter(this),
                 new RegexPropertySetter(this),
                 new ContentBasedVersionNumberPropertySetter(this));
     }
@@ -103,11 +104,14 @@ public class ClasspathNutDaoBuilder extends DiskNutDaoBuilder {
      */
     @Override
     public NutDao internalBuild() throws BuilderPropertyNotSupportedException {
-        return new DiskNutDao(staticProcessBasePath((String) property(ApplicationConfig.BASE_PATH)),
+        final DiskNutDao retval = new DiskNutDao(staticProcessBasePath((String) property(ApplicationConfig.BASE_PATH)),
                 (Boolean) property(ApplicationConfig.BASE_PATH_AS_SYS_PROP),
                 (String[]) property(ApplicationConfig.PROXY_URIS),
                 (Integer) property(ApplicationConfig.POLLING_INTERLEAVE),
                 (Boolean) property(ApplicationConfig.REGEX),
                 (Boolean) property(ApplicationConfig.CONTENT_BASED_VERSION_NUMBER));
+        retval.setMaxPollingInterleave((Integer) property(ApplicationConfig.POLLING_MAX_INTERLEAVE));
+
+        return retval;
     }
 }
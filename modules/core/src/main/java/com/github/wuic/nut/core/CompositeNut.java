@@ -54,7 +54,7 @@ import java.util.*;
  * </p>
  *
  * @author Guillaume DROUET
- * @version 1.2
+ * @version 1.3
  * @since 0.4.2
  */
 public class CompositeNut extends AbstractNut {
@@ -250,7 +250,7 @@ public class CompositeNut extends AbstractNut {
      * </p>
      *
      * @author Guillaume DROUET
-     * @version 1.0
+     * @version 1.1
      * @since 0.4.2
      */
     private class CompositeInputStream extends InputStream {
@@ -275,35 +275,94 @@ public class CompositeNut extends AbstractNut {
          */
         @Override
         public int read() throws IOException {
-            try {
-                // First call
-                if (current == null) {
-                    current = CompositeNut.this.compositionList[index].openStream();
-                }
+            int retval = -1;
 
-                // Read the stream
-                final int retval = current.read();
+            // Read the next byte, eventually in the next stream if the current one is ended
+            while (nextStream() && (retval = current.read()) == -1) {
+                endStream();
+            }
 
-                // End of the stream, we can start reading the next stream
-                if (retval == -1 && index < CompositeNut.this.compositionList.length - 1) {
+            return retval;
+        }
 
-                    // We have a stream separator to serve
-                    if (streamSeparator != null && !separating) {
-                        separating = Boolean.TRUE;
-                        current = new ByteArrayInputStream(streamSeparator);
-                    } else {
-                        separating = Boolean.FALSE;
-                        current = CompositeNut.this.compositionList[++index].openStream();
-                    }
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+
+            int retval = -1;
+
+            // Read the next bytes in the current stream, eventually in the next stream if the current one is ended
+            while (nextStream() && (retval = current.read(b, off, len)) == -1) {
+                endStream();
+            }
+
+            return retval;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void close() throws IOException {
+            if (current != null) {
+                current.close();
+                current = null;
+            }
+
+            index = CompositeNut.this.compositionList.length;
+        }
+
+        /**
+         * <p>
+         * Opens the stream to read if no stream is currently read.
+         * </p>
+         *
+         * @return {@code false} if there is no stream to read anymore, {@code true} otherwise
+         * @throws IOException if the stream can't be opened
+         */
+        private boolean nextStream() throws IOException {
+            if (current != null) {
+                return true;
+            } else if (index >= CompositeNut.this.compositionList.length) {
+                return false;
+            }
 
-                    return current.read();
-                // Stream not ended or no stream to read anymore
+            try {
+                if (separating) {
+                    current = new ByteArrayInputStream(streamSeparator);
                 } else {
-                    return retval;
+                    current = CompositeNut.this.compositionList[index].openStream();
                 }
             } catch (NutNotFoundException nnfe) {
                 throw new IOException(nnfe);
             }
+
+            return true;
+        }
+
+        /**
+         * <p>
+         * Closes the current stream which has been totally read and moves to the stream separator or the next nut.
+         * </p>
+         *
+         * @throws IOException if the stream can't be closed
+         */
+        private void endStream() throws IOException {
+            current.close();
+            current = null;
+
+            // We have a stream separator to serve between two nuts
+            if (streamSeparator != null && !separating && index < CompositeNut.this.compositionList.length - 1) {
+                separating = Boolean.TRUE;
+            } else {
+                separating = Boolean.FALSE;
+                index++;
+            }
         }
     }
 }
@@ -38,12 +38,19 @@
 
 package com.github.wuic.nut.core;
 
+import com.github.wuic.exception.NutNotFoundException;
+import com.github.wuic.exception.SaveOperationFailedException;
 import com.github.wuic.exception.wrapper.BadArgumentException;
+import com.github.wuic.exception.wrapper.StreamException;
+import com.github.wuic.nut.Nut;
 import com.github.wuic.util.IOUtils;
 import com.github.wuic.path.DirectoryPath;
 import com.github.wuic.path.Path;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 
 /**
  * <p>
@@ -54,12 +61,30 @@ import java.io.IOException;
  * The DAO is based on the {@link DirectoryPath} from the path API designed for WUIC.
  * </p>
  *
+ * <p>
+ * The DAO supports {@link #save(Nut)}: the nut is written to a temporary file created in the target directory which
+ * is then renamed to its final name. Clients reading the directory never see a partially written file. The name of
+ * the nut is a path relative to the base directory: when used as the store of a workflow, the nuts are saved under
+ * {@code [workflow ID]/[version number]/[nut name]} like in their URL, see
+ * {@link com.github.wuic.nut.WriteBehindNutStore}.
+ * </p>
+ *
  * @author Guillaume DROUET
- * @version 1.4
+ * @version 1.7
  * @since 0.3.1
  */
 public class DiskNutDao extends PathNutDao {
 
+    /**
+     * Prefix of the temporary files written by {@link #save(Nut)}.
+     */
+    private static final String TEMP_PREFIX = ".wuic-";
+
+    /**
+     * Suffix of the temporary files written by {@link #save(Nut)}.
+     */
+    private static final String TEMP_SUFFIX = ".tmp";
+
     /**
      * <p>
      * Builds a new instance with a base directory.
@@ -94,4 +119,69 @@ public class DiskNutDao extends PathNutDao {
             throw new BadArgumentException(new IllegalArgumentException(String.format("%s is not a directory", getBasePath())));
         }
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void save(final Nut nut) {
+        try {
+            init();
+        } catch (StreamException se) {
+            throw new SaveOperationFailedException(nut, se);
+        }
+
+        final File base = new File(baseDirectory.getAbsolutePath());
+        final File target = new File(base, nut.getName());
+        InputStream is = null;
+        FileOutputStream os = null;
+        File temp = null;
+
+        try {
+            if (!target.getCanonicalPath().startsWith(base.getCanonicalPath() + File.separator)) {
+                throw new BadArgumentException(new IllegalArgumentException(
+                        String.format("%s is not located in %s", nut.getName(), base.getAbsolutePath())));
+            }
+
+            final File directory = target.getParentFile();
+
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException(String.format("Unable to create directory %s", directory.getAbsolutePath()));
+            }
+
+            // Same directory, so the rename does not move the file across file systems
+            temp = File.createTempFile(TEMP_PREFIX, TEMP_SUFFIX, directory);
+            is = nut.openStream();
+            os = new FileOutputStream(temp);
+            IOUtils.copyStreamIoe(is, os);
+            os.getFD().sync();
+            IOUtils.close(os);
+            os = null;
+
+            // Some platforms refuse to rename over an existing file
+            if (!temp.renameTo(target) && !(target.delete() && temp.renameTo(target))) {
+                throw new IOException(String.format("Unable to rename %s to %s", temp.getAbsolutePath(), target.getAbsolutePath()));
+            }
+
+            temp = null;
+        } catch (NutNotFoundException nnfe) {
+            throw new SaveOperationFailedException(nut, nnfe);
+        } catch (IOException ioe) {
+            throw new SaveOperationFailedException(nut, ioe);
+        } finally {
+            IOUtils.close(is, os);
+
+            if (temp != null && !temp.delete()) {
+                temp.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Boolean saveSupported() {
+        return true;
+    }
 }
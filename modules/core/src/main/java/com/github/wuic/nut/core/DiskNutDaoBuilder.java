@@ -52,7 +52,7 @@ import com.github.wuic.nut.setter.ProxyUrisPropertySetter;
  * </p>
  *
  * @author Guillaume DROUET
- * @version 1.4
+ * @version 1.5
  * @since 0.3.0
  */
 public class DiskNutDaoBuilder extends AbstractNutDaoBuilder {
@@ -68,6 +68,7 @@ public class DiskNutDaoBuilder extends AbstractNutDaoBuilder {
                 new BasePathAsSysPropPropertySetter(this, false),
                 new ProxyUrisPropertySetter(this, null),
                 new PollingInterleavePropertySetter(this, -1),
+                new PollingMaxInterleavePropertySetter(this),
                 new RegexPropertySetter(this, false),
                 new ContentBasedVersionNumberPropertySetter(this));
     }
@@ -76,11 +77,14 @@ public class DiskNutDaoBuilder extends AbstractNutDaoBuilder {
      * {@inheritDoc}
      */
     public NutDao internalBuild() throws BuilderPropertyNotSupportedException {
-        return new DiskNutDao((String) property(ApplicationConfig.BASE_PATH),
+        final DiskNutDao retval = new DiskNutDao((String) property(ApplicationConfig.BASE_PATH),
                 (Boolean) property(ApplicationConfig.BASE_PATH_AS_SYS_PROP),
                 (String[]) property(ApplicationConfig.PROXY_URIS),
                 (Integer) property(ApplicationConfig.POLLING_INTERLEAVE),
                 (Boolean) property(ApplicationConfig.REGEX),
                 (Boolean) property(ApplicationConfig.CONTENT_BASED_VERSION_NUMBER));
+        retval.setMaxPollingInterleave((Integer) property(ApplicationConfig.POLLING_MAX_INTERLEAVE));
+
+        return retval;
     }
 }
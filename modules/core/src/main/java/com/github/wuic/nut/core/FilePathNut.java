@@ -39,6 +39,7 @@ package com.github.wuic.nut.core;
 
 import com.github.wuic.NutType;
 import com.github.wuic.exception.NutNotFoundException;
+import com.github.wuic.metric.Metrics;
 import com.github.wuic.nut.AbstractNut;
 import com.github.wuic.path.FilePath;
 
@@ -53,7 +54,7 @@ import java.math.BigInteger;
  * </p>
  *
  * @author Guillaume DROUET
- * @version 1.6
+ * @version 1.7
  * @since 0.1.1
  */
 public class FilePathNut extends AbstractNut {
@@ -89,6 +90,7 @@ public class FilePathNut extends AbstractNut {
     @Override
     public InputStream openStream() throws NutNotFoundException {
         try {
+            Metrics.count(Metrics.Component.DAO, getClass().getSimpleName(), "streamOpens", 1L);
             return path.openStream();
         } catch (IOException ioe) {
             throw new NutNotFoundException(ioe);
@@ -40,6 +40,7 @@ package com.github.wuic.nut.core;
 
 import com.github.wuic.NutType;
 import com.github.wuic.exception.NutNotFoundException;
+import com.github.wuic.metric.Metrics;
 import com.github.wuic.nut.AbstractNut;
 
 import java.io.IOException;
@@ -53,7 +54,7 @@ import java.net.URL;
  * </p>
  *
  * @author Guillaume DROUET
- * @version 1.3
+ * @version 1.4
  * @since 0.3.1
  */
 public class HttpNut extends AbstractNut {
@@ -84,6 +85,7 @@ public class HttpNut extends AbstractNut {
     @Override
     public InputStream openStream() throws NutNotFoundException {
         try {
+            Metrics.count(Metrics.Component.DAO, getClass().getSimpleName(), "streamOpens", 1L);
             return nutUrl.openStream();
         } catch (IOException ioe) {
             throw new NutNotFoundException(ioe);
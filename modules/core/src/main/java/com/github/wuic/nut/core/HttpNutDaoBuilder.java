@@ -51,7 +51,7 @@ import com.github.wuic.nut.AbstractNutDaoBuilder;
  * </p>
  *
  * @author Guillaume DROUET
- * @version 1.3
+ * @version 1.4
  * @since 0.3.1
  */
 public class HttpNutDaoBuilder extends AbstractNutDaoBuilder {
@@ -69,6 +69,7 @@ public class HttpNutDaoBuilder extends AbstractNutDaoBuilder {
                 new ServerPortPropertySetter(this),
                 new SecretProtocolPropertySetter(this),
                 new PollingInterleavePropertySetter(this),
+                new PollingMaxInterleavePropertySetter(this),
                 new ContentBasedVersionNumberPropertySetter(this));
     }
 
@@ -77,12 +78,15 @@ public class HttpNutDaoBuilder extends AbstractNutDaoBuilder {
      */
     @Override
     public NutDao internalBuild() throws BuilderPropertyNotSupportedException {
-        return new HttpNutDao((Boolean) property(ApplicationConfig.SECRET_PROTOCOL),
+        final HttpNutDao retval = new HttpNutDao((Boolean) property(ApplicationConfig.SECRET_PROTOCOL),
                 (String) property(ApplicationConfig.SERVER_DOMAIN),
                 (Integer) property(ApplicationConfig.SERVER_PORT),
                 (String) property(ApplicationConfig.BASE_PATH),
                 (Boolean) property(ApplicationConfig.BASE_PATH_AS_SYS_PROP),
                 (Integer) property(ApplicationConfig.POLLING_INTERLEAVE),
                 (Boolean) property(ApplicationConfig.CONTENT_BASED_VERSION_NUMBER));
+        retval.setMaxPollingInterleave((Integer) property(ApplicationConfig.POLLING_MAX_INTERLEAVE));
+
+        return retval;
     }
 }
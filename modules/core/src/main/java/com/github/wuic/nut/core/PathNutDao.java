@@ -48,12 +48,18 @@ import com.github.wuic.path.DirectoryPath;
 import com.github.wuic.path.FilePath;
 import com.github.wuic.path.Path;
 import com.github.wuic.util.IOUtils;
+import com.github.wuic.util.PathMatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.regex.Pattern;
+import java.util.Map;
 
 /**
  * <p>
@@ -65,11 +71,16 @@ import java.util.regex.Pattern;
  * </p>
  *
  * @author Guillaume DROUET
- * @version 1.1
+ * @version 1.4
  * @since 0.4.2
  */
 public abstract class PathNutDao extends AbstractNutDao {
 
+    /**
+     * Logger.
+     */
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
     /**
      * Base directory where the protocol has to look up.
      */
@@ -119,8 +130,46 @@ public abstract class PathNutDao extends AbstractNutDao {
     @Override
     public List<String> listNutsPaths(final String pattern) throws StreamException {
         init();
-        final Pattern compiled = Pattern.compile(regularExpression ? pattern : Pattern.quote(pattern));
-        return IOUtils.listFile(DirectoryPath.class.cast(baseDirectory), compiled, skipStartsWith());
+        final PathMatcher matcher = PathMatcher.compile(pattern, regularExpression);
+        return IOUtils.listFile(DirectoryPath.class.cast(baseDirectory), "", matcher, skipStartsWith());
+    }
+
+    /**
+     * <p>
+     * Walks the base directory once for all the patterns, then associates each path to the patterns it matches.
+     * </p>
+     *
+     * @param patterns the patterns
+     * @return the paths associated to the pattern they match
+     */
+    @Override
+    protected Map<String, List<String>> listNutsPaths(final Collection<String> patterns) {
+        final Map<String, List<String>> retval = new HashMap<String, List<String>>(patterns.size());
+
+        if (patterns.isEmpty()) {
+            return retval;
+        }
+
+        final PathMatcher matcher = PathMatcher.compile(patterns, regularExpression);
+
+        for (final String pattern : matcher.getPatterns()) {
+            retval.put(pattern, new ArrayList<String>());
+        }
+
+        try {
+            init();
+
+            for (final String path : IOUtils.listFile(DirectoryPath.class.cast(baseDirectory), "", matcher, skipStartsWith())) {
+                for (final String pattern : matcher.matching(path)) {
+                    retval.get(pattern).add(path);
+                }
+            }
+        } catch (StreamException se) {
+            log.error("Unable to list path for {}", patterns, se);
+            retval.clear();
+        }
+
+        return retval;
     }
 
     /**
@@ -201,12 +250,12 @@ public abstract class PathNutDao extends AbstractNutDao {
     /**
      * <p>
      * Initializes the {@link com.github.wuic.path.DirectoryPath} if {@code null}. Throws an {@code BadArgumentException} if
-     * the given {@code String} does not represents a directory.
+     * the given {@code String} does not represents a directory. Subclasses call it before accessing {@link #baseDirectory}.
      * </p>
      *
      * @throws com.github.wuic.exception.wrapper.StreamException if any I/O error occurs
      */
-    private void init() throws StreamException {
+    protected void init() throws StreamException {
         if (baseDirectory == null) {
             try {
                 baseDirectory = createBaseDirectory();
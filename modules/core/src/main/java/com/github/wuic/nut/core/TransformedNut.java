@@ -0,0 +1,246 @@
+/*
+ * "Copyright (c) 2014   Capgemini Technology Services (hereinafter "Capgemini")
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * -   The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Any failure to comply with the above shall automatically terminate the license
+ * and be construed as a breach of these Terms of Use causing significant harm to
+ * Capgemini.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Capgemini shall not be used in
+ * advertising or otherwise to promote the use or other dealings in this Software
+ * without prior written authorization from Capgemini.
+ *
+ * These Terms of Use are subject to French law.
+ *
+ * IMPORTANT NOTICE: The WUIC software implements software components governed by
+ * open source software licenses (BSD and Apache) of which CAPGEMINI is not the
+ * author or the editor. The rights granted on the said software components are
+ * governed by the specific terms and conditions specified by Apache 2.0 and BSD
+ * licenses."
+ */
+
+
+package com.github.wuic.nut.core;
+
+import com.github.wuic.NutType;
+import com.github.wuic.exception.NutNotFoundException;
+import com.github.wuic.exception.wrapper.StreamException;
+import com.github.wuic.nut.AbstractNut;
+import com.github.wuic.nut.Nut;
+import com.github.wuic.util.IOUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Represents a nut resulting from a transformation applied to the content of another nut. The transformation is
+ * not performed when the nut is created but the first time its content is read. This way, an engine can give to the
+ * next engine in the chain a nut which does not hold its content in memory: the content only exists when a stage
+ * actually consumes the stream, typically when the cache engine materializes the end of the chain.
+ * </p>
+ *
+ * <p>
+ * The transformed content is then kept by the nut. Any subsequent read, for instance to compute its size, to save it
+ * or to serve it without cache, is served from memory and does not transform the source again.
+ * </p>
+ *
+ * <p>
+ * A transformed nut is not intended to be cached as is. It should be converted with
+ * {@link ByteArrayNut#toByteArrayNut(com.github.wuic.nut.Nut)} before. The converted nut shares the content kept by
+ * this nut instead of copying it.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @version 1.2
+ * @since 0.5.0
+ */
+public abstract class TransformedNut extends AbstractNut {
+
+    /**
+     * Serial version UID.
+     */
+    private static final long serialVersionUID = -3264587624139823474L;
+
+    /**
+     * The nut to transform.
+     */
+    private final Nut source;
+
+    /**
+     * The transformed content, {@code null} until the nut is read for the first time or once deserialized.
+     */
+    private transient volatile TransformedContent transformed;
+
+    /**
+     * <p>
+     * Builds a new instance.
+     * </p>
+     *
+     * @param s the nut to transform
+     * @param name the name of the transformed nut
+     * @param nt the nut type of the transformed nut
+     */
+    public TransformedNut(final Nut s, final String name, final NutType nt) {
+        super(name, nt, s.isBinaryCompressible(), s.isTextCompressible(), s.isCacheable(), s.isAggregatable(), Arrays.asList(s));
+        source = s;
+    }
+
+    /**
+     * <p>
+     * Transforms the given source stream into the specified target.
+     * </p>
+     *
+     * @param source the content of the source nut
+     * @param target where the transformed content must be written
+     * @throws StreamException if an I/O error occurs
+     */
+    protected abstract void transform(InputStream source, OutputStream target) throws StreamException;
+
+    /**
+     * <p>
+     * Writes the transformed content of this nut into the given stream. The source is transformed only if it has not
+     * been read yet.
+     * </p>
+     *
+     * @param target the output stream
+     * @throws NutNotFoundException if the source nut can't be opened
+     * @throws StreamException if an I/O error occurs
+     */
+    public void transform(final OutputStream target) throws NutNotFoundException, StreamException {
+        try {
+            getTransformed().writeTo(target);
+        } catch (IOException ioe) {
+            throw new StreamException(ioe);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public InputStream openStream() throws NutNotFoundException {
+        try {
+            return getTransformed().toInputStream();
+        } catch (StreamException se) {
+            final Throwable cause = se.getCause();
+            throw new NutNotFoundException(cause instanceof IOException ? IOException.class.cast(cause) : new IOException(cause));
+        }
+    }
+
+    /**
+     * <p>
+     * Gets the transformed content in an array which is exactly its size. The array is kept by this nut, so it must
+     * not be modified.
+     * </p>
+     *
+     * @return the content
+     * @throws NutNotFoundException if the source nut can't be opened
+     * @throws StreamException if an I/O error occurs
+     */
+    byte[] getContent() throws NutNotFoundException, StreamException {
+        return getTransformed().trim();
+    }
+
+    /**
+     * <p>
+     * Gets the transformed content, transforming the source the first time.
+     * </p>
+     *
+     * @return the transformed content
+     * @throws NutNotFoundException if the source nut can't be opened
+     * @throws StreamException if an I/O error occurs
+     */
+    private TransformedContent getTransformed() throws NutNotFoundException, StreamException {
+        TransformedContent retval = transformed;
+
+        if (retval == null) {
+            synchronized (this) {
+                retval = transformed;
+
+                if (retval == null) {
+                    retval = new TransformedContent();
+                    InputStream is = null;
+
+                    try {
+                        is = source.openStream();
+                        transform(is, retval);
+                    } finally {
+                        IOUtils.close(is);
+                    }
+
+                    transformed = retval;
+                }
+            }
+        }
+
+        return retval;
+    }
+
+    /**
+     * <p>
+     * Collects the transformed content and reads it without copying the internal buffer.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @version 1.1
+     * @since 0.5.0
+     */
+    private static final class TransformedContent extends ByteArrayOutputStream {
+
+        /**
+         * <p>
+         * Builds a new instance.
+         * </p>
+         */
+        private TransformedContent() {
+            super(IOUtils.WUIC_BUFFER_LEN);
+        }
+
+        /**
+         * <p>
+         * Opens a stream reading the written bytes.
+         * </p>
+         *
+         * @return the stream
+         */
+        private synchronized InputStream toInputStream() {
+            return new ByteArrayInputStream(buf, 0, count);
+        }
+
+        /**
+         * <p>
+         * Shrinks the internal buffer to the written bytes, which are not modified anymore.
+         * </p>
+         *
+         * @return the internal buffer
+         */
+        private synchronized byte[] trim() {
+            if (buf.length != count) {
+                buf = Arrays.copyOf(buf, count);
+            }
+
+            return buf;
+        }
+    }
+}
@@ -38,17 +38,19 @@
 
 package com.github.wuic.nut.filter;
 
+import com.github.wuic.util.PathMatcher;
+
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.regex.Pattern;
 
 /**
  * <p>
- * This filter can remove paths matching a regex.
+ * This filter can remove paths matching a regex. All the regex are compiled in one {@link PathMatcher}.
  * </p>
  *
  * @author Guillaume DROUET
- * @version 1.0
+ * @version 1.1
  * @since 0.4.5
  */
 public class RegexRemoveNutFilter implements NutFilter {
@@ -56,7 +58,7 @@ public class RegexRemoveNutFilter implements NutFilter {
     /**
      * The compiled regex.
      */
-    private List<Pattern> patterns;
+    private PathMatcher matcher;
 
     /**
      * If this filter is enabled.
@@ -72,12 +74,7 @@ public class RegexRemoveNutFilter implements NutFilter {
      * @param regex all the exclusion regex
      */
     public RegexRemoveNutFilter(final Boolean enabled, final String ... regex) {
-        patterns = new ArrayList<Pattern>();
-
-        for (final String r : regex) {
-            patterns.add(Pattern.compile(r));
-        }
-
+        matcher = PathMatcher.compile(Arrays.asList(regex), true);
         enable = enabled;
     }
 
@@ -92,19 +89,14 @@ public class RegexRemoveNutFilter implements NutFilter {
             return paths;
         }
 
-        final List<String> retval = new ArrayList<String>();
+        final List<String> retval = new ArrayList<String>(paths.size());
 
-        pathsLoop:
         for (final String path : paths) {
-            for (final Pattern pattern : patterns) {
 
-                // Won't keep the path in returned list if it matches one of the pattern
-                if (pattern.matcher(path).matches()) {
-                    continue pathsLoop;
-                }
+            // Won't keep the path in returned list if it matches one of the pattern
+            if (!matcher.matches(path)) {
+                retval.add(path);
             }
-
-            retval.add(path);
         }
 
         return retval;
@@ -0,0 +1,222 @@
+/*
+ * "Copyright (c) 2014   Capgemini Technology Services (hereinafter "Capgemini")
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * -   The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Any failure to comply with the above shall automatically terminate the license
+ * and be construed as a breach of these Terms of Use causing significant harm to
+ * Capgemini.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Capgemini shall not be used in
+ * advertising or otherwise to promote the use or other dealings in this Software
+ * without prior written authorization from Capgemini.
+ *
+ * These Terms of Use are subject to French law.
+ *
+ * IMPORTANT NOTICE: The WUIC software implements software components governed by
+ * open source software licenses (BSD and Apache) of which CAPGEMINI is not the
+ * author or the editor. The rights granted on the said software components are
+ * governed by the specific terms and conditions specified by Apache 2.0 and BSD
+ * licenses."
+ */
+
+
+
+
+package com.github.wuic.util;
+
+import com.github.wuic.exception.wrapper.BadArgumentException;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Immutable consistent hash ring mapping keys to a set of weighted nodes. Each node is placed on the ring at a number
+ * of points proportional to its weight, a key being owned by the first point following its own hash. Selecting a node
+ * does not require any lock and always returns the same node for the same key. Adding or removing a node only moves
+ * the keys of the points owned by this node.
+ * </p>
+ *
+ * <p>
+ * A node is declared as a {@code String}, optionally followed by {@link #WEIGHT_SEPARATOR} and a strictly positive
+ * integer. For instance, {@code http://cdn1.domain.com;weight=2} will receive twice as much keys as a node declared
+ * with a weight of 1, which is the default weight.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @version 1.0
+ * @since 0.5.0
+ */
+public final class ConsistentHashRing {
+
+    /**
+     * Separates the node from its weight in a declaration.
+     */
+    public static final String WEIGHT_SEPARATOR = ";weight=";
+
+    /**
+     * Number of points on the ring for one unit of weight. Each MD5 digest gives four points.
+     */
+    private static final int POINTS_PER_WEIGHT = 160;
+
+    /**
+     * Sorted hashes of the points on the ring.
+     */
+    private final int[] points;
+
+    /**
+     * Index in {@link #nodes} of the node owning the point at the same index in {@link #points}.
+     */
+    private final int[] owners;
+
+    /**
+     * The nodes without their weight.
+     */
+    private final String[] nodes;
+
+    /**
+     * <p>
+     * Builds a new ring with the given node declarations.
+     * </p>
+     *
+     * @param declarations the nodes with their optional weight
+     */
+    public ConsistentHashRing(final String ... declarations) {
+        if (declarations == null || declarations.length == 0) {
+            throw new BadArgumentException(new IllegalArgumentException("At least one node must be declared in the ring"));
+        }
+
+        nodes = new String[declarations.length];
+        final int[] weights = new int[declarations.length];
+        int total = 0;
+
+        for (int i = 0; i < declarations.length; i++) {
+            final String declaration = String.valueOf(declarations[i]);
+            final int index = declaration.lastIndexOf(WEIGHT_SEPARATOR);
+
+            if (index == -1) {
+                nodes[i] = declaration;
+                weights[i] = 1;
+            } else {
+                nodes[i] = declaration.substring(0, index);
+                weights[i] = parseWeight(declaration, declaration.substring(index + WEIGHT_SEPARATOR.length()));
+            }
+
+            total += weights[i] * POINTS_PER_WEIGHT;
+        }
+
+        // Hash in the high bits and owner in the low bits: sorting by hash keeps the owner of each point
+        final long[] ring = new long[total];
+        int offset = 0;
+
+        for (int i = 0; i < nodes.length; i++) {
+            final int digests = weights[i] * POINTS_PER_WEIGHT / NumberUtils.FOUR;
+
+            for (int d = 0; d < digests; d++) {
+                final byte[] digest = IOUtils.digest(nodes[i], "-", String.valueOf(d));
+
+                for (int p = 0; p < NumberUtils.FOUR; p++) {
+                    ring[offset++] = ((long) toInt(digest, p * NumberUtils.FOUR) << Integer.SIZE) | i;
+                }
+            }
+        }
+
+        Arrays.sort(ring);
+        points = new int[total];
+        owners = new int[total];
+
+        for (int i = 0; i < total; i++) {
+            points[i] = (int) (ring[i] >> Integer.SIZE);
+            owners[i] = (int) ring[i];
+        }
+    }
+
+    /**
+     * <p>
+     * Parses the weight of a node declaration.
+     * </p>
+     *
+     * @param declaration the declaration
+     * @param weight the weight to parse
+     * @return the weight
+     */
+    private static int parseWeight(final String declaration, final String weight) {
+        try {
+            final int retval = Integer.parseInt(weight.trim());
+
+            if (retval > 0) {
+                return retval;
+            }
+        } catch (NumberFormatException nfe) {
+            // Handled below
+        }
+
+        throw new BadArgumentException(new IllegalArgumentException(
+                String.format("Weight in '%s' must be a strictly positive integer", declaration)));
+    }
+
+    /**
+     * <p>
+     * Reads four bytes of the given array as a big endian integer.
+     * </p>
+     *
+     * @param bytes the bytes
+     * @param offset the index of the first byte
+     * @return the integer
+     */
+    private static int toInt(final byte[] bytes, final int offset) {
+        int retval = 0;
+
+        for (int i = offset; i < offset + NumberUtils.FOUR; i++) {
+            retval = (retval << Byte.SIZE) | (bytes[i] & 0xFF);
+        }
+
+        return retval;
+    }
+
+    /**
+     * <p>
+     * Selects the node owning the given key.
+     * </p>
+     *
+     * @param key the key
+     * @return the node, without its weight
+     */
+    public String select(final String key) {
+        final int hash = toInt(IOUtils.digest(key), 0);
+        int index = Arrays.binarySearch(points, hash);
+
+        if (index < 0) {
+            index = -index - 1;
+        }
+
+        // Wrap around the ring
+        return nodes[owners[index == points.length ? 0 : index]];
+    }
+
+    /**
+     * <p>
+     * Gets the nodes of this ring, without their weight.
+     * </p>
+     *
+     * @return the nodes
+     */
+    public String[] getNodes() {
+        return Arrays.copyOf(nodes, nodes.length);
+    }
+}
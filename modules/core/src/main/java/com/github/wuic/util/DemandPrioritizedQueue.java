@@ -0,0 +1,392 @@
+/*
+ * "Copyright (c) 2014   Capgemini Technology Services (hereinafter "Capgemini")
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * -   The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Any failure to comply with the above shall automatically terminate the license
+ * and be construed as a breach of these Terms of Use causing significant harm to
+ * Capgemini.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Capgemini shall not be used in
+ * advertising or otherwise to promote the use or other dealings in this Software
+ * without prior written authorization from Capgemini.
+ *
+ * These Terms of Use are subject to French law.
+ *
+ * IMPORTANT NOTICE: The WUIC software implements software components governed by
+ * open source software licenses (BSD and Apache) of which CAPGEMINI is not the
+ * author or the editor. The rights granted on the said software components are
+ * governed by the specific terms and conditions specified by Apache 2.0 and BSD
+ * licenses."
+ */
+
+
+package com.github.wuic.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * <p>
+ * Executes background jobs in a {@link WuicScheduledThreadPool.Lane} by order of demand instead of submission. Each job
+ * is identified by a key. The demand of a key is recorded with {@link #hit(Object)}: it's a number of hits which decays
+ * over time, so a key requested many times recently is processed before a key rarely or formerly requested.
+ * </p>
+ *
+ * <p>
+ * The job to run is chosen when a thread of the lane is available and not when the job is submitted. Only one job is
+ * pending for a key, submitting again a key returns the pending job. A pending job can be cancelled, for instance when
+ * its input is invalidated before it runs, or run immediately by a thread which needs its result.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @version 1.1
+ * @since 0.5.0
+ * @param <K> the type of key
+ * @param <V> the type of result
+ */
+public final class DemandPrioritizedQueue<K, V> {
+
+    /**
+     * Delay in milliseconds after which the demand of a key is divided by two.
+     */
+    public static final long HALF_LIFE = 60L * NumberUtils.ONE_THOUSAND;
+
+    /**
+     * Demands lower than this value are forgotten when too many keys are tracked.
+     */
+    private static final double MIN_DEMAND = 0.01d;
+
+    /**
+     * The logger.
+     */
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    /**
+     * The lane executing the jobs.
+     */
+    private final WuicScheduledThreadPool.Lane lane;
+
+    /**
+     * The demand for each key.
+     */
+    private final Map<K, Demand> demands;
+
+    /**
+     * The jobs waiting for a thread.
+     */
+    private final Map<K, FutureTask<V>> pending;
+
+    /**
+     * <p>
+     * Builds a new instance.
+     * </p>
+     *
+     * @param l the lane executing the jobs
+     */
+    public DemandPrioritizedQueue(final WuicScheduledThreadPool.Lane l) {
+        lane = l;
+        demands = new HashMap<K, Demand>();
+        pending = new LinkedHashMap<K, FutureTask<V>>();
+    }
+
+    /**
+     * <p>
+     * Records a demand for the given key.
+     * </p>
+     *
+     * @param key the key
+     */
+    public void hit(final K key) {
+        final long now = System.currentTimeMillis();
+
+        synchronized (pending) {
+            Demand demand = demands.get(key);
+
+            if (demand == null) {
+                // Forget keys which are not requested anymore
+                if (demands.size() >= NumberUtils.ONE_THOUSAND) {
+                    for (final Iterator<Demand> it = demands.values().iterator(); it.hasNext();) {
+                        if (it.next().decayed(now) < MIN_DEMAND) {
+                            it.remove();
+                        }
+                    }
+                }
+
+                demand = new Demand();
+                demands.put(key, demand);
+            }
+
+            demand.hit(now);
+        }
+    }
+
+    /**
+     * <p>
+     * Submits the given job. If a job is already pending for the key, it is returned and the given job is ignored.
+     * </p>
+     *
+     * @param key the key
+     * @param job the job
+     * @return the pending job
+     * @throws RejectedExecutionException if the lane rejects the job, which is then not pending
+     */
+    public Future<V> submit(final K key, final Callable<V> job) {
+        final FutureTask<V> task;
+
+        synchronized (pending) {
+            final FutureTask<V> existing = pending.get(key);
+
+            if (existing != null) {
+                return existing;
+            }
+
+            task = new FutureTask<V>(job);
+            pending.put(key, task);
+        }
+
+        // Each pending job has a dispatcher, which runs the job with the highest demand when it is executed
+        try {
+            WuicScheduledThreadPool.getInstance().executeAsap(lane, new Dispatcher());
+        } catch (RejectedExecutionException ree) {
+            synchronized (pending) {
+                if (pending.get(key) == task) {
+                    pending.remove(key);
+                }
+            }
+
+            throw ree;
+        }
+
+        return task;
+    }
+
+    /**
+     * <p>
+     * Cancels the job pending for the given key. A running job is not interrupted.
+     * </p>
+     *
+     * @param key the key
+     * @return {@code true} if a pending job has been cancelled, {@code false} otherwise
+     */
+    public Boolean cancel(final K key) {
+        final FutureTask<V> task;
+
+        synchronized (pending) {
+            task = pending.remove(key);
+        }
+
+        return task != null && task.cancel(false);
+    }
+
+    /**
+     * <p>
+     * Runs in the current thread the job pending for the given key, if any. The caller does not wait for the job to be
+     * dispatched.
+     * </p>
+     *
+     * @param key the key
+     * @return {@code true} if a pending job has been run, {@code false} otherwise
+     */
+    public Boolean runIfPending(final K key) {
+        final FutureTask<V> task;
+
+        synchronized (pending) {
+            task = pending.remove(key);
+        }
+
+        if (task == null) {
+            return Boolean.FALSE;
+        }
+
+        log.debug("Running pending job '{}' in the current thread", key);
+        task.run();
+
+        return Boolean.TRUE;
+    }
+
+    /**
+     * <p>
+     * Gets the number of pending jobs.
+     * </p>
+     *
+     * @return the number of jobs waiting for a thread
+     */
+    public int size() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * <p>
+     * Gets the keys of the pending jobs, ordered by priority.
+     * </p>
+     *
+     * @return the keys, the job with the highest demand first
+     */
+    public List<K> pendingByPriority() {
+        final long now = System.currentTimeMillis();
+
+        synchronized (pending) {
+            final List<K> retval = new ArrayList<K>(pending.keySet());
+            Collections.sort(retval, new Comparator<K>() {
+
+                /**
+                 * {@inheritDoc}
+                 */
+                @Override
+                public int compare(final K first, final K second) {
+                    return compareDemand(second, first, now);
+                }
+            });
+
+            return retval;
+        }
+    }
+
+    /**
+     * <p>
+     * Removes from the pending jobs the one with the highest demand. Caller must own the lock on {@link #pending}.
+     * </p>
+     *
+     * @return the job, {@code null} if no job is pending
+     */
+    private FutureTask<V> next() {
+        final long now = System.currentTimeMillis();
+        K best = null;
+
+        for (final K key : pending.keySet()) {
+            // Keys with the same demand are run by order of submission
+            if (best == null || compareDemand(key, best, now) > 0) {
+                best = key;
+            }
+        }
+
+        return best == null ? null : pending.remove(best);
+    }
+
+    /**
+     * <p>
+     * Compares the demand of two keys. Caller must own the lock on {@link #pending}.
+     * </p>
+     *
+     * @param first the first key
+     * @param second the second key
+     * @param now the current time
+     * @return a positive value if first key has a higher demand, a negative value if lower, 0 if equals
+     */
+    private int compareDemand(final K first, final K second, final long now) {
+        final Demand firstDemand = demands.get(first);
+        final Demand secondDemand = demands.get(second);
+        final double firstValue = firstDemand == null ? 0d : firstDemand.decayed(now);
+        final double secondValue = secondDemand == null ? 0d : secondDemand.decayed(now);
+
+        return Double.compare(firstValue, secondValue);
+    }
+
+    /**
+     * <p>
+     * Runs the pending job with the highest demand.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @version 1.0
+     * @since 0.5.0
+     */
+    private final class Dispatcher implements Callable<Void> {
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Void call() {
+            final FutureTask<V> task;
+
+            synchronized (pending) {
+                task = next();
+            }
+
+            // Job could have been cancelled or run by another thread
+            if (task != null) {
+                task.run();
+            }
+
+            return null;
+        }
+    }
+
+    /**
+     * <p>
+     * A number of hits decaying over time.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @version 1.0
+     * @since 0.5.0
+     */
+    private static final class Demand {
+
+        /**
+         * The value at last hit.
+         */
+        private double value;
+
+        /**
+         * Last hit.
+         */
+        private long last;
+
+        /**
+         * <p>
+         * Records a hit.
+         * </p>
+         *
+         * @param now the current time
+         */
+        private void hit(final long now) {
+            value = decayed(now) + 1d;
+            last = now;
+        }
+
+        /**
+         * <p>
+         * Gets the value at the given time.
+         * </p>
+         *
+         * @param now the current time
+         * @return the decayed value
+         */
+        private double decayed(final long now) {
+            return value * Math.pow(0.5d, (now - last) / (double) HALF_LIFE);
+        }
+    }
+}
@@ -38,6 +38,7 @@
 
 package com.github.wuic.util;
 
+import com.github.wuic.NutType;
 import com.github.wuic.nut.Nut;
 
 import java.io.IOException;
@@ -48,7 +49,7 @@ import java.io.IOException;
  * </p>
  *
  * @author Guillaume DROUET
- * @version 1.0
+ * @version 1.2
  * @since 0.4.1
  */
 public final class HtmlUtil {
@@ -121,6 +122,110 @@ public final class HtmlUtil {
         return retval.toString();
     }
 
+    /**
+     * <p>
+     * Writes the given script content inline in HTML.
+     * </p>
+     *
+     * @param nutType the type of the content
+     * @param content the script content
+     * @return the inline script, an empty string if the type is not supported
+     */
+    public static String writeInlineScript(final NutType nutType, final String content) {
+        switch (nutType) {
+            case CSS :
+                return new StringBuilder("<style type=\"text/css\">").append(content).append("</style>").toString();
+
+            case JAVASCRIPT :
+                return new StringBuilder("<script type=\"text/javascript\">").append(content).append("</script>").toString();
+
+            default :
+                return "";
+        }
+    }
+
+    /**
+     * <p>
+     * Gets the destination of a preload request for the given type, as expected by the {@code as} attribute.
+     * </p>
+     *
+     * @param nutType the type
+     * @return the destination, {@code null} if the type can't be preloaded
+     */
+    public static String preloadDestination(final NutType nutType) {
+        switch (nutType) {
+            case CSS :
+                return "style";
+
+            case JAVASCRIPT :
+                return "script";
+
+            case EOT :
+            case OTF :
+            case TTF :
+            case WOFF :
+                return "font";
+
+            case SVG :
+            case ICO :
+            case PNG :
+            case GIF :
+                return "image";
+
+            default :
+                return null;
+        }
+    }
+
+    /**
+     * <p>
+     * Generates a preload hint for the given nut. Fonts are always fetched in anonymous mode, so their hint must
+     * declare the {@code crossorigin} attribute to be reused by the browser.
+     * </p>
+     *
+     * @param nut the nut to preload
+     * @param workflowContextPath the workflow context path
+     * @return the link tag
+     */
+    public static String preloadImport(final Nut nut, final String workflowContextPath) {
+        final String destination = preloadDestination(nut.getNutType());
+        final StringBuilder retval = new StringBuilder();
+
+        retval.append("<link rel=\"preload\" href=\"");
+        retval.append(getUrl(nut, workflowContextPath));
+        retval.append("\" as=\"").append(destination);
+
+        if ("font".equals(destination)) {
+            retval.append("\" crossorigin=\"anonymous");
+        }
+
+        retval.append("\" />");
+
+        return retval.toString();
+    }
+
+    /**
+     * <p>
+     * Generates the value of a {@code Link} HTTP header asking the browser to preload the given nut.
+     * </p>
+     *
+     * @param nut the nut to preload
+     * @param workflowContextPath the workflow context path
+     * @return the header value
+     */
+    public static String preloadHeader(final Nut nut, final String workflowContextPath) {
+        final String destination = preloadDestination(nut.getNutType());
+        final StringBuilder retval = new StringBuilder();
+
+        retval.append('<').append(getUrl(nut, workflowContextPath)).append(">; rel=preload; as=").append(destination);
+
+        if ("font".equals(destination)) {
+            retval.append("; crossorigin");
+        }
+
+        return retval.toString();
+    }
+
     /**
      * <p>
      * Generates the URL to use to access to the given nut.
@@ -62,7 +62,7 @@ import java.util.regex.Pattern;
  * </p>
  *
  * @author Guillaume DROUET
- * @version 1.5
+ * @version 1.6
  * @since 0.3.1
  */
 public final class IOUtils {
@@ -382,6 +382,25 @@ public final class IOUtils {
      */
     public static List<String> listFile(final DirectoryPath parent, final String relativePath, final Pattern pattern, final List<String> skipStartsWithList)
             throws StreamException {
+        return listFile(parent, relativePath, PathMatcher.of(pattern), skipStartsWithList);
+    }
+
+    /**
+     * <p>
+     * Lists the files matching at least one pattern of the given {@link PathMatcher} in the directory path and its
+     * subdirectory represented by a specified {@code relativePath}. The tree is walked once whatever the number of
+     * patterns.
+     * </p>
+     *
+     * @param parent the parent
+     * @param relativePath the directory path relative to the parent
+     * @param matcher the matcher which filters files
+     * @param skipStartsWithList a list that contains all begin paths to ignore
+     * @return the matching files
+     * @throws StreamException if any I/O error occurs
+     */
+    public static List<String> listFile(final DirectoryPath parent, final String relativePath, final PathMatcher matcher, final List<String> skipStartsWithList)
+            throws StreamException {
         try {
             final String[] children = parent.list();
             final List<String> retval = new ArrayList<String>();
@@ -402,9 +421,9 @@ public final class IOUtils {
                         }
                     }
 
-                    retval.addAll(listFile(DirectoryPath.class.cast(path), childRelativePath, pattern, skipStartsWithList));
+                    retval.addAll(listFile(DirectoryPath.class.cast(path), childRelativePath, matcher, skipStartsWithList));
                 // Files matches, return
-                } else if (pattern.matcher(childRelativePath).matches()) {
+                } else if (matcher.matches(childRelativePath)) {
                     retval.add(childRelativePath);
                 }
             }
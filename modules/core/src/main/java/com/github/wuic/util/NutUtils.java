@@ -38,9 +38,22 @@
 
 package com.github.wuic.util;
 
+import com.github.wuic.exception.NutNotFoundException;
+import com.github.wuic.exception.wrapper.StreamException;
 import com.github.wuic.nut.Nut;
+import com.github.wuic.nut.core.ByteArrayNut;
+import com.github.wuic.nut.core.ByteBufferNut;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 
 /**
  * <p>
@@ -48,7 +61,7 @@ import java.util.List;
  * </p>
  *
  * @author Guillaume DROUET
- * @version 1.0
+ * @version 1.4
  * @since 0.4.4
  */
 public final class NutUtils {
@@ -110,4 +123,124 @@ public final class NutUtils {
 
         return null;
     }
+
+    /**
+     * <p>
+     * Indicates if at least one of the given nuts has been built from a nut with a name matching one of the specified
+     * paths. The graph is walked through the original nuts and the referenced nuts, so a path matches an aggregated nut
+     * if it corresponds to one of the aggregated files or to an image referenced by a stylesheet for instance.
+     * </p>
+     *
+     * @param nuts the nuts to test
+     * @param paths the paths
+     * @return {@code true} if a nut of the graph matches a path, {@code false} otherwise
+     */
+    public static Boolean dependsOn(final Collection<Nut> nuts, final Set<String> paths) {
+        final Set<String> names = new HashSet<String>(paths.size());
+
+        for (final String path : paths) {
+            names.add(normalize(path));
+        }
+
+        // Nuts could be shared by many graphs, visit them once
+        final Set<Nut> visited = Collections.newSetFromMap(new IdentityHashMap<Nut, Boolean>());
+        final LinkedList<Nut> toVisit = new LinkedList<Nut>(nuts);
+
+        while (!toVisit.isEmpty()) {
+            final Nut nut = toVisit.removeFirst();
+
+            if (!visited.add(nut)) {
+                continue;
+            }
+
+            if (names.contains(normalize(nut.getName()))) {
+                return Boolean.TRUE;
+            }
+
+            if (nut.getOriginalNuts() != null) {
+                toVisit.addAll(nut.getOriginalNuts());
+            }
+
+            if (nut.getReferencedNuts() != null) {
+                toVisit.addAll(nut.getReferencedNuts());
+            }
+        }
+
+        return Boolean.FALSE;
+    }
+
+    /**
+     * <p>
+     * Gets the size of the given nut when its content is in memory.
+     * </p>
+     *
+     * @param nut the nut
+     * @return the size in bytes, -1 if unknown
+     */
+    public static long sizeOf(final Nut nut) {
+        if (nut instanceof ByteArrayNut) {
+            return ByteArrayNut.class.cast(nut).getLength();
+        } else if (nut instanceof ByteBufferNut) {
+            return ByteBufferNut.class.cast(nut).getSlot().getLength();
+        } else {
+            return -1L;
+        }
+    }
+
+    /**
+     * <p>
+     * Reads the content of the given nut if it does not exceed the specified size. No more than the maximum size plus
+     * one byte is read from the stream.
+     * </p>
+     *
+     * @param nut the nut to read
+     * @param maxSize the maximum size in bytes
+     * @return the content, {@code null} if the content is too large
+     * @throws NutNotFoundException if the nut can't be opened
+     * @throws StreamException if an I/O error occurs
+     */
+    public static byte[] readBytes(final Nut nut, final int maxSize) throws NutNotFoundException, StreamException {
+        InputStream is = null;
+
+        try {
+            is = nut.openStream();
+            final ByteArrayOutputStream os = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[Math.min(maxSize + 1, IOUtils.WUIC_BUFFER_LEN)];
+            int read;
+
+            while ((read = is.read(buffer, 0, Math.min(buffer.length, maxSize + 1 - os.size()))) > 0) {
+                os.write(buffer, 0, read);
+
+                if (os.size() > maxSize) {
+                    return null;
+                }
+            }
+
+            return os.toByteArray();
+        } catch (IOException ioe) {
+            throw new StreamException(ioe);
+        } finally {
+            IOUtils.close(is);
+        }
+    }
+
+    /**
+     * <p>
+     * Normalizes the given name by removing the leading slashes and the '..' segments when possible.
+     * </p>
+     *
+     * @param name the name
+     * @return the normalized name
+     */
+    public static String normalize(final String name) {
+        final String simplified = StringUtils.simplifyPathWithDoubleDot(name);
+        final String retval = simplified == null ? name : simplified;
+        int start = 0;
+
+        while (start < retval.length() && retval.charAt(start) == '/') {
+            start++;
+        }
+
+        return retval.substring(start);
+    }
 }
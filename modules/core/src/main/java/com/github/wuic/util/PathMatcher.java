@@ -0,0 +1,483 @@
+/*
+ * "Copyright (c) 2014   Capgemini Technology Services (hereinafter "Capgemini")
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * -   The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Any failure to comply with the above shall automatically terminate the license
+ * and be construed as a breach of these Terms of Use causing significant harm to
+ * Capgemini.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Capgemini shall not be used in
+ * advertising or otherwise to promote the use or other dealings in this Software
+ * without prior written authorization from Capgemini.
+ *
+ * These Terms of Use are subject to French law.
+ *
+ * IMPORTANT NOTICE: The WUIC software implements software components governed by
+ * open source software licenses (BSD and Apache) of which CAPGEMINI is not the
+ * author or the editor. The rights granted on the said software components are
+ * governed by the specific terms and conditions specified by Apache 2.0 and BSD
+ * licenses."
+ */
+
+
+
+
+package com.github.wuic.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+/**
+ * <p>
+ * Matches paths against a set of patterns compiled once. Paths are listed and filtered against many patterns on each
+ * polling operation and each heap resolution, so testing every path against every {@code Pattern} in a nested loop
+ * does a lot of redundant work.
+ * </p>
+ *
+ * <p>
+ * Patterns without any regex special character, or all patterns when they are not regular expressions, are stored in a
+ * hash set and matched with a single lookup. The other patterns are bucketed by their literal prefix: a path is only
+ * tested against the buckets whose prefix starts the path. The patterns of a bucket are combined in one alternation,
+ * so telling if a path matches any pattern runs one matcher per candidate bucket.
+ * </p>
+ *
+ * <p>
+ * Instances are immutable and thread safe. The matchers created by {@link #compile(Collection, boolean)} are cached.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @version 1.0
+ * @since 0.5.0
+ */
+public final class PathMatcher {
+
+    /**
+     * Number of compiled matchers kept in cache.
+     */
+    private static final int CACHE_SIZE = 256;
+
+    /**
+     * Characters having a special meaning in a regular expression.
+     */
+    private static final String META_CHARACTERS = "\\[](){}.*+?^$|";
+
+    /**
+     * Quantifiers making optional the character they follow.
+     */
+    private static final String OPTIONAL_QUANTIFIERS = "*?{";
+
+    /**
+     * Back references and named groups, which prevent patterns to be combined.
+     */
+    private static final Pattern NOT_COMBINABLE = Pattern.compile("\\\\[1-9]|\\\\k<|\\(\\?<[a-zA-Z]");
+
+    /**
+     * The compiled matchers associated to their patterns, with least recently used eviction.
+     */
+    private static final Map<String, PathMatcher> CACHE = new LinkedHashMap<String, PathMatcher>(CACHE_SIZE, 1f, true) {
+
+        /**
+         * Serial version UID.
+         */
+        private static final long serialVersionUID = 8354206417245014623L;
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, PathMatcher> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    /**
+     * The patterns, in declaration order.
+     */
+    private final List<String> patterns;
+
+    /**
+     * The index of the literal patterns associated to the path they match.
+     */
+    private final Map<String, List<Integer>> literals;
+
+    /**
+     * The regular expressions associated to their literal prefix.
+     */
+    private final Map<String, Bucket> buckets;
+
+    /**
+     * The distinct lengths of the bucket prefixes, in ascending order.
+     */
+    private final int[] prefixLengths;
+
+    /**
+     * <p>
+     * Builds a new instance. If a regex can't be compiled, a {@link java.util.regex.PatternSyntaxException} will be thrown.
+     * </p>
+     *
+     * @param patternList the patterns
+     * @param compiled the compiled regular expressions, {@code null} for the literal patterns
+     */
+    private PathMatcher(final List<String> patternList, final Pattern[] compiled) {
+        patterns = Collections.unmodifiableList(patternList);
+        literals = new HashMap<String, List<Integer>>();
+        buckets = new HashMap<String, Bucket>();
+
+        final TreeSet<Integer> lengths = new TreeSet<Integer>();
+
+        for (int i = 0; i < compiled.length; i++) {
+            if (compiled[i] == null) {
+                List<Integer> indexes = literals.get(patternList.get(i));
+
+                if (indexes == null) {
+                    indexes = new ArrayList<Integer>(1);
+                    literals.put(patternList.get(i), indexes);
+                }
+
+                indexes.add(i);
+            } else {
+                final String prefix = compiled[i].flags() == 0 ? literalPrefix(compiled[i].pattern()) : "";
+                Bucket bucket = buckets.get(prefix);
+
+                if (bucket == null) {
+                    bucket = new Bucket();
+                    buckets.put(prefix, bucket);
+                    lengths.add(prefix.length());
+                }
+
+                bucket.add(i, compiled[i]);
+            }
+        }
+
+        for (final Bucket bucket : buckets.values()) {
+            bucket.combine();
+        }
+
+        prefixLengths = new int[lengths.size()];
+        int cpt = 0;
+
+        for (final Integer length : lengths) {
+            prefixLengths[cpt++] = length;
+        }
+    }
+
+    /**
+     * <p>
+     * Gets the matcher for the given pattern.
+     * </p>
+     *
+     * @param pattern the pattern
+     * @param regex {@code true} if the pattern is a regular expression, {@code false} if it's a literal path
+     * @return the matcher
+     * @see #compile(Collection, boolean)
+     */
+    public static PathMatcher compile(final String pattern, final boolean regex) {
+        return compile(Arrays.asList(pattern), regex);
+    }
+
+    /**
+     * <p>
+     * Gets the matcher for the given patterns. The matcher is compiled if it's not already cached. If a regex can't be
+     * compiled, a {@link java.util.regex.PatternSyntaxException} will be thrown.
+     * </p>
+     *
+     * @param patterns the patterns, duplicates being ignored
+     * @param regex {@code true} if the patterns are regular expressions, {@code false} if they are literal paths
+     * @return the matcher
+     */
+    public static PathMatcher compile(final Collection<String> patterns, final boolean regex) {
+        final List<String> distinct = new ArrayList<String>(new LinkedHashSet<String>(patterns));
+        final StringBuilder key = new StringBuilder(regex ? "r" : "l");
+
+        for (final String pattern : distinct) {
+            key.append('\u0000').append(pattern);
+        }
+
+        synchronized (CACHE) {
+            final PathMatcher cached = CACHE.get(key.toString());
+
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        final Pattern[] compiled = new Pattern[distinct.size()];
+
+        for (int i = 0; i < compiled.length; i++) {
+            final String pattern = distinct.get(i);
+
+            if (regex && !isLiteral(pattern)) {
+                compiled[i] = Pattern.compile(pattern);
+            }
+        }
+
+        final PathMatcher retval = new PathMatcher(distinct, compiled);
+
+        synchronized (CACHE) {
+            CACHE.put(key.toString(), retval);
+        }
+
+        return retval;
+    }
+
+    /**
+     * <p>
+     * Creates a matcher for a pattern already compiled. The matcher is not cached.
+     * </p>
+     *
+     * @param pattern the pattern
+     * @return the matcher
+     */
+    public static PathMatcher of(final Pattern pattern) {
+        return new PathMatcher(Arrays.asList(pattern.pattern()), new Pattern[] { pattern });
+    }
+
+    /**
+     * <p>
+     * Indicates if the given path matches at least one pattern.
+     * </p>
+     *
+     * @param path the path
+     * @return {@code true} if the path matches, {@code false} otherwise
+     */
+    public boolean matches(final String path) {
+        if (literals.containsKey(path)) {
+            return true;
+        }
+
+        for (final int length : prefixLengths) {
+            if (length > path.length()) {
+                break;
+            }
+
+            final Bucket bucket = buckets.get(path.substring(0, length));
+
+            if (bucket != null && bucket.matches(path)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * <p>
+     * Gets the patterns matched by the given path.
+     * </p>
+     *
+     * @param path the path
+     * @return the matched patterns, in declaration order
+     */
+    public List<String> matching(final String path) {
+        final TreeSet<Integer> indexes = new TreeSet<Integer>();
+        final List<Integer> literal = literals.get(path);
+
+        if (literal != null) {
+            indexes.addAll(literal);
+        }
+
+        for (final int length : prefixLengths) {
+            if (length > path.length()) {
+                break;
+            }
+
+            final Bucket bucket = buckets.get(path.substring(0, length));
+
+            if (bucket != null) {
+                bucket.matching(path, indexes);
+            }
+        }
+
+        final List<String> retval = new ArrayList<String>(indexes.size());
+
+        for (final Integer index : indexes) {
+            retval.add(patterns.get(index));
+        }
+
+        return retval;
+    }
+
+    /**
+     * <p>
+     * Gets the patterns.
+     * </p>
+     *
+     * @return the patterns, in declaration order
+     */
+    public List<String> getPatterns() {
+        return patterns;
+    }
+
+    /**
+     * <p>
+     * Indicates if the given regular expression only contains literal characters.
+     * </p>
+     *
+     * @param regex the regex
+     * @return {@code true} if the regex is a literal path
+     */
+    private static boolean isLiteral(final String regex) {
+        for (int i = 0; i < regex.length(); i++) {
+            if (META_CHARACTERS.indexOf(regex.charAt(i)) != -1) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * <p>
+     * Computes the literal characters that start any path matched by the given regular expression.
+     * </p>
+     *
+     * @param regex the regex
+     * @return the prefix, empty if nothing is certain
+     */
+    private static String literalPrefix(final String regex) {
+        // An alternative could start anywhere
+        if (regex.indexOf('|') != -1) {
+            return "";
+        }
+
+        int end = 0;
+
+        while (end < regex.length() && META_CHARACTERS.indexOf(regex.charAt(end)) == -1) {
+            end++;
+        }
+
+        // The last literal is optional when followed by some quantifiers
+        if (end > 0 && end < regex.length() && OPTIONAL_QUANTIFIERS.indexOf(regex.charAt(end)) != -1) {
+            end--;
+        }
+
+        return regex.substring(0, end);
+    }
+
+    /**
+     * <p>
+     * The regular expressions sharing a literal prefix.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @version 1.0
+     * @since 0.5.0
+     */
+    private static final class Bucket {
+
+        /**
+         * The index of each pattern.
+         */
+        private final List<Integer> indexes = new ArrayList<Integer>();
+
+        /**
+         * The compiled patterns.
+         */
+        private final List<Pattern> compiled = new ArrayList<Pattern>();
+
+        /**
+         * All the patterns in one alternation, {@code null} if they can't be combined.
+         */
+        private Pattern combined;
+
+        /**
+         * <p>
+         * Adds a pattern.
+         * </p>
+         *
+         * @param index the pattern index
+         * @param pattern the compiled pattern
+         */
+        private void add(final int index, final Pattern pattern) {
+            indexes.add(index);
+            compiled.add(pattern);
+        }
+
+        /**
+         * <p>
+         * Combines the patterns in one alternation when it's possible.
+         * </p>
+         */
+        private void combine() {
+            if (compiled.size() == 1) {
+                combined = compiled.get(0);
+                return;
+            }
+
+            final StringBuilder alternation = new StringBuilder();
+
+            for (final Pattern pattern : compiled) {
+                if (pattern.flags() != 0 || NOT_COMBINABLE.matcher(pattern.pattern()).find()) {
+                    return;
+                }
+
+                alternation.append(alternation.length() == 0 ? "(?:" : "|(?:").append(pattern.pattern()).append(')');
+            }
+
+            combined = Pattern.compile(alternation.toString());
+        }
+
+        /**
+         * <p>
+         * Indicates if the path matches one pattern.
+         * </p>
+         *
+         * @param path the path
+         * @return {@code true} if the path matches
+         */
+        private boolean matches(final String path) {
+            if (combined != null) {
+                return combined.matcher(path).matches();
+            }
+
+            for (final Pattern pattern : compiled) {
+                if (pattern.matcher(path).matches()) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        /**
+         * <p>
+         * Adds the index of the patterns matched by the given path.
+         * </p>
+         *
+         * @param path the path
+         * @param retval the indexes to complete
+         */
+        private void matching(final String path, final Collection<Integer> retval) {
+            for (int i = 0; i < compiled.size(); i++) {
+                if (compiled.get(i).matcher(path).matches()) {
+                    retval.add(indexes.get(i));
+                }
+            }
+        }
+    }
+}
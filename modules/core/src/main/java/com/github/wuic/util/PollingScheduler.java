@@ -42,19 +42,32 @@ import com.github.wuic.exception.wrapper.StreamException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collections;
 import java.util.Set;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * <p>
- * This class is able to schedule a polling operation in the {@link WuicScheduledThreadPool}.
+ * This class is able to schedule a polling operation in the {@link WuicScheduledThreadPool.Lane#POLLING polling lane}.
+ * </p>
+ *
+ * <p>
+ * The observers are published as a copy-on-write snapshot: a polling operation iterates {@link #getNutObservers()}
+ * without any lock, so a new observer could be registered while a polling operation is running.
+ * </p>
+ *
+ * <p>
+ * The interval between two operations could adapt to the change frequency. When a maximum interval greater than the
+ * polling interleave is specified, the interval is doubled each time an operation reports no change, up to the maximum.
+ * As soon as an operation reports a change, the interval goes back to the polling interleave.
  * </p>
  *
  * @author Guillaume DROUET
- * @version 1.1
+ * @version 1.4
  * @since 0.4.0
  * @param <T> the type of listener
  */
@@ -70,21 +83,37 @@ public abstract class PollingScheduler<T> implements Runnable {
      */
     private int pollingInterleave;
 
+    /**
+     * Maximum interval in seconds the polling interleave could be increased to when no change is detected.
+     */
+    private int maxPollingInterleave;
+
+    /**
+     * Interval in seconds before next polling operation.
+     */
+    private int currentInterleave;
+
+    /**
+     * Incremented each time the scheduling is reset, a job scheduled for a previous generation is not repeated.
+     */
+    private int generation;
+
     /**
      * Help to know when a polling operation is done.
      */
     private Future<?> pollingResult;
 
     /**
-     * All observers per listener.
+     * All observers per listener, replaced by a new copy each time a listener is added.
      */
-    private final Map<T, Polling> nutObservers;
+    private volatile Map<T, Polling> nutObservers;
 
     /**
      * Creates a new instance.
      */
     public PollingScheduler() {
-        nutObservers = new HashMap<T, Polling>();
+        nutObservers = Collections.emptyMap();
+        maxPollingInterleave = -1;
     }
 
     /**
@@ -97,23 +126,62 @@ public abstract class PollingScheduler<T> implements Runnable {
      * @throws StreamException if an I/O occurs while retrieving last update of the nut
      */
     public final void observe(final String pattern, final T ... listeners) throws StreamException {
-        synchronized (getNutObservers()) {
+        synchronized (this) {
+            Map<T, Polling> copy = null;
+
             for (final T listener : listeners) {
-                Polling polling = getNutObservers().get(listener);
+                final Map<T, Polling> current = copy == null ? nutObservers : copy;
+                Polling polling = current.get(listener);
 
+                // Copy only when a new listener is added, patterns are copy-on-write too
                 if (polling == null) {
+                    if (copy == null) {
+                        copy = new HashMap<T, Polling>(nutObservers);
+                    }
+
                     polling = new Polling(listener);
-                    nutObservers.put(listener, polling);
+                    copy.put(listener, polling);
                 }
 
                 polling.addPattern(pattern);
             }
+
+            if (copy != null) {
+                nutObservers = Collections.unmodifiableMap(copy);
+            }
         }
     }
 
     /**
      * <p>
-     * Gets polling data with observers.
+     * Stops notifying the given listener for the nuts matching the given pattern. The listener is removed when it does
+     * not observe any pattern anymore.
+     * </p>
+     *
+     * @param pattern the pattern
+     * @param listener the listener
+     */
+    public final void unobserve(final String pattern, final T listener) {
+        synchronized (this) {
+            final Polling polling = nutObservers.get(listener);
+
+            if (polling == null) {
+                return;
+            }
+
+            polling.removePattern(pattern);
+
+            if (polling.getPatterns().isEmpty()) {
+                final Map<T, Polling> copy = new HashMap<T, Polling>(nutObservers);
+                copy.remove(listener);
+                nutObservers = Collections.unmodifiableMap(copy);
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Gets polling data with observers. The returned map is an immutable snapshot.
      * </p>
      *
      * @return the observers
@@ -151,17 +219,91 @@ public abstract class PollingScheduler<T> implements Runnable {
             pollingResult = null;
         }
 
+        generation++;
         pollingInterleave = interleaveSeconds;
+        currentInterleave = interleaveSeconds;
 
         // Create new scheduling if necessary
         if (pollingInterleave > 0) {
             log.info("Start polling operation for {} repeated every {} seconds", getClass().getName(), pollingInterleave);
-            pollingResult = WuicScheduledThreadPool.getInstance().executeEveryTimeInSeconds(this, pollingInterleave);
+            pollingResult = WuicScheduledThreadPool.getInstance().executeOnceInSeconds(WuicScheduledThreadPool.Lane.POLLING,
+                    new PollingJob(generation), pollingInterleave);
         } else {
             log.info("Won't perform any polling operation for {}", getClass().getName());
         }
     }
 
+    /**
+     * <p>
+     * Returns the maximum interval the polling interleave could be increased to.
+     * </p>
+     *
+     * @return the maximum interval in seconds, a value lower than the polling interleave means no back-off
+     */
+    public final synchronized int getMaxPollingInterleave() {
+        return maxPollingInterleave;
+    }
+
+    /**
+     * <p>
+     * Defines the maximum interval the polling interleave could be increased to when no change is detected. A value
+     * lower or equals to the polling interleave disables the back-off.
+     * </p>
+     *
+     * @param maxInterleaveSeconds the maximum interval in seconds
+     */
+    public final synchronized void setMaxPollingInterleave(final int maxInterleaveSeconds) {
+        maxPollingInterleave = maxInterleaveSeconds;
+    }
+
+    /**
+     * <p>
+     * Returns the interval before the next polling operation.
+     * </p>
+     *
+     * @return the interval in seconds
+     */
+    public final synchronized int getCurrentPollingInterleave() {
+        return currentInterleave;
+    }
+
+    /**
+     * <p>
+     * Reports the result of a polling operation to adapt the interval before the next one. The interval is tightened to
+     * the polling interleave when a change is detected and increased otherwise.
+     * </p>
+     *
+     * @param changed {@code true} if the operation has detected a change, {@code false} otherwise
+     */
+    protected final synchronized void pollingDone(final Boolean changed) {
+        if (changed || maxPollingInterleave <= pollingInterleave) {
+            currentInterleave = pollingInterleave;
+        } else {
+            currentInterleave = Math.min(currentInterleave * NumberUtils.TWO, maxPollingInterleave);
+        }
+    }
+
+    /**
+     * <p>
+     * Schedules the next polling operation if the given generation is still the current one.
+     * </p>
+     *
+     * @param jobGeneration the generation of the job which has been executed
+     */
+    private synchronized void reschedule(final int jobGeneration) {
+        if (jobGeneration != generation || pollingInterleave <= 0) {
+            return;
+        }
+
+        try {
+            log.debug("Next polling operation for {} in {} seconds", getClass().getName(), currentInterleave);
+            pollingResult = WuicScheduledThreadPool.getInstance().executeOnceInSeconds(WuicScheduledThreadPool.Lane.POLLING,
+                    new PollingJob(generation), currentInterleave);
+        } catch (RejectedExecutionException ree) {
+            log.info("Thread pool is shutdown, stopping polling operation for {}", getClass().getName(), ree);
+        }
+    }
+
     /**
      * <p>
      * Retrieves a timestamp that indicates the last time this nut has changed.
@@ -173,6 +315,46 @@ public abstract class PollingScheduler<T> implements Runnable {
      */
     protected abstract Long getLastUpdateTimestampFor(final String path) throws StreamException;
 
+    /**
+     * <p>
+     * Runs a polling operation and schedules the next one.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @version 1.0
+     * @since 0.5.0
+     */
+    private final class PollingJob implements Runnable {
+
+        /**
+         * The generation this job has been scheduled for.
+         */
+        private final int jobGeneration;
+
+        /**
+         * <p>
+         * Builds a new instance.
+         * </p>
+         *
+         * @param g the generation
+         */
+        private PollingJob(final int g) {
+            jobGeneration = g;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void run() {
+            try {
+                PollingScheduler.this.run();
+            } finally {
+                reschedule(jobGeneration);
+            }
+        }
+    }
+
     /**
      * <p>
      * This class represents a polling information. It's composed of a listener to be notified polling is performed and
@@ -180,7 +362,7 @@ public abstract class PollingScheduler<T> implements Runnable {
      * </p>
      *
      * @author Guillaume DROUET
-     * @version 1.1
+     * @version 1.3
      * @since 0.4.0
      */
     public class Polling {
@@ -191,7 +373,7 @@ public abstract class PollingScheduler<T> implements Runnable {
         private T listener;
 
         /**
-         * The patterns.
+         * The patterns, safely iterated while a pattern is added.
          */
         private Set<String> patterns;
 
@@ -204,7 +386,7 @@ public abstract class PollingScheduler<T> implements Runnable {
          */
         public Polling(final T l) {
             listener = l;
-            patterns = new HashSet<String>();
+            patterns = new CopyOnWriteArraySet<String>();
         }
 
         /**
@@ -229,6 +411,17 @@ public abstract class PollingScheduler<T> implements Runnable {
             patterns.add(pattern);
         }
 
+        /**
+         * <p>
+         * Removes the given pattern.
+         * </p>
+         *
+         * @param pattern the pattern to remove
+         */
+        public void removePattern(final String pattern) {
+            patterns.remove(pattern);
+        }
+
         /**
          * <p>
          * Gets the listener.
@@ -240,4 +433,4 @@ public abstract class PollingScheduler<T> implements Runnable {
             return listener;
         }
     }
-}
\ No newline at end of file
+}
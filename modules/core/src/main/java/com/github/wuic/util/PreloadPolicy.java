@@ -0,0 +1,199 @@
+/*
+ * "Copyright (c) 2014   Capgemini Technology Services (hereinafter "Capgemini")
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * -   The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Any failure to comply with the above shall automatically terminate the license
+ * and be construed as a breach of these Terms of Use causing significant harm to
+ * Capgemini.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Capgemini shall not be used in
+ * advertising or otherwise to promote the use or other dealings in this Software
+ * without prior written authorization from Capgemini.
+ *
+ * These Terms of Use are subject to French law.
+ *
+ * IMPORTANT NOTICE: The WUIC software implements software components governed by
+ * open source software licenses (BSD and Apache) of which CAPGEMINI is not the
+ * author or the editor. The rights granted on the said software components are
+ * governed by the specific terms and conditions specified by Apache 2.0 and BSD
+ * licenses."
+ */
+
+
+
+
+package com.github.wuic.util;
+
+import com.github.wuic.NutType;
+import com.github.wuic.exception.wrapper.BadArgumentException;
+import com.github.wuic.nut.Nut;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * <p>
+ * Selects in the graph of the nuts served to a page the critical nuts the browser should fetch as soon as possible,
+ * before it discovers them by parsing the page or the stylesheets. A nut is selected when its type is one of the
+ * types of this policy and when its size does not exceed the threshold. Only nuts which can be preloaded by a browser
+ * are selected, see {@link HtmlUtil#preloadDestination(NutType)}.
+ * </p>
+ *
+ * <p>
+ * The size is known only for nuts already read in memory, which is the case for nuts retrieved from a cache. When a
+ * threshold is set, a nut with an unknown size is not selected since it could exceed it.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @version 1.2
+ * @since 0.5.0
+ */
+public final class PreloadPolicy {
+
+    /**
+     * A policy which never selects any nut.
+     */
+    public static final PreloadPolicy NONE = new PreloadPolicy(Collections.<NutType>emptySet(), -1L);
+
+    /**
+     * The types to preload.
+     */
+    private final Set<NutType> types;
+
+    /**
+     * The maximum size in bytes of a nut to preload, a negative value for no limit.
+     */
+    private final long maxSize;
+
+    /**
+     * <p>
+     * Builds a new instance.
+     * </p>
+     *
+     * @param nutTypes the types to preload
+     * @param max the maximum size in bytes of a nut to preload, a negative value for no limit
+     */
+    public PreloadPolicy(final Collection<NutType> nutTypes, final long max) {
+        types = nutTypes.isEmpty() ? EnumSet.noneOf(NutType.class) : EnumSet.copyOf(nutTypes);
+        maxSize = max;
+
+        // Some types can't be preloaded
+        for (final NutType nutType : NutType.values()) {
+            if (HtmlUtil.preloadDestination(nutType) == null) {
+                types.remove(nutType);
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Creates a policy from the given textual representation of the types and the maximum size.
+     * </p>
+     *
+     * @param nutTypes the {@link NutType} names separated by '|', {@code null} or empty to never preload
+     * @param max the maximum size in bytes, {@code null} or empty for no limit
+     * @return the policy
+     */
+    public static PreloadPolicy parse(final String nutTypes, final String max) {
+        if (nutTypes == null || nutTypes.trim().isEmpty()) {
+            return NONE;
+        }
+
+        final List<NutType> list = new ArrayList<NutType>();
+
+        for (final String nutType : nutTypes.split("\\|")) {
+            try {
+                list.add(NutType.valueOf(nutType.trim().toUpperCase()));
+            } catch (IllegalArgumentException iae) {
+                throw new BadArgumentException(new IllegalArgumentException(
+                        String.format("'%s' is not a valid nut type to preload", nutType), iae));
+            }
+        }
+
+        try {
+            return new PreloadPolicy(list, max == null || max.trim().isEmpty() ? -1L : Long.parseLong(max.trim()));
+        } catch (NumberFormatException nfe) {
+            throw new BadArgumentException(new IllegalArgumentException(
+                    String.format("'%s' is not a valid preload size threshold", max), nfe));
+        }
+    }
+
+    /**
+     * <p>
+     * Indicates if this policy can select a nut.
+     * </p>
+     *
+     * @return {@code true} if at least one type is preloaded, {@code false} otherwise
+     */
+    public Boolean isEnabled() {
+        return !types.isEmpty();
+    }
+
+    /**
+     * <p>
+     * Selects the nuts to preload among the given nuts and all the nuts they reference. Each nut name is selected once.
+     * </p>
+     *
+     * @param nuts the nuts, may be {@code null}
+     * @return the nuts to preload
+     */
+    public List<Nut> select(final List<Nut> nuts) {
+        if (nuts == null || !isEnabled()) {
+            return Collections.emptyList();
+        }
+
+        final List<Nut> retval = new ArrayList<Nut>();
+        select(nuts, new HashSet<String>(), retval);
+        return retval;
+    }
+
+    /**
+     * <p>
+     * Visits the given nuts and their referenced nuts to collect the nuts to preload.
+     * </p>
+     *
+     * @param nuts the nuts to visit
+     * @param visited the names of the visited nuts
+     * @param retval the selected nuts
+     */
+    private void select(final List<Nut> nuts, final Set<String> visited, final List<Nut> retval) {
+        for (final Nut nut : nuts) {
+            if (!visited.add(nut.getName())) {
+                continue;
+            }
+
+            if (types.contains(nut.getNutType())) {
+                final long size = NutUtils.sizeOf(nut);
+
+                if (maxSize < 0 || (size >= 0 && size <= maxSize)) {
+                    retval.add(nut);
+                }
+            }
+
+            if (nut.getReferencedNuts() != null) {
+                select(nut.getReferencedNuts(), visited, retval);
+            }
+        }
+    }
+}
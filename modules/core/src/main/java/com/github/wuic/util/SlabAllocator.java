@@ -0,0 +1,526 @@
+/*
+ * "Copyright (c) 2014   Capgemini Technology Services (hereinafter "Capgemini")
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * -   The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Any failure to comply with the above shall automatically terminate the license
+ * and be construed as a breach of these Terms of Use causing significant harm to
+ * Capgemini.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Capgemini shall not be used in
+ * advertising or otherwise to promote the use or other dealings in this Software
+ * without prior written authorization from Capgemini.
+ *
+ * These Terms of Use are subject to French law.
+ *
+ * IMPORTANT NOTICE: The WUIC software implements software components governed by
+ * open source software licenses (BSD and Apache) of which CAPGEMINI is not the
+ * author or the editor. The rights granted on the said software components are
+ * governed by the specific terms and conditions specified by Apache 2.0 and BSD
+ * licenses."
+ */
+
+
+package com.github.wuic.util;
+
+import com.github.wuic.exception.wrapper.BadArgumentException;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * <p>
+ * Allocates memory chunks outside the java heap. The memory is reserved by slabs of {@link #SLAB_SIZE} bytes with
+ * direct {@code ByteBuffer buffers}. Each slab is divided in chunks of the same size class, each size class being a
+ * power of two between {@link #MIN_CHUNK_SIZE} and {@link #SLAB_SIZE}. A chunk is allocated in the smallest size class
+ * able to contain the requested length.
+ * </p>
+ *
+ * <p>
+ * A freed chunk is recycled and will be returned by a future allocation in the same size class. A slab whose chunks
+ * are all free is released, unless it is the last slab of its size class: the allocator stops referencing it and its
+ * memory is given back to the system when the buffer is garbage collected. The memory reserved by the allocator is
+ * bounded by a maximum size specified at creation time.
+ * </p>
+ *
+ * <p>
+ * A {@link Slot} is recycled when it is {@link #free(Slot) freed} and nobody reads it. Readers must
+ * {@link Slot#acquire() acquire} the content and then {@link Slot#release() release} it. A slot can also be
+ * {@link Slot#bind(Object) bound} to the object giving access to its content, typically a nut. When a bound slot is
+ * recycled, its content is copied in the heap: an object retrieved before the slot is freed can still be read later,
+ * and the copy is collected with it. If the owner of a bound slot becomes unreachable before the slot is freed, the
+ * chunk is recycled too, without copy.
+ * </p>
+ *
+ * <p>
+ * This class is thread safe.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @version 1.2
+ * @since 0.5.0
+ */
+public class SlabAllocator {
+
+    /**
+     * Smallest chunk size.
+     */
+    public static final int MIN_CHUNK_SIZE = 1024;
+
+    /**
+     * Size of a slab, which is also the biggest chunk size.
+     */
+    public static final int SLAB_SIZE = MIN_CHUNK_SIZE * MIN_CHUNK_SIZE;
+
+    /**
+     * The reserved slabs for each size class.
+     */
+    private final List<LinkedList<Slab>> slabs;
+
+    /**
+     * The queue where the references to the owners of bound slots are enqueued once the owners are unreachable.
+     */
+    private final ReferenceQueue<Object> unreachableOwners;
+
+    /**
+     * The references to the owners of the bound slots, kept reachable until they are enqueued.
+     */
+    private final Set<OwnerReference> owners;
+
+    /**
+     * The maximum number of bytes to reserve.
+     */
+    private final long maxBytes;
+
+    /**
+     * The number of bytes reserved by the slabs.
+     */
+    private long reservedBytes;
+
+    /**
+     * The number of bytes in chunks currently used.
+     */
+    private long usedBytes;
+
+    /**
+     * <p>
+     * Builds a new instance.
+     * </p>
+     *
+     * @param max the maximum number of bytes to reserve
+     */
+    public SlabAllocator(final long max) {
+        if (max < SLAB_SIZE) {
+            throw new BadArgumentException(new IllegalArgumentException(
+                    String.format("Slab allocator needs at least %d bytes", SLAB_SIZE)));
+        }
+
+        maxBytes = max;
+        slabs = new ArrayList<LinkedList<Slab>>();
+        unreachableOwners = new ReferenceQueue<Object>();
+        owners = new HashSet<OwnerReference>();
+
+        for (int size = MIN_CHUNK_SIZE; size <= SLAB_SIZE; size <<= 1) {
+            slabs.add(new LinkedList<Slab>());
+        }
+    }
+
+    /**
+     * <p>
+     * Allocates a chunk able to contain the given number of bytes.
+     * </p>
+     *
+     * @param length the number of bytes
+     * @return the allocated slot, {@code null} if the length is greater than {@link #SLAB_SIZE} or if there is no more
+     * memory to reserve
+     */
+    public synchronized Slot allocate(final int length) {
+        if (length > SLAB_SIZE) {
+            return null;
+        }
+
+        expunge();
+
+        int sizeClass = 0;
+
+        while ((MIN_CHUNK_SIZE << sizeClass) < length) {
+            sizeClass++;
+        }
+
+        Slab slab = null;
+
+        for (final Slab candidate : slabs.get(sizeClass)) {
+            if (!candidate.freeChunks.isEmpty()) {
+                slab = candidate;
+                break;
+            }
+        }
+
+        // Reserve a new slab for the size class
+        if (slab == null) {
+            if (reservedBytes + SLAB_SIZE > maxBytes) {
+                return null;
+            }
+
+            slab = new Slab(sizeClass);
+            slabs.get(sizeClass).add(slab);
+            reservedBytes += SLAB_SIZE;
+        }
+
+        final ByteBuffer chunk = slab.freeChunks.removeFirst();
+        usedBytes += chunk.capacity();
+        return new Slot(chunk, slab, length);
+    }
+
+    /**
+     * <p>
+     * Frees the given slot. The chunk is recycled once all the readers have released the slot.
+     * </p>
+     *
+     * @param slot the slot to free
+     */
+    public synchronized void free(final Slot slot) {
+        expunge();
+
+        if (!slot.freed) {
+            slot.freed = Boolean.TRUE;
+            recycleIfUnused(slot);
+        }
+    }
+
+    /**
+     * <p>
+     * Gets the number of bytes reserved outside the java heap.
+     * </p>
+     *
+     * @return the reserved bytes
+     */
+    public synchronized long getReservedBytes() {
+        return reservedBytes;
+    }
+
+    /**
+     * <p>
+     * Gets the number of bytes in the chunks currently allocated.
+     * </p>
+     *
+     * @return the used bytes
+     */
+    public synchronized long getUsedBytes() {
+        expunge();
+        return usedBytes;
+    }
+
+    /**
+     * <p>
+     * Recycles the slots whose owner is not reachable anymore. Nobody can read such slot, even if it has not been
+     * freed or if a stream has not been released.
+     * </p>
+     */
+    private void expunge() {
+        Reference<?> ref;
+
+        while ((ref = unreachableOwners.poll()) != null) {
+            final OwnerReference owner = OwnerReference.class.cast(ref);
+            owners.remove(owner);
+            owner.slot.owner = null;
+            owner.slot.freed = Boolean.TRUE;
+            owner.slot.readers = 0;
+            recycleIfUnused(owner.slot);
+        }
+    }
+
+    /**
+     * <p>
+     * Recycles the given slot if it has been freed and if it has no reader. The content of a slot whose owner could
+     * still be reachable is copied in the heap before.
+     * </p>
+     *
+     * @param slot the slot
+     */
+    private void recycleIfUnused(final Slot slot) {
+        if (!slot.freed || slot.readers != 0 || slot.recycled) {
+            return;
+        }
+
+        if (slot.owner != null) {
+            final ByteBuffer content = slot.chunk.duplicate();
+            content.clear();
+            content.limit(slot.length);
+            slot.copy = new byte[slot.length];
+            content.get(slot.copy);
+
+            // The owner reads the copy, no need to be notified when it's unreachable
+            owners.remove(slot.owner);
+            slot.owner.clear();
+            slot.owner = null;
+        }
+
+        slot.recycled = Boolean.TRUE;
+        usedBytes -= slot.chunk.capacity();
+        slot.chunk.clear();
+
+        final Slab slab = slot.slab;
+        slab.freeChunks.add(slot.chunk);
+
+        // Release the slab when it's empty and not the last one of its size class
+        final List<Slab> sizeClass = slabs.get(slab.sizeClass);
+
+        if (slab.freeChunks.size() == slab.chunkCount && sizeClass.size() > 1) {
+            sizeClass.remove(slab);
+            reservedBytes -= SLAB_SIZE;
+        }
+    }
+
+    /**
+     * <p>
+     * A slab divided in chunks of the same size class.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @version 1.0
+     * @since 0.5.0
+     */
+    private static final class Slab {
+
+        /**
+         * The size class.
+         */
+        private final int sizeClass;
+
+        /**
+         * The number of chunks.
+         */
+        private final int chunkCount;
+
+        /**
+         * The free chunks.
+         */
+        private final LinkedList<ByteBuffer> freeChunks;
+
+        /**
+         * <p>
+         * Reserves a new slab.
+         * </p>
+         *
+         * @param sc the size class
+         */
+        private Slab(final int sc) {
+            final ByteBuffer buffer = ByteBuffer.allocateDirect(SLAB_SIZE);
+            final int chunkSize = MIN_CHUNK_SIZE << sc;
+            sizeClass = sc;
+            chunkCount = SLAB_SIZE / chunkSize;
+            freeChunks = new LinkedList<ByteBuffer>();
+
+            for (int offset = 0; offset < SLAB_SIZE; offset += chunkSize) {
+                buffer.limit(offset + chunkSize);
+                buffer.position(offset);
+                freeChunks.add(buffer.slice());
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * A reference to the owner of a slot, enqueued once the owner is not reachable anymore.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @version 1.0
+     * @since 0.5.0
+     */
+    private static final class OwnerReference extends PhantomReference<Object> {
+
+        /**
+         * The slot.
+         */
+        private final Slot slot;
+
+        /**
+         * <p>
+         * Builds a new instance.
+         * </p>
+         *
+         * @param owner the owner
+         * @param s the owned slot
+         * @param queue the queue
+         */
+        private OwnerReference(final Object owner, final Slot s, final ReferenceQueue<Object> queue) {
+            super(owner, queue);
+            slot = s;
+        }
+    }
+
+    /**
+     * <p>
+     * A chunk allocated by the enclosing allocator.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @version 1.2
+     * @since 0.5.0
+     */
+    public final class Slot {
+
+        /**
+         * The chunk.
+         */
+        private final ByteBuffer chunk;
+
+        /**
+         * The slab of the chunk.
+         */
+        private final Slab slab;
+
+        /**
+         * The number of bytes actually used in the chunk.
+         */
+        private final int length;
+
+        /**
+         * The number of readers which have acquired the slot.
+         */
+        private int readers;
+
+        /**
+         * The slot has been freed or not.
+         */
+        private Boolean freed;
+
+        /**
+         * The chunk has been given back to its slab or not.
+         */
+        private Boolean recycled;
+
+        /**
+         * The reference to the owner of the slot, {@code null} if not bound or if the owner is not reachable anymore.
+         */
+        private OwnerReference owner;
+
+        /**
+         * The content copied in the heap when the slot has been recycled while bound, {@code null} otherwise.
+         */
+        private byte[] copy;
+
+        /**
+         * <p>
+         * Builds a new instance.
+         * </p>
+         *
+         * @param c the chunk
+         * @param s the slab
+         * @param l the length
+         */
+        private Slot(final ByteBuffer c, final Slab s, final int l) {
+            chunk = c;
+            slab = s;
+            length = l;
+            freed = Boolean.FALSE;
+            recycled = Boolean.FALSE;
+        }
+
+        /**
+         * <p>
+         * Binds this slot to the given owner. Once bound, the content remains readable by the owner after the slot is
+         * freed.
+         * </p>
+         *
+         * @param o the owner
+         */
+        public void bind(final Object o) {
+            synchronized (SlabAllocator.this) {
+                owner = new OwnerReference(o, this, unreachableOwners);
+                owners.add(owner);
+            }
+        }
+
+        /**
+         * <p>
+         * Writes the given bytes at the beginning of the slot.
+         * </p>
+         *
+         * @param bytes the bytes to write
+         */
+        public void write(final byte[] bytes) {
+            if (bytes.length != length) {
+                throw new BadArgumentException(new IllegalArgumentException(
+                        String.format("Slot expects %d bytes, not %d", length, bytes.length)));
+            }
+
+            final ByteBuffer buffer = chunk.duplicate();
+            buffer.clear();
+            buffer.put(bytes);
+        }
+
+        /**
+         * <p>
+         * Acquires the content of this slot. The slot won't be recycled until the content is {@link #release() released}.
+         * </p>
+         *
+         * @return a read-only buffer on the content, {@code null} if the slot has been freed without being bound
+         */
+        public ByteBuffer acquire() {
+            synchronized (SlabAllocator.this) {
+                if (copy != null) {
+                    return ByteBuffer.wrap(copy).asReadOnlyBuffer();
+                } else if (recycled || (freed && owner == null)) {
+                    return null;
+                }
+
+                readers++;
+            }
+
+            final ByteBuffer retval = chunk.asReadOnlyBuffer();
+            retval.clear();
+            retval.limit(length);
+            return retval;
+        }
+
+        /**
+         * <p>
+         * Releases the content previously acquired.
+         * </p>
+         */
+        public void release() {
+            synchronized (SlabAllocator.this) {
+                if (readers > 0) {
+                    readers--;
+                    recycleIfUnused(this);
+                }
+            }
+        }
+
+        /**
+         * <p>
+         * Gets the number of bytes in this slot.
+         * </p>
+         *
+         * @return the length
+         */
+        public int getLength() {
+            return length;
+        }
+    }
+}
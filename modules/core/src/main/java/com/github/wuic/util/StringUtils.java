@@ -44,11 +44,26 @@ package com.github.wuic.util;
  * </p>
  *
  * @author Guillaume DROUET
- * @version 1.2
+ * @version 1.3
  * @since 0.3.4
  */
 public final class StringUtils {
 
+    /**
+     * The base64 alphabet.
+     */
+    private static final char[] BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+    /**
+     * Mask of a base64 digit.
+     */
+    private static final int BASE64_MASK = 0x3F;
+
+    /**
+     * Number of bits of a base64 digit.
+     */
+    private static final int BASE64_BITS = 6;
+
     /**
      * <p>
      * Prevent instantiation of this class which provides only static methods.
@@ -219,4 +234,36 @@ public final class StringUtils {
             return retval.toString();
         }
     }
+
+    /**
+     * <p>
+     * Encodes the given bytes in base64, padding the result with '=' as specified by RFC 4648.
+     * </p>
+     *
+     * @param bytes the bytes to encode
+     * @return the base64 representation
+     */
+    public static String encodeBase64(final byte[] bytes) {
+        final StringBuilder retval = new StringBuilder((bytes.length + NumberUtils.TWO) / NumberUtils.THREE * NumberUtils.FOUR);
+
+        for (int i = 0; i < bytes.length; i += NumberUtils.THREE) {
+            final int remaining = Math.min(NumberUtils.THREE, bytes.length - i);
+            int group = 0;
+
+            // Three bytes in a 24 bits group, missing bytes being zero
+            for (int j = 0; j < NumberUtils.THREE; j++) {
+                group = (group << Byte.SIZE) | (j < remaining ? bytes[i + j] & 0xFF : 0);
+            }
+
+            for (int j = 0; j < NumberUtils.FOUR; j++) {
+                if (j <= remaining) {
+                    retval.append(BASE64[(group >> (BASE64_BITS * (NumberUtils.THREE - j))) & BASE64_MASK]);
+                } else {
+                    retval.append('=');
+                }
+            }
+        }
+
+        return retval.toString();
+    }
 }
@@ -41,12 +41,22 @@ package com.github.wuic.util;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * <p>
@@ -56,11 +66,22 @@ import java.util.concurrent.ScheduledFuture;
  * </p>
  *
  * <p>
+ * The tasks are isolated in {@link Lane lanes} according to their workload, so a burst of background processing does
+ * not delay polling and vice versa. Each lane has its own threads, named after the lane, and a bounded queue. When the
+ * queue is full, the {@link RejectionPolicy} of the lane applies. The number of threads, the queue capacity and the
+ * policy of a lane can be configured with the system properties {@code c.g.wuic.pool.[lane].threads},
+ * {@code c.g.wuic.pool.[lane].queue} and {@code c.g.wuic.pool.[lane].rejection} where {@code [lane]} is the lower case
+ * name of the lane. Delayed and repeated tasks are triggered by a single timer thread which submits them to their lane.
+ * The timer thread never runs a task itself: when the lane is full, a delayed task is postponed and a repeated task
+ * waits for its next repetition, whatever the policy of the lane is.
+ * </p>
+ *
+ * <p>
  * The singleton adds a hook with {@link Runtime#addShutdownHook(Thread)} to shutdown the pool when executed.
  * </p>
  *
  * @author Guillaume DROUET
- * @version 1.2
+ * @version 1.6
  * @since 0.4.0
  */
 public final class WuicScheduledThreadPool extends Thread {
@@ -70,6 +91,104 @@ public final class WuicScheduledThreadPool extends Thread {
      */
     public static final int POOL_SIZE = Runtime.getRuntime().availableProcessors();
 
+    /**
+     * Prefix of the system properties configuring the lanes.
+     */
+    public static final String LANE_PROPERTY_PREFIX = "c.g.wuic.pool.";
+
+    /**
+     * Default capacity of the queue of a lane.
+     */
+    private static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    /**
+     * How long an idle thread of a lane is kept alive.
+     */
+    private static final long KEEP_ALIVE_SECONDS = 60L;
+
+    /**
+     * <p>
+     * The different workloads isolated in their own threads.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @version 1.0
+     * @since 0.5.0
+     */
+    public enum Lane {
+
+        /**
+         * Polling of the nuts and the configurations, cache expiration.
+         */
+        POLLING(Math.max(1, POOL_SIZE / NumberUtils.TWO)),
+
+        /**
+         * Background processing of the nuts.
+         */
+        PROCESSING(POOL_SIZE),
+
+        /**
+         * Background recomputation of the entries already served from the cache.
+         */
+        WARM_UP(Math.max(1, POOL_SIZE / NumberUtils.TWO)),
+
+        /**
+         * Blocking I/O operations like retrieving the timestamps of the nuts.
+         */
+        IO(POOL_SIZE * NumberUtils.TWO);
+
+        /**
+         * Default number of threads.
+         */
+        private final int defaultThreads;
+
+        /**
+         * <p>
+         * Builds a new lane.
+         * </p>
+         *
+         * @param threads the default number of threads
+         */
+        private Lane(final int threads) {
+            defaultThreads = threads;
+        }
+
+        /**
+         * <p>
+         * Gets the key of the system property configuring this lane.
+         * </p>
+         *
+         * @param suffix the property suffix
+         * @return the key
+         */
+        private String property(final String suffix) {
+            return LANE_PROPERTY_PREFIX + name().toLowerCase().replace('_', '-') + '.' + suffix;
+        }
+    }
+
+    /**
+     * <p>
+     * What happens when a task is submitted to a lane with a full queue.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @version 1.0
+     * @since 0.5.0
+     */
+    public enum RejectionPolicy {
+
+        /**
+         * The submitting thread runs the task itself, which slows down the producer. A task submitted by the timer thread
+         * is handled as with {@link #ABORT} to not delay the other scheduled tasks.
+         */
+        CALLER_RUNS,
+
+        /**
+         * A {@link RejectedExecutionException} is thrown to the submitting thread. A delayed task is postponed.
+         */
+        ABORT
+    }
+
     /**
      * The unique instance.
      */
@@ -81,9 +200,19 @@ public final class WuicScheduledThreadPool extends Thread {
     private final Logger log = LoggerFactory.getLogger(getClass());
 
     /**
-     * The thread pool.
+     * Triggers the delayed and repeated tasks.
+     */
+    private ScheduledExecutorService timer;
+
+    /**
+     * The executor of each lane.
      */
-    private ScheduledExecutorService pool;
+    private final Map<Lane, ThreadPoolExecutor> lanes;
+
+    /**
+     * The number of rejected tasks for each lane.
+     */
+    private final Map<Lane, AtomicLong> rejected;
 
     /**
      * <p>
@@ -91,7 +220,25 @@ public final class WuicScheduledThreadPool extends Thread {
      * </p>
      */
     private WuicScheduledThreadPool() {
-        pool = Executors.newScheduledThreadPool(POOL_SIZE);
+        timer = Executors.newSingleThreadScheduledExecutor(new LaneThreadFactory("wuic-timer"));
+        lanes = new EnumMap<Lane, ThreadPoolExecutor>(Lane.class);
+        rejected = new EnumMap<Lane, AtomicLong>(Lane.class);
+
+        for (final Lane lane : Lane.values()) {
+            final int threads = Integer.getInteger(lane.property("threads"), lane.defaultThreads);
+            final int capacity = Integer.getInteger(lane.property("queue"), DEFAULT_QUEUE_CAPACITY);
+            final RejectionPolicy policy =
+                    RejectionPolicy.valueOf(System.getProperty(lane.property("rejection"), RejectionPolicy.CALLER_RUNS.name()));
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<Runnable>(capacity),
+                    new LaneThreadFactory("wuic-" + lane.name().toLowerCase().replace('_', '-')),
+                    new LaneRejectionHandler(lane, policy));
+            executor.allowCoreThreadTimeOut(true);
+            lanes.put(lane, executor);
+            rejected.put(lane, new AtomicLong());
+            log.debug("Lane {} created with {} threads, a queue of {} tasks and policy {}", lane, threads, capacity, policy);
+        }
+
         Runtime.getRuntime().addShutdownHook(this);
     }
 
@@ -110,18 +257,35 @@ public final class WuicScheduledThreadPool extends Thread {
         return instance;
     }
 
+    /**
+     * <p>
+     * Schedules a single execution of a given job in a specified delay. A job which needs to be repeated with a delay
+     * that changes over time can schedule its next execution itself.
+     * </p>
+     *
+     * @param lane the lane executing the job
+     * @param job the job to execute
+     * @param delay the delay before the execution
+     * @return an object which gives control over the scheduled execution
+     */
+    public ScheduledFuture<?> executeOnceInSeconds(final Lane lane, final Runnable job, final int delay) {
+        return timer.schedule(new Trigger(lane, new ExceptionLogger(job), delay, Boolean.FALSE), delay, TimeUnit.SECONDS);
+    }
+
     /**
      * <p>
      * Schedules an execution in a specified delay of a given job. Once the job is executed, its execution will
-     * be repeated in the initial delay, and so on.
+     * be repeated in the initial delay, and so on. An execution is skipped if the previous one is still running.
      * </p>
      *
+     * @param lane the lane executing the job
      * @param job the job to execute
      * @param delay the delay between executions
      * @return an object which gives control over scheduled executions
      */
-    public synchronized ScheduledFuture<?> executeEveryTimeInSeconds(final Runnable job, final int delay) {
-        return pool.scheduleWithFixedDelay(new ExceptionLogger(job), delay, delay, TimeUnit.SECONDS);
+    public ScheduledFuture<?> executeEveryTimeInSeconds(final Lane lane, final Runnable job, final int delay) {
+        return timer.scheduleWithFixedDelay(new Trigger(lane, new ExceptionLogger(job), delay, Boolean.TRUE),
+                delay, delay, TimeUnit.SECONDS);
     }
 
     /**
@@ -129,11 +293,74 @@ public final class WuicScheduledThreadPool extends Thread {
      * Executes as soon as possible the given job and returns the related {@link Future}.
      * </p>
      *
+     * @param lane the lane executing the job
      * @param job the job to execute
+     * @param <T> the type of result
      * @return the future result
+     * @throws RejectedExecutionException if the queue of the lane is full and its policy is {@link RejectionPolicy#ABORT}
+     */
+    public <T> Future<T> executeAsap(final Lane lane, final Callable<T> job) {
+        return lanes.get(lane).submit(new CallExceptionLogger<T>(job));
+    }
+
+    /**
+     * <p>
+     * Gets the number of tasks waiting in the queue of the given lane.
+     * </p>
+     *
+     * @param lane the lane
+     * @return the queue depth
+     */
+    public int getQueueDepth(final Lane lane) {
+        return lanes.get(lane).getQueue().size();
+    }
+
+    /**
+     * <p>
+     * Gets the maximum number of threads of the given lane.
+     * </p>
+     *
+     * @param lane the lane
+     * @return the max threads
      */
-    public synchronized <T> Future<T> executeAsap(final Callable<T> job) {
-        return pool.submit(new CallExceptionLogger(job));
+    public int getMaxThreads(final Lane lane) {
+        return lanes.get(lane).getMaximumPoolSize();
+    }
+
+    /**
+     * <p>
+     * Gets the approximate number of threads running a task in the given lane.
+     * </p>
+     *
+     * @param lane the lane
+     * @return the active threads
+     */
+    public int getActiveThreads(final Lane lane) {
+        return lanes.get(lane).getActiveCount();
+    }
+
+    /**
+     * <p>
+     * Gets the approximate number of tasks completed by the given lane.
+     * </p>
+     *
+     * @param lane the lane
+     * @return the completed tasks
+     */
+    public long getCompletedTasks(final Lane lane) {
+        return lanes.get(lane).getCompletedTaskCount();
+    }
+
+    /**
+     * <p>
+     * Gets the number of tasks that have been submitted to the given lane while its queue was full.
+     * </p>
+     *
+     * @param lane the lane
+     * @return the rejected tasks
+     */
+    public long getRejectedTasks(final Lane lane) {
+        return rejected.get(lane).get();
     }
 
     /**
@@ -149,7 +376,233 @@ public final class WuicScheduledThreadPool extends Thread {
      * </p>
      */
     public void shutdown() {
-        pool.shutdownNow();
+        timer.shutdownNow();
+
+        for (final ThreadPoolExecutor executor : lanes.values()) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * <p>
+     * Submits a delayed job to its lane when the delay is expired.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @version 1.1
+     * @since 0.5.0
+     */
+    private final class Trigger implements Runnable {
+
+        /**
+         * The lane.
+         */
+        private final Lane lane;
+
+        /**
+         * The job.
+         */
+        private final Runnable job;
+
+        /**
+         * The delay in seconds.
+         */
+        private final int delay;
+
+        /**
+         * The job is repeated.
+         */
+        private final Boolean repeated;
+
+        /**
+         * The job is running.
+         */
+        private final AtomicBoolean running;
+
+        /**
+         * <p>
+         * Builds a new instance.
+         * </p>
+         *
+         * @param l the lane
+         * @param j the job
+         * @param d the delay in seconds
+         * @param r repeated or not
+         */
+        private Trigger(final Lane l, final Runnable j, final int d, final Boolean r) {
+            lane = l;
+            job = j;
+            delay = d;
+            repeated = r;
+            running = new AtomicBoolean(false);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void run() {
+            // Previous execution of a repeated job is not finished
+            if (!running.compareAndSet(false, true)) {
+                return;
+            }
+
+            try {
+                lanes.get(lane).execute(new TriggeredJob(job, running));
+            } catch (RejectedExecutionException ree) {
+                running.set(false);
+
+                // Next repetition will submit the job again, a single execution is postponed
+                if (repeated) {
+                    log.debug("Lane {} is full, skipping a repetition of a task", lane);
+                } else if (!timer.isShutdown()) {
+                    log.warn("Lane {} is full, postponing a task of {} seconds", lane, delay);
+                    timer.schedule(this, Math.max(1, delay), TimeUnit.SECONDS);
+                }
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * A job submitted to its lane by a {@link Trigger}. It is never run by the timer thread when the lane is full.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @version 1.0
+     * @since 0.5.0
+     */
+    private static final class TriggeredJob implements Runnable {
+
+        /**
+         * The job.
+         */
+        private final Runnable job;
+
+        /**
+         * Reset when the job is done.
+         */
+        private final AtomicBoolean running;
+
+        /**
+         * <p>
+         * Builds a new instance.
+         * </p>
+         *
+         * @param j the job
+         * @param r the running flag of the trigger
+         */
+        private TriggeredJob(final Runnable j, final AtomicBoolean r) {
+            job = j;
+            running = r;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void run() {
+            try {
+                job.run();
+            } finally {
+                running.set(false);
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Applies the {@link RejectionPolicy} of a lane and counts the rejected tasks. The tasks submitted by the timer
+     * thread are always rejected with an exception, the {@link Trigger} postpones or skips them.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @version 1.1
+     * @since 0.5.0
+     */
+    private final class LaneRejectionHandler implements RejectedExecutionHandler {
+
+        /**
+         * The lane.
+         */
+        private final Lane lane;
+
+        /**
+         * The policy.
+         */
+        private final RejectionPolicy policy;
+
+        /**
+         * <p>
+         * Builds a new instance.
+         * </p>
+         *
+         * @param l the lane
+         * @param p the policy
+         */
+        private LaneRejectionHandler(final Lane l, final RejectionPolicy p) {
+            lane = l;
+            policy = p;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void rejectedExecution(final Runnable r, final ThreadPoolExecutor executor) {
+            rejected.get(lane).incrementAndGet();
+
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("Lane " + lane + " is shutdown");
+            } else if (policy == RejectionPolicy.CALLER_RUNS && !(r instanceof TriggeredJob)) {
+                log.debug("Lane {} is full, running task in the caller thread", lane);
+                r.run();
+            } else {
+                throw new RejectedExecutionException("Lane " + lane + " is full");
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Creates the threads of a lane with a name that identifies it.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @version 1.0
+     * @since 0.5.0
+     */
+    private static final class LaneThreadFactory implements ThreadFactory {
+
+        /**
+         * The name prefix.
+         */
+        private final String prefix;
+
+        /**
+         * Number of created threads.
+         */
+        private final AtomicInteger count;
+
+        /**
+         * <p>
+         * Builds a new instance.
+         * </p>
+         *
+         * @param p the name prefix
+         */
+        private LaneThreadFactory(final String p) {
+            prefix = p;
+            count = new AtomicInteger();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Thread newThread(final Runnable r) {
+            return new Thread(r, prefix + '-' + count.incrementAndGet());
+        }
     }
 
     /**
@@ -56,7 +56,7 @@ import java.util.concurrent.atomic.AtomicInteger;
  * </p>
  *
  * @author Guillaume DROUET
- * @version 1.1
+ * @version 1.2
  * @since 0.4.0
  */
 @RunWith(JUnit4.class)
@@ -124,13 +124,15 @@ public class ContextBuilderConfiguratorTest {
     }
 
     /**
-     * Tests basic configuration with polling activation.
+     * Tests basic configuration with polling activation: the first polling operation detects a change and configures
+     * again the builder.
      *
      * @throws StreamException if test fails
      */
     @Test
     public void configureWithPollingTest() throws Exception {
         final AtomicInteger count = new AtomicInteger(0);
+        final AtomicInteger configurations = new AtomicInteger(0);
 
         final ContextBuilderConfigurator cfg = new ContextBuilderConfigurator() {
 
@@ -139,6 +141,7 @@ public class ContextBuilderConfiguratorTest {
              */
             @Override
             public int internalConfigure(final ContextBuilder ctxBuilder) {
+                configurations.incrementAndGet();
                 return 1;
             }
 
@@ -160,17 +163,30 @@ public class ContextBuilderConfiguratorTest {
                     ContextBuilderConfiguratorTest.class.notify();
                 }
 
-                return System.currentTimeMillis();
+                // Changes only once, when polled for the first time
+                return count.get() == 1 ? 1L : 2L;
             }
         };
 
         final ContextBuilder builder = Mockito.mock(ContextBuilder.class);
         cfg.configure(builder);
 
-        synchronized (ContextBuilderConfiguratorTest.class) {
-            ContextBuilderConfiguratorTest.class.wait(1500L);
-        }
+        try {
+            // Configuration, polling operation and configuration again: next polling operation is one second later
+            synchronized (ContextBuilderConfiguratorTest.class) {
+                final long end = System.currentTimeMillis() + 5000L;
+                long remaining = end - System.currentTimeMillis();
+
+                while (count.get() < NumberUtils.THREE && remaining > 0) {
+                    ContextBuilderConfiguratorTest.class.wait(remaining);
+                    remaining = end - System.currentTimeMillis();
+                }
 
-        Assert.assertEquals(count.intValue(), NumberUtils.TWO);
+                Assert.assertEquals(NumberUtils.THREE, count.get());
+                Assert.assertEquals(NumberUtils.TWO, configurations.get());
+            }
+        } finally {
+            cfg.setPollingInterleave(-1);
+        }
     }
 }
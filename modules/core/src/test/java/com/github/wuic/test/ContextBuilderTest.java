@@ -58,6 +58,7 @@ import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
 import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -71,7 +72,7 @@ import java.util.*;
  * </p>
  *
  * @author Guillaume DROUET
- * @version 1.1
+ * @version 1.2
  * @since 0.4.0
  */
 @RunWith(JUnit4.class)
@@ -465,6 +466,43 @@ public class ContextBuilderTest {
                 .build();
     }
 
+    /**
+     * Checks that the processed nuts are saved under their URL path when the builder is shutdown.
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void storeShutdownTest() throws Exception {
+        final List<String> saved = Collections.synchronizedList(new ArrayList<String>());
+        final NutDao store = mock(NutDao.class);
+        when(store.saveSupported()).thenReturn(true);
+        doAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(final InvocationOnMock invocationOnMock) throws Throwable {
+                saved.add(((Nut) invocationOnMock.getArguments()[0]).getName());
+                return null;
+            }
+        }).when(store).save(any(Nut.class));
+
+        final ContextBuilder builder = new ContextBuilder()
+                .tag("test")
+                .contextNutDaoBuilder("dao", MockDaoBuilder.class.getSimpleName())
+                .toContext()
+                .nutDao("store", store)
+                .heap("heap", "dao", NUT_NAME_ONE)
+                .contextEngineBuilder("engine", MockEngineBuilder.class.getSimpleName())
+                .toContext()
+                .template("tpl", new String[]{"engine"}, null, false, "store")
+                .workflow("workflow", true, "heap", "tpl")
+                .releaseTag();
+
+        builder.build().process("", "workflowheap");
+
+        // Queued nuts are saved before the builder is shutdown
+        builder.shutdown();
+        Assert.assertEquals(Arrays.asList("workflowheap/1/foo.js"), saved);
+    }
+
     /**
      * Test settings erasure.
      * @throws Exception if test fails
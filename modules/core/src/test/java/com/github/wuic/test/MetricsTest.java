@@ -0,0 +1,336 @@
+/*
+ * "Copyright (c) 2014   Capgemini Technology Services (hereinafter "Capgemini")
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * -   The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Any failure to comply with the above shall automatically terminate the license
+ * and be construed as a breach of these Terms of Use causing significant harm to
+ * Capgemini.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Capgemini shall not be used in
+ * advertising or otherwise to promote the use or other dealings in this Software
+ * without prior written authorization from Capgemini.
+ *
+ * These Terms of Use are subject to French law.
+ *
+ * IMPORTANT NOTICE: The WUIC software implements software components governed by
+ * open source software licenses (BSD and Apache) of which CAPGEMINI is not the
+ * author or the editor. The rights granted on the said software components are
+ * governed by the specific terms and conditions specified by Apache 2.0 and BSD
+ * licenses."
+ */
+
+
+package com.github.wuic.test;
+
+import com.github.wuic.engine.EngineRequest;
+import com.github.wuic.engine.impl.embedded.AbstractCacheEngine;
+import com.github.wuic.engine.impl.embedded.MemoryMapCacheEngine;
+import com.github.wuic.metric.Gauge;
+import com.github.wuic.metric.Histogram;
+import com.github.wuic.metric.JmxMetricRegistry;
+import com.github.wuic.metric.MetricRegistry;
+import com.github.wuic.metric.Metrics;
+import com.github.wuic.metric.Span;
+import com.github.wuic.metric.Trace;
+import com.github.wuic.metric.TraceBuffer;
+import com.github.wuic.metric.Tracer;
+import com.github.wuic.nut.Nut;
+import junit.framework.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mockito;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * Tests for the metrics.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @version 1.2
+ * @since 0.5.0
+ */
+@RunWith(JUnit4.class)
+public class MetricsTest {
+
+    /**
+     * <p>
+     * Checks the approximations of the histogram.
+     * </p>
+     */
+    @Test
+    public void histogramTest() {
+        final Histogram histogram = new Histogram();
+
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+
+        Assert.assertEquals(100, histogram.getCount());
+        Assert.assertEquals(50, histogram.getMean());
+        Assert.assertEquals(100, histogram.getMax());
+
+        // 50 is in the bucket [32, 63]
+        Assert.assertEquals(63, histogram.getPercentile(50));
+        Assert.assertEquals(100, histogram.getPercentile(99));
+    }
+
+    /**
+     * <p>
+     * Checks that a nested timing is excluded from the self latency of the enclosing one.
+     * </p>
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void nestedTimingTest() throws Exception {
+        final Map<String, Long> recorded = new HashMap<String, Long>();
+
+        Metrics.setRegistry(new MetricRegistry() {
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public void count(final Metrics.Component component, final String name, final String metric, final long delta) {
+            }
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public void record(final Metrics.Component component, final String name, final String metric, final long value) {
+                recorded.put(name + "." + metric, value);
+            }
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public void gauge(final Metrics.Component component, final String name, final String metric, final Gauge gauge) {
+            }
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public void unregister(final Metrics.Component component, final String name) {
+            }
+        });
+
+        try {
+            final Metrics.Timing outer = Metrics.start();
+            final Metrics.Timing inner = Metrics.start();
+            Thread.sleep(50L);
+            inner.stop(Metrics.Component.ENGINE, "inner");
+            outer.stop(Metrics.Component.ENGINE, "outer");
+
+            Assert.assertTrue(recorded.get("inner." + Metrics.SELF_LATENCY) >= 50000L);
+            Assert.assertTrue(recorded.get("outer." + Metrics.LATENCY) >= recorded.get("inner." + Metrics.LATENCY));
+            Assert.assertTrue(recorded.get("outer." + Metrics.SELF_LATENCY) < 50000L);
+        } finally {
+            Metrics.setRegistry(null);
+        }
+
+        Assert.assertNull(Metrics.start());
+    }
+
+    /**
+     * <p>
+     * Checks that metrics of a cache are exposed over JMX.
+     * </p>
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void jmxTest() throws Exception {
+        final MBeanServer server = MBeanServerFactory.newMBeanServer();
+        final JmxMetricRegistry registry = new JmxMetricRegistry(server);
+        Metrics.setRegistry(registry);
+
+        final MemoryMapCacheEngine engine = new MemoryMapCacheEngine(true, -1, false);
+        final ObjectName cache = cacheName(engine);
+
+        try {
+            putToCache(engine);
+            Assert.assertEquals(1L, server.getAttribute(cache, "entries"));
+
+            Metrics.count(Metrics.Component.ENGINE, "compressor", Metrics.BYTES_IN, 200L);
+            Metrics.count(Metrics.Component.ENGINE, "compressor", Metrics.BYTES_OUT, 50L);
+            Metrics.record(Metrics.Component.ENGINE, "compressor", Metrics.LATENCY, 10L);
+
+            final ObjectName compressor = new ObjectName("com.github.wuic:type=engine,name=\"compressor\"");
+            Assert.assertEquals(25L, server.getAttribute(compressor, "ratio"));
+            Assert.assertEquals(1L, server.getAttribute(compressor, Metrics.LATENCY + ".count"));
+            Assert.assertEquals(8, server.getMBeanInfo(compressor).getAttributes().length);
+        } finally {
+            Metrics.setRegistry(null);
+            registry.unregisterAll();
+            engine.shutdown();
+        }
+
+        Assert.assertFalse(server.isRegistered(cache));
+    }
+
+    /**
+     * <p>
+     * Checks that the gauges of each cache are exposed separately, even if created before the registry is installed,
+     * and released when the cache is shutdown.
+     * </p>
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void gaugeLifecycleTest() throws Exception {
+        final MemoryMapCacheEngine first = new MemoryMapCacheEngine(true, -1, false);
+        final MemoryMapCacheEngine second = new MemoryMapCacheEngine(true, -1, false);
+        putToCache(first);
+
+        final MBeanServer server = MBeanServerFactory.newMBeanServer();
+        final JmxMetricRegistry registry = new JmxMetricRegistry(server);
+        Metrics.setRegistry(registry);
+
+        try {
+            Assert.assertFalse(first.getMetricName().equals(second.getMetricName()));
+            Assert.assertEquals(1L, server.getAttribute(cacheName(first), "entries"));
+            Assert.assertEquals(0L, server.getAttribute(cacheName(second), "entries"));
+
+            // The engine is not referenced by the registry anymore
+            second.shutdown();
+            Assert.assertFalse(server.isRegistered(cacheName(second)));
+            Assert.assertEquals(1L, server.getAttribute(cacheName(first), "entries"));
+
+            // Not registered again with a new registry
+            final MBeanServer other = MBeanServerFactory.newMBeanServer();
+            Metrics.setRegistry(new JmxMetricRegistry(other));
+            Assert.assertTrue(other.isRegistered(cacheName(first)));
+            Assert.assertFalse(other.isRegistered(cacheName(second)));
+        } finally {
+            Metrics.setRegistry(null);
+            registry.unregisterAll();
+            first.shutdown();
+        }
+    }
+
+    /**
+     * <p>
+     * Puts an entry in the given cache.
+     * </p>
+     *
+     * @param engine the cache
+     * @throws Exception if the entry can't be put
+     */
+    private static void putToCache(final MemoryMapCacheEngine engine) throws Exception {
+        final Map<String, Nut> nuts = new HashMap<String, Nut>();
+        nuts.put("foo.js", Mockito.mock(Nut.class));
+        engine.putToCache(new EngineRequest.Key("wid", Arrays.asList(Mockito.mock(Nut.class))),
+                new AbstractCacheEngine.CacheResult(null, nuts));
+    }
+
+    /**
+     * <p>
+     * Gets the name of the MBean of the given cache.
+     * </p>
+     *
+     * @param engine the cache
+     * @return the object name
+     * @throws Exception if the name is not valid
+     */
+    private static ObjectName cacheName(final AbstractCacheEngine engine) throws Exception {
+        return new ObjectName(String.format("com.github.wuic:type=cache,name=%s", ObjectName.quote(engine.getMetricName())));
+    }
+
+    /**
+     * <p>
+     * Checks that sampled processings are recorded as span trees.
+     * </p>
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void traceTest() throws Exception {
+        Tracer.setSampling(1d);
+
+        try {
+            final Span root = Tracer.startTrace("workflow", "foo.js");
+            final Span engine = Tracer.begin("engine", "foo.js");
+            Tracer.tag("cache", "miss");
+            Thread.sleep(10L);
+            Tracer.end(engine);
+            Tracer.end(root);
+
+            Assert.assertFalse(Tracer.isTracing());
+            final List<Trace> recent = Tracer.getBuffer().recent(1);
+            Assert.assertEquals(1, recent.size());
+            Assert.assertSame(root, recent.get(0).getRoot());
+            Assert.assertEquals("miss", root.getChildren().get(0).getTags().get("cache"));
+            Assert.assertTrue(root.getDuration() >= engine.getDuration());
+
+            // Not traced
+            Assert.assertNull(Tracer.begin("engine", "foo.js"));
+            Tracer.setSampling(0d);
+            Assert.assertNull(Tracer.startTrace("workflow", "foo.js"));
+        } finally {
+            Tracer.setSampling(0d);
+        }
+    }
+
+    /**
+     * <p>
+     * Checks that the oldest traces are overwritten and the slowest retrieved.
+     * </p>
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void traceBufferTest() throws Exception {
+        Tracer.setSampling(1d);
+
+        try {
+            final TraceBuffer buffer = new TraceBuffer(2);
+            final Span slow = Tracer.startTrace("slow", null);
+            Thread.sleep(20L);
+            Tracer.end(slow);
+
+            for (final Trace trace : Tracer.getBuffer().recent(1)) {
+                buffer.add(trace);
+                buffer.add(trace);
+            }
+
+            Assert.assertEquals(2, buffer.recent(10).size());
+
+            final Span fast = Tracer.startTrace("fast", null);
+            Tracer.end(fast);
+            buffer.add(Tracer.getBuffer().recent(1).get(0));
+
+            Assert.assertEquals(2, buffer.recent(10).size());
+            Assert.assertSame(slow, buffer.slowest(1).get(0).getRoot());
+        } finally {
+            Tracer.setSampling(0d);
+        }
+    }
+}
@@ -39,16 +39,28 @@
 package com.github.wuic.test;
 
 import com.github.wuic.NutType;
+import com.github.wuic.engine.EngineRequest;
+import com.github.wuic.engine.EngineType;
+import com.github.wuic.engine.NodeEngine;
+import com.github.wuic.engine.impl.embedded.MemoryMapCacheEngine;
 import com.github.wuic.exception.wrapper.BadArgumentException;
 import com.github.wuic.exception.wrapper.StreamException;
 import com.github.wuic.nut.*;
+import com.github.wuic.nut.core.ByteArrayNut;
+import com.github.wuic.nut.core.DiskNutDao;
+import com.github.wuic.util.NutUtils;
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.math.BigInteger;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -64,7 +76,7 @@ import java.util.concurrent.atomic.AtomicInteger;
  * </p>
  *
  * @author Guillaume DROUET
- * @version 1.2
+ * @version 1.4
  * @since 0.4.0
  */
 @RunWith(JUnit4.class)
@@ -226,6 +238,348 @@ public class NutsHeapTest {
         Assert.assertEquals(count.intValue(), 3);
     }
 
+    /**
+     * <p>
+     * Test that only the updated nut is created again and that its path is notified.
+     * </p>
+     *
+     * @throws Exception is test fails
+     */
+    @Test
+    public void pathNotificationTest() throws Exception {
+        final MockNutDao dao = new MockNutDao(1);
+        dao.mockPaths.put("a.js", 1L);
+        dao.mockPaths.put("b.js", 1L);
+        final NutsHeap heap = new NutsHeap(Arrays.asList(".*"), dao, "");
+        final Nut a = NutUtils.findByName(heap.getNuts(), "a.js");
+        final List<Set<String>> notified = new ArrayList<Set<String>>();
+
+        heap.addObserver(new HeapChangeListener() {
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public void nutsUpdated(final NutsHeap heap, final Set<String> paths) {
+                synchronized (notified) {
+                    notified.add(paths);
+                }
+            }
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public void nutUpdated(final NutsHeap heap) {
+                synchronized (notified) {
+                    notified.add(null);
+                }
+            }
+        });
+
+        dao.mockPaths.put("b.js", 2L);
+        Thread.sleep(2500L);
+
+        synchronized (notified) {
+            Assert.assertEquals(1, notified.size());
+            Assert.assertEquals(Collections.singleton("b.js"), notified.get(0));
+        }
+
+        // Unchanged nut is kept, updated one has a new version
+        Assert.assertSame(a, NutUtils.findByName(heap.getNuts(), "a.js"));
+        Assert.assertEquals(new BigInteger("2"), NutUtils.findByName(heap.getNuts(), "b.js").getVersionNumber());
+    }
+
+    /**
+     * <p>
+     * Test that a change in a nut created through a heap, like a stylesheet imported by a stylesheet of the heap, is
+     * detected even if it happens before the first polling operation, and that observing it does not prevent the
+     * changes of the heap's own nuts from being detected.
+     * </p>
+     *
+     * @throws Exception is test fails
+     */
+    @Test
+    public void createdNutNotificationTest() throws Exception {
+        final File dir = newDirectory();
+        final long timestamp = 1400000000000L;
+        final File a = write(new File(dir, "a.css"), "@import url(\"b.css\");", timestamp);
+        final File b = write(new File(dir, "b.css"), ".b {}", timestamp);
+
+        final DiskNutDao dao = new DiskNutDao(dir.getAbsolutePath(), false, null, 1, false, false);
+        final NutsHeap heap = new NutsHeap(Arrays.asList("a.css"), dao, "heap");
+        final List<Set<String>> notified = observe(heap);
+
+        try {
+            // Creates the imported nut like an inspector does, with a copy of the heap
+            final Nut nut = heap.getNuts().get(0);
+            final NutsHeap copy = new NutsHeap(heap);
+            copy.setNutDao(heap.withRootPath("", nut), nut);
+            Assert.assertEquals(1, copy.create(nut, "b.css", NutDao.PathFormat.RELATIVE_FILE).size());
+
+            // Edited before the first polling operation
+            write(b, ".b { color: red; }", timestamp + 1000L);
+            Assert.assertEquals(Collections.singleton("b.css"), awaitNotification(notified, 1));
+
+            write(a, "@import url(\"b.css\");\n.a {}", timestamp + 2000L);
+            Assert.assertEquals(Collections.singleton("a.css"), awaitNotification(notified, 2));
+        } finally {
+            dao.shutdown();
+        }
+    }
+
+    /**
+     * <p>
+     * Test that editing an image referenced by a stylesheet drops only the cache entry depending on it, and that the
+     * image is not observed anymore when the stylesheet referencing it is updated.
+     * </p>
+     *
+     * @throws Exception is test fails
+     */
+    @Test
+    public void createdNutInvalidationTest() throws Exception {
+        final File dir = newDirectory();
+        final long timestamp = 1400000000000L;
+        final File a = write(new File(dir, "a.css"), ".a { background: url('img.png'); }", timestamp);
+        write(new File(dir, "c.css"), ".c {}", timestamp);
+        final File img = write(new File(dir, "img.png"), "png", timestamp);
+
+        final DiskNutDao dao = new DiskNutDao(dir.getAbsolutePath(), false, null, 1, false, false);
+        final NutsHeap heap = new NutsHeap(Arrays.asList("a.css", "c.css"), dao, "heap");
+        final List<Set<String>> notified = observe(heap);
+        final Map<String, AtomicInteger> counts = new HashMap<String, AtomicInteger>();
+        counts.put("a.css", new AtomicInteger());
+        counts.put("c.css", new AtomicInteger());
+
+        // Inspector creating the image referenced by 'a.css'
+        final NodeEngine engine = Mockito.mock(NodeEngine.class);
+        Mockito.when(engine.getEngineType()).thenReturn(EngineType.INSPECTOR);
+        Mockito.when(engine.parse(Mockito.any(EngineRequest.class))).then(new Answer<Object>() {
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public Object answer(final InvocationOnMock invocationOnMock) throws Throwable {
+                final EngineRequest request = (EngineRequest) invocationOnMock.getArguments()[0];
+                final List<Nut> retval = new ArrayList<Nut>();
+
+                for (final Nut nut : request.getNuts()) {
+                    counts.get(nut.getName()).incrementAndGet();
+                    final Nut inspected = new ByteArrayNut(new byte[0], nut.getName(), NutType.CSS, Arrays.asList(nut));
+
+                    if ("a.css".equals(nut.getName())) {
+                        final NutsHeap copy = new NutsHeap(request.getHeap());
+                        copy.setNutDao(request.getHeap().withRootPath("", nut), nut);
+
+                        for (final Nut ref : copy.create(nut, "img.png", NutDao.PathFormat.RELATIVE_FILE)) {
+                            inspected.addReferencedNut(ref);
+                        }
+                    }
+
+                    retval.add(inspected);
+                }
+
+                return retval;
+            }
+        });
+
+        final Map<NutType, NodeEngine> chains = new HashMap<NutType, NodeEngine>();
+        chains.put(NutType.CSS, engine);
+        final MemoryMapCacheEngine cache = new MemoryMapCacheEngine(true, -1, false);
+        final EngineRequest request = new EngineRequest("wid", "", heap, chains);
+        final EngineRequest requestA = new EngineRequest(Arrays.asList(NutUtils.findByName(heap.getNuts(), "a.css")), request);
+        final EngineRequest requestC = new EngineRequest(Arrays.asList(NutUtils.findByName(heap.getNuts(), "c.css")), request);
+
+        try {
+            cache.parse(requestA);
+            cache.parse(requestC);
+            Assert.assertEquals(1, counts.get("a.css").get());
+            Assert.assertEquals(1, counts.get("c.css").get());
+            Assert.assertTrue(isObserved(dao, "img.png"));
+
+            // Only the entry referencing the image is computed again
+            write(img, "new png", timestamp + 1000L);
+            Assert.assertEquals(Collections.singleton("img.png"), awaitNotification(notified, 1));
+            cache.parse(requestA);
+            cache.parse(requestC);
+            Assert.assertEquals(2, counts.get("a.css").get());
+            Assert.assertEquals(1, counts.get("c.css").get());
+
+            // The stylesheet does not reference the image anymore
+            write(a, ".a {}", timestamp + 2000L);
+            Assert.assertEquals(Collections.singleton("a.css"), awaitNotification(notified, 2));
+            Assert.assertFalse(isObserved(dao, "img.png"));
+        } finally {
+            dao.shutdown();
+            cache.shutdown();
+        }
+    }
+
+    /**
+     * <p>
+     * Test that the first polling operation is the reference of a created nut when the DAO computes version numbers
+     * from the content.
+     * </p>
+     *
+     * @throws Exception is test fails
+     */
+    @Test
+    public void contentBasedCreatedNutTest() throws Exception {
+        final File dir = newDirectory();
+        final long timestamp = 1400000000000L;
+        write(new File(dir, "a.css"), "@import url(\"b.css\");", timestamp);
+        final File b = write(new File(dir, "b.css"), ".b {}", timestamp);
+
+        final DiskNutDao dao = new DiskNutDao(dir.getAbsolutePath(), false, null, 1, false, true);
+        final NutsHeap heap = new NutsHeap(Arrays.asList("a.css"), dao, "heap");
+        final List<Set<String>> notified = observe(heap);
+
+        try {
+            final Nut nut = heap.getNuts().get(0);
+            final NutsHeap copy = new NutsHeap(heap);
+            copy.setNutDao(heap.withRootPath("", nut), nut);
+            Assert.assertEquals(1, copy.create(nut, "b.css", NutDao.PathFormat.RELATIVE_FILE).size());
+
+            // The content hash is not a timestamp: nothing is updated until a file changes
+            Thread.sleep(2500L);
+
+            synchronized (notified) {
+                Assert.assertTrue(notified.toString(), notified.isEmpty());
+            }
+
+            write(b, ".b { color: red; }", timestamp + 1000L);
+            Assert.assertEquals(Collections.singleton("b.css"), awaitNotification(notified, 1));
+        } finally {
+            dao.shutdown();
+        }
+    }
+
+    /**
+     * <p>
+     * Creates an empty directory.
+     * </p>
+     *
+     * @return the directory
+     * @throws Exception if the directory can't be created
+     */
+    private File newDirectory() throws Exception {
+        final File retval = File.createTempFile("wuic", "heap");
+        Assert.assertTrue(retval.delete());
+        Assert.assertTrue(retval.mkdir());
+        retval.deleteOnExit();
+        return retval;
+    }
+
+    /**
+     * <p>
+     * Observes the given heap. A {@code null} element is added to the returned list when all the nuts are notified,
+     * otherwise the notified paths are added.
+     * </p>
+     *
+     * @param heap the heap
+     * @return the notifications
+     * @throws Exception if the heap can't be observed
+     */
+    private List<Set<String>> observe(final NutsHeap heap) throws Exception {
+        final List<Set<String>> notified = new ArrayList<Set<String>>();
+
+        heap.addObserver(new HeapChangeListener() {
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public void nutsUpdated(final NutsHeap heap, final Set<String> paths) {
+                synchronized (notified) {
+                    notified.add(paths);
+                }
+            }
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public void nutUpdated(final NutsHeap heap) {
+                synchronized (notified) {
+                    notified.add(null);
+                }
+            }
+        });
+
+        return notified;
+    }
+
+    /**
+     * <p>
+     * Indicates if the given path is observed by a listener of the given DAO.
+     * </p>
+     *
+     * @param dao the DAO
+     * @param path the path
+     * @return {@code true} if the path is observed, {@code false} otherwise
+     */
+    private boolean isObserved(final DiskNutDao dao, final String path) {
+        for (final AbstractNutDao.Polling polling : dao.getNutObservers().values()) {
+            if (polling.getPatterns().contains(path)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * <p>
+     * Writes the given content in the given file and sets its timestamp.
+     * </p>
+     *
+     * @param file the file
+     * @param content the content
+     * @param timestamp the timestamp
+     * @return the file
+     * @throws Exception if the file can't be written
+     */
+    private File write(final File file, final String content, final long timestamp) throws Exception {
+        final OutputStream os = new FileOutputStream(file);
+
+        try {
+            os.write(content.getBytes());
+        } finally {
+            os.close();
+        }
+
+        Assert.assertTrue(file.setLastModified(timestamp));
+        file.deleteOnExit();
+        return file;
+    }
+
+    /**
+     * <p>
+     * Waits until the given number of notifications is received and returns the last one.
+     * </p>
+     *
+     * @param notified the notifications
+     * @param count the expected number of notifications
+     * @return the last notification
+     * @throws Exception if the notification is not received
+     */
+    private Set<String> awaitNotification(final List<Set<String>> notified, final int count) throws Exception {
+        for (int i = 0; i < 50; i++) {
+            synchronized (notified) {
+                if (notified.size() >= count) {
+                    Assert.assertEquals(count, notified.size());
+                    return notified.get(count - 1);
+                }
+            }
+
+            Thread.sleep(100L);
+        }
+
+        Assert.fail("No notification received");
+        return null;
+    }
+
     /**
      * Test when different extensions are defined.
      *
@@ -39,14 +39,21 @@
 package com.github.wuic.test;
 
 import com.github.wuic.NutType;
+import com.github.wuic.exception.wrapper.BadArgumentException;
 import com.github.wuic.exception.wrapper.StreamException;
 import com.github.wuic.nut.Nut;
+import com.github.wuic.nut.core.ByteArrayNut;
 import com.github.wuic.nut.core.CompositeNut;
 import com.github.wuic.util.CollectionUtils;
+import com.github.wuic.util.ConsistentHashRing;
+import com.github.wuic.util.DemandPrioritizedQueue;
 import com.github.wuic.util.HtmlUtil;
 import com.github.wuic.util.IOUtils;
 import com.github.wuic.util.NutUtils;
+import com.github.wuic.util.PathMatcher;
+import com.github.wuic.util.PreloadPolicy;
 import com.github.wuic.util.StringUtils;
+import com.github.wuic.util.WuicScheduledThreadPool;
 import com.github.wuic.path.DirectoryPath;
 import junit.framework.Assert;
 import org.junit.Test;
@@ -58,11 +65,20 @@ import java.io.File;
 import java.io.IOException;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.List;
 import java.util.Set;
 import java.util.HashSet;
 import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Pattern;
 
 /**
@@ -71,7 +87,7 @@ import java.util.regex.Pattern;
  * </p>
  * 
  * @author Guillaume DROUET
- * @version 1.3
+ * @version 1.11
  * @since 0.3.4
  */
 @RunWith(JUnit4.class)
@@ -410,6 +426,69 @@ public class UtilityTest extends WuicTest {
         Assert.assertTrue(HtmlUtil.getUrl(nut, "myPath").contains("http://proxy.fr/foo.css"));
     }
 
+    /**
+     * <p>
+     * Tests base64 encoding with and without padding.
+     * </p>
+     */
+    @Test
+    public void encodeBase64Test() {
+        Assert.assertEquals("", StringUtils.encodeBase64(new byte[0]));
+        Assert.assertEquals("Zg==", StringUtils.encodeBase64("f".getBytes()));
+        Assert.assertEquals("Zm8=", StringUtils.encodeBase64("fo".getBytes()));
+        Assert.assertEquals("Zm9v", StringUtils.encodeBase64("foo".getBytes()));
+        Assert.assertEquals("Zm9vYmFy", StringUtils.encodeBase64("foobar".getBytes()));
+        Assert.assertEquals("/w==", StringUtils.encodeBase64(new byte[] { -1 }));
+    }
+
+    /**
+     * <p>
+     * Tests the selection of the referenced nuts to preload and the generated hints.
+     * </p>
+     */
+    @Test
+    public void preloadTest() {
+        final Nut small = new ByteArrayNut(new byte[10], "small.woff", NutType.WOFF, new BigInteger("1"));
+        final Nut big = new ByteArrayNut(new byte[100], "big.ttf", NutType.TTF, new BigInteger("1"));
+        final Nut image = new ByteArrayNut(new byte[10], "image.png", NutType.PNG, new BigInteger("1"));
+        final Nut css = new ByteArrayNut(new byte[10], "foo.css", NutType.CSS, new BigInteger("1"));
+        final Nut unknown = Mockito.mock(Nut.class);
+        Mockito.when(unknown.getName()).thenReturn("unknown.woff");
+        Mockito.when(unknown.getNutType()).thenReturn(NutType.WOFF);
+        css.addReferencedNut(small);
+        css.addReferencedNut(big);
+        css.addReferencedNut(image);
+        css.addReferencedNut(unknown);
+        css.addReferencedNut(small);
+
+        // Only small fonts, the size of a nut not read in memory can't be checked
+        final PreloadPolicy policy = PreloadPolicy.parse("WOFF|ttf|MAP", "50");
+        Assert.assertTrue(policy.isEnabled());
+        Assert.assertEquals(Arrays.asList(small), policy.select(Arrays.asList(css)));
+        final List<Nut> unlimited = PreloadPolicy.parse("WOFF|ttf", null).select(Arrays.asList(css));
+        Assert.assertEquals(3, unlimited.size());
+        Assert.assertTrue(unlimited.containsAll(Arrays.asList(small, big, unknown)));
+        Assert.assertTrue(PreloadPolicy.parse("PNG", null).select(Arrays.asList(css)).contains(image));
+        Assert.assertFalse(PreloadPolicy.parse(null, null).isEnabled());
+        Assert.assertFalse(PreloadPolicy.parse("MAP", null).isEnabled());
+        Assert.assertTrue(PreloadPolicy.NONE.select(Arrays.asList(css)).isEmpty());
+
+        Assert.assertEquals("<link rel=\"preload\" href=\"myPath/1/small.woff\" as=\"font\" crossorigin=\"anonymous\" />",
+                HtmlUtil.preloadImport(small, "myPath"));
+        Assert.assertEquals("<myPath/1/image.png>; rel=preload; as=image", HtmlUtil.preloadHeader(image, "myPath"));
+        Assert.assertEquals("<myPath/1/small.woff>; rel=preload; as=font; crossorigin", HtmlUtil.preloadHeader(small, "myPath"));
+    }
+
+    /**
+     * <p>
+     * Tests that an invalid type to preload is rejected.
+     * </p>
+     */
+    @Test(expected = BadArgumentException.class)
+    public void preloadBadTypeTest() {
+        PreloadPolicy.parse("FOO", null);
+    }
+
     /**
      * Tests nut type identification.
      */
@@ -424,4 +503,313 @@ public class UtilityTest extends WuicTest {
         nutType = NutType.getNutTypeForMimeType("bad-mime-type");
         Assert.assertNull(nutType);
     }
+
+    /**
+     * <p>
+     * Tests that a busy lane does not prevent other lanes to execute their tasks.
+     * </p>
+     *
+     * @throws Exception if test fails
+     */
+    @Test(timeout = 5000)
+    public void laneIsolationTest() throws Exception {
+        final WuicScheduledThreadPool pool = WuicScheduledThreadPool.getInstance();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        final Future<String> processing = pool.executeAsap(WuicScheduledThreadPool.Lane.PROCESSING, new Callable<String>() {
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public String call() throws Exception {
+                started.countDown();
+                release.await();
+                return Thread.currentThread().getName();
+            }
+        });
+
+        started.await();
+        Assert.assertTrue(pool.getActiveThreads(WuicScheduledThreadPool.Lane.PROCESSING) > 0);
+
+        // Polling lane is not affected by the running task
+        final Future<String> polling = pool.executeAsap(WuicScheduledThreadPool.Lane.POLLING, new Callable<String>() {
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public String call() throws Exception {
+                return Thread.currentThread().getName();
+            }
+        });
+
+        Assert.assertTrue(polling.get(1, TimeUnit.SECONDS).startsWith("wuic-polling-"));
+        release.countDown();
+        Assert.assertTrue(processing.get().startsWith("wuic-processing-"));
+    }
+
+    /**
+     * <p>
+     * Tests that a delayed task submitted to a full lane is postponed instead of being run by the timer thread.
+     * </p>
+     *
+     * @throws Exception if test fails
+     */
+    @Test(timeout = 10000)
+    public void fullLaneTimerTest() throws Exception {
+        final WuicScheduledThreadPool pool = WuicScheduledThreadPool.getInstance();
+        final WuicScheduledThreadPool.Lane lane = WuicScheduledThreadPool.Lane.IO;
+        final Thread caller = Thread.currentThread();
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicBoolean full = new AtomicBoolean(false);
+
+        // Fill the threads and the queue of the lane until the caller runs the task itself
+        while (!full.get()) {
+            pool.executeAsap(lane, new Callable<Void>() {
+
+                /**
+                 * {@inheritDoc}
+                 */
+                @Override
+                public Void call() throws Exception {
+                    if (Thread.currentThread() == caller) {
+                        full.set(true);
+                    } else {
+                        release.await();
+                    }
+
+                    return null;
+                }
+            });
+        }
+
+        final long rejected = pool.getRejectedTasks(lane);
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicReference<String> thread = new AtomicReference<String>();
+
+        pool.executeOnceInSeconds(lane, new Runnable() {
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public void run() {
+                thread.set(Thread.currentThread().getName());
+                done.countDown();
+            }
+        }, 1);
+
+        // Wait for the trigger to be rejected, a thread of the lane may also have been released by a previous test
+        for (int i = 0; i < 200 && pool.getRejectedTasks(lane) == rejected; i++) {
+            Thread.sleep(10L);
+        }
+
+        release.countDown();
+        done.await();
+        Assert.assertTrue(thread.get(), thread.get().startsWith("wuic-io-"));
+    }
+
+    /**
+     * <p>
+     * Tests that pending jobs of a {@link DemandPrioritizedQueue} are run by order of demand.
+     * </p>
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void demandPrioritizedQueueTest() throws Exception {
+        final WuicScheduledThreadPool pool = WuicScheduledThreadPool.getInstance();
+        final int threads = pool.getMaxThreads(WuicScheduledThreadPool.Lane.WARM_UP);
+        final CountDownLatch started = new CountDownLatch(threads);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        // Keep all threads of the lane busy so submitted jobs stay pending
+        for (int i = 0; i < threads; i++) {
+            pool.executeAsap(WuicScheduledThreadPool.Lane.WARM_UP, new Callable<Void>() {
+
+                /**
+                 * {@inheritDoc}
+                 */
+                @Override
+                public Void call() throws Exception {
+                    started.countDown();
+                    release.await();
+                    return null;
+                }
+            });
+        }
+
+        started.await();
+
+        try {
+            final List<String> executed = new CopyOnWriteArrayList<String>();
+            final DemandPrioritizedQueue<String, String> queue =
+                    new DemandPrioritizedQueue<String, String>(WuicScheduledThreadPool.Lane.WARM_UP);
+            final Future<String> rare = queue.submit("rare", new Job("rare", executed));
+            final Future<String> home = queue.submit("home", new Job("home", executed));
+            final Future<String> cancelled = queue.submit("cancelled", new Job("cancelled", executed));
+            final Future<String> other = queue.submit("other", new Job("other", executed));
+
+            for (int i = 0; i < 3; i++) {
+                queue.hit("home");
+            }
+
+            queue.hit("other");
+            queue.hit("other");
+            queue.hit("cancelled");
+
+            // Same key is processed once
+            Assert.assertSame(home, queue.submit("home", new Job("duplicate", executed)));
+            Assert.assertEquals(Arrays.asList("home", "other", "cancelled", "rare"), queue.pendingByPriority());
+
+            Assert.assertTrue(queue.cancel("cancelled"));
+            Assert.assertTrue(cancelled.isCancelled());
+            Assert.assertFalse(queue.cancel("cancelled"));
+
+            // A thread waiting for a result does not wait for the lane
+            Assert.assertTrue(queue.runIfPending("rare"));
+            Assert.assertEquals("rare", rare.get(1, TimeUnit.SECONDS));
+
+            release.countDown();
+            Assert.assertEquals("home", home.get(1, TimeUnit.SECONDS));
+            Assert.assertEquals("other", other.get(1, TimeUnit.SECONDS));
+            Assert.assertEquals(3, executed.size());
+            Assert.assertFalse(executed.contains("cancelled"));
+        } finally {
+            // Never keep the lane blocked
+            release.countDown();
+        }
+    }
+
+    /**
+     * <p>
+     * Tests that a {@link ConsistentHashRing} distributes keys according to the weights and only moves the keys of a
+     * removed node.
+     * </p>
+     */
+    @Test
+    public void consistentHashRingTest() {
+        final ConsistentHashRing ring = new ConsistentHashRing("a", "b;weight=2", "c");
+        final ConsistentHashRing withoutC = new ConsistentHashRing("a", "b;weight=2");
+        final Map<String, Integer> count = new HashMap<String, Integer>();
+        final int keys = 20000;
+
+        for (int i = 0; i < keys; i++) {
+            final String key = "key" + i;
+            final String node = ring.select(key);
+            Assert.assertEquals(node, ring.select(key));
+            count.put(node, count.containsKey(node) ? count.get(node) + 1 : 1);
+
+            // Only keys of the removed node are remapped
+            if (!"c".equals(node)) {
+                Assert.assertEquals(node, withoutC.select(key));
+            }
+        }
+
+        Assert.assertEquals(Arrays.asList("a", "b", "c"), Arrays.asList(ring.getNodes()));
+
+        // Expect 1/4, 1/2 and 1/4 of the keys with a 20% tolerance
+        Assert.assertEquals(keys / 4, count.get("a").doubleValue(), keys / 20);
+        Assert.assertEquals(keys / 2, count.get("b").doubleValue(), keys / 10);
+        Assert.assertEquals(keys / 4, count.get("c").doubleValue(), keys / 20);
+    }
+
+    /**
+     * <p>
+     * Tests that an invalid weight is rejected.
+     * </p>
+     */
+    @Test(expected = BadArgumentException.class)
+    public void consistentHashRingBadWeightTest() {
+        new ConsistentHashRing("a;weight=0");
+    }
+
+    /**
+     * <p>
+     * Tests that a {@link PathMatcher} gives the same result as each pattern tested separately.
+     * </p>
+     */
+    @Test
+    public void pathMatcherTest() {
+        final List<String> patterns = Arrays.asList(
+                "js/app.js", ".*\\.min\\.js", "css/.*\\.css", "css/theme/.*", "cs?s/print\\.css", "(a)b\\1", "(?i)IMG/.*", "js/app.js");
+        final PathMatcher matcher = PathMatcher.compile(patterns, true);
+        Assert.assertEquals(patterns.size() - 1, matcher.getPatterns().size());
+        Assert.assertSame(matcher, PathMatcher.compile(patterns, true));
+
+        for (final String path : Arrays.asList("js/app.js", "js/lib.min.js", "css/theme/dark.css", "s/print.css",
+                "css/print.css", "aba", "abb", "img/logo.png", "js/app.jsx", "", "css")) {
+            final List<String> expected = new ArrayList<String>();
+
+            for (final String pattern : matcher.getPatterns()) {
+                if (Pattern.compile(pattern).matcher(path).matches()) {
+                    expected.add(pattern);
+                }
+            }
+
+            Assert.assertEquals(path, expected, matcher.matching(path));
+            Assert.assertEquals(path, !expected.isEmpty(), matcher.matches(path));
+        }
+    }
+
+    /**
+     * <p>
+     * Tests that literal patterns are not interpreted as regex.
+     * </p>
+     */
+    @Test
+    public void pathMatcherLiteralTest() {
+        final PathMatcher matcher = PathMatcher.compile(Arrays.asList("a.js", "b/*.css"), false);
+        Assert.assertTrue(matcher.matches("a.js"));
+        Assert.assertTrue(matcher.matches("b/*.css"));
+        Assert.assertFalse(matcher.matches("abjs"));
+        Assert.assertFalse(matcher.matches("b/c.css"));
+        Assert.assertEquals(Arrays.asList("b/*.css"), matcher.matching("b/*.css"));
+    }
+
+    /**
+     * <p>
+     * A job recording its execution.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @version 1.0
+     * @since 0.5.0
+     */
+    private static final class Job implements Callable<String> {
+
+        /**
+         * The job name.
+         */
+        private final String name;
+
+        /**
+         * The executed jobs.
+         */
+        private final List<String> executed;
+
+        /**
+         * <p>
+         * Builds a new instance.
+         * </p>
+         *
+         * @param n the name
+         * @param e the executed jobs
+         */
+        private Job(final String n, final List<String> e) {
+            name = n;
+            executed = e;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String call() {
+            executed.add(name);
+            return name;
+        }
+    }
 }
@@ -44,6 +44,7 @@ import com.github.wuic.nut.AbstractNutDao;
 import com.github.wuic.nut.Nut;
 import com.github.wuic.nut.NutDao;
 import com.github.wuic.nut.NutDaoListener;
+import com.github.wuic.nut.NutDaoListenerAdapter;
 import junit.framework.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -57,10 +58,15 @@ import static org.mockito.Mockito.when;
 import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * <p>
@@ -68,7 +74,7 @@ import java.util.concurrent.atomic.AtomicInteger;
  * </p>
  *
  * @author Guillaume DROUET
- * @version 1.2
+ * @version 1.5
  * @since 0.4.0
  */
 @RunWith(JUnit4.class)
@@ -208,15 +214,13 @@ public class AbstractNutDaoTest {
             }
 
             @Override
-            public boolean nutPolled(final NutDao dao, final String path, final Long timestamp) {
+            public void nutsPolled(final NutDao dao, final Map<String, Long> timestamps) {
                 logger.info("Nut updated");
                 synchronized (AbstractNutDaoTest.class) {
                     if (count.incrementAndGet() > 1) {
                         AbstractNutDaoTest.class.notify();
                     }
                 }
-
-                return true;
             }
         });
 
@@ -249,13 +253,11 @@ public class AbstractNutDaoTest {
             }
 
             @Override
-            public boolean nutPolled(NutDao dao, String path, Long timestamp) {
+            public void nutsPolled(final NutDao dao, final Map<String, Long> timestamps) {
                 logger.info("Nut updated");
                 synchronized (AbstractNutDaoTest.class) {
                     count.incrementAndGet();
                 }
-
-                return true;
             }
         });
 
@@ -292,8 +294,8 @@ public class AbstractNutDaoTest {
             }
 
             @Override
-            public boolean nutPolled(final NutDao dao, final String path, final Long timestamp) {
-                return true;
+            public void nutsPolled(final NutDao dao, final Map<String, Long> timestamps) {
+                // Nothing to do
             }
         };
 
@@ -304,6 +306,287 @@ public class AbstractNutDaoTest {
         Assert.assertEquals(count.intValue(), 2);
     }
 
+    /**
+     * <p>
+     * Tests that a listener throwing an exception does not prevent the other listeners from being notified.
+     * </p>
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void failingListenerTest() throws Exception {
+        final MockNutDaoTest dao = new MockNutDaoTest(false);
+        final AtomicInteger count = new AtomicInteger(0);
+
+        dao.observe("1", new NutDaoListener() {
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public boolean polling(final Set<String> paths) {
+                throw new IllegalStateException("before polling");
+            }
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public void nutsPolled(final NutDao dao, final Map<String, Long> timestamps) {
+                Assert.fail("Excluded when polling fails");
+            }
+        });
+
+        dao.observe("1", new NutDaoListener() {
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public boolean polling(final Set<String> paths) {
+                return true;
+            }
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public void nutsPolled(final NutDao dao, final Map<String, Long> timestamps) {
+                throw new IllegalStateException("when notified");
+            }
+        });
+
+        dao.observe("1", new NutDaoListener() {
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public boolean polling(final Set<String> paths) {
+                return true;
+            }
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public void nutsPolled(final NutDao dao, final Map<String, Long> timestamps) {
+                count.addAndGet(timestamps.size());
+            }
+        });
+
+        dao.run();
+        Assert.assertEquals(1, count.get());
+    }
+
+    /**
+     * <p>
+     * Tests that a listener notified path by path is notified until it asks to stop.
+     * </p>
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    @SuppressWarnings("deprecation")
+    public void listenerAdapterTest() throws Exception {
+        final MockNutDaoTest dao = new MockNutDaoTest(false) {
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            protected List<String> listNutsPaths(final String pattern) throws StreamException {
+                return Arrays.asList(pattern);
+            }
+        };
+
+        final List<String> polled = new ArrayList<String>();
+
+        final NutDaoListener listener = new NutDaoListenerAdapter() {
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public boolean polling(final Set<String> paths) {
+                return true;
+            }
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public boolean nutPolled(final NutDao dao, final String path, final Long timestamp) {
+                Assert.assertNotNull(timestamp);
+                polled.add(path);
+                return polled.size() < 2;
+            }
+        };
+
+        dao.observe("1", listener);
+        dao.observe("2", listener);
+        dao.observe("3", listener);
+        dao.run();
+
+        // The listener asks to stop after the second path
+        Assert.assertEquals(2, polled.size());
+    }
+
+    /**
+     * <p>
+     * Tests that polling interleave is increased when nothing changes and tightened when a change is detected.
+     * </p>
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void adaptivePollingTest() throws Exception {
+        final AtomicLong timestamp = new AtomicLong(1L);
+        final AbstractNutDao dao = new MockNutDaoTest(60) {
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            protected Long getLastUpdateTimestampFor(final String path) throws StreamException {
+                return timestamp.get();
+            }
+        };
+
+        try {
+            dao.setMaxPollingInterleave(240);
+            dao.observe("", new NutDaoListener() {
+                @Override
+                public boolean polling(final Set<String> paths) {
+                    return true;
+                }
+
+                @Override
+                public void nutsPolled(final NutDao dao, final Map<String, Long> timestamps) {
+                    // Nothing to do
+                }
+            });
+
+            // Operations are run manually, the first operation detects the nuts
+            dao.run();
+            Assert.assertEquals(60, dao.getCurrentPollingInterleave());
+
+            // Back-off
+            dao.run();
+            Assert.assertEquals(120, dao.getCurrentPollingInterleave());
+            dao.run();
+            Assert.assertEquals(240, dao.getCurrentPollingInterleave());
+            dao.run();
+            Assert.assertEquals(240, dao.getCurrentPollingInterleave());
+
+            // Change detected
+            timestamp.set(2L);
+            dao.run();
+            Assert.assertEquals(60, dao.getCurrentPollingInterleave());
+        } finally {
+            dao.shutdown();
+        }
+    }
+
+    /**
+     * <p>
+     * Tests that observing a DAO is not blocked by a running polling operation and that each listener is notified once
+     * with all the polled paths.
+     * </p>
+     *
+     * @throws Exception if test fails
+     */
+    @Test(timeout = 5000)
+    public void nonBlockingPollingTest() throws Exception {
+        final CountDownLatch polling = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final MockNutDaoTest dao = new MockNutDaoTest(-1) {
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            protected List<String> listNutsPaths(final String pattern) throws StreamException {
+                return Arrays.asList("1.js", "2.js", "3.js", "4.js");
+            }
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            protected Long getLastUpdateTimestampFor(final String path) throws StreamException {
+                polling.countDown();
+
+                try {
+                    release.await();
+                } catch (InterruptedException ie) {
+                    throw new StreamException(new IOException(ie));
+                }
+
+                return 1L;
+            }
+        };
+
+        final List<Map<String, Long>> notified = new ArrayList<Map<String, Long>>();
+        final NutDaoListener listener = new NutDaoListener() {
+            @Override
+            public boolean polling(final Set<String> paths) {
+                return true;
+            }
+
+            @Override
+            public void nutsPolled(final NutDao dao, final Map<String, Long> timestamps) {
+                synchronized (notified) {
+                    notified.add(timestamps);
+                }
+            }
+        };
+
+        dao.observe("", listener);
+
+        final Thread thread = new Thread(dao);
+        thread.start();
+        polling.await();
+
+        // Polling is waiting for timestamps but new observers are accepted
+        dao.observe("1.js", listener);
+        dao.observe("", mock(NutDaoListener.class));
+        Assert.assertEquals(2, dao.getNutObservers().size());
+
+        release.countDown();
+        thread.join();
+
+        synchronized (notified) {
+            Assert.assertEquals(1, notified.size());
+            Assert.assertEquals(4, notified.get(0).size());
+        }
+    }
+
+    /**
+     * <p>
+     * Tests that a nut is always served by the same proxy and that a new version may be served by another one.
+     * </p>
+     */
+    @Test
+    public void proxyUriShardingTest() {
+        final AbstractNutDao dao = new MockNutDaoTest(-1);
+        final Set<String> proxies = new HashSet<String>();
+
+        for (int i = 0; i < 64; i++) {
+            final Nut nut = mock(Nut.class);
+            when(nut.getName()).thenReturn("nut" + i + ".js");
+            when(nut.getVersionNumber()).thenReturn(new BigInteger("1"));
+
+            final String uri = dao.proxyUriFor(nut);
+            Assert.assertEquals(uri, dao.proxyUriFor(nut));
+            Assert.assertTrue(uri.endsWith("/nut" + i + ".js"));
+            proxies.add(uri.substring(0, uri.indexOf('/')));
+        }
+
+        // All proxies are used
+        Assert.assertEquals(4, proxies.size());
+    }
+
     /**
      * Concurrent test.
      *
@@ -333,8 +616,8 @@ public class AbstractNutDaoTest {
                             }
 
                             @Override
-                            public boolean nutPolled(NutDao dao, String path, Long timestamp) {
-                                return false;
+                            public void nutsPolled(final NutDao dao, final Map<String, Long> timestamps) {
+                                // Nothing to do
                             }
                         });
 
@@ -0,0 +1,279 @@
+/*
+ * "Copyright (c) 2014   Capgemini Technology Services (hereinafter "Capgemini")
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * -   The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Any failure to comply with the above shall automatically terminate the license
+ * and be construed as a breach of these Terms of Use causing significant harm to
+ * Capgemini.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Capgemini shall not be used in
+ * advertising or otherwise to promote the use or other dealings in this Software
+ * without prior written authorization from Capgemini.
+ *
+ * These Terms of Use are subject to French law.
+ *
+ * IMPORTANT NOTICE: The WUIC software implements software components governed by
+ * open source software licenses (BSD and Apache) of which CAPGEMINI is not the
+ * author or the editor. The rights granted on the said software components are
+ * governed by the specific terms and conditions specified by Apache 2.0 and BSD
+ * licenses."
+ */
+
+
+
+
+package com.github.wuic.test.dao;
+
+import com.github.wuic.NutType;
+import com.github.wuic.exception.SaveOperationFailedException;
+import com.github.wuic.exception.wrapper.BadArgumentException;
+import com.github.wuic.nut.Nut;
+import com.github.wuic.nut.NutDao;
+import com.github.wuic.nut.WriteBehindNutStore;
+import com.github.wuic.nut.core.ByteArrayNut;
+import com.github.wuic.nut.core.DiskNutDao;
+import junit.framework.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>
+ * Tests the {@link DiskNutDao#save(Nut)} support and the {@link WriteBehindNutStore}.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @version 1.2
+ * @since 0.5.0
+ */
+@RunWith(JUnit4.class)
+public class DiskNutDaoTest {
+
+    /**
+     * <p>
+     * Creates an empty directory.
+     * </p>
+     *
+     * @return the directory
+     * @throws Exception if test fails
+     */
+    private File newDirectory() throws Exception {
+        final File retval = File.createTempFile("wuic", "store");
+        Assert.assertTrue(retval.delete());
+        Assert.assertTrue(retval.mkdir());
+        retval.deleteOnExit();
+        return retval;
+    }
+
+    /**
+     * <p>
+     * Reads the given file.
+     * </p>
+     *
+     * @param file the file
+     * @return the content
+     * @throws Exception if test fails
+     */
+    private String read(final File file) throws Exception {
+        final InputStream is = new FileInputStream(file);
+
+        try {
+            final byte[] content = new byte[(int) file.length()];
+            Assert.assertEquals(content.length, is.read(content));
+            return new String(content);
+        } finally {
+            is.close();
+        }
+    }
+
+    /**
+     * Nuts are written in sub directories, replaced when saved again and no temporary file is left.
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void saveTest() throws Exception {
+        final File base = newDirectory();
+        final DiskNutDao dao = new DiskNutDao(base.getAbsolutePath(), false, null, -1, false, false);
+        Assert.assertTrue(dao.saveSupported());
+
+        dao.save(new ByteArrayNut("var a;".getBytes(), "js/app.js", NutType.JAVASCRIPT, BigInteger.ONE));
+        dao.save(new ByteArrayNut("var b;".getBytes(), "js/app.js", NutType.JAVASCRIPT, BigInteger.TEN));
+
+        final File directory = new File(base, "js");
+        Assert.assertEquals("var b;", read(new File(directory, "app.js")));
+        Assert.assertEquals(Arrays.asList("app.js"), Arrays.asList(directory.list()));
+    }
+
+    /**
+     * A nut can't be written outside the base directory.
+     *
+     * @throws Exception if test fails
+     */
+    @Test(expected = BadArgumentException.class)
+    public void saveOutsideTest() throws Exception {
+        final DiskNutDao dao = new DiskNutDao(newDirectory().getAbsolutePath(), false, null, -1, false, false);
+        dao.save(new ByteArrayNut("var a;".getBytes(), "../app.js", NutType.JAVASCRIPT, BigInteger.ONE));
+    }
+
+    /**
+     * A nut that can't be written is reported with an unchecked exception.
+     *
+     * @throws Exception if test fails
+     */
+    @Test(expected = SaveOperationFailedException.class)
+    public void saveFailureTest() throws Exception {
+        final File base = newDirectory();
+        Assert.assertTrue(new File(base, "js").createNewFile());
+        final DiskNutDao dao = new DiskNutDao(base.getAbsolutePath(), false, null, -1, false, false);
+        dao.save(new ByteArrayNut("var a;".getBytes(), "js/app.js", NutType.JAVASCRIPT, BigInteger.ONE));
+    }
+
+    /**
+     * <p>
+     * Creates a mocked store recording the name of the saved nuts.
+     * </p>
+     *
+     * @param saved the list where names are added
+     * @return the store
+     * @throws Exception if the mock can't be created
+     */
+    private static NutDao recordingStore(final List<String> saved) throws Exception {
+        final NutDao dao = Mockito.mock(NutDao.class);
+        Mockito.doAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(final InvocationOnMock invocationOnMock) throws Throwable {
+                saved.add(((Nut) invocationOnMock.getArguments()[0]).getName());
+                return null;
+            }
+        }).when(dao).save(Mockito.any(Nut.class));
+
+        return dao;
+    }
+
+    /**
+     * Referenced nuts are saved too and a nut with the same name and version is saved once.
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void writeBehindTest() throws Exception {
+        final List<String> saved = Collections.synchronizedList(new ArrayList<String>());
+        final WriteBehindNutStore store = new WriteBehindNutStore("wid", recordingStore(saved));
+        final Nut image = new ByteArrayNut(new byte[1], "img.png", NutType.PNG, BigInteger.ONE);
+        final Nut css = new ByteArrayNut("a{}".getBytes(), "app.css", NutType.CSS, BigInteger.ONE);
+        css.addReferencedNut(image);
+
+        store.enqueue(Arrays.asList(css));
+        store.enqueue(Arrays.asList(css, image));
+        store.flush();
+        store.enqueue(Arrays.asList(css));
+        store.flush();
+
+        Assert.assertEquals(Arrays.asList("wid/1/app.css", "wid/1/img.png"), saved);
+
+        final Nut updated = new ByteArrayNut("b{}".getBytes(), "app.css", NutType.CSS, BigInteger.TEN);
+        store.enqueue(Arrays.asList(updated));
+        store.flush();
+
+        Assert.assertEquals(Arrays.asList("wid/1/app.css", "wid/1/img.png", "wid/10/app.css"), saved);
+    }
+
+    /**
+     * Nuts of several workflows with the same name don't overwrite each other in the same directory.
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void writeBehindLayoutTest() throws Exception {
+        final File base = newDirectory();
+        final DiskNutDao dao = new DiskNutDao(base.getAbsolutePath(), false, null, -1, false, false);
+        final WriteBehindNutStore first = new WriteBehindNutStore("first", dao);
+        final WriteBehindNutStore second = new WriteBehindNutStore("second", dao);
+
+        first.enqueue(Arrays.asList((Nut) new ByteArrayNut("var a;".getBytes(), "aggregate.js", NutType.JAVASCRIPT, BigInteger.ONE)));
+        second.enqueue(Arrays.asList((Nut) new ByteArrayNut("var b;".getBytes(), "aggregate.js", NutType.JAVASCRIPT, BigInteger.TEN)));
+        first.flush();
+        second.flush();
+
+        Assert.assertEquals("var a;", read(new File(base, "first/1/aggregate.js")));
+        Assert.assertEquals("var b;", read(new File(base, "second/10/aggregate.js")));
+    }
+
+    /**
+     * Queued nuts are saved when the store is shutdown, nuts queued after are ignored.
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void writeBehindShutdownTest() throws Exception {
+        final List<String> saved = Collections.synchronizedList(new ArrayList<String>());
+        final WriteBehindNutStore store = new WriteBehindNutStore("wid", recordingStore(saved));
+
+        store.enqueue(Arrays.asList((Nut) new ByteArrayNut("var a;".getBytes(), "a.js", NutType.JAVASCRIPT, BigInteger.ONE)));
+        store.shutdown();
+        Assert.assertEquals(Arrays.asList("wid/1/a.js"), saved);
+
+        store.enqueue(Arrays.asList((Nut) new ByteArrayNut("var b;".getBytes(), "b.js", NutType.JAVASCRIPT, BigInteger.ONE)));
+        store.flush();
+        Assert.assertEquals(Arrays.asList("wid/1/a.js"), saved);
+    }
+
+    /**
+     * A nut that fails to be saved is written again the next time it is queued.
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void writeBehindFailureTest() throws Exception {
+        final List<String> saved = Collections.synchronizedList(new ArrayList<String>());
+        final NutDao dao = Mockito.mock(NutDao.class);
+        final Nut nut = new ByteArrayNut("var a;".getBytes(), "app.js", NutType.JAVASCRIPT, BigInteger.ONE);
+        Mockito.doThrow(new IllegalStateException()).doAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(final InvocationOnMock invocationOnMock) throws Throwable {
+                saved.add(((Nut) invocationOnMock.getArguments()[0]).getName());
+                return null;
+            }
+        }).when(dao).save(Mockito.any(Nut.class));
+        final WriteBehindNutStore store = new WriteBehindNutStore("wid", dao);
+
+        store.enqueue(Arrays.asList(nut));
+        store.flush();
+        store.enqueue(Arrays.asList(nut));
+        store.flush();
+        store.enqueue(Arrays.asList(nut));
+        store.flush();
+
+        Mockito.verify(dao, Mockito.times(2)).save(Mockito.any(Nut.class));
+        Assert.assertEquals(Arrays.asList("wid/1/app.js"), saved);
+    }
+}
@@ -47,8 +47,11 @@ import com.github.wuic.engine.NodeEngine;
 import com.github.wuic.engine.core.EhCacheEngineBuilder;
 import com.github.wuic.engine.impl.ehcache.EhCacheEngine;
 import com.github.wuic.engine.impl.ehcache.WuicEhcacheProvider;
+import com.github.wuic.engine.impl.embedded.AbstractCacheEngine;
 import com.github.wuic.exception.WuicException;
 import com.github.wuic.nut.*;
+import com.github.wuic.nut.core.ByteArrayNut;
+import com.github.wuic.util.IOUtils;
 import junit.framework.Assert;
 import net.sf.ehcache.Cache;
 import net.sf.ehcache.CacheManager;
@@ -60,7 +63,14 @@ import org.mockito.Mockito;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.math.BigInteger;
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -69,7 +79,7 @@ import java.util.concurrent.atomic.AtomicInteger;
  * </p>
  *
  * @author Guillaume DROUET
- * @version 1.1
+ * @version 1.3
  * @since 0.4.0
  */
 @RunWith(JUnit4.class)
@@ -223,4 +233,180 @@ public class EhCacheEngineTest {
         cache.parse(new EngineRequest("", "", heap, map));
         Assert.assertEquals(2, count.get());
     }
+
+    /**
+     * Test that an entry is invalidated only when a path it depends on is updated.
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void selectiveInvalidateCacheTest() throws Exception {
+        final Nut nut = Mockito.mock(Nut.class);
+        Mockito.when(nut.getNutType()).thenReturn(NutType.CSS);
+        Mockito.when(nut.getName()).thenReturn("foo.css");
+        final NutsHeap heap = Mockito.mock(NutsHeap.class);
+        Mockito.when(heap.getNuts()).thenReturn(Arrays.asList(nut));
+        final List<HeapListener> listeners = new ArrayList<HeapListener>();
+
+        Mockito.doAnswer(new Answer() {
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public Object answer(final InvocationOnMock invocationOnMock) throws Throwable {
+                listeners.add((HeapListener) invocationOnMock.getArguments()[0]);
+                return null;
+            }
+        }).when(heap).addObserver(Mockito.any(HeapListener.class));
+
+        // Engine producing a stylesheet built from 'foo.css' and referencing 'img.png'
+        final NodeEngine engine = Mockito.mock(NodeEngine.class);
+        Mockito.when(engine.getEngineType()).thenReturn(EngineType.INSPECTOR);
+        Mockito.when(engine.parse(Mockito.any(EngineRequest.class))).then(new Answer<Object>() {
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public Object answer(final InvocationOnMock invocationOnMock) throws Throwable {
+                count.incrementAndGet();
+                final Nut source = new ByteArrayNut("a{}".getBytes(), "foo.css", NutType.CSS, new BigInteger("1"));
+                final Nut retval = new ByteArrayNut("a{}".getBytes(), "aggregate.css", NutType.CSS, Arrays.asList(source));
+                retval.addReferencedNut(new ByteArrayNut(new byte[1], "img.png", NutType.PNG, new BigInteger("1")));
+                return Arrays.asList(retval);
+            }
+        });
+
+        final EhCacheEngineBuilder builder = new EhCacheEngineBuilder();
+        builder.property(ApplicationConfig.CACHE_PROVIDER_CLASS, CacheFactory.class.getName());
+        final EhCacheEngine cache = (EhCacheEngine) builder.build();
+        final Map<NutType, NodeEngine> map = new HashMap<NutType, NodeEngine>();
+        map.put(NutType.CSS, engine);
+
+        cache.parse(new EngineRequest("", "", heap, map));
+        Assert.assertEquals(1, count.get());
+        final HeapChangeListener listener = (HeapChangeListener) listeners.get(0);
+
+        // Entry does not depend on this path
+        listener.nutsUpdated(heap, Collections.singleton("bar.css"));
+        cache.parse(new EngineRequest("", "", heap, map));
+        Assert.assertEquals(1, count.get());
+
+        // Referenced nut updated
+        listener.nutsUpdated(heap, Collections.singleton("img.png"));
+        cache.parse(new EngineRequest("", "", heap, map));
+        Assert.assertEquals(2, count.get());
+
+        // Original nut updated
+        listener.nutsUpdated(heap, Collections.singleton("/foo.css"));
+        cache.parse(new EngineRequest("", "", heap, map));
+        Assert.assertEquals(3, count.get());
+    }
+
+    /**
+     * Test that a stale entry is served while it is recomputed in background.
+     *
+     * @throws Exception if test fails
+     */
+    @Test(timeout = 5000)
+    public void staleWhileRevalidateTest() throws Exception {
+        final Nut nut = Mockito.mock(Nut.class);
+        Mockito.when(nut.getNutType()).thenReturn(NutType.JAVASCRIPT);
+        Mockito.when(nut.getName()).thenReturn("foo.js");
+        final NutsHeap heap = Mockito.mock(NutsHeap.class);
+        Mockito.when(heap.getNuts()).thenReturn(Arrays.asList(nut));
+        final List<HeapListener> listeners = new ArrayList<HeapListener>();
+
+        Mockito.doAnswer(new Answer() {
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public Object answer(final InvocationOnMock invocationOnMock) throws Throwable {
+                listeners.add((HeapListener) invocationOnMock.getArguments()[0]);
+                return null;
+            }
+        }).when(heap).addObserver(Mockito.any(HeapListener.class));
+
+        // Recomputation is blocked until the latch is released
+        final CountDownLatch latch = new CountDownLatch(1);
+        final NodeEngine chain = Mockito.mock(NodeEngine.class);
+        Mockito.when(chain.getEngineType()).thenReturn(EngineType.INSPECTOR);
+        Mockito.when(chain.parse(Mockito.any(EngineRequest.class))).then(new Answer<Object>() {
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public Object answer(final InvocationOnMock invocationOnMock) throws Throwable {
+                if (count.incrementAndGet() > 1) {
+                    latch.await();
+                }
+
+                return ((EngineRequest) invocationOnMock.getArguments()[0]).getNuts();
+            }
+        });
+
+        final EhCacheEngineBuilder builder = new EhCacheEngineBuilder();
+        builder.property(ApplicationConfig.CACHE_PROVIDER_CLASS, CacheFactory.class.getName());
+        builder.property(ApplicationConfig.MAX_STALENESS, 60);
+        final EhCacheEngine cache = (EhCacheEngine) builder.build();
+        final Map<NutType, NodeEngine> map = new HashMap<NutType, NodeEngine>();
+        map.put(NutType.JAVASCRIPT, chain);
+
+        cache.parse(new EngineRequest("", "", heap, map));
+        Assert.assertEquals(1, count.get());
+
+        // Stale entry is served without waiting for the recomputation
+        listeners.get(0).nutUpdated(heap);
+        cache.parse(new EngineRequest("", "", heap, map));
+        latch.countDown();
+
+        while (count.get() != 2) {
+            Thread.sleep(10L);
+        }
+
+        cache.parse(new EngineRequest("", "", heap, map));
+        Assert.assertEquals(2, count.get());
+    }
+
+    /**
+     * <p>
+     * Serializes a cache result with nuts sharing the same content and referencing the same nut.
+     * </p>
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void serializationTest() throws Exception {
+        final Nut shared = new ByteArrayNut("shared".getBytes(), "shared.css", NutType.CSS, new BigInteger("1"));
+        final Nut first = new ByteArrayNut("content".getBytes(), "first.css", NutType.CSS, Arrays.asList(shared));
+        final Nut second = new ByteArrayNut("content".getBytes(), "second.css", NutType.CSS, new BigInteger("2"));
+        first.addReferencedNut(shared);
+        second.addReferencedNut(shared);
+        second.setProxyUri("/proxy/second.css");
+
+        final Map<String, Nut> bestEffort = new LinkedHashMap<String, Nut>();
+        bestEffort.put("first.css", first);
+        final Map<String, Nut> defaultResult = new LinkedHashMap<String, Nut>();
+        defaultResult.put("second.css", second);
+
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        final ObjectOutputStream oos = new ObjectOutputStream(bos);
+        oos.writeObject(new AbstractCacheEngine.CacheResult(bestEffort, defaultResult));
+        oos.close();
+
+        final ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray()));
+        final AbstractCacheEngine.CacheResult result = (AbstractCacheEngine.CacheResult) ois.readObject();
+        final Nut firstRead = result.getBestEffortResult().get("first.css");
+        final Nut secondRead = result.getDefaultResult().get("second.css");
+
+        Assert.assertEquals(first.getVersionNumber(), firstRead.getVersionNumber());
+        Assert.assertEquals("/proxy/second.css", secondRead.getProxyUri());
+        Assert.assertEquals("content", IOUtils.readString(new InputStreamReader(secondRead.openStream())));
+        Assert.assertSame(firstRead.getOriginalNuts().get(0), secondRead.getReferencedNuts().get(0));
+        Assert.assertSame(firstRead.getReferencedNuts().get(0), secondRead.getReferencedNuts().get(0));
+    }
 }
@@ -44,12 +44,16 @@ import com.github.wuic.NutType;
 import com.github.wuic.engine.Engine;
 import com.github.wuic.engine.EngineBuilderFactory;
 import com.github.wuic.engine.EngineRequest;
+import com.github.wuic.engine.LineInspector;
 import com.github.wuic.engine.NodeEngine;
+import com.github.wuic.engine.ReferencedNutMemo;
 import com.github.wuic.engine.impl.embedded.CGCssInspectorEngine;
 import com.github.wuic.nut.Nut;
 import com.github.wuic.nut.NutDao;
 import com.github.wuic.nut.NutsHeap;
+import com.github.wuic.nut.core.ByteArrayNut;
 import com.github.wuic.nut.filter.NutFilter;
+import com.github.wuic.util.IOUtils;
 import com.github.wuic.xml.FileXmlContextBuilderConfigurator;
 import junit.framework.Assert;
 import org.junit.Test;
@@ -60,9 +64,12 @@ import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
 import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
 import java.math.BigInteger;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * <p>
@@ -70,7 +77,7 @@ import java.util.concurrent.atomic.AtomicInteger;
  * </p>
  *
  * @author Guillaume DROUET
- * @version 1.3
+ * @version 1.8
  * @since 0.4.1
  */
 @RunWith(JUnit4.class)
@@ -251,6 +258,241 @@ public class CssInspectorTest {
         assertInspection(collection, new StringBuilder(), "Shouldn't create nuts for 'data:' urls.", 0);
     }
 
+    /**
+     * <p>
+     * Creates a heap containing the given paths with a DAO which creates nuts reading the given contents.
+     * </p>
+     *
+     * @param contents the content associated to each path that the DAO can create
+     * @param openCount the number of times the stream of each nut is opened
+     * @param paths the heap's paths
+     * @return the heap
+     * @throws Exception if heap can't be created
+     */
+    private NutsHeap heap(final Map<String, String> contents, final Map<String, AtomicInteger> openCount, final String ... paths)
+            throws Exception {
+        final NutDao dao = Mockito.mock(NutDao.class);
+        final Answer<List<Nut>> answer = new Answer<List<Nut>>() {
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public List<Nut> answer(final InvocationOnMock invocationOnMock) throws Throwable {
+                final String path = String.valueOf(invocationOnMock.getArguments()[0]);
+                final Nut nut = Mockito.mock(Nut.class);
+
+                if (!openCount.containsKey(path)) {
+                    openCount.put(path, new AtomicInteger());
+                }
+
+                Mockito.when(nut.getName()).thenReturn(path);
+                Mockito.when(nut.getNutType()).thenReturn(NutType.getNutType(path));
+                Mockito.when(nut.getVersionNumber()).thenReturn(BigInteger.ONE);
+                Mockito.when(nut.openStream()).thenAnswer(new Answer<Object>() {
+
+                    /**
+                     * {@inheritDoc}
+                     */
+                    @Override
+                    public Object answer(final InvocationOnMock invocationOnMock) throws Throwable {
+                        openCount.get(path).incrementAndGet();
+                        return new ByteArrayInputStream(contents.get(path).getBytes());
+                    }
+                });
+
+                return Arrays.asList(nut);
+            }
+        };
+
+        Mockito.when(dao.withRootPath(Mockito.anyString())).thenReturn(dao);
+        Mockito.when(dao.create(Mockito.anyString())).thenAnswer(answer);
+        Mockito.when(dao.create(Mockito.anyString(), Mockito.any(NutDao.PathFormat.class))).thenAnswer(answer);
+
+        return new NutsHeap(Arrays.asList(paths), dao, "heap");
+    }
+
+    /**
+     * <p>
+     * Tests that a stylesheet imported by many stylesheets is inspected only once.
+     * </p>
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void sharedImportTest() throws Exception {
+        final Map<String, String> contents = new HashMap<String, String>();
+        contents.put("page1.css", "@import url(\"theme.css\");");
+        contents.put("page2.css", "@import url(\"theme.css\");");
+        contents.put("theme.css", ".foo { color: red; }");
+        final Map<String, AtomicInteger> openCount = new HashMap<String, AtomicInteger>();
+        final NutsHeap heap = heap(contents, openCount, "page1.css", "page2.css");
+
+        final Engine engine = new CGCssInspectorEngine(new ArrayList<NutFilter>(), true, "UTF-8");
+        final List<Nut> res = engine.parse(new EngineRequest("wid", "cp", heap, new HashMap<NutType, NodeEngine>()));
+
+        Assert.assertEquals(2, res.size());
+        Assert.assertEquals(1, res.get(0).getReferencedNuts().size());
+        Assert.assertEquals(1, res.get(1).getReferencedNuts().size());
+        Assert.assertEquals(1, openCount.get("theme.css").get());
+
+        // Memorized until the heap is updated
+        engine.parse(new EngineRequest("wid", "cp", heap, new HashMap<NutType, NodeEngine>()));
+        Assert.assertEquals(1, openCount.get("theme.css").get());
+    }
+
+    /**
+     * <p>
+     * Tests that small images and fonts are inlined as data URIs and that the decision is memorized.
+     * </p>
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void inlineTest() throws Exception {
+        final Map<String, String> contents = new HashMap<String, String>();
+        contents.put("page.css", ".a{background:url(small.png)}.b{background:url('big.png')}"
+                + ".c{src:url(font.woff?v=1)}.d{background:url(small.png)}@import 'e.css';");
+        contents.put("small.png", "tiny");
+        contents.put("big.png", "this content is larger than the threshold");
+        contents.put("font.woff", "x");
+        contents.put("e.css", "");
+        final Map<String, AtomicInteger> openCount = new HashMap<String, AtomicInteger>();
+        final NutsHeap heap = heap(contents, openCount, "page.css");
+
+        final Engine engine = new CGCssInspectorEngine(new ArrayList<NutFilter>(), true, "UTF-8", 16);
+        final List<Nut> res = engine.parse(new EngineRequest("wid", "cp", heap, new HashMap<NutType, NodeEngine>()));
+        final String css = IOUtils.readString(new InputStreamReader(res.get(0).openStream()));
+
+        Assert.assertTrue(css, css.startsWith(".a{background:url(\"data:image/png;base64,dGlueQ==\")}"));
+        Assert.assertTrue(css, css.contains(".d{background:url(\"data:image/png;base64,dGlueQ==\")}"));
+        Assert.assertTrue(css, css.contains("big.png\")}"));
+        Assert.assertTrue(css, css.contains("font.woff?v=1\")}"));
+
+        // Inlined nuts are not referenced anymore
+        Assert.assertEquals(3, res.get(0).getReferencedNuts().size());
+        Assert.assertEquals(1, openCount.get("small.png").get());
+
+        // Memorized until the heap is updated
+        engine.parse(new EngineRequest("wid", "cp", heap, new HashMap<NutType, NodeEngine>()));
+        Assert.assertEquals(1, openCount.get("small.png").get());
+        Assert.assertEquals(1, openCount.get("big.png").get());
+    }
+
+    /**
+     * <p>
+     * Tests that the chain of an inlined nut is not run while a referenced nut is still processed.
+     * </p>
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void inlineSkipsChainTest() throws Exception {
+        final List<String> processed = new ArrayList<String>();
+        final NodeEngine chain = Mockito.mock(NodeEngine.class);
+        Mockito.when(chain.parse(Mockito.any(EngineRequest.class))).thenAnswer(new Answer<Object>() {
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public Object answer(final InvocationOnMock invocationOnMock) throws Throwable {
+                final List<Nut> nuts = ((EngineRequest) invocationOnMock.getArguments()[0]).getNuts();
+
+                for (final Nut nut : nuts) {
+                    processed.add(nut.getName());
+                }
+
+                return new ArrayList<Nut>(nuts);
+            }
+        });
+
+        final Map<String, String> contents = new HashMap<String, String>();
+        contents.put("page.css", ".a{background:url(small.png)}.b{background:url(big.png)}");
+        contents.put("small.png", "tiny");
+        contents.put("big.png", "this content is larger than the threshold");
+        final NutsHeap heap = heap(contents, new HashMap<String, AtomicInteger>(), "page.css");
+        final Map<NutType, NodeEngine> chains = new HashMap<NutType, NodeEngine>();
+        chains.put(NutType.PNG, chain);
+
+        final Engine engine = new CGCssInspectorEngine(new ArrayList<NutFilter>(), true, "UTF-8", 16);
+        final List<Nut> res = engine.parse(new EngineRequest("wid", "cp", heap, chains));
+        final String css = IOUtils.readString(new InputStreamReader(res.get(0).openStream()));
+
+        Assert.assertTrue(css, css.startsWith(".a{background:url(\"data:image/png;base64,dGlueQ==\")}"));
+        Assert.assertEquals(Arrays.asList("big.png"), processed);
+    }
+
+    /**
+     * <p>
+     * Tests stylesheets importing each other.
+     * </p>
+     *
+     * @throws Exception if test fails
+     */
+    @Test(timeout = 5000)
+    public void recursiveImportTest() throws Exception {
+        final Map<String, String> contents = new HashMap<String, String>();
+        contents.put("a.css", "@import url(\"b.css\");");
+        contents.put("b.css", "@import url(\"a.css\");");
+        final Map<String, AtomicInteger> openCount = new HashMap<String, AtomicInteger>();
+        final NutsHeap heap = heap(contents, openCount, "a.css");
+
+        final Engine engine = new CGCssInspectorEngine(new ArrayList<NutFilter>(), true, "UTF-8");
+        final List<Nut> res = engine.parse(new EngineRequest("wid", "cp", heap, new HashMap<NutType, NodeEngine>()));
+
+        Assert.assertEquals(1, res.size());
+        Assert.assertEquals(1, res.get(0).getReferencedNuts().size());
+        Assert.assertEquals("b.css", res.get(0).getReferencedNuts().get(0).getName());
+        Assert.assertEquals(1, openCount.get("b.css").get());
+    }
+
+    /**
+     * <p>
+     * Tests that comments and strings are skipped, that the query string or fragment of a URL is kept and that
+     * declarations referencing filtered paths are removed.
+     * </p>
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void rewriteTest() throws Exception {
+        final Map<String, String> contents = new HashMap<String, String>();
+        contents.put("page.css", "/* url('a.png') */ .a { content: \"url(b.png)\"; background: url( c.png ) no-repeat; }"
+                + "@import 'd.css';@import url(e.css) screen;.f{color:red;src:url(f.eot?#iefix)}");
+        contents.put("c.png", "");
+        contents.put("d.css", "");
+        contents.put("e.css", "");
+        contents.put("f.eot", "");
+        final Map<String, AtomicInteger> openCount = new HashMap<String, AtomicInteger>();
+        final NutsHeap heap = heap(contents, openCount, "page.css");
+
+        final NutFilter filter = Mockito.mock(NutFilter.class);
+        Mockito.when(filter.filterPaths(Mockito.anyList())).thenAnswer(new Answer<Object>() {
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public Object answer(final InvocationOnMock invocationOnMock) throws Throwable {
+                final List<?> paths = (List<?>) invocationOnMock.getArguments()[0];
+                return paths.contains("c.png") || paths.contains("e.css") ? Collections.emptyList() : paths;
+            }
+        });
+
+        final Engine engine = new CGCssInspectorEngine(Arrays.asList(filter), true, "UTF-8");
+        final List<Nut> res = engine.parse(new EngineRequest("wid", "cp", heap, new HashMap<NutType, NodeEngine>()));
+        final String css = IOUtils.readString(new InputStreamReader(res.get(0).openStream()));
+
+        Assert.assertEquals(2, res.get(0).getReferencedNuts().size());
+        Assert.assertFalse(openCount.containsKey("a.png"));
+        Assert.assertFalse(openCount.containsKey("b.png"));
+        Assert.assertTrue(css, css.startsWith("/* url('a.png') */ .a { content: \"url(b.png)\"; }"));
+        Assert.assertFalse(css, css.contains("e.css"));
+        Assert.assertTrue(css, css.contains("d.css\";.f{color:red;src:url(\""));
+        Assert.assertTrue(css, css.contains("f.eot?#iefix\")}"));
+    }
+
     /**
      * Test when file is referenced with '../'.
      *
@@ -289,4 +531,83 @@ public class CssInspectorTest {
         final Context ctx = builder.build();
         ctx.process("", "composite");
     }
+
+    /**
+     * <p>
+     * Tests that an inspector built with a pattern and implementing the previous regex contract is still supported.
+     * </p>
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    @SuppressWarnings("deprecation")
+    public void legacyLineInspectorTest() throws Exception {
+        final Nut referenced = Mockito.mock(Nut.class);
+        final LineInspector inspector = new LineInspector(Pattern.compile("\\$\\{(\\w+)\\}")) {
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public List<Nut> appendTransformation(final Matcher matcher,
+                                                  final StringBuilder replacement,
+                                                  final EngineRequest request,
+                                                  final NutsHeap heap,
+                                                  final Nut originalNut) {
+                replacement.append(matcher.group(1).toUpperCase());
+                return "b".equals(matcher.group(1)) ? Arrays.asList(referenced) : null;
+            }
+        };
+
+        final StringBuilder out = new StringBuilder("> ");
+        final List<Nut> res = inspector.inspect("${a} and ${b}.", out, null, null, null);
+        Assert.assertEquals("> A and B.", out.toString());
+        Assert.assertEquals(Arrays.asList(referenced), res);
+        Assert.assertEquals("\\$\\{(\\w+)\\}", inspector.getPattern().pattern());
+    }
+
+    /**
+     * <p>
+     * Tests that the static methods appending a referenced nut process it each time unless a memo is given.
+     * </p>
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void staticManageAppendTest() throws Exception {
+        final AtomicInteger count = new AtomicInteger();
+        final NodeEngine chain = Mockito.mock(NodeEngine.class);
+        Mockito.when(chain.parse(Mockito.any(EngineRequest.class))).thenAnswer(new Answer<Object>() {
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public Object answer(final InvocationOnMock invocationOnMock) throws Throwable {
+                count.incrementAndGet();
+                return new ArrayList<Nut>(((EngineRequest) invocationOnMock.getArguments()[0]).getNuts());
+            }
+        });
+
+        final Map<NutType, NodeEngine> chains = new HashMap<NutType, NodeEngine>();
+        chains.put(NutType.PNG, chain);
+        final NutsHeap heap = heap(Collections.singletonMap("page.css", ""), new HashMap<String, AtomicInteger>(), "page.css");
+        final EngineRequest request = new EngineRequest("wid", "cp", heap, chains);
+        final Nut nut = new ByteArrayNut("png".getBytes(), "img.png", NutType.PNG, new BigInteger("1"));
+
+        for (int i = 0; i < 2; i++) {
+            final StringBuilder out = new StringBuilder();
+            Assert.assertEquals(1, LineInspector.manageAppend(nut, out, request, heap).size());
+            Assert.assertEquals("/cp/wid/1/img.png", out.toString());
+        }
+
+        Assert.assertEquals(2, count.get());
+        final ReferencedNutMemo memo = new ReferencedNutMemo();
+
+        for (int i = 0; i < 2; i++) {
+            LineInspector.manageAppend(memo, nut, new StringBuilder(), request, heap);
+        }
+
+        Assert.assertEquals(3, count.get());
+    }
 }
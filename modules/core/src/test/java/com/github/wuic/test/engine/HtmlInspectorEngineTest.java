@@ -81,7 +81,7 @@ import java.util.regex.Pattern;
  * </p>
  *
  * @author Guillaume DROUET
- * @version 1.0
+ * @version 1.1
  * @since 0.4.4
  */
 @RunWith(JUnit4.class)
@@ -122,6 +122,39 @@ public class HtmlInspectorEngineTest {
         Assert.assertTrue(Pattern.compile(REGEX, Pattern.DOTALL).matcher(content).matches());
     }
 
+    /**
+     * <p>
+     * Tests that bundles are written inline only when they don't exceed the threshold.
+     * </p>
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void inlineTest() throws Exception {
+        final NutDao dao = new DiskNutDao(getClass().getResource("/html").getFile(), false, null, -1, false, false);
+        final NutsHeap heap = new NutsHeap(Arrays.asList("index.html"), dao, "heap");
+        final Map<NutType, NodeEngine> chains = new HashMap<NutType, NodeEngine>();
+        chains.put(NutType.CSS, new CGTextAggregatorEngine(true));
+        chains.put(NutType.JAVASCRIPT, new CGTextAggregatorEngine(true));
+
+        // Bundles are larger than one byte
+        List<Nut> nuts = new HtmlInspectorEngine(new ArrayList<NutFilter>(), true, "UTF-8", 1)
+                .parse(new EngineRequest("workflow", "", heap, chains));
+        String content = IOUtils.readString(new InputStreamReader(nuts.get(0).openStream()));
+        Assert.assertTrue(content, Pattern.compile(REGEX, Pattern.DOTALL).matcher(content).matches());
+
+        nuts = new HtmlInspectorEngine(new ArrayList<NutFilter>(), true, "UTF-8", 1024)
+                .parse(new EngineRequest("workflow", "", heap, chains));
+        content = IOUtils.readString(new InputStreamReader(nuts.get(0).openStream()));
+        Assert.assertFalse(content, content.contains("aggregate.css"));
+        Assert.assertFalse(content, content.contains("aggregate.js"));
+        Assert.assertTrue(content, content.contains("<style type=\"text/css\">"));
+        Assert.assertTrue(content, content.contains("<script type=\"text/javascript\">"));
+
+        // No bundle to serve anymore
+        Assert.assertNull(nuts.get(0).getReferencedNuts());
+    }
+
     @Test
     public void bestEffortTest() throws Exception {
 
@@ -42,8 +42,16 @@ import com.github.wuic.Context;
 import com.github.wuic.ContextBuilder;
 import com.github.wuic.engine.EngineBuilderFactory;
 import com.github.wuic.nut.Nut;
+import com.github.wuic.util.IOUtils;
 
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.github.wuic.xml.FileXmlContextBuilderConfigurator;
 import org.junit.Assert;
@@ -58,7 +66,7 @@ import org.junit.runners.JUnit4;
  * </p>
  *
  * @author Guillaume DROUET
- * @version 1.0
+ * @version 1.1
  * @since 0.4.3
  */
 @RunWith(JUnit4.class)
@@ -110,8 +118,71 @@ public class ImageAggregatorEngineTest {
         final List<Nut> nuts = ctx.process("", "cssSpriteAggregate");
         Assert.assertEquals(1, nuts.size());
         assertOneReference(nuts);
+    }
+
+    /**
+     * <p>
+     * Tests that sprites computed concurrently by the same engines are identical to the sprites computed sequentially.
+     * </p>
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void concurrentTest() throws Exception {
+        final String[] workflows = { "cssSpriteAggregate", "jsSpriteNotAggregate" };
+        final List<String> expected = new ArrayList<String>();
+
+        for (final String workflow : workflows) {
+            expected.add(read(ctx.process("", workflow)));
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        try {
+            final List<Future<String>> futures = new ArrayList<Future<String>>();
 
+            for (int i = 0; i < 64; i++) {
+                final String workflow = workflows[i % workflows.length];
+                futures.add(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        return read(ctx.process("", workflow));
+                    }
+                }));
+            }
+
+            for (int i = 0; i < futures.size(); i++) {
+                Assert.assertEquals(expected.get(i % workflows.length), futures.get(i).get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * <p>
+     * Reads the content of the given nuts.
+     * </p>
+     *
+     * @param nuts the nuts
+     * @return the concatenated content
+     * @throws Exception if nuts can't be read
+     */
+    private String read(final List<Nut> nuts) throws Exception {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+
+        for (final Nut nut : nuts) {
+            InputStream is = null;
+
+            try {
+                is = nut.openStream();
+                IOUtils.copyStream(is, bos);
+            } finally {
+                IOUtils.close(is);
+            }
+        }
 
+        return bos.toString();
     }
 
     private void assertOneReference(final List<Nut> nuts) {
@@ -0,0 +1,184 @@
+/*
+ * "Copyright (c) 2014   Capgemini Technology Services (hereinafter "Capgemini")
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * -   The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Any failure to comply with the above shall automatically terminate the license
+ * and be construed as a breach of these Terms of Use causing significant harm to
+ * Capgemini.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Capgemini shall not be used in
+ * advertising or otherwise to promote the use or other dealings in this Software
+ * without prior written authorization from Capgemini.
+ *
+ * These Terms of Use are subject to French law.
+ *
+ * IMPORTANT NOTICE: The WUIC software implements software components governed by
+ * open source software licenses (BSD and Apache) of which CAPGEMINI is not the
+ * author or the editor. The rights granted on the said software components are
+ * governed by the specific terms and conditions specified by Apache 2.0 and BSD
+ * licenses."
+ */
+
+
+
+
+package com.github.wuic.test.engine;
+
+import com.github.wuic.ApplicationConfig;
+import com.github.wuic.engine.DimensionPacker;
+import com.github.wuic.engine.Region;
+import com.github.wuic.engine.impl.embedded.CGBinPacker;
+import com.github.wuic.engine.core.ImageAggregatorEngineBuilder;
+import com.github.wuic.engine.impl.embedded.CGMaxRectsPacker;
+import com.github.wuic.engine.setter.PackerPropertySetter;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.awt.Dimension;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * <p>
+ * This class tests {@link CGMaxRectsPacker}.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @version 1.0
+ * @since 0.5.0
+ */
+@RunWith(JUnit4.class)
+public class MaxRectsPackerTest {
+
+    /**
+     * <p>
+     * Generates icons of mixed sizes with a few wide images.
+     * </p>
+     *
+     * @param count the number of icons
+     * @return the dimensions
+     */
+    private List<Dimension> icons(final int count) {
+        final int[] sizes = { 16, 16, 24, 32, 32, 48, 64 };
+        final Random random = new Random(count);
+        final List<Dimension> retval = new ArrayList<Dimension>(count);
+
+        for (int i = 0; i < count; i++) {
+            if (i % 10 == 0) {
+                retval.add(new Dimension(80 + random.nextInt(80), 20 + random.nextInt(20)));
+            } else {
+                final int size = sizes[random.nextInt(sizes.length)];
+                retval.add(new Dimension(size, size));
+            }
+        }
+
+        return retval;
+    }
+
+    /**
+     * <p>
+     * Packs the given dimensions and checks that regions don't overlap and are inside the filled area.
+     * </p>
+     *
+     * @param packer the packer
+     * @param dimensions the dimensions
+     * @return the filled area
+     */
+    private Dimension assertPacked(final DimensionPacker<Integer> packer, final List<Dimension> dimensions) {
+        packer.clearElements();
+
+        for (int i = 0; i < dimensions.size(); i++) {
+            packer.addElement(dimensions.get(i), i);
+        }
+
+        final Map<Region, Integer> regions = packer.getRegions();
+        final Dimension area = packer.getFilledArea();
+        final List<Region> placed = new ArrayList<Region>(regions.keySet());
+        Assert.assertEquals(dimensions.size(), new HashSet<Integer>(regions.values()).size());
+
+        for (int i = 0; i < placed.size(); i++) {
+            final Region a = placed.get(i);
+            Assert.assertEquals(dimensions.get(regions.get(a)), new Dimension(a.width, a.height));
+            Assert.assertTrue(a.getxPosition() >= 0 && a.getxPosition() + a.width <= area.width);
+            Assert.assertTrue(a.getyPosition() >= 0 && a.getyPosition() + a.height <= area.height);
+
+            for (int j = i + 1; j < placed.size(); j++) {
+                final Region b = placed.get(j);
+                Assert.assertFalse(a.getxPosition() < b.getxPosition() + b.width
+                        && b.getxPosition() < a.getxPosition() + a.width
+                        && a.getyPosition() < b.getyPosition() + b.height
+                        && b.getyPosition() < a.getyPosition() + a.height);
+            }
+        }
+
+        return area;
+    }
+
+    /**
+     * Checks that each heuristic produces a valid layout, reusable after being cleared.
+     */
+    @Test
+    public void validLayoutTest() {
+        for (final CGMaxRectsPacker.Heuristic heuristic : CGMaxRectsPacker.Heuristic.values()) {
+            final CGMaxRectsPacker<Integer> packer = new CGMaxRectsPacker<Integer>(heuristic);
+
+            for (final int count : new int[] { 1, 7, 60 }) {
+                assertPacked(packer, icons(count));
+            }
+        }
+    }
+
+    /**
+     * Checks that a single element fills exactly the area.
+     */
+    @Test
+    public void singleElementTest() {
+        final List<Dimension> dimensions = new ArrayList<Dimension>();
+        dimensions.add(new Dimension(13, 7));
+        Assert.assertEquals(new Dimension(13, 7), assertPacked(new CGMaxRectsPacker<Integer>(), dimensions));
+    }
+
+    /**
+     * Checks that mixed icons are packed in a smaller area than the growing binary tree does.
+     */
+    @Test
+    public void smallerThanBinTreeTest() {
+        final List<Dimension> dimensions = icons(60);
+        final Dimension maxRects = assertPacked(new CGMaxRectsPacker<Integer>(), dimensions);
+        final Dimension binTree = assertPacked(new CGBinPacker<Integer>(), dimensions);
+        Assert.assertTrue(maxRects + " vs " + binTree, maxRects.width * maxRects.height < binTree.width * binTree.height);
+    }
+
+    /**
+     * Checks that the packers can be selected with their alias.
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void aliasTest() throws Exception {
+        for (final String alias : new String[] { PackerPropertySetter.MAX_RECTS, PackerPropertySetter.BIN_TREE }) {
+            Assert.assertNotNull(new ImageAggregatorEngineBuilder().property(ApplicationConfig.PACKER_CLASS_NAME, alias).build());
+        }
+    }
+}
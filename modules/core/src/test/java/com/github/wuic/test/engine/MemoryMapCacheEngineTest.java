@@ -40,15 +40,24 @@ package com.github.wuic.test.engine;
 import com.github.wuic.engine.EngineRequest;
 import com.github.wuic.engine.impl.embedded.AbstractCacheEngine;
 import com.github.wuic.engine.impl.embedded.MemoryMapCacheEngine;
+import com.github.wuic.NutType;
 import com.github.wuic.nut.Nut;
+import com.github.wuic.nut.core.ByteArrayNut;
+import com.github.wuic.nut.core.ByteBufferNut;
+import com.github.wuic.util.IOUtils;
+import com.github.wuic.util.SlabAllocator;
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 import org.mockito.Mockito;
 
+import java.io.InputStreamReader;
+import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -57,7 +66,7 @@ import java.util.Map;
  * </p>
  *
  * @author Guillaume DROUET
- * @version 1.1
+ * @version 1.4
  * @since 0.4.3
  */
 @RunWith(JUnit4.class)
@@ -96,4 +105,195 @@ public class MemoryMapCacheEngineTest {
         engine.removeFromCache(req);
         Assert.assertNull(engine.getFromCache(req));
     }
+
+    /**
+     * Stores content outside the heap then removes it.
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void offHeapTest() throws Exception {
+        final EngineRequest.Key req = new EngineRequest.Key("wid", Arrays.asList(Mockito.mock(Nut.class)));
+        final MemoryMapCacheEngine engine = new MemoryMapCacheEngine(true, -1, false, 1);
+        final Map<String, Nut> nuts = new HashMap<String, Nut>();
+        nuts.put("foo.css", new ByteArrayNut("content".getBytes(), "foo.css", NutType.CSS, new BigInteger("1")));
+        engine.putToCache(req, new AbstractCacheEngine.CacheResult(null, nuts));
+
+        final Nut cached = engine.getFromCache(req).getDefaultResult().get("foo.css");
+        Assert.assertTrue(cached instanceof ByteBufferNut);
+        Assert.assertEquals("content", read(cached));
+        Assert.assertEquals(SlabAllocator.MIN_CHUNK_SIZE, engine.getOffHeapBytes());
+        Assert.assertEquals(0L, engine.getHeapBytes());
+
+        // Chunk is recycled when the entry is removed, the content is still readable
+        engine.removeFromCache(req);
+        Assert.assertEquals(0L, engine.getOffHeapBytes());
+        Assert.assertEquals("content", read(cached));
+    }
+
+    /**
+     * <p>
+     * Checks that the heap usage counts once a nut shared by many entries and that its slot is freed with the last entry.
+     * </p>
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void sharedNutTest() throws Exception {
+        final EngineRequest.Key first = new EngineRequest.Key("first", Arrays.asList(Mockito.mock(Nut.class)));
+        final EngineRequest.Key second = new EngineRequest.Key("second", Arrays.asList(Mockito.mock(Nut.class)));
+        final MemoryMapCacheEngine engine = new MemoryMapCacheEngine(true, -1, false);
+        final AbstractCacheEngine.CacheResult result = result("content");
+
+        engine.putToCache(first, result);
+        engine.putToCache(second, result);
+        Assert.assertEquals("content".length(), engine.getHeapBytes());
+
+        engine.removeFromCache(first);
+        Assert.assertEquals("content".length(), engine.getHeapBytes());
+        engine.putToCache(second, result);
+        Assert.assertEquals("content".length(), engine.getHeapBytes());
+        engine.clearCache();
+        Assert.assertEquals(0L, engine.getHeapBytes());
+
+        // Off-heap nut shared by two entries
+        final MemoryMapCacheEngine offHeap = new MemoryMapCacheEngine(true, -1, false, 1);
+        offHeap.putToCache(first, result("content"));
+        offHeap.putToCache(second, offHeap.getFromCache(first));
+        Assert.assertEquals(SlabAllocator.MIN_CHUNK_SIZE, offHeap.getOffHeapBytes());
+        offHeap.removeFromCache(first);
+        Assert.assertEquals(SlabAllocator.MIN_CHUNK_SIZE, offHeap.getOffHeapBytes());
+        Assert.assertEquals("content", read(offHeap.getFromCache(second).getDefaultResult().get("foo.css")));
+        offHeap.removeFromCache(second);
+        Assert.assertEquals(0L, offHeap.getOffHeapBytes());
+    }
+
+    /**
+     * <p>
+     * Checks that the empty slabs are released, except the last one of a size class.
+     * </p>
+     */
+    @Test
+    public void releaseSlabTest() {
+        final SlabAllocator allocator = new SlabAllocator(SlabAllocator.SLAB_SIZE * 3L);
+        final List<SlabAllocator.Slot> slots = new ArrayList<SlabAllocator.Slot>();
+
+        // Two chunks per slab
+        for (int i = 0; i < 6; i++) {
+            slots.add(allocator.allocate(SlabAllocator.SLAB_SIZE / 2));
+        }
+
+        Assert.assertNull(allocator.allocate(SlabAllocator.SLAB_SIZE / 2));
+        Assert.assertEquals(SlabAllocator.SLAB_SIZE * 3L, allocator.getReservedBytes());
+
+        for (final SlabAllocator.Slot slot : slots) {
+            allocator.free(slot);
+        }
+
+        Assert.assertEquals(0L, allocator.getUsedBytes());
+        Assert.assertEquals(SlabAllocator.SLAB_SIZE, allocator.getReservedBytes());
+
+        // Memory released by a size class is available for another one
+        Assert.assertNotNull(allocator.allocate(SlabAllocator.MIN_CHUNK_SIZE));
+        Assert.assertNotNull(allocator.allocate(SlabAllocator.SLAB_SIZE));
+        Assert.assertEquals(SlabAllocator.SLAB_SIZE * 3L, allocator.getReservedBytes());
+    }
+
+    /**
+     * <p>
+     * Checks that a slot which is never freed is recycled once its owner is not reachable anymore.
+     * </p>
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void unreachableOwnerTest() throws Exception {
+        final SlabAllocator allocator = new SlabAllocator(SlabAllocator.SLAB_SIZE);
+        allocator.allocate(1).bind(new Object());
+        Assert.assertEquals(SlabAllocator.MIN_CHUNK_SIZE, allocator.getUsedBytes());
+        awaitRecycled(allocator);
+        Assert.assertEquals(0L, allocator.getUsedBytes());
+    }
+
+    /**
+     * <p>
+     * Checks that a nut retrieved from the cache can be read after its entry is removed, replaced or cleared.
+     * </p>
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void readAfterInvalidationTest() throws Exception {
+        final EngineRequest.Key req = new EngineRequest.Key("wid", Arrays.asList(Mockito.mock(Nut.class)));
+        final MemoryMapCacheEngine engine = new MemoryMapCacheEngine(true, -1, false, 1);
+
+        engine.putToCache(req, result("removed"));
+        final Nut removed = engine.getFromCache(req).getDefaultResult().get("foo.css");
+        engine.removeFromCache(req);
+
+        engine.putToCache(req, result("replaced"));
+        final Nut replaced = engine.getFromCache(req).getDefaultResult().get("foo.css");
+        engine.putToCache(req, result("cleared"));
+        final Nut cleared = engine.getFromCache(req).getDefaultResult().get("foo.css");
+        engine.clearCache();
+
+        Assert.assertEquals("removed", read(removed));
+        Assert.assertEquals("replaced", read(replaced));
+        Assert.assertEquals("cleared", read(cleared));
+
+        // Allocating new slots does not reuse the chunks still used by the retrieved nuts
+        engine.putToCache(req, result("new"));
+        Assert.assertEquals("new", read(engine.getFromCache(req).getDefaultResult().get("foo.css")));
+        Assert.assertEquals("removed", read(removed));
+        Assert.assertEquals("replaced", read(replaced));
+        Assert.assertEquals("cleared", read(cleared));
+    }
+
+    /**
+     * <p>
+     * Builds a cache result with a nut having the given content.
+     * </p>
+     *
+     * @param content the content
+     * @return the result
+     */
+    private static AbstractCacheEngine.CacheResult result(final String content) {
+        final Map<String, Nut> nuts = new HashMap<String, Nut>();
+        nuts.put("foo.css", new ByteArrayNut(content.getBytes(), "foo.css", NutType.CSS, new BigInteger("1")));
+        return new AbstractCacheEngine.CacheResult(null, nuts);
+    }
+
+    /**
+     * <p>
+     * Reads the given nut.
+     * </p>
+     *
+     * @param nut the nut
+     * @return the content
+     * @throws Exception if the nut can't be read
+     */
+    private static String read(final Nut nut) throws Exception {
+        final InputStreamReader reader = new InputStreamReader(nut.openStream());
+
+        try {
+            return IOUtils.readString(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * <p>
+     * Runs the garbage collector until the chunks of the unreachable owners are recycled, or gives up after one second.
+     * </p>
+     *
+     * @param allocator the allocator
+     * @throws InterruptedException if the thread is interrupted
+     */
+    private static void awaitRecycled(final SlabAllocator allocator) throws InterruptedException {
+        for (int i = 0; i < 100 && allocator.getUsedBytes() != 0L; i++) {
+            System.gc();
+            Thread.sleep(10L);
+        }
+    }
 }
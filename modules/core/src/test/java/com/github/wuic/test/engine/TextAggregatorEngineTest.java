@@ -0,0 +1,188 @@
+/*
+ * "Copyright (c) 2014   Capgemini Technology Services (hereinafter "Capgemini")
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * -   The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Any failure to comply with the above shall automatically terminate the license
+ * and be construed as a breach of these Terms of Use causing significant harm to
+ * Capgemini.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Capgemini shall not be used in
+ * advertising or otherwise to promote the use or other dealings in this Software
+ * without prior written authorization from Capgemini.
+ *
+ * These Terms of Use are subject to French law.
+ *
+ * IMPORTANT NOTICE: The WUIC software implements software components governed by
+ * open source software licenses (BSD and Apache) of which CAPGEMINI is not the
+ * author or the editor. The rights granted on the said software components are
+ * governed by the specific terms and conditions specified by Apache 2.0 and BSD
+ * licenses."
+ */
+
+
+
+
+package com.github.wuic.test.engine;
+
+import com.github.wuic.NutType;
+import com.github.wuic.engine.EngineRequest;
+import com.github.wuic.engine.NodeEngine;
+import com.github.wuic.engine.impl.embedded.CGTextAggregatorEngine;
+import com.github.wuic.nut.Nut;
+import com.github.wuic.nut.NutsHeap;
+import com.github.wuic.nut.core.ByteArrayNut;
+import com.github.wuic.util.IOUtils;
+import junit.framework.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mockito;
+
+import java.io.InputStreamReader;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * <p>
+ * Tests the {@link CGTextAggregatorEngine} class.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @version 1.0
+ * @since 0.5.0
+ */
+@RunWith(JUnit4.class)
+public class TextAggregatorEngineTest {
+
+    /**
+     * <p>
+     * Creates a nut containing a comment, padded to ten bytes for short names.
+     * </p>
+     *
+     * @param name the nut name
+     * @param version the version
+     * @return the nut
+     */
+    private Nut nut(final String name, final long version) {
+        return new ByteArrayNut(String.format("/*%6s*/", name).getBytes(), name, NutType.JAVASCRIPT, BigInteger.valueOf(version));
+    }
+
+    /**
+     * <p>
+     * Runs the engine with a heap containing the given nuts.
+     * </p>
+     *
+     * @param engine the engine
+     * @param heap the mocked heap
+     * @param nuts the nuts
+     * @return the bundles
+     * @throws Exception if engine fails
+     */
+    private List<Nut> parse(final NodeEngine engine, final NutsHeap heap, final Nut ... nuts) throws Exception {
+        Mockito.when(heap.getId()).thenReturn("heap");
+        Mockito.when(heap.getNuts()).thenReturn(Arrays.asList(nuts));
+        return engine.parse(new EngineRequest("wid", "cp", heap, new HashMap<NutType, NodeEngine>()));
+    }
+
+    /**
+     * <p>
+     * Tests that nuts are spread across bundles which don't exceed the maximum size and that a bundle keeps its name
+     * and its version when the nuts of another bundle change.
+     * </p>
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void sizeTest() throws Exception {
+        final NodeEngine engine = new CGTextAggregatorEngine(true, 25, 0, false);
+        final NutsHeap heap = Mockito.mock(NutsHeap.class);
+        final List<Nut> first = parse(engine, heap, nut("a.js", 1), nut("b.js", 1), nut("c.js", 1), nut("d.js", 1));
+
+        Assert.assertEquals(2, first.size());
+        Assert.assertTrue(first.get(0).getName().matches("aggregate-[0-9a-f]+\\.js"));
+        Assert.assertFalse(first.get(0).getName().equals(first.get(1).getName()));
+        Assert.assertEquals("/*  a.js*/\r\n/*  b.js*/", IOUtils.readString(new InputStreamReader(first.get(0).openStream())));
+
+        final List<Nut> second = parse(engine, heap, nut("a.js", 1), nut("b.js", 1), nut("c.js", 1), nut("d.js", 2));
+        Assert.assertEquals(first.get(0).getName(), second.get(0).getName());
+        Assert.assertEquals(first.get(0).getVersionNumber(), second.get(0).getVersionNumber());
+        Assert.assertEquals(first.get(1).getName(), second.get(1).getName());
+        Assert.assertFalse(first.get(1).getVersionNumber().equals(second.get(1).getVersionNumber()));
+    }
+
+    /**
+     * <p>
+     * Tests that a nut which changes is bundled apart from the stable nuts without changing their order.
+     * </p>
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void volatileTest() throws Exception {
+        final NodeEngine engine = new CGTextAggregatorEngine(true, 0, 1, false);
+        final NutsHeap heap = Mockito.mock(NutsHeap.class);
+
+        // Nothing has changed yet
+        List<Nut> res = parse(engine, heap, nut("vendor1.js", 1), nut("vendor2.js", 1), nut("app.js", 1));
+        Assert.assertEquals(1, res.size());
+        Assert.assertEquals("aggregate.js", res.get(0).getName());
+
+        res = parse(engine, heap, nut("vendor1.js", 1), nut("vendor2.js", 1), nut("app.js", 2));
+        Assert.assertEquals(2, res.size());
+        Assert.assertEquals("/*vendor1.js*/\r\n/*vendor2.js*/", IOUtils.readString(new InputStreamReader(res.get(0).openStream())));
+        final BigInteger stable = res.get(0).getVersionNumber();
+
+        // App is still volatile, vendor bundle does not change
+        res = parse(engine, heap, nut("vendor1.js", 1), nut("vendor2.js", 1), nut("app.js", 3));
+        Assert.assertEquals(2, res.size());
+        Assert.assertEquals(stable, res.get(0).getVersionNumber());
+        Assert.assertEquals("/*app.js*/", IOUtils.readString(new InputStreamReader(res.get(1).openStream())));
+    }
+
+    /**
+     * <p>
+     * Tests that the nuts of each composed heap are bundled apart.
+     * </p>
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void splitByHeapTest() throws Exception {
+        final NodeEngine engine = new CGTextAggregatorEngine(true, 0, 0, true);
+        final NutsHeap heap = Mockito.mock(NutsHeap.class);
+        final NutsHeap vendor = Mockito.mock(NutsHeap.class);
+        final NutsHeap app = Mockito.mock(NutsHeap.class);
+        Mockito.when(vendor.getId()).thenReturn("vendor");
+        Mockito.when(app.getId()).thenReturn("app");
+
+        final Nut jquery = nut("jquery.js", 1);
+        final Nut angular = nut("angular.js", 1);
+        final Nut main = nut("main.js", 1);
+        Mockito.when(heap.findHeapFor(jquery)).thenReturn(vendor);
+        Mockito.when(heap.findHeapFor(angular)).thenReturn(vendor);
+        Mockito.when(heap.findHeapFor(main)).thenReturn(app);
+
+        final List<Nut> res = parse(engine, heap, jquery, angular, main);
+        Assert.assertEquals(2, res.size());
+        Assert.assertEquals("/*jquery.js*/\r\n/*angular.js*/", IOUtils.readString(new InputStreamReader(res.get(0).openStream())));
+        Assert.assertEquals("/*main.js*/", IOUtils.readString(new InputStreamReader(res.get(1).openStream())));
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * "Copyright (c) 2014   Capgemini Technology Services (hereinafter "Capgemini")
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * -   The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Any failure to comply with the above shall automatically terminate the license
+ * and be construed as a breach of these Terms of Use causing significant harm to
+ * Capgemini.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Capgemini shall not be used in
+ * advertising or otherwise to promote the use or other dealings in this Software
+ * without prior written authorization from Capgemini.
+ *
+ * These Terms of Use are subject to French law.
+ *
+ * IMPORTANT NOTICE: The WUIC software implements software components governed by
+ * open source software licenses (BSD and Apache) of which CAPGEMINI is not the
+ * author or the editor. The rights granted on the said software components are
+ * governed by the specific terms and conditions specified by Apache 2.0 and BSD
+ * licenses."
+ */
+
+package com.github.wuic.test.nut;
+
+import com.github.wuic.NutType;
+import com.github.wuic.nut.Nut;
+import com.github.wuic.nut.core.ByteArrayNut;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>
+ * {@link ByteArrayNut} tests.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @version 1.0
+ * @since 0.5.0
+ */
+@RunWith(JUnit4.class)
+public class ByteArrayNutTest {
+
+    /**
+     * <p>
+     * Checks that a nut referenced by several nuts is converted once and shares its content.
+     * </p>
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void sharedReferenceTest() throws Exception {
+        final Nut shared = new ByteArrayNut("shared".getBytes(), "shared.css", NutType.CSS, new BigInteger("1"));
+        final Nut first = new ByteArrayNut("first".getBytes(), "first.css", NutType.CSS, new BigInteger("2"));
+        final Nut second = new ByteArrayNut("second".getBytes(), "second.css", NutType.CSS, new BigInteger("3"));
+        first.addReferencedNut(shared);
+        second.addReferencedNut(shared);
+
+        final List<Nut> converted = ByteArrayNut.toByteArrayNut(Arrays.asList(first, second));
+        final Nut ref = converted.get(0).getReferencedNuts().get(0);
+        Assert.assertSame(ref, converted.get(1).getReferencedNuts().get(0));
+
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ByteArrayNut.class.cast(ref).writeTo(bos);
+        Assert.assertEquals("shared", new String(bos.toByteArray()));
+    }
+}
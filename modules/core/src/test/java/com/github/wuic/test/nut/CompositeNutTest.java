@@ -43,6 +43,7 @@ import com.github.wuic.nut.Nut;
 import com.github.wuic.nut.core.CompositeNut;
 import com.github.wuic.util.CollectionUtils;
 import com.github.wuic.util.IOUtils;
+import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -59,7 +60,7 @@ import java.util.Arrays;
  * </p>
  *
  * @author Guillaume DROUET
- * @version 1.1
+ * @version 1.2
  * @since 0.4.3
  */
 @RunWith(JUnit4.class)
@@ -89,4 +90,30 @@ public class CompositeNutTest {
         final Nut composite = new CompositeNut(Nut[].class.cast(Arrays.asList(n1, n2).toArray()), "composite", null);
         IOUtils.copyStream(composite.openStream(), new ByteArrayOutputStream());
     }
+
+    /**
+     * <p>
+     * Tests that streams are read in bulk with separators, even when a nut of the composition is empty.
+     * </p>
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void separatorTest() throws Exception {
+        final Nut[] composition = new Nut[3];
+        final String[] contents = { "foo", "", "bar" };
+
+        for (int i = 0; i < composition.length; i++) {
+            composition[i] = Mockito.mock(Nut.class);
+            Mockito.when(composition[i].openStream()).thenReturn(new ByteArrayInputStream(contents[i].getBytes()));
+            Mockito.when(composition[i].getNutType()).thenReturn(NutType.CSS);
+            Mockito.when(composition[i].getName()).thenReturn("composite.css");
+            Mockito.when(composition[i].getVersionNumber()).thenReturn(new BigInteger("1"));
+        }
+
+        final Nut composite = new CompositeNut("composite.css", "|".getBytes(), composition);
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        IOUtils.copyStream(composite.openStream(), bos);
+        Assert.assertEquals("foo||bar", new String(bos.toByteArray()));
+    }
 }
@@ -0,0 +1,187 @@
+/*
+ * "Copyright (c) 2014   Capgemini Technology Services (hereinafter "Capgemini")
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * -   The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Any failure to comply with the above shall automatically terminate the license
+ * and be construed as a breach of these Terms of Use causing significant harm to
+ * Capgemini.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Capgemini shall not be used in
+ * advertising or otherwise to promote the use or other dealings in this Software
+ * without prior written authorization from Capgemini.
+ *
+ * These Terms of Use are subject to French law.
+ *
+ * IMPORTANT NOTICE: The WUIC software implements software components governed by
+ * open source software licenses (BSD and Apache) of which CAPGEMINI is not the
+ * author or the editor. The rights granted on the said software components are
+ * governed by the specific terms and conditions specified by Apache 2.0 and BSD
+ * licenses."
+ */
+
+
+
+
+package com.github.wuic.test.nut;
+
+import com.github.wuic.NutType;
+import com.github.wuic.exception.NutNotFoundException;
+import com.github.wuic.exception.wrapper.StreamException;
+import com.github.wuic.nut.Nut;
+import com.github.wuic.nut.core.ByteArrayNut;
+import com.github.wuic.nut.core.TransformedNut;
+import com.github.wuic.util.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ * {@link TransformedNut} tests.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @version 1.1
+ * @since 0.5.0
+ */
+@RunWith(JUnit4.class)
+public class TransformedNutTest {
+
+    /**
+     * <p>
+     * Transformed nut writing the source in upper case and counting the transformations.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @version 1.0
+     * @since 0.5.0
+     */
+    private static final class UpperCaseNut extends TransformedNut {
+
+        /**
+         * Number of transformations.
+         */
+        private final AtomicInteger count;
+
+        /**
+         * Fails the transformation or not.
+         */
+        private final boolean fail;
+
+        /**
+         * <p>
+         * Builds a new instance.
+         * </p>
+         *
+         * @param source the source nut
+         * @param fail fails the transformation or not
+         */
+        private UpperCaseNut(final Nut source, final boolean fail) {
+            super(source, "upper.css", NutType.CSS);
+            this.count = new AtomicInteger();
+            this.fail = fail;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void transform(final InputStream source, final OutputStream target) throws StreamException {
+            count.incrementAndGet();
+
+            try {
+                if (fail) {
+                    throw new IOException("transformation fails");
+                }
+
+                target.write(IOUtils.readString(new InputStreamReader(source)).toUpperCase().getBytes());
+            } catch (IOException ioe) {
+                throw new StreamException(ioe);
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Checks that the source is transformed once whatever the number of reads.
+     * </p>
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void transformOnceTest() throws Exception {
+        final Nut source = new ByteArrayNut("content".getBytes(), "source.css", NutType.CSS, new BigInteger("1"));
+        final UpperCaseNut nut = new UpperCaseNut(source, false);
+        Assert.assertEquals(0, nut.count.get());
+
+        for (int i = 0; i < 3; i++) {
+            InputStream is = null;
+
+            try {
+                is = nut.openStream();
+                Assert.assertEquals("CONTENT", IOUtils.readString(new InputStreamReader(is)));
+            } finally {
+                IOUtils.close(is);
+            }
+        }
+
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        nut.transform(bos);
+        Assert.assertEquals("CONTENT", new String(bos.toByteArray()));
+
+        // The content handed over to the converted nuts is still read by the transformed nut
+        for (int i = 0; i < 2; i++) {
+            final ByteArrayOutputStream converted = new ByteArrayOutputStream();
+            ByteArrayNut.class.cast(ByteArrayNut.toByteArrayNut(Arrays.asList((Nut) nut)).get(0)).writeTo(converted);
+            Assert.assertEquals("CONTENT", new String(converted.toByteArray()));
+        }
+
+        Assert.assertEquals("CONTENT", IOUtils.readString(new InputStreamReader(nut.openStream())));
+        Assert.assertEquals(1, nut.count.get());
+    }
+
+    /**
+     * <p>
+     * Checks that a failing transformation is reported as a missing nut.
+     * </p>
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void transformErrorTest() throws Exception {
+        final Nut source = new ByteArrayNut("content".getBytes(), "source.css", NutType.CSS, new BigInteger("1"));
+
+        try {
+            new UpperCaseNut(source, true).openStream();
+            Assert.fail();
+        } catch (NutNotFoundException nnfe) {
+            // Normal behavior
+        }
+    }
+}
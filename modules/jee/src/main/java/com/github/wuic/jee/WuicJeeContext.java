@@ -40,6 +40,7 @@ package com.github.wuic.jee;
 
 import com.github.wuic.WuicFacade;
 import com.github.wuic.exception.wrapper.BadArgumentException;
+import com.github.wuic.util.PreloadPolicy;
 
 import javax.servlet.ServletContext;
 
@@ -49,7 +50,7 @@ import javax.servlet.ServletContext;
  * </p>
  *
  * @author Guillaume DROUET
- * @version 1.0
+ * @version 1.3
  * @since 0.4.1
  */
 public final class WuicJeeContext {
@@ -81,7 +82,7 @@ public final class WuicJeeContext {
      * Class created for convenience providing init-params used to configure WUIC.
      * </p>
      *
-     * @version 1.0
+     * @version 1.1
      * @since 0.4.3
      */
     public static final class InitParams {
@@ -91,6 +92,11 @@ public final class WuicJeeContext {
          */
         private static Boolean multiple;
 
+        /**
+         * The policy selecting the nuts to preload.
+         */
+        private final PreloadPolicy preloadPolicy;
+
         /**
          * <p>
          * Builds a new instance.
@@ -100,6 +106,8 @@ public final class WuicJeeContext {
             // Get init-parameter
             final String m = getInitParameter(WuicServletContextListener.WUIC_SERVLET_MULTIPLE_CONG_IN_TAG_SUPPORT, "true");
             multiple = Boolean.parseBoolean(m);
+            preloadPolicy = PreloadPolicy.parse(getInitParameter(WuicServletContextListener.WUIC_PRELOAD_NUT_TYPES, null),
+                    getInitParameter(WuicServletContextListener.WUIC_PRELOAD_MAX_SIZE, null));
         }
 
         /**
@@ -113,6 +121,18 @@ public final class WuicJeeContext {
         public Boolean wuicServletMultipleConfInTagSupport() {
             return multiple;
         }
+
+        /**
+         * <p>
+         * Returns the policy built from the init-parameters {@link WuicServletContextListener#WUIC_PRELOAD_NUT_TYPES}
+         * and {@link WuicServletContextListener#WUIC_PRELOAD_MAX_SIZE}.
+         * </p>
+         *
+         * @return the policy selecting the nuts to preload ({@link PreloadPolicy#NONE} by default)
+         */
+        public PreloadPolicy preloadPolicy() {
+            return preloadPolicy;
+        }
     }
 
     /**
@@ -176,24 +196,28 @@ public final class WuicJeeContext {
 
     /**
      * <p>
-     * Sets both {@link WuicFacade} and {@code ServletContext}.
+     * Sets both {@link WuicFacade} and {@code ServletContext}. A {@code null} context resets the init-params.
      * </p>
      *
      * @param sc the servlet context
      */
     static void setContext(final ServletContext sc) {
         servletContext = sc;
-        initParams = new InitParams();
+        initParams = sc == null ? null : new InitParams();
     }
 
     /**
      * <p>
-     * Sets both {@link WuicFacade}.
+     * Sets both {@link WuicFacade}. The replaced facade is shutdown.
      * </p>
      *
      * @param f the wuic facade
      */
     static void setFacade(final WuicFacade f) {
+        if (facade != null && facade != f) {
+            facade.shutdown();
+        }
+
         facade = f;
     }
 }
@@ -57,7 +57,7 @@ import java.net.URL;
  * </p>
  *
  * @author Guillaume DROUET
- * @version 1.2
+ * @version 1.3
  * @since 0.4.1
  */
 public class WuicServletContextListener implements ServletContextListener {
@@ -88,6 +88,17 @@ public class WuicServletContextListener implements ServletContextListener {
      */
     public static final String WUIC_USE_DEFAULT_CONTEXT_BUILDER_CONFIGURATORS = "c.g.w.useDefaultContextBuilderConfigurators";
 
+    /**
+     * Init parameter which indicates the types of the referenced nuts to preload, separated by '|' (for instance
+     * 'WOFF|TTF'). Nothing is preloaded if not set.
+     */
+    public static final String WUIC_PRELOAD_NUT_TYPES = "c.g.w.preloadNutTypes";
+
+    /**
+     * Init parameter which indicates the maximum size in bytes of a nut to preload. No limit if not set.
+     */
+    public static final String WUIC_PRELOAD_MAX_SIZE = "c.g.w.preloadMaxSize";
+
     /**
      * The logger.
      */
@@ -41,6 +41,7 @@ package com.github.wuic.nut.jee;
 import com.github.wuic.ApplicationConfig;
 import com.github.wuic.exception.BuilderPropertyNotSupportedException;
 import com.github.wuic.jee.WuicJeeContext;
+import com.github.wuic.nut.AbstractNutDao;
 import com.github.wuic.nut.AbstractNutDaoBuilder;
 import com.github.wuic.nut.NutDao;
 import com.github.wuic.nut.core.DiskNutDao;
@@ -52,7 +53,7 @@ import com.github.wuic.nut.setter.*;
  * </p>
  *
  * @author Guillaume DROUET
- * @version 1.5
+ * @version 1.6
  * @since 0.3.0
  */
 public class WebappNutDaoBuilder extends AbstractNutDaoBuilder {
@@ -79,6 +80,7 @@ public class WebappNutDaoBuilder extends AbstractNutDaoBuilder {
                 new BasePathAsSysPropPropertySetter(this),
                 new ProxyUrisPropertySetter(this),
                 new PollingInterleavePropertySetter(this),
+                new PollingMaxInterleavePropertySetter(this),
                 new RegexPropertySetter(this),
                 new ContentBasedVersionNumberPropertySetter(this));
     }
@@ -88,6 +90,8 @@ public class WebappNutDaoBuilder extends AbstractNutDaoBuilder {
      */
     @Override
     public NutDao internalBuild() throws BuilderPropertyNotSupportedException {
+        final AbstractNutDao retval;
+
         // Pre compute base path
         String basePath = (String) property(ApplicationConfig.BASE_PATH);
 
@@ -103,19 +107,23 @@ public class WebappNutDaoBuilder extends AbstractNutDaoBuilder {
             basePath = WuicJeeContext.getServletContext().getRealPath(basePath);
 
             // We pre compute specifically base path so we pass false to indicate that base path is not a system property
-            return new DiskNutDao(basePath,
+            retval = new DiskNutDao(basePath,
                     false,
                     (String[]) property(ApplicationConfig.PROXY_URIS),
                     (Integer) property(ApplicationConfig.POLLING_INTERLEAVE),
                     (Boolean) property(ApplicationConfig.REGEX),
                     (Boolean) property(ApplicationConfig.CONTENT_BASED_VERSION_NUMBER));
         } else {
-            return new WebappNutDao(WuicJeeContext.getServletContext(),
+            retval = new WebappNutDao(WuicJeeContext.getServletContext(),
                     basePath,
                     (String[]) property(ApplicationConfig.PROXY_URIS),
                     (Integer) property(ApplicationConfig.POLLING_INTERLEAVE),
                     (Boolean) property(ApplicationConfig.REGEX),
                     (Boolean) property(ApplicationConfig.CONTENT_BASED_VERSION_NUMBER));
         }
+
+        retval.setMaxPollingInterleave((Integer) property(ApplicationConfig.POLLING_MAX_INTERLEAVE));
+
+        return retval;
     }
 }
@@ -51,8 +51,10 @@ import com.github.wuic.nut.NutDao;
 import com.github.wuic.nut.core.ByteArrayNut;
 import com.github.wuic.nut.core.ProxyNutDao;
 import com.github.wuic.nut.jee.WebappNutDaoBuilder;
+import com.github.wuic.util.HtmlUtil;
 import com.github.wuic.util.IOUtils;
 import com.github.wuic.util.NumberUtils;
+import com.github.wuic.util.PreloadPolicy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -88,8 +90,14 @@ import java.util.Set;
  * class and overriding the {@link com.github.wuic.servlet.HtmlParserFilter#createDao()} method.
  * </p>
  *
+ * <p>
+ * When a {@link PreloadPolicy} is configured in the {@link WuicJeeContext#initParams() init-params}, the nuts selected
+ * among the nuts referenced by the page are announced with {@code Link} headers so the browser fetches them while it
+ * still parses the page.
+ * </p>
+ *
  * @author Guillaume DROUET
- * @version 1.0
+ * @version 1.1
  * @since 0.4.4
  */
 public class HtmlParserFilter extends ContextBuilderConfigurator implements Filter {
@@ -212,6 +220,7 @@ public class HtmlParserFilter extends ContextBuilderConfigurator implements Filt
 
                 try {
                     final Nut nut = nuts.get(0);
+                    addPreloadHeaders(HttpServletResponse.class.cast(response), workflowId, nut);
                     is = nut.openStream();
                     final String body = IOUtils.readString(new InputStreamReader(is));
                     response.setContentLength(body.length());
@@ -226,6 +235,27 @@ public class HtmlParserFilter extends ContextBuilderConfigurator implements Filt
         }
     }
 
+    /**
+     * <p>
+     * Adds a {@code Link} header for each nut referenced by the given page and selected by the preload policy.
+     * </p>
+     *
+     * @param response the response
+     * @param workflowId the workflow which produced the page
+     * @param page the page
+     */
+    private void addPreloadHeaders(final HttpServletResponse response, final String workflowId, final Nut page) {
+        final PreloadPolicy preloadPolicy = WuicJeeContext.initParams().preloadPolicy();
+
+        if (preloadPolicy.isEnabled()) {
+            final String workflowContextPath = IOUtils.mergePath(WuicJeeContext.getWuicFacade().getContextPath(), workflowId);
+
+            for (final Nut preload : preloadPolicy.select(page.getReferencedNuts())) {
+                response.addHeader("Link", HtmlUtil.preloadHeader(preload, workflowContextPath));
+            }
+        }
+    }
+
     /**
      * <p>
      * Builds the key for cache from the request URI.
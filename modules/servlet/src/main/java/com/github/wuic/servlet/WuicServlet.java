@@ -46,8 +46,12 @@ import com.github.wuic.exception.WuicException;
 import com.github.wuic.jee.WuicJeeContext;
 import com.github.wuic.jee.WuicServletContextListener;
 import com.github.wuic.nut.Nut;
+import com.github.wuic.nut.core.ByteArrayNut;
+import com.github.wuic.nut.core.ByteBufferNut;
+import com.github.wuic.util.HtmlUtil;
 import com.github.wuic.util.IOUtils;
 import com.github.wuic.util.NumberUtils;
+import com.github.wuic.util.PreloadPolicy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -71,7 +75,7 @@ import java.util.regex.Pattern;
  * </p>
  *
  * @author Guillaume DROUET
- * @version 2.0
+ * @version 2.3
  * @since 0.1.1
  */
 public class WuicServlet extends HttpServlet {
@@ -199,8 +203,27 @@ public class WuicServlet extends HttpServlet {
                 // We set a far expiration date because we assume that polling will change the timestamp in path
                 response.setHeader("Expires", "Sat, 06 Jun 2086 09:35:00 GMT");
 
-                is = nut.openStream();
-                IOUtils.copyStream(is, response.getOutputStream());
+                // Let the browser fetch the critical referenced nuts (fonts, etc) before parsing the nut
+                final PreloadPolicy preloadPolicy = WuicJeeContext.initParams().preloadPolicy();
+
+                if (preloadPolicy.isEnabled()) {
+                    final String workflowContextPath = IOUtils.mergePath(WuicJeeContext.getWuicFacade().getContextPath(), workflowId);
+
+                    for (final Nut preload : preloadPolicy.select(nut.getReferencedNuts())) {
+                        response.addHeader("Link", HtmlUtil.preloadHeader(preload, workflowContextPath));
+                    }
+                }
+
+                // In-memory nuts are written without being copied
+                if (nut instanceof ByteArrayNut) {
+                    ByteArrayNut.class.cast(nut).writeTo(response.getOutputStream());
+                } else if (nut instanceof ByteBufferNut) {
+                    ByteBufferNut.class.cast(nut).writeTo(response.getOutputStream());
+                } else {
+                    is = nut.openStream();
+                    IOUtils.copyStream(is, response.getOutputStream());
+                }
+
                 response.getOutputStream().flush();
             } catch (IOException ioe) {
                 throw new StreamException(ioe);
@@ -0,0 +1,243 @@
+/*
+ * "Copyright (c) 2014   Capgemini Technology Services (hereinafter "Capgemini")
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * -   The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Any failure to comply with the above shall automatically terminate the license
+ * and be construed as a breach of these Terms of Use causing significant harm to
+ * Capgemini.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Capgemini shall not be used in
+ * advertising or otherwise to promote the use or other dealings in this Software
+ * without prior written authorization from Capgemini.
+ *
+ * These Terms of Use are subject to French law.
+ *
+ * IMPORTANT NOTICE: The WUIC software implements software components governed by
+ * open source software licenses (BSD and Apache) of which CAPGEMINI is not the
+ * author or the editor. The rights granted on the said software components are
+ * governed by the specific terms and conditions specified by Apache 2.0 and BSD
+ * licenses."
+ */
+
+
+package com.github.wuic.servlet;
+
+import com.github.wuic.metric.Span;
+import com.github.wuic.metric.Trace;
+import com.github.wuic.metric.Tracer;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.HttpURLConnection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * Servlet exposing as JSON the traces recorded by the {@link Tracer}. The {@code order} parameter selects the
+ * {@code recent} traces (by default) or the {@code slowest} ones, the {@code limit} parameter the maximum number of
+ * traces to return.
+ * </p>
+ *
+ * <p>
+ * Tracing is enabled with the {@link Tracer#SAMPLING_PROPERTY} system property or the init param of the same name.
+ * Durations are in microseconds.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @version 1.0
+ * @since 0.5.0
+ */
+public class WuicTraceServlet extends HttpServlet {
+
+    /**
+     * Serial version UID.
+     */
+    private static final long serialVersionUID = 3262581356738542134L;
+
+    /**
+     * Default number of returned traces.
+     */
+    private static final int DEFAULT_LIMIT = 20;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void init(final ServletConfig config) throws ServletException {
+        final String sampling = config.getInitParameter(Tracer.SAMPLING_PROPERTY);
+
+        if (sampling != null) {
+            Tracer.setSampling(Double.parseDouble(sampling));
+        }
+
+        super.init(config);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void doGet(final HttpServletRequest request, final HttpServletResponse response)
+            throws ServletException, IOException {
+        final String order = request.getParameter("order");
+        final int limit;
+
+        try {
+            limit = request.getParameter("limit") == null ? DEFAULT_LIMIT : Integer.parseInt(request.getParameter("limit"));
+        } catch (NumberFormatException nfe) {
+            response.setStatus(HttpURLConnection.HTTP_BAD_REQUEST);
+            response.getWriter().println("Parameter 'limit' must be a number");
+            return;
+        }
+
+        final List<Trace> traces;
+
+        if (order == null || "recent".equals(order)) {
+            traces = Tracer.getBuffer().recent(limit);
+        } else if ("slowest".equals(order)) {
+            traces = Tracer.getBuffer().slowest(limit);
+        } else {
+            response.setStatus(HttpURLConnection.HTTP_BAD_REQUEST);
+            response.getWriter().println("Parameter 'order' must be 'recent' or 'slowest'");
+            return;
+        }
+
+        final StringBuilder json = new StringBuilder().append('[');
+
+        for (final Trace trace : traces) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+
+            json.append("{\"timestamp\":").append(trace.getTimestamp()).append(",\"root\":");
+            appendSpan(trace.getRoot(), json);
+            json.append('}');
+        }
+
+        json.append(']');
+
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+
+        final PrintWriter writer = response.getWriter();
+        writer.print(json);
+        writer.flush();
+    }
+
+    /**
+     * <p>
+     * Writes the given span and its children as a JSON object.
+     * </p>
+     *
+     * @param span the span
+     * @param json the builder
+     */
+    private void appendSpan(final Span span, final StringBuilder json) {
+        json.append("{\"name\":");
+        appendString(span.getName(), json);
+        json.append(",\"detail\":");
+        appendString(span.getDetail(), json);
+        json.append(",\"duration\":").append(span.getDuration());
+
+        if (span.getBytes() >= 0L) {
+            json.append(",\"bytes\":").append(span.getBytes());
+        }
+
+        if (!span.getTags().isEmpty()) {
+            json.append(",\"tags\":{");
+            String separator = "";
+
+            for (final Map.Entry<String, String> tag : span.getTags().entrySet()) {
+                json.append(separator);
+                appendString(tag.getKey(), json);
+                json.append(':');
+                appendString(tag.getValue(), json);
+                separator = ",";
+            }
+
+            json.append('}');
+        }
+
+        if (!span.getChildren().isEmpty()) {
+            json.append(",\"children\":[");
+            String separator = "";
+
+            for (final Span child : span.getChildren()) {
+                json.append(separator);
+                appendSpan(child, json);
+                separator = ",";
+            }
+
+            json.append(']');
+        }
+
+        json.append('}');
+    }
+
+    /**
+     * <p>
+     * Writes the given value as a JSON string.
+     * </p>
+     *
+     * @param value the value, written as {@code null} if {@code null}
+     * @param json the builder
+     */
+    private void appendString(final String value, final StringBuilder json) {
+        if (value == null) {
+            json.append("null");
+            return;
+        }
+
+        json.append('"');
+
+        for (final char c : value.toCharArray()) {
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < ' ') {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+
+        json.append('"');
+    }
+}
@@ -39,17 +39,27 @@
 package com.github.wuic.tag;
 
 import com.github.wuic.WuicFacade;
+import com.github.wuic.engine.impl.embedded.AbstractCacheEngine;
 import com.github.wuic.exception.WuicException;
 import com.github.wuic.exception.wrapper.StreamException;
 import com.github.wuic.jee.WuicJeeContext;
+import com.github.wuic.nut.HeapListener;
 import com.github.wuic.nut.Nut;
+import com.github.wuic.nut.NutsHeap;
 import com.github.wuic.util.HtmlUtil;
 import com.github.wuic.util.IOUtils;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Observable;
+import java.util.Observer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.servlet.jsp.JspException;
+import javax.servlet.jsp.JspWriter;
 import javax.servlet.jsp.tagext.TagSupport;
 
 /**
@@ -57,8 +67,21 @@ import javax.servlet.jsp.tagext.TagSupport;
  * This tag writes the scripts of the page specified to it attributes.
  * </p>
  *
+ * <p>
+ * The import statements are rendered once per workflow and kept in memory. They are rendered again only when a nut
+ * is updated in the workflow's heap or when the configuration changes. This way, a tag evaluation with a warm cache
+ * just writes an array of characters to the page. The statements rendered for a facade are dropped when its
+ * configuration changes or when another facade is used.
+ * </p>
+ *
+ * <p>
+ * When a {@link com.github.wuic.util.PreloadPolicy} is configured in the
+ * {@link WuicJeeContext#initParams() init-params}, a {@code <link rel="preload">} tag is rendered before the import
+ * statements for each selected nut referenced by the imported nuts.
+ * </p>
+ *
  * @author Guillaume DROUET
- * @version 1.4
+ * @version 1.9
  * @since 0.1.0
  */
 public class WuicTag extends TagSupport {
@@ -68,6 +91,12 @@ public class WuicTag extends TagSupport {
      */
     private static final long serialVersionUID = 4305181623848741300L;
 
+    /**
+     * The import statements rendered for each workflow.
+     */
+    private static final ConcurrentMap<String, PreRenderedImport> PRE_RENDERED_IMPORTS =
+            new ConcurrentHashMap<String, PreRenderedImport>();
+
     /**
      * The page name.
      */
@@ -88,18 +117,14 @@ public class WuicTag extends TagSupport {
     @Override
     public int doStartTag() throws JspException {
         try {
-            // Get the facade
-            final WuicFacade facade = WuicJeeContext.getWuicFacade();
+            final PreRenderedImport preRendered = preRendered(WuicJeeContext.getWuicFacade());
+            char[] markup = preRendered.getMarkup();
 
-            if (WuicJeeContext.initParams().wuicServletMultipleConfInTagSupport()) {
-                facade.clearTag(workflowId);
+            if (markup == null) {
+                markup = preRendered.render();
             }
 
-            final List<Nut> nuts = facade.runWorkflow(workflowId);
-
-            for (final Nut nut : nuts) {
-                pageContext.getOut().println(HtmlUtil.writeScriptImport(nut, IOUtils.mergePath(facade.getContextPath(), workflowId)));
-            }
+            getOut().write(markup);
         } catch (IOException ioe) {
             throw new JspException("Can't write import statements into JSP output stream", new StreamException(ioe));
         } catch (WuicException we) {
@@ -109,6 +134,40 @@ public class WuicTag extends TagSupport {
         return SKIP_BODY;
     }
 
+    /**
+     * <p>
+     * Gets the import statements of the workflow rendered with the given facade. The statements rendered with another
+     * facade are replaced.
+     * </p>
+     *
+     * @param facade the facade
+     * @return the import statements
+     */
+    private PreRenderedImport preRendered(final WuicFacade facade) {
+        PreRenderedImport retval = PRE_RENDERED_IMPORTS.get(workflowId);
+
+        while (retval == null || retval.facade != facade) {
+            final PreRenderedImport created = new PreRenderedImport(workflowId, facade);
+            final Boolean added = retval == null ?
+                    PRE_RENDERED_IMPORTS.putIfAbsent(workflowId, created) == null :
+                    PRE_RENDERED_IMPORTS.replace(workflowId, retval, created);
+            retval = added ? created : PRE_RENDERED_IMPORTS.get(workflowId);
+        }
+
+        return retval;
+    }
+
+    /**
+     * <p>
+     * Gets the writer of the page where the import statements are written.
+     * </p>
+     *
+     * @return the page output
+     */
+    protected JspWriter getOut() {
+        return pageContext.getOut();
+    }
+
     /**
      * <p>
      * Returns the workflow IDs.
@@ -130,4 +189,181 @@ public class WuicTag extends TagSupport {
     public void setWorkflowId(final String page) {
         this.workflowId = page;
     }
+
+    /**
+     * <p>
+     * The import statements of a workflow rendered once and invalidated when the workflow's heap or the configuration
+     * changes.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @version 1.3
+     * @since 0.5.0
+     */
+    private static final class PreRenderedImport implements HeapListener, Observer {
+
+        /**
+         * The workflow ID.
+         */
+        private final String workflowId;
+
+        /**
+         * The facade running the workflow.
+         */
+        private final WuicFacade facade;
+
+        /**
+         * Incremented each time the rendered markup is invalidated.
+         */
+        private final AtomicLong invalidations;
+
+        /**
+         * The rendered markup, {@code null} if not rendered or invalidated.
+         */
+        private volatile char[] markup;
+
+        /**
+         * The last rendering is the result of a best effort process or not.
+         */
+        private volatile Boolean bestEffort;
+
+        /**
+         * <p>
+         * Builds a new instance.
+         * </p>
+         *
+         * @param id the workflow ID
+         * @param f the facade
+         */
+        private PreRenderedImport(final String id, final WuicFacade f) {
+            workflowId = id;
+            facade = f;
+            invalidations = new AtomicLong();
+            bestEffort = Boolean.FALSE;
+        }
+
+        /**
+         * <p>
+         * Gets the rendered markup.
+         * </p>
+         *
+         * @return the markup, {@code null} if it must be rendered
+         */
+        private char[] getMarkup() {
+            return markup;
+        }
+
+        /**
+         * <p>
+         * Renders the import statements. Only one thread renders them at a time, unless the last rendering is the
+         * result of a best effort process: such result is never kept, so the threads render it concurrently until the
+         * fully processed nuts are available instead of waiting each other.
+         * </p>
+         *
+         * @return the rendered markup
+         * @throws WuicException if the workflow can't be processed
+         * @throws IOException if an I/O error occurs
+         */
+        private char[] render() throws WuicException, IOException {
+            if (bestEffort) {
+                return doRender();
+            }
+
+            synchronized (this) {
+                final char[] retval = markup;
+                return retval != null ? retval : doRender();
+            }
+        }
+
+        /**
+         * <p>
+         * Runs the workflow and renders the import statements of the resulting nuts. The markup is kept only if no
+         * invalidation occurred during the rendering and if the nuts are not the result of a best effort process,
+         * which will be replaced by fully processed nuts later.
+         * </p>
+         *
+         * @return the rendered markup
+         * @throws WuicException if the workflow can't be processed
+         * @throws IOException if an I/O error occurs
+         */
+        private char[] doRender() throws WuicException, IOException {
+            if (WuicJeeContext.initParams().wuicServletMultipleConfInTagSupport()) {
+                facade.clearTag(workflowId);
+            }
+
+            final long invalidation = invalidations.get();
+
+            // Listen changes before running the workflow to not miss any invalidation
+            facade.addObserver(this);
+            facade.observe(workflowId, this);
+
+            final List<Nut> nuts = facade.runWorkflow(workflowId);
+            final String workflowContextPath = IOUtils.mergePath(facade.getContextPath(), workflowId);
+            final String lineSeparator = System.getProperty("line.separator");
+            final StringBuilder builder = new StringBuilder();
+            Boolean isBestEffort = Boolean.FALSE;
+
+            // Preload hints first, the browser fetches them while the imported nuts are downloaded
+            final List<Nut> referenced = new ArrayList<Nut>();
+
+            for (final Nut nut : nuts) {
+                if (nut.getReferencedNuts() != null) {
+                    referenced.addAll(nut.getReferencedNuts());
+                }
+            }
+
+            for (final Nut preload : WuicJeeContext.initParams().preloadPolicy().select(referenced)) {
+                builder.append(HtmlUtil.preloadImport(preload, workflowContextPath)).append(lineSeparator);
+            }
+
+            for (final Nut nut : nuts) {
+                if (nut.getName().startsWith(AbstractCacheEngine.BEST_EFFORT_PREFIX)) {
+                    isBestEffort = Boolean.TRUE;
+                }
+
+                builder.append(HtmlUtil.writeScriptImport(nut, workflowContextPath)).append(lineSeparator);
+            }
+
+            final char[] retval = new char[builder.length()];
+            builder.getChars(0, retval.length, retval, 0);
+
+            bestEffort = isBestEffort;
+
+            if (!isBestEffort && invalidation == invalidations.get()) {
+                markup = retval;
+            }
+
+            return retval;
+        }
+
+        /**
+         * <p>
+         * Invalidates the rendered markup.
+         * </p>
+         */
+        private void invalidate() {
+            invalidations.incrementAndGet();
+            bestEffort = Boolean.FALSE;
+            markup = null;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void nutUpdated(final NutsHeap heap) {
+            invalidate();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void update(final Observable o, final Object arg) {
+            // Configuration has changed, the workflow could not exist anymore
+            o.deleteObserver(this);
+            PRE_RENDERED_IMPORTS.remove(workflowId, this);
+            invalidate();
+        }
+    }
 }
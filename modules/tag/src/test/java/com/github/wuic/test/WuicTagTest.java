@@ -0,0 +1,459 @@
+/*
+ * "Copyright (c) 2014   Capgemini Technology Services (hereinafter "Capgemini")
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * -   The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Any failure to comply with the above shall automatically terminate the license
+ * and be construed as a breach of these Terms of Use causing significant harm to
+ * Capgemini.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Capgemini shall not be used in
+ * advertising or otherwise to promote the use or other dealings in this Software
+ * without prior written authorization from Capgemini.
+ *
+ * These Terms of Use are subject to French law.
+ *
+ * IMPORTANT NOTICE: The WUIC software implements software components governed by
+ * open source software licenses (BSD and Apache) of which CAPGEMINI is not the
+ * author or the editor. The rights granted on the said software components are
+ * governed by the specific terms and conditions specified by Apache 2.0 and BSD
+ * licenses."
+ */
+
+
+
+
+package com.github.wuic.test;
+
+import com.github.wuic.ContextBuilder;
+import com.github.wuic.ContextBuilderConfigurator;
+import com.github.wuic.NutType;
+import com.github.wuic.engine.AbstractEngineBuilder;
+import com.github.wuic.engine.Engine;
+import com.github.wuic.engine.EngineBuilderFactory;
+import com.github.wuic.engine.EngineRequest;
+import com.github.wuic.engine.EngineType;
+import com.github.wuic.engine.NodeEngine;
+import com.github.wuic.exception.BuilderPropertyNotSupportedException;
+import com.github.wuic.exception.EngineBuilderPropertyNotSupportedException;
+import com.github.wuic.exception.WuicException;
+import com.github.wuic.jee.WuicJeeContext;
+import com.github.wuic.jee.WuicServletContextListener;
+import com.github.wuic.nut.Nut;
+import com.github.wuic.nut.NutDao;
+import com.github.wuic.nut.NutDaoListener;
+import com.github.wuic.tag.WuicTag;
+import junit.framework.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Matchers;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.jsp.JspWriter;
+import java.io.ByteArrayInputStream;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * <p>
+ * {@link WuicTag} tests.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @version 1.2
+ * @since 0.5.0
+ */
+@RunWith(JUnit4.class)
+public class WuicTagTest {
+
+    /**
+     * Number of times the workflow has been processed.
+     */
+    private static final AtomicInteger RUNS = new AtomicInteger();
+
+    /**
+     * Indicates if the processed nuts must look like the result of a best effort process.
+     */
+    private static final AtomicBoolean BEST_EFFORT = new AtomicBoolean();
+
+    /**
+     * The listener registered by the heap to the DAO.
+     */
+    private final AtomicReference<NutDaoListener> heapListener = new AtomicReference<NutDaoListener>();
+
+    /**
+     * The DAO.
+     */
+    private NutDao dao;
+
+    /**
+     * The servlet context.
+     */
+    private ServletContext servletContext;
+
+    /**
+     * <p>
+     * Engine builder counting the workflow executions.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @version 1.0
+     * @since 0.5.0
+     */
+    public static final class CountingEngineBuilder extends AbstractEngineBuilder {
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected Engine internalBuild() throws BuilderPropertyNotSupportedException {
+            final NodeEngine engine = mock(NodeEngine.class);
+            when(engine.getNutTypes()).thenReturn(Arrays.asList(NutType.JAVASCRIPT));
+            when(engine.getEngineType()).thenReturn(EngineType.AGGREGATOR);
+
+            try {
+                when(engine.parse(any(EngineRequest.class))).thenAnswer(new Answer<Object>() {
+                    @Override
+                    public Object answer(final InvocationOnMock invocationOnMock) throws Throwable {
+                        RUNS.incrementAndGet();
+
+                        if (BEST_EFFORT.get()) {
+                            return Arrays.asList(newNut("best-effort/foo.js"));
+                        }
+
+                        return ((EngineRequest) invocationOnMock.getArguments()[0]).getNuts();
+                    }
+                });
+            } catch (WuicException we) {
+                throw new IllegalStateException(we);
+            }
+
+            return engine;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void throwPropertyNotSupportedException(final String key) throws EngineBuilderPropertyNotSupportedException {
+        }
+    }
+
+    /**
+     * <p>
+     * Creates a mocked nut.
+     * </p>
+     *
+     * @param name the nut name
+     * @return the nut
+     * @throws Exception if the mock can't be created
+     */
+    private static Nut newNut(final String name) throws Exception {
+        final Nut nut = mock(Nut.class);
+        when(nut.getName()).thenReturn(name);
+        when(nut.getNutType()).thenReturn(NutType.JAVASCRIPT);
+        when(nut.isAggregatable()).thenReturn(true);
+        when(nut.isCacheable()).thenReturn(true);
+        when(nut.openStream()).thenReturn(new ByteArrayInputStream("var foo;".getBytes()));
+        when(nut.getVersionNumber()).thenReturn(new BigInteger("1"));
+        return nut;
+    }
+
+    /**
+     * <p>
+     * Registers the engine builder.
+     * </p>
+     */
+    @BeforeClass
+    public static void registerBuilder() {
+        EngineBuilderFactory.getInstance().addBuilderClass(CountingEngineBuilder.class.getName());
+    }
+
+    /**
+     * <p>
+     * Initializes the JEE context with a facade processing a workflow of one nut.
+     * </p>
+     *
+     * @throws Exception if the context can't be initialized
+     */
+    @Before
+    public void initContext() throws Exception {
+        RUNS.set(0);
+        BEST_EFFORT.set(false);
+
+        servletContext = mock(ServletContext.class);
+        when(servletContext.getContextPath()).thenReturn("");
+        when(servletContext.getInitParameter(WuicServletContextListener.WUIC_USE_DEFAULT_CONTEXT_BUILDER_CONFIGURATORS)).thenReturn("false");
+        when(servletContext.getInitParameter(WuicServletContextListener.WUIC_SERVLET_MULTIPLE_CONG_IN_TAG_SUPPORT)).thenReturn("false");
+        new WuicServletContextListener().contextInitialized(new ServletContextEvent(servletContext));
+
+        dao = mock(NutDao.class);
+        when(dao.create(anyString())).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(final InvocationOnMock invocationOnMock) throws Throwable {
+                return new ArrayList<Nut>(Arrays.asList(newNut("foo.js")));
+            }
+        });
+        when(dao.create(anyString(), any(NutDao.PathFormat.class))).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(final InvocationOnMock invocationOnMock) throws Throwable {
+                return new ArrayList<Nut>(Arrays.asList(newNut("foo.js")));
+            }
+        });
+        doAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(final InvocationOnMock invocationOnMock) throws Throwable {
+                heapListener.set((NutDaoListener) invocationOnMock.getArguments()[1]);
+                return null;
+            }
+        }).when(dao).observe(anyString(), Matchers.<NutDaoListener>anyVararg());
+    }
+
+    /**
+     * <p>
+     * Configures a workflow with the given ID.
+     * </p>
+     *
+     * @param workflowId the workflow ID
+     * @throws Exception if the workflow can't be configured
+     */
+    private void configure(final String workflowId) throws Exception {
+        WuicJeeContext.getWuicFacade().configure(new ContextBuilderConfigurator() {
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public int internalConfigure(final ContextBuilder ctxBuilder) {
+                try {
+                    ctxBuilder.nutDao("dao", dao)
+                            .heap("heap", "dao", "foo.js")
+                            .contextEngineBuilder("engine", CountingEngineBuilder.class.getSimpleName())
+                            .toContext()
+                            .template("tpl", new String[] { "engine" }, null, Boolean.FALSE)
+                            .workflow(workflowId, Boolean.FALSE, "heap", "tpl");
+                } catch (WuicException we) {
+                    throw new IllegalStateException(we);
+                }
+
+                return -1;
+            }
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public String getTag() {
+                return "test";
+            }
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            protected Long getLastUpdateTimestampFor(final String path) {
+                return -1L;
+            }
+        });
+    }
+
+    /**
+     * <p>
+     * Renders the tag for the given workflow.
+     * </p>
+     *
+     * @param workflowId the workflow ID
+     * @return the rendered markup
+     * @throws Exception if the tag can't be rendered
+     */
+    private String render(final String workflowId) throws Exception {
+        final StringBuilder out = new StringBuilder();
+        final JspWriter writer = mock(JspWriter.class);
+        doAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(final InvocationOnMock invocationOnMock) throws Throwable {
+                out.append((char[]) invocationOnMock.getArguments()[0]);
+                return null;
+            }
+        }).when(writer).write(any(char[].class));
+
+        // Page context can't be mocked without the EL API, the output is directly provided
+        final WuicTag tag = new WuicTag() {
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            protected JspWriter getOut() {
+                return writer;
+            }
+        };
+
+        tag.setWorkflowId(workflowId);
+        tag.doStartTag();
+
+        return out.toString();
+    }
+
+    /**
+     * <p>
+     * Checks that the workflow is run once when the tag is rendered twice.
+     * </p>
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void renderOnceTest() throws Exception {
+        configure("renderOnce");
+        final String markup = render("renderOnce");
+        Assert.assertTrue(markup, markup.contains("foo.js"));
+        Assert.assertEquals(markup, render("renderOnce"));
+        Assert.assertEquals(1, RUNS.get());
+    }
+
+    /**
+     * <p>
+     * Checks that an update in the heap invalidates the rendered markup.
+     * </p>
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void heapUpdateTest() throws Exception {
+        configure("heapUpdate");
+        render("heapUpdate");
+        render("heapUpdate");
+        Assert.assertEquals(1, RUNS.get());
+
+        heapListener.get().nutsPolled(dao, Collections.singletonMap("foo.js", 2L));
+        render("heapUpdate");
+        render("heapUpdate");
+        Assert.assertEquals(2, RUNS.get());
+    }
+
+    /**
+     * <p>
+     * Checks that a rebuilt context invalidates the rendered markup.
+     * </p>
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void contextRebuildTest() throws Exception {
+        configure("contextRebuild");
+        render("contextRebuild");
+        render("contextRebuild");
+        Assert.assertEquals(1, RUNS.get());
+
+        configure("contextRebuild");
+        render("contextRebuild");
+        render("contextRebuild");
+        Assert.assertEquals(2, RUNS.get());
+    }
+
+    /**
+     * <p>
+     * Checks that the markup rendered with a facade is not used with a new one.
+     * </p>
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void facadeChangeTest() throws Exception {
+        configure("facadeChange");
+        render("facadeChange");
+        render("facadeChange");
+        Assert.assertEquals(1, RUNS.get());
+
+        new WuicServletContextListener().contextInitialized(new ServletContextEvent(servletContext));
+        configure("facadeChange");
+        render("facadeChange");
+        render("facadeChange");
+        Assert.assertEquals(2, RUNS.get());
+    }
+
+    /**
+     * <p>
+     * Checks that the markup of a best effort result is never kept.
+     * </p>
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void bestEffortTest() throws Exception {
+        configure("bestEffort");
+        BEST_EFFORT.set(true);
+        final String markup = render("bestEffort");
+        Assert.assertTrue(markup, markup.contains("best-effort"));
+        render("bestEffort");
+        Assert.assertEquals(2, RUNS.get());
+
+        // Fully processed nuts are kept
+        BEST_EFFORT.set(false);
+        render("bestEffort");
+        render("bestEffort");
+        Assert.assertEquals(3, RUNS.get());
+    }
+
+    /**
+     * <p>
+     * Checks that only the nuts referenced by the imported nuts are preloaded.
+     * </p>
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void preloadTest() throws Exception {
+        when(servletContext.getInitParameter(WuicServletContextListener.WUIC_PRELOAD_NUT_TYPES)).thenReturn("JAVASCRIPT");
+        new WuicServletContextListener().contextInitialized(new ServletContextEvent(servletContext));
+
+        final Nut referenced = newNut("bar.js");
+        doAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(final InvocationOnMock invocationOnMock) throws Throwable {
+                final Nut nut = newNut("foo.js");
+                when(nut.getReferencedNuts()).thenReturn(Arrays.asList(referenced));
+                return new ArrayList<Nut>(Arrays.asList(nut));
+            }
+        }).when(dao).create(anyString());
+
+        configure("preload");
+        final String markup = render("preload");
+        Assert.assertTrue(markup, markup.contains("1/bar.js\" as=\"script\""));
+        Assert.assertFalse(markup, markup.contains("1/foo.js\" as=\"script\""));
+        Assert.assertTrue(markup, markup.contains("foo.js"));
+    }
+}